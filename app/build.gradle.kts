@@ -444,6 +444,11 @@ dependencies {
   // TODO: upgrade to "com.googlecode.mp4parser:isoparser:1.1.22" or latest
   // mp4parser: https://github.com/sannies/mp4parser/releases
   implementation("com.googlecode.mp4parser:isoparser:1.0.6")
+
+  // JUnit: https://github.com/junit-team/junit4
+  testImplementation("junit:junit:${LibraryVersions.JUNIT}")
+  // Mockito: https://github.com/mockito/mockito
+  testImplementation("org.mockito:mockito-core:${LibraryVersions.MOCKITO}")
 }
 
 if (!isExperimentalBuild) {
@@ -50,6 +50,7 @@ public class Tracer {
   }
 
   private static void throwError (Throwable throwable) {
+    Settings.instance().commitPendingChanges();
     Settings.instance().pmc().apply(); // Release any locks
 
     if (throwable instanceof ClientException)
@@ -1065,6 +1065,7 @@ public abstract class BaseActivity extends ComponentActivity implements View.OnT
       }
     }
     setOnline(false);
+    Settings.instance().commitPendingChanges();
     try {
       super.onPause();
     } catch (Throwable t) {
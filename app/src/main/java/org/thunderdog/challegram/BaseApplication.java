@@ -18,6 +18,7 @@ import androidx.annotation.NonNull;
 import androidx.multidex.MultiDexApplication;
 import androidx.work.Configuration;
 
+import org.thunderdog.challegram.loader.gif.GifFramePool;
 import org.thunderdog.challegram.tool.UI;
 
 public final class BaseApplication extends MultiDexApplication implements Configuration.Provider {
@@ -27,6 +28,15 @@ public final class BaseApplication extends MultiDexApplication implements Config
     UI.initApp(getApplicationContext());
   }
 
+  @Override
+  public void onTrimMemory (int level) {
+    super.onTrimMemory(level);
+    GifFramePool pool = GifFramePool.peekInstance();
+    if (pool != null) {
+      pool.onTrimMemory(level);
+    }
+  }
+
   @NonNull
   @Override
   public Configuration getWorkManagerConfiguration () {
@@ -75,7 +75,12 @@ public class DoubleLinearChartView extends BaseChartView<DoubleLinearChartData,
                 int localStart = Math.max(0, startXIndex - additionalPoints);
                 int localEnd = Math.min(chartData.xPercentage.length - 1, endXIndex + additionalPoints);
 
-                for (int i = localStart; i <= localEnd; i++) {
+                int[] indexes = line.line.getDownsampledIndexes(ChartData.getDownsampleLevel(endXIndex - startXIndex + 1, chartWidth));
+                int rangeStart = indexes != null ? ChartData.findDownsampledStart(indexes, localStart) : localStart;
+                int rangeEnd = indexes != null ? ChartData.findDownsampledEnd(indexes, localEnd) : localEnd;
+                ChartData.getDownsampleStats().onLineDrawn(localEnd - localStart + 1, rangeEnd - rangeStart + 1);
+                for (int r = rangeStart; r <= rangeEnd; r++) {
+                    int i = indexes != null ? indexes[r] : r;
                     if (y[i] < 0) continue;
                     float xPoint = chartData.xPercentage[i] * fullWidth - offset;
                     float yPercentage = ((float) y[i] * chartData.linesK[k] - currentMinHeight) / (currentMaxHeight - currentMinHeight);
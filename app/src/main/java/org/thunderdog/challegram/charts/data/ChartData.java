@@ -11,6 +11,7 @@ import org.thunderdog.challegram.charts.SegmentTree;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
 import java.util.regex.Matcher;
@@ -223,6 +224,83 @@ public class ChartData {
         return right;
     }
 
+    // Downsampling: bucket of 2^level points is reduced to its min and max points, which is enough
+    // to draw it in a single pixel column without losing peaks. Level only changes when zoom doubles,
+    // so reduced series are built once and reused while pinching.
+
+    private static final int MIN_DOWNSAMPLE_LEVEL = 2;
+    private static final int MAX_DOWNSAMPLE_LEVEL = 20;
+
+    private static final DownsampleStats downsampleStats = new DownsampleStats();
+
+    public static DownsampleStats getDownsampleStats() {
+        return downsampleStats;
+    }
+
+    /**
+     * @return Level to pass to {@link Line#getDownsampledIndexes(int)}, or 0, if all points should be drawn
+     */
+    public static int getDownsampleLevel(int pointCount, float width) {
+        if (width <= 0) {
+            return 0;
+        }
+        int pointsPerPixel = (int) (pointCount / width);
+        if (pointsPerPixel < (1 << MIN_DOWNSAMPLE_LEVEL)) {
+            return 0;
+        }
+        return Math.min(MAX_DOWNSAMPLE_LEVEL, 31 - Integer.numberOfLeadingZeros(pointsPerPixel));
+    }
+
+    /**
+     * @return Position of the last downsampled point before or at {@code index}, so the line enters the range from outside
+     */
+    public static int findDownsampledStart(int[] indexes, int index) {
+        int position = Arrays.binarySearch(indexes, index);
+        if (position < 0) {
+            position = -position - 2;
+        }
+        return Math.max(0, position);
+    }
+
+    /**
+     * @return Position of the first downsampled point after or at {@code index}, so the line leaves the range
+     */
+    public static int findDownsampledEnd(int[] indexes, int index) {
+        int position = Arrays.binarySearch(indexes, index);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        return Math.min(indexes.length - 1, position);
+    }
+
+    public static final class DownsampleStats {
+        private long seriesCount, seriesPoints;
+        private long drawCount, rangePoints, drawnPoints;
+
+        synchronized void onSeriesBuilt(int pointCount) {
+            seriesCount++;
+            seriesPoints += pointCount;
+        }
+
+        public synchronized void onLineDrawn(int rangePointCount, int drawnPointCount) {
+            drawCount++;
+            rangePoints += rangePointCount;
+            drawnPoints += drawnPointCount;
+        }
+
+        public synchronized float getReductionRate() {
+            return rangePoints > 0 ? 1f - (float) drawnPoints / (float) rangePoints : 0f;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "series built: " + seriesCount + " (" + seriesPoints + " points)" +
+                    ", lines drawn: " + drawCount +
+                    ", points: " + drawnPoints + "/" + rangePoints +
+                    " (-" + (int) (getReductionRate() * 100f) + "%)";
+        }
+    }
+
     public class Line {
         public int[] y;
 
@@ -234,5 +312,50 @@ public class ChartData {
         public String colorKey;
         public int color = Color.BLACK;
         public int colorDark = Color.WHITE;
+
+        private int[][] downsampledIndexes;
+
+        /**
+         * @return Sorted indexes of points to draw at the given level, or {@code null} for level 0.
+         * Points with negative values are never included.
+         */
+        public int[] getDownsampledIndexes(int level) {
+            if (level <= 0) {
+                return null;
+            }
+            if (downsampledIndexes == null) {
+                downsampledIndexes = new int[MAX_DOWNSAMPLE_LEVEL + 1][];
+            }
+            int[] indexes = downsampledIndexes[level];
+            if (indexes == null) {
+                indexes = downsample(y, 1 << level);
+                downsampledIndexes[level] = indexes;
+                downsampleStats.onSeriesBuilt(indexes.length);
+            }
+            return indexes;
+        }
+    }
+
+    private static int[] downsample(int[] y, int bucketSize) {
+        int n = y.length;
+        int[] indexes = new int[((n + bucketSize - 1) / bucketSize) * 2];
+        int count = 0;
+        for (int bucketStart = 0; bucketStart < n; bucketStart += bucketSize) {
+            int bucketEnd = Math.min(n, bucketStart + bucketSize);
+            int minIndex = -1, maxIndex = -1;
+            for (int i = bucketStart; i < bucketEnd; i++) {
+                if (y[i] < 0) continue;
+                if (minIndex == -1 || y[i] < y[minIndex]) minIndex = i;
+                if (maxIndex == -1 || y[i] > y[maxIndex]) maxIndex = i;
+            }
+            if (minIndex == -1) continue;
+            if (minIndex == maxIndex) {
+                indexes[count++] = minIndex;
+            } else {
+                indexes[count++] = Math.min(minIndex, maxIndex);
+                indexes[count++] = Math.max(minIndex, maxIndex);
+            }
+        }
+        return count == indexes.length ? indexes : Arrays.copyOf(indexes, count);
     }
 }
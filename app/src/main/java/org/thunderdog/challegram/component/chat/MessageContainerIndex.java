@@ -0,0 +1,227 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.component.chat;
+
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.data.TGMessage;
+
+import java.util.List;
+
+/**
+ * Finds the container of a message in {@link MessagesAdapter} items by message id, including combined albums.
+ *
+ * Items are normally sorted by id, newest first, so id ranges of containers are kept in arrays
+ * and searched with binary search. Items that break the order (sponsored and local messages, or messages
+ * that weren't moved after sending) are kept in a separate list and checked one by one.
+ *
+ * Positions are stored relative to {@link #offset}, so messages added at the bottom or at the top
+ * are indexed without touching existing entries. Any other change of items, as well as any change of ids
+ * within a container (combining, sending), must be reported with {@link #invalidate()},
+ * and the index is rebuilt on the next lookup.
+ */
+final class MessageContainerIndex {
+  private static final int MIN_CAPACITY = 16;
+
+  // Ordered entries, newest first, occupy [head, tail)
+  private long[] minIds = new long[MIN_CAPACITY], maxIds = new long[MIN_CAPACITY];
+  private int[] positions = new int[MIN_CAPACITY];
+  private int head = MIN_CAPACITY / 2, tail = MIN_CAPACITY / 2;
+
+  private int[] otherPositions = new int[MIN_CAPACITY];
+  private int otherCount;
+
+  // Actual item position is stored position + offset
+  private int offset;
+  private boolean isValid;
+
+  private long lookupCount, rebuildCount, fallbackCount;
+
+  public void invalidate () {
+    isValid = false;
+  }
+
+  /**
+   * Invalidates the index and resets its counters, when the chat is closed.
+   */
+  public void reset () {
+    invalidate();
+    lookupCount = rebuildCount = fallbackCount = 0;
+  }
+
+  private void rebuild (List<TGMessage> items) {
+    head = tail = positions.length / 2;
+    otherCount = 0;
+    offset = 0;
+    isValid = true;
+    rebuildCount++;
+    final int itemCount = items.size();
+    for (int i = 0; i < itemCount; i++) {
+      TGMessage msg = items.get(i);
+      if (!isOrdered(msg) || (head < tail && msg.getBiggestId() >= minIds[tail - 1])) {
+        addOther(i);
+      } else {
+        append(msg.getSmallestId(), msg.getBiggestId(), i);
+      }
+    }
+  }
+
+  private static boolean isOrdered (TGMessage msg) {
+    return !msg.isSponsoredMessage() && msg.getSmallestId() > 0;
+  }
+
+  /**
+   * Must be called after {@code count} items were added at the start of the list.
+   */
+  public void onItemsAddedToBottom (List<TGMessage> items, int count) {
+    if (!isValid)
+      return;
+    offset += count;
+    for (int i = count - 1; i >= 0; i--) {
+      TGMessage msg = items.get(i);
+      if (!isOrdered(msg)) {
+        addOther(i - offset);
+      } else if (head < tail && msg.getSmallestId() <= maxIds[head]) {
+        invalidate();
+        return;
+      } else {
+        prepend(msg.getSmallestId(), msg.getBiggestId(), i - offset);
+      }
+    }
+  }
+
+  /**
+   * Must be called after {@code count} items were added at the end of the list.
+   */
+  public void onItemsAddedToTop (List<TGMessage> items, int count) {
+    if (!isValid)
+      return;
+    final int itemCount = items.size();
+    for (int i = itemCount - count; i < itemCount; i++) {
+      TGMessage msg = items.get(i);
+      if (!isOrdered(msg)) {
+        addOther(i - offset);
+      } else if (head < tail && msg.getBiggestId() >= minIds[tail - 1]) {
+        invalidate();
+        return;
+      } else {
+        append(msg.getSmallestId(), msg.getBiggestId(), i - offset);
+      }
+    }
+  }
+
+  /**
+   * @return Position of the item that contains message with the given id, or -1, if there's none
+   */
+  public int indexOf (@NonNull List<TGMessage> items, long messageId) {
+    lookupCount++;
+    if (!isValid) {
+      rebuild(items);
+    }
+    // minIds are in descending order: find the first entry that starts at or before messageId
+    int low = head, high = tail;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (minIds[mid] <= messageId) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    if (low < tail && maxIds[low] >= messageId) {
+      int index = positions[low] + offset;
+      if (index >= 0 && index < items.size() && items.get(index).isDescendantOrSelf(messageId)) {
+        return index;
+      }
+      // Container ids have changed without invalidate() or message was removed from the album
+      return fallbackIndexOf(items, messageId);
+    }
+    for (int i = 0; i < otherCount; i++) {
+      int index = otherPositions[i] + offset;
+      if (index >= 0 && index < items.size() && items.get(index).isDescendantOrSelf(messageId)) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  private int fallbackIndexOf (List<TGMessage> items, long messageId) {
+    fallbackCount++;
+    invalidate();
+    int i = 0;
+    for (TGMessage item : items) {
+      if (item.isDescendantOrSelf(messageId)) {
+        return i;
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  // Storage
+
+  private void prepend (long minId, long maxId, int position) {
+    if (head == 0) {
+      resize();
+    }
+    head--;
+    minIds[head] = minId;
+    maxIds[head] = maxId;
+    positions[head] = position;
+  }
+
+  private void append (long minId, long maxId, int position) {
+    if (tail == positions.length) {
+      resize();
+    }
+    minIds[tail] = minId;
+    maxIds[tail] = maxId;
+    positions[tail] = position;
+    tail++;
+  }
+
+  private void resize () {
+    // Leaves equal free space on both ends, as history is loaded in both directions
+    final int size = tail - head;
+    final int capacity = Math.max(MIN_CAPACITY, (size + 1) * 2);
+    final int newHead = (capacity - size) / 2;
+    long[] minIds = new long[capacity], maxIds = new long[capacity];
+    int[] positions = new int[capacity];
+    System.arraycopy(this.minIds, head, minIds, newHead, size);
+    System.arraycopy(this.maxIds, head, maxIds, newHead, size);
+    System.arraycopy(this.positions, head, positions, newHead, size);
+    this.minIds = minIds;
+    this.maxIds = maxIds;
+    this.positions = positions;
+    this.head = newHead;
+    this.tail = newHead + size;
+  }
+
+  private void addOther (int position) {
+    if (otherCount == otherPositions.length) {
+      int[] otherPositions = new int[otherCount * 2];
+      System.arraycopy(this.otherPositions, 0, otherPositions, 0, otherCount);
+      this.otherPositions = otherPositions;
+    }
+    otherPositions[otherCount++] = position;
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    return "MessageContainerIndex { ordered = " + (tail - head) + ", other = " + otherCount +
+      ", lookups = " + lookupCount + ", rebuilds = " + rebuildCount + ", fallbacks = " + fallbackCount + " }";
+  }
+}
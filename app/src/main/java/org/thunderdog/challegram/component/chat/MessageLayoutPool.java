@@ -0,0 +1,175 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.component.chat;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.core.LazyInit;
+import org.thunderdog.challegram.data.TGMessage;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds layouts of a loaded messages chunk on multiple threads.
+ *
+ * Messages must be fully constructed and merged with each other before calling {@link #prepareLayout(List)},
+ * as merging changes flags that layout depends on. After that, layout of every message is independent from others.
+ * Calling thread takes part in the work, so the chunk is never slower than a serial loop because of a busy pool.
+ *
+ * Layout measures text with paints from {@link org.thunderdog.challegram.tool.Paints} and
+ * {@link org.thunderdog.challegram.util.text.TextStyleProvider}, which give every thread other than the UI one its own copies.
+ */
+final class MessageLayoutPool {
+  private static final int MIN_ITEMS_PER_WORKER = 4;
+
+  private static final LazyInit<MessageLayoutPool> instance = new LazyInit<>("MessageLayoutPool", MessageLayoutPool::new);
+
+  public static MessageLayoutPool instance () {
+    return instance.get();
+  }
+
+  /**
+   * Chunk processing time, split into construction (parsing and merging messages in order) and layout.
+   */
+  public static final class Stats {
+    private long chunkCount, itemCount;
+    private long totalBuildNanos, maxBuildNanos;
+    private long totalLayoutNanos, maxLayoutNanos;
+    private long parallelChunkCount;
+
+    synchronized void onChunkProcessed (int itemCount, long buildNanos, long layoutNanos, boolean isParallel) {
+      this.chunkCount++;
+      this.itemCount += itemCount;
+      this.totalBuildNanos += buildNanos;
+      this.totalLayoutNanos += layoutNanos;
+      this.maxBuildNanos = Math.max(maxBuildNanos, buildNanos);
+      this.maxLayoutNanos = Math.max(maxLayoutNanos, layoutNanos);
+      if (isParallel) {
+        this.parallelChunkCount++;
+      }
+    }
+
+    public synchronized long getChunkCount () {
+      return chunkCount;
+    }
+
+    public synchronized long getAverageBuildTime (TimeUnit unit) {
+      return chunkCount > 0 ? unit.convert(totalBuildNanos / chunkCount, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    public synchronized long getAverageLayoutTime (TimeUnit unit) {
+      return chunkCount > 0 ? unit.convert(totalLayoutNanos / chunkCount, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    @Override
+    @NonNull
+    public synchronized String toString () {
+      return "chunks: " + chunkCount + " (parallel: " + parallelChunkCount + ")" +
+        ", items: " + itemCount +
+        ", build: avg " + getAverageBuildTime(TimeUnit.MICROSECONDS) + "us, max " + TimeUnit.NANOSECONDS.toMicros(maxBuildNanos) + "us" +
+        ", layout: avg " + getAverageLayoutTime(TimeUnit.MICROSECONDS) + "us, max " + TimeUnit.NANOSECONDS.toMicros(maxLayoutNanos) + "us";
+    }
+  }
+
+  private final ThreadPoolExecutor executor;
+  private final int workerCount;
+  private final Stats stats = new Stats();
+
+  private MessageLayoutPool () {
+    this.workerCount = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 2));
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(workerCount, workerCount, 15, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+        r.run();
+      }, "MessageLayout#" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  public Stats getStats () {
+    return stats;
+  }
+
+  /**
+   * @return {@code true} if layout was split between multiple threads
+   */
+  public boolean prepareLayout (List<TGMessage> items) {
+    final int count = items.size();
+    final int helperCount = Math.min(workerCount, count / MIN_ITEMS_PER_WORKER - 1);
+    if (helperCount <= 0) {
+      for (TGMessage item : items) {
+        item.prepareLayout();
+      }
+      return false;
+    }
+    final AtomicInteger nextIndex = new AtomicInteger();
+    final Runnable worker = () -> {
+      int index;
+      while ((index = nextIndex.getAndIncrement()) < count) {
+        items.get(index).prepareLayout();
+      }
+    };
+    final Future<?>[] futures = new Future[helperCount];
+    for (int i = 0; i < helperCount; i++) {
+      futures[i] = executor.submit(worker);
+    }
+    try {
+      worker.run();
+    } finally {
+      for (Future<?> future : futures) {
+        await(future);
+      }
+    }
+    return true;
+  }
+
+  private static void await (Future<?> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new RuntimeException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -47,6 +47,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
   private final MessagesManager manager;
   private @Nullable TdApi.ChatType chatType;
   private @Nullable ArrayList<TGMessage> items;
+  private final MessageContainerIndex containerIndex = new MessageContainerIndex();
 
   private final @Nullable ViewController<?> themeProvider;
 
@@ -102,6 +103,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
           if (chatType != null) {
             msg.autoDownloadContent(chatType);
           }
+          msg.restoreLayout();
           holder.setMessage(msg);
         }
         break;
@@ -214,6 +216,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     if (items != null) {
       items.get(index).onDestroy();
       items.set(index, msg);
+      containerIndex.invalidate();
       boolean includeTop = index > 0;
       if (includeTop) {
         TGMessage bottomMessage = items.get(index - 1);
@@ -255,15 +258,9 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
   }
 
   public TGMessage findMessageById (long messageId) {
-    if (items == null) {
-      return null;
-    }
-    for (TGMessage msg : items) {
-      if (msg.getId() == messageId) {
-        return msg;
-      }
-    }
-    return null;
+    int index = indexOfMessageContainer(messageId);
+    TGMessage msg = index != -1 ? items.get(index) : null;
+    return msg != null && msg.getId() == messageId ? msg : null;
   }
 
   public @Nullable ArrayList<TGMessage> getItems () {
@@ -273,25 +270,26 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
   // Index getters
 
   public int indexOfMessageContainer (MessageId messageId) {
-    if (items != null) {
-      int i = 0;
-      for (TGMessage item : items) {
-        if (item.getChatId() == messageId.getChatId() && item.isDescendantOrSelf(messageId.getMessageId(), messageId.getOtherMessageIds())) {
-          return i;
+    if (items == null) {
+      return -1;
+    }
+    int index = containerIndex.indexOf(items, messageId.getMessageId());
+    long[] otherMessageIds = messageId.getOtherMessageIds();
+    if (otherMessageIds != null) {
+      for (long otherMessageId : otherMessageIds) {
+        int otherIndex = containerIndex.indexOf(items, otherMessageId);
+        if (otherIndex != -1 && (index == -1 || otherIndex < index)) {
+          index = otherIndex;
         }
-        i++;
       }
     }
-    return -1;
-  }
-
-  public int indexOfMessageContainer (long messageId) {
-    if (items == null) {
-      return -1;
+    if (index == -1 || items.get(index).getChatId() == messageId.getChatId()) {
+      return index;
     }
+    // Same message id in a different chat
     int i = 0;
     for (TGMessage item : items) {
-      if (item.isDescendantOrSelf(messageId)) {
+      if (item.getChatId() == messageId.getChatId() && item.isDescendantOrSelf(messageId.getMessageId(), otherMessageIds)) {
         return i;
       }
       i++;
@@ -299,6 +297,25 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     return -1;
   }
 
+  public int indexOfMessageContainer (long messageId) {
+    if (items == null) {
+      return -1;
+    }
+    return containerIndex.indexOf(items, messageId);
+  }
+
+  /**
+   * Must be called when message ids within an item have changed, e.g. when a message was combined into an album
+   * or its sending has finished.
+   */
+  public void invalidateMessageIndex () {
+    containerIndex.invalidate();
+  }
+
+  MessageContainerIndex getMessageIndex () {
+    return containerIndex;
+  }
+
   // Data deletion
 
   public void clear (boolean reset) {
@@ -316,6 +333,11 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
       }
       items.clear();
     }
+    if (reset) {
+      containerIndex.reset();
+    } else {
+      containerIndex.invalidate();
+    }
     U.notifyItemsReplaced(this, oldItemCount);
   }
 
@@ -325,6 +347,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     }
     TGMessage msg = items.remove(fromIndex);
     items.add(toIndex, msg);
+    containerIndex.invalidate();
 
     TGMessage topMessage = getMessage(toIndex + 1);
 
@@ -364,6 +387,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
       return null;
     }
     TGMessage msg = items.remove(index);
+    containerIndex.invalidate();
     msg.onDestroy();
     notifyItemRemoved(index);
     if (items.size() != 0) {
@@ -385,10 +409,40 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     return msg;
   }
 
+  /**
+   * Removes items in range [fromIndex, toIndex), e.g. when they are far away from the viewport.
+   * Range must not include all items.
+   */
+  public void removeRange (int fromIndex, int toIndex) {
+    if (items == null || fromIndex >= toIndex || toIndex - fromIndex >= items.size()) {
+      return;
+    }
+    List<TGMessage> removedItems = items.subList(fromIndex, toIndex);
+    for (TGMessage msg : removedItems) {
+      msg.onDestroy();
+    }
+    removedItems.clear();
+    containerIndex.invalidate();
+    notifyItemRangeRemoved(fromIndex, toIndex - fromIndex);
+
+    TGMessage currentMessage = getMessage(fromIndex);
+    TGMessage bottomMessage = getMessage(fromIndex - 1);
+    if (bottomMessage != null) {
+      bottomMessage.mergeWith(currentMessage, fromIndex == 1);
+      bottomMessage.rebuildLayout();
+      notifyItemChanged(fromIndex - 1);
+    } else if (currentMessage != null) {
+      currentMessage.mergeWith(getMessage(fromIndex + 1), true);
+      currentMessage.rebuildLayout();
+      notifyItemChanged(fromIndex);
+    }
+  }
+
   // Data insertion
 
   public void reset (TGMessage message) {
     int oldItemCount = getItemCount();
+    containerIndex.invalidate();
     if (items != null) {
       for (TGMessage msg : items) {
         msg.onDestroy();
@@ -452,6 +506,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
         }
 
         items.add(index, message);
+        containerIndex.invalidate();
         notifyItemInserted(index);
 
         // FIXME for some reason bubble merging on bottom side does not work
@@ -518,6 +573,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     int prevSize = items.size();
     if (top) {
       items.add(message);
+      containerIndex.onItemsAddedToTop(items, 1);
       if (prevSize == 0) {
         notifyItemChanged(0);
       } else {
@@ -530,6 +586,11 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
         notifyItemChanged(newIndex);
       }
       items.add(newIndex, message);
+      if (newIndex == 0) {
+        containerIndex.onItemsAddedToBottom(items, 1);
+      } else {
+        containerIndex.invalidate();
+      }
       if (prevSize == 0) {
         notifyItemChanged(0);
       } else {
@@ -550,6 +611,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
       this.items.clear();
     }
     this.items.addAll(items);
+    containerIndex.invalidate();
     U.notifyItemsReplaced(this, oldItemCount);
   }
 
@@ -561,33 +623,15 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     final int count = this.items.size();
 
     if (count > 0 && !items.isEmpty() && manager.needRemoveDuplicates()) {
-      if (items.size() > count) {
-        for (int i = items.size() - 1; i >= 0; i--) {
-          TGMessage msg = items.get(i);
-          if (indexOfMessageContainer(msg.getId()) != -1) {
-            items.remove(i);
-            if (i > 0) {
-              items.get(i - 1).mergeWith(items.size() > i ? items.get(i) : null, !fromTop && i - 1 == 0);
-              items.get(i - 1).rebuildLayout();
-            }
+      for (int i = items.size() - 1; i >= 0; i--) {
+        TGMessage msg = items.get(i);
+        if (indexOfMessageContainer(msg.getId()) != -1) {
+          items.remove(i);
+          if (i > 0) {
+            items.get(i - 1).mergeWith(items.size() > i ? items.get(i) : null, !fromTop && i - 1 == 0);
+            items.get(i - 1).rebuildLayout();
           }
         }
-      } else {
-        for (TGMessage item : this.items) {
-          for (int i = items.size() - 1; i >= 0; i--) {
-            TGMessage newItem = items.get(i);
-            if (item.isDescendantOrSelf(newItem.getId())) {
-              items.remove(i);
-              if (i > 0) {
-                items.get(i - 1).mergeWith(items.size() > i ? items.get(i) : null, !fromTop && i - 1 == 0);
-                items.get(i - 1).rebuildLayout();
-              }
-              break;
-            }
-          }
-          if (items.isEmpty())
-            break;
-        }
       }
     }
 
@@ -603,6 +647,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
         notifyItemChanged(count - 1);
       }
       this.items.addAll(items);
+      containerIndex.onItemsAddedToTop(this.items, newCount);
       if (count == 0) {
         U.notifyItemsReplaced(this, oldItemCount);
       } else {
@@ -634,6 +679,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
         notifyItemChanged(0);
       }
       this.items.addAll(0, items);
+      containerIndex.onItemsAddedToBottom(this.items, newCount);
       if (count == 0) {
         U.notifyItemsReplaced(this, oldItemCount);
       } else {
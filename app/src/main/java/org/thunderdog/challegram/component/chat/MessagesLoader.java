@@ -45,11 +45,13 @@ import org.thunderdog.challegram.tool.Strings;
 import org.thunderdog.challegram.tool.UI;
 import org.thunderdog.challegram.unsorted.Settings;
 import org.thunderdog.challegram.util.CancellableResultHandler;
+import org.thunderdog.challegram.util.text.TextMeasureCache;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import me.vkryl.core.DateUtils;
 import me.vkryl.core.MathUtils;
@@ -1389,12 +1391,17 @@ public class MessagesLoader implements Client.ResultHandler {
             topMessage.combineWith(message, false);
           }
         }
+        manager.getAdapter().invalidateMessageIndex();
       });
     }
 
     boolean unreadFound = !needFindUnread;
     TGMessage unreadBadged = null;
 
+    final long buildStartTime = System.nanoTime();
+
+    // Messages are constructed and merged in order, from the oldest one,
+    // and collected in reverse, so the list gets reversed only once
     for (int j = maxIndex; j >= minIndex; j--) {
       if (needMeasureSpeed) {
         startMeasureStep();
@@ -1465,9 +1472,8 @@ public class MessagesLoader implements Client.ResultHandler {
       }
 
       cur.mergeWith(top, j == minIndex);
-      cur.prepareLayout();
 
-      items.add(0, cur);
+      items.add(cur);
 
       if (containsScrollingMessage) {
         scrollItemIndex = items.size();
@@ -1481,8 +1487,18 @@ public class MessagesLoader implements Client.ResultHandler {
       }
     }
 
+    Collections.reverse(items);
+
+    // Merging changes flags of both messages, so layouts are built once all messages are merged
+    final long layoutStartTime = System.nanoTime();
+    final MessageLayoutPool layoutPool = MessageLayoutPool.instance();
+    final boolean isParallelLayout = layoutPool.prepareLayout(items);
+    final long layoutEndTime = System.nanoTime();
+    layoutPool.getStats().onChunkProcessed(items.size(), layoutStartTime - buildStartTime, layoutEndTime - layoutStartTime, isParallelLayout);
+
     if (needMeasureSpeed) {
       completeMeasure();
+      Log.i(Log.TAG_MESSAGES_LOADER, "built %d messages in %dms, layout took %dms (parallel: %b). Total: %s, %s", items.size(), TimeUnit.NANOSECONDS.toMillis(layoutStartTime - buildStartTime), TimeUnit.NANOSECONDS.toMillis(layoutEndTime - layoutStartTime), isParallelLayout, layoutPool.getStats(), TextMeasureCache.getStats());
     }
 
     if (unreadFound && lookForInbox) {
@@ -95,6 +95,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
   private final MessagesSearchManagerMiddleware searchMiddleware;
 
   private final MessagesLoader loader;
+  private final MessagesRetention retention = new MessagesRetention();
 
   private String eventLogQuery;
   private long[] eventLogUserIds;
@@ -129,12 +130,15 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
         boolean isScrolling = newState != RecyclerView.SCROLL_STATE_IDLE;
         if (MessagesManager.this.isScrolling != isScrolling) {
           MessagesManager.this.isScrolling = isScrolling;
+          retention.setIsScrolling(isScrolling);
           if (!isScrolling) {
             viewMessages(true);
           }
         }
         if (newState == RecyclerView.SCROLL_STATE_IDLE) {
           saveScrollPosition();
+          trimMessages();
+          releaseLayouts();
         }
         ((MessagesRecyclerView) recyclerView).setIsScrolling(newState != RecyclerView.SCROLL_STATE_IDLE);
       }
@@ -547,11 +551,12 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
     final long chatId = loader.getChatId();
     if (chatId != 0) {
       if (Log.isEnabled(Log.TAG_MESSAGES_LOADER)) {
-        Log.i(Log.TAG_MESSAGES_LOADER, "[DESTROY] chatId:%d", chatId);
+        Log.i(Log.TAG_MESSAGES_LOADER, "[DESTROY] chatId:%d %s %s", chatId, retention, adapter.getMessageIndex());
       }
       tdlib.closeChat(chatId, context, true);
     }
     loader.reuse();
+    retention.reset();
     messageViewer = null;
     adapter.clear(true);
     clearHeaderMessage();
@@ -1183,6 +1188,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
       for (int i = album.messages.size() - olderCount; i < album.messages.size(); i++) {
         targetAlbum.combineWith(album.messages.get(i), false);
       }
+      adapter.invalidateMessageIndex();
       targetAlbum.invalidateContent(targetAlbum);
     }
   }
@@ -1617,6 +1623,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
       boolean atBottom = manager.findFirstVisibleItemPosition() == 0;
       TGMessage bottomMessage = adapter.getBottomMessage();
       if (bottomMessage != null && bottomMessage.combineWith(message.getMessage(), true)) {
+        adapter.invalidateMessageIndex();
         if (!atBottom) {
           bottomMessage.markAsUnread();
         }
@@ -1715,7 +1722,9 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
     int index = adapter.indexOfMessageContainer(oldMessageId);
     if (index != -1) {
       TGMessage msg = adapter.getItem(index);
-      switch (msg.setSendSucceeded(message, oldMessageId)) {
+      final int changeType = msg.setSendSucceeded(message, oldMessageId);
+      adapter.invalidateMessageIndex();
+      switch (changeType) {
         case TGMessage.MESSAGE_INVALIDATED: {
           invalidateViewAt(index);
           break;
@@ -1773,6 +1782,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
     updateReturnToMessageId(oldMessageId, message.id);
     int index = adapter.indexOfMessageContainer(oldMessageId);
     if (index != -1 && adapter.getItem(index).setSendFailed(message, oldMessageId)) {
+      adapter.invalidateMessageIndex();
       invalidateViewAt(index);
 
       ThreadInfo messageThread = loader.getMessageThread();
@@ -2308,6 +2318,71 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
     }
   }
 
+  /**
+   * Unloads messages that are too far from the visible range, when there are too many of them.
+   * They are loaded again by {@link MessagesLoader} once scrolled back to.
+   */
+  private void trimMessages () {
+    final int messageCount = adapter.getMessageCount();
+    retention.onMessageCountChanged(messageCount);
+    if (messageCount <= MessagesRetention.MAX_MESSAGE_COUNT || loader.getSpecialMode() != MessagesLoader.SPECIAL_MODE_NONE || loader.isLoading() || controller.inSelectMode()) {
+      return;
+    }
+    final int firstVisiblePosition = manager.findFirstVisibleItemPosition();
+    final int lastVisiblePosition = manager.findLastVisibleItemPosition();
+    if (firstVisiblePosition == RecyclerView.NO_POSITION || lastVisiblePosition == RecyclerView.NO_POSITION) {
+      return;
+    }
+    int trimmedTopCount = 0;
+    // Header message is inserted only once, when the beginning of the chat is loaded
+    final int topTrimIndex = loader.canLoadTop() ? retention.getTopTrimIndex(messageCount, lastVisiblePosition) : -1;
+    if (topTrimIndex != -1) {
+      trimmedTopCount = messageCount - topTrimIndex;
+      adapter.removeRange(topTrimIndex, messageCount);
+    }
+    final int trimmedBottomCount = retention.getBottomTrimCount(messageCount, firstVisiblePosition);
+    if (trimmedBottomCount > 0) {
+      adapter.removeRange(0, trimmedBottomCount);
+      loader.setCanLoadBottom();
+      onCanLoadMoreBottomChanged();
+    }
+    if (trimmedTopCount > 0 || trimmedBottomCount > 0) {
+      retention.onTrimmed(trimmedTopCount, trimmedBottomCount);
+      if (Log.isEnabled(Log.TAG_MESSAGES_LOADER)) {
+        Log.i(Log.TAG_MESSAGES_LOADER, "[TRIM] chatId:%d top:%d bottom:%d %s", loader.getChatId(), trimmedTopCount, trimmedBottomCount, retention);
+      }
+    }
+  }
+
+  /**
+   * Releases content layout of messages that are far from the visible range, see {@link TGMessage#releaseLayout()}.
+   * {@link MessagesAdapter} builds it again once message is bound to a view.
+   */
+  private void releaseLayouts () {
+    final int messageCount = adapter.getMessageCount();
+    if (messageCount <= MessagesRetention.MIN_LAYOUT_RELEASE_COUNT) {
+      return;
+    }
+    final int firstVisiblePosition = manager.findFirstVisibleItemPosition();
+    final int lastVisiblePosition = manager.findLastVisibleItemPosition();
+    int releasedCount = 0;
+    for (int position = 0; position < messageCount; position++) {
+      if (!retention.needReleaseLayout(messageCount, position, firstVisiblePosition, lastVisiblePosition)) {
+        continue;
+      }
+      TGMessage msg = adapter.getMessage(position);
+      if (msg != null && !msg.isLayoutReleased()) {
+        msg.releaseLayout();
+        if (msg.isLayoutReleased()) {
+          releasedCount++;
+        }
+      }
+    }
+    if (releasedCount > 0) {
+      retention.onLayoutsReleased(releasedCount);
+    }
+  }
+
   public void onMissedMessagesHintReceived () {
     loader.setCanLoadBottom();
     onCanLoadMoreBottomChanged();
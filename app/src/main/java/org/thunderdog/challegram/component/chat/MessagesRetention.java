@@ -0,0 +1,148 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.component.chat;
+
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits memory used by message containers kept in {@link MessagesAdapter} while a chat is open.
+ *
+ * Once there are more than {@link #MIN_LAYOUT_RELEASE_COUNT} containers, messages further than {@link #LAYOUT_RETAINED_DISTANCE}
+ * items from the visible range release their content layout (see {@link org.thunderdog.challegram.data.TGMessage#releaseLayout()}),
+ * which is built again when they are bound to a view.
+ *
+ * Once there are more than {@link #MAX_MESSAGE_COUNT} containers, everything further than {@link #RETAINED_DISTANCE}
+ * items from the visible range gets unloaded, and is loaded again by {@link MessagesLoader} when scrolled back to.
+ *
+ * Also collects memory and scroll smoothness stats: frame times are measured with {@link Choreographer} only while the list is scrolling.
+ */
+final class MessagesRetention implements Choreographer.FrameCallback {
+  static final int MIN_LAYOUT_RELEASE_COUNT = 200;
+  static final int LAYOUT_RETAINED_DISTANCE = 50;
+
+  static final int MAX_MESSAGE_COUNT = 1000;
+  static final int RETAINED_DISTANCE = 300;
+
+  private static final long JANK_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(32);
+
+  private boolean isTrackingFrames;
+  private long lastFrameTimeNanos;
+
+  private long frameCount, jankFrameCount, maxFrameNanos;
+  private int peakMessageCount;
+  private long trimCount, trimmedTopCount, trimmedBottomCount;
+  private long releasedLayoutCount;
+  private long lastHeapBytes, peakHeapBytes;
+
+  /**
+   * @return Index starting from which older messages must be unloaded, or -1, if there's no need to
+   */
+  public int getTopTrimIndex (int messageCount, int lastVisiblePosition) {
+    if (messageCount <= MAX_MESSAGE_COUNT || lastVisiblePosition < 0)
+      return -1;
+    int index = lastVisiblePosition + 1 + RETAINED_DISTANCE;
+    return index < messageCount ? index : -1;
+  }
+
+  /**
+   * @return Number of newer messages that must be unloaded
+   */
+  public int getBottomTrimCount (int messageCount, int firstVisiblePosition) {
+    if (messageCount <= MAX_MESSAGE_COUNT || firstVisiblePosition < 0)
+      return 0;
+    return Math.max(0, firstVisiblePosition - RETAINED_DISTANCE);
+  }
+
+  public void onMessageCountChanged (int messageCount) {
+    peakMessageCount = Math.max(peakMessageCount, messageCount);
+  }
+
+  /**
+   * @return Whether message at the given position should release its layout
+   */
+  public boolean needReleaseLayout (int messageCount, int position, int firstVisiblePosition, int lastVisiblePosition) {
+    return messageCount > MIN_LAYOUT_RELEASE_COUNT && firstVisiblePosition >= 0 && lastVisiblePosition >= 0 &&
+      (position < firstVisiblePosition - LAYOUT_RETAINED_DISTANCE || position > lastVisiblePosition + LAYOUT_RETAINED_DISTANCE);
+  }
+
+  public void onLayoutsReleased (int count) {
+    releasedLayoutCount += count;
+  }
+
+  public void onTrimmed (int topCount, int bottomCount) {
+    trimCount++;
+    trimmedTopCount += topCount;
+    trimmedBottomCount += bottomCount;
+    Runtime runtime = Runtime.getRuntime();
+    lastHeapBytes = runtime.totalMemory() - runtime.freeMemory();
+    peakHeapBytes = Math.max(peakHeapBytes, lastHeapBytes);
+  }
+
+  // Scroll smoothness
+
+  @UiThread
+  public void setIsScrolling (boolean isScrolling) {
+    if (this.isTrackingFrames != isScrolling) {
+      this.isTrackingFrames = isScrolling;
+      if (isScrolling) {
+        lastFrameTimeNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+      } else {
+        Choreographer.getInstance().removeFrameCallback(this);
+      }
+    }
+  }
+
+  @Override
+  public void doFrame (long frameTimeNanos) {
+    if (!isTrackingFrames)
+      return;
+    if (lastFrameTimeNanos != 0) {
+      long frameNanos = frameTimeNanos - lastFrameTimeNanos;
+      frameCount++;
+      if (frameNanos > JANK_THRESHOLD_NANOS) {
+        jankFrameCount++;
+      }
+      maxFrameNanos = Math.max(maxFrameNanos, frameNanos);
+    }
+    lastFrameTimeNanos = frameTimeNanos;
+    Choreographer.getInstance().postFrameCallback(this);
+  }
+
+  public void reset () {
+    setIsScrolling(false);
+    frameCount = jankFrameCount = maxFrameNanos = 0;
+    peakMessageCount = 0;
+    trimCount = trimmedTopCount = trimmedBottomCount = 0;
+    releasedLayoutCount = 0;
+    lastHeapBytes = peakHeapBytes = 0;
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    return "MessagesRetention { peakMessages = " + peakMessageCount + "/" + MAX_MESSAGE_COUNT +
+      ", releasedLayouts = " + releasedLayoutCount +
+      ", trims = " + trimCount + ", unloadedTop = " + trimmedTopCount + ", unloadedBottom = " + trimmedBottomCount +
+      ", heapAtTrim = " + (lastHeapBytes / 1024) + "KiB, peakHeapAtTrim = " + (peakHeapBytes / 1024) + "KiB" +
+      ", scrollFrames = " + frameCount + ", jankFrames = " + jankFrameCount +
+      ", maxFrame = " + TimeUnit.NANOSECONDS.toMillis(maxFrameNanos) + "ms }";
+  }
+}
@@ -37,8 +37,7 @@ import org.thunderdog.challegram.widget.SuggestedChatsView;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.HashMap;
 
 import me.vkryl.core.ArrayUtils;
 import tgx.td.ChatPosition;
@@ -120,9 +119,11 @@ public class ChatsAdapter extends RecyclerView.Adapter<ChatsViewHolder> {
       this.hasArchive = hasArchive;
       if (hasArchive) {
         chats.add(ARCHIVE_INDEX, newArchive());
+        invalidateChatIndexes(ARCHIVE_INDEX);
         notifyChatAppeared(-1, getItemPositionByChatIndex(ARCHIVE_INDEX));
       } else {
         chats.remove(ARCHIVE_INDEX);
+        invalidateChatIndexes(ARCHIVE_INDEX);
         notifyItemRemoved(getItemPositionByChatIndex(ARCHIVE_INDEX));
       }
       invalidateAttachedItemDecorations();
@@ -335,17 +336,37 @@ public class ChatsAdapter extends RecyclerView.Adapter<ChatsViewHolder> {
     return index != -1 ? getChatAt(index) : null;
   }
 
+  // Index of chats by id. Keys are always the ids of all present chats,
+  // while positions are correct only for the first indexedChatCount chats:
+  // insertions, removals and moves only shrink that prefix, and it's restored on the next lookup
+  private final HashMap<Long, Integer> chatIndexes = new HashMap<>();
+  private int indexedChatCount;
+
+  private void invalidateChatIndexes (int fromIndex) {
+    if (fromIndex < indexedChatCount) {
+      indexedChatCount = Math.max(0, fromIndex);
+    }
+  }
+
   private int indexOfChat (long chatId) {
     if (chatId == 0)
       return -1;
-    int i = 0;
-    for (TGChat chat : chats) {
-      if (chat.getChatId() == chatId) {
-        return i;
+    Integer index = chatIndexes.get(chatId);
+    if (index == null) {
+      return -1;
+    }
+    if (index >= indexedChatCount) {
+      final int chatCount = chats.size();
+      for (int i = indexedChatCount; i < chatCount; i++) {
+        long id = chats.get(i).getChatId();
+        if (id != 0) {
+          chatIndexes.put(id, i);
+        }
       }
-      i++;
+      indexedChatCount = chatCount;
+      index = chatIndexes.get(chatId);
     }
-    return -1;
+    return index;
   }
 
   private int indexOfSecretChat (int secretChatId) {
@@ -368,20 +389,26 @@ public class ChatsAdapter extends RecyclerView.Adapter<ChatsViewHolder> {
     if (atIndex == 0 && needArchive) {
       chats.ensureCapacity(atIndex + data.length + 1);
       chats.add(newArchive());
+      invalidateChatIndexes(atIndex);
       this.hasArchive = true;
       addedItemCount++;
     } else {
       chats.ensureCapacity(atIndex + data.length);
     }
     TGChat firstAddedItem = null;
+    final boolean isFullyIndexed = indexedChatCount == chats.size();
     for (TGChat chat : data) {
-      Long id = chat.getChatId();
-      if (presentChatIds.add(id)) {
+      long id = chat.getChatId();
+      if (!chatIndexes.containsKey(id)) {
         firstAddedItem = chat;
+        chatIndexes.put(id, chats.size());
         chats.add(chat);
         addedItemCount++;
       }
     }
+    if (isFullyIndexed) {
+      indexedChatCount = chats.size();
+    }
     if (addedItemCount > 0) {
       int positionStart = getItemPositionByChatIndex(atIndex);
       notifyItemRangeInserted(positionStart, addedItemCount);
@@ -618,23 +645,22 @@ public class ChatsAdapter extends RecyclerView.Adapter<ChatsViewHolder> {
   public static final int ORDER_REMAIN_SCROLL = 0x01;
   public static final int ORDER_INVALIDATE_DECORATIONS = 0x02;
 
-  private final Set<Long> presentChatIds = new HashSet<>();
-
   private void addChat (int atIndex, TGChat chat) {
-    Long id = chat.getChatId();
+    long id = chat.getChatId();
     if (atIndex == -1) {
-      chats.add(chat);
-    } else {
-      chats.add(atIndex, chat);
+      atIndex = chats.size();
     }
-    if (!presentChatIds.add(id)) {
+    chats.add(atIndex, chat);
+    invalidateChatIndexes(atIndex);
+    if (chatIndexes.put(id, atIndex) != null) {
       throw new IllegalStateException("Chat is already present in the list");
     }
   }
 
   private TGChat removeChat (int fromIndex) {
     TGChat removedChat = chats.remove(fromIndex);
-    presentChatIds.remove(removedChat.getChatId());
+    invalidateChatIndexes(fromIndex);
+    chatIndexes.remove(removedChat.getChatId());
     return removedChat;
   }
 
@@ -682,6 +708,8 @@ public class ChatsAdapter extends RecyclerView.Adapter<ChatsViewHolder> {
     parsedChat.updateChatPosition(chat.id, changeInfo.position, changeInfo.sourceChanged(), changeInfo.pinStateChanged());
 
     chats.add(toIndex, parsedChat);
+    invalidateChatIndexes(Math.min(fromIndex, toIndex));
+    chatIndexes.put(parsedChat.getChatId(), toIndex);
     if (!invalidateDecorations) {
       invalidateDecorations = needShadowDecoration(getChatAt(toIndex - 1), parsedChat) ||
         needShadowDecoration(getChatAt(toIndex + 1), parsedChat);
@@ -17,7 +17,6 @@ package org.thunderdog.challegram.core;
 import android.content.Context;
 import android.content.res.Resources;
 import android.os.Build;
-import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.TextUtils;
@@ -30,6 +29,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 import androidx.annotation.UiThread;
+import androidx.collection.SparseArrayCompat;
 
 import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.BuildConfig;
@@ -105,9 +105,22 @@ public class Lang {
 
   public static final String INTERNAL_ID_KEY = "language_code";
 
+  // Resource entry names never change, while lookups are relatively expensive
+  private static final SparseArrayCompat<String> resourceEntryNames = new SparseArrayCompat<>();
+
   public static String getResourceEntryName (int resource) {
+    synchronized (resourceEntryNames) {
+      String name = resourceEntryNames.get(resource);
+      if (name != null) {
+        return name;
+      }
+    }
     try {
-      return UI.getAppContext().getResources().getResourceEntryName(resource);
+      String name = UI.getAppContext().getResources().getResourceEntryName(resource);
+      synchronized (resourceEntryNames) {
+        resourceEntryNames.put(resource, name);
+      }
+      return name;
     } catch (Throwable t) {
       Log.e("Unable to find resource entry name (shitty modified APK?)");
       return "";
@@ -498,7 +511,7 @@ public class Lang {
     return getStringImpl(null, resId, true, 0, creator, formatArgs);
   }
 
-  private static void assertFormatArgumentType (char c, Object arg) {
+  static void assertFormatArgumentType (char c, Object arg) {
     boolean ok;
     switch (c) {
       case 's':
@@ -819,111 +832,12 @@ public class Lang {
   }
 
   public static CharSequence formatString (String format, boolean hasSpanned, @Nullable SpanCreator creator, Object... formatArgs) {
+    final LangTemplate template = LangTemplate.obtain(format);
     if (creator == null && !hasSpanned) {
-      return String.format(locale(), format, formatArgs);
-    }
-    SpannableStringBuilder str = new SpannableStringBuilder(format);
-    int spanCount = 0;
-    int i = 0;
-    int argumentIndex = 0; // used for arguments without index
-    while ((i = StringUtils.indexOf(str, "%", i)) != -1) {
-      int len = str.length();
-      int formatStart = i;
-      if (++i == len)
-        throw new IllegalArgumentException("Invalid specifier format: %");
-      char c = str.charAt(i);
-      Object argument; int index; String replacement;
-      switch (c) {
-        case '%': { // %%
-          i = formatStart + 1;
-          str.delete(formatStart, i); // removing first %
-          continue;
-        }
-        case 'f': case 'd': case 's': { // %f, %d, %s
-          index = argumentIndex++;
-          argument = formatArgs[index];
-          assertFormatArgumentType(c, argument);
-          replacement = String.valueOf(argument);
-          str.replace(formatStart, formatStart + 2, replacement);
-          i = formatStart + replacement.length();
-          break;
-        }
-        default: { // %1$s, %1$d, %1$s, %2$02d
-          int numSize = 0;
-          while (i < len && StringUtils.isNumeric(c = str.charAt(i++)))
-            numSize++;
-          if (numSize == 0)
-            throw new IllegalArgumentException();
-          if (c != '$')
-            throw new IllegalArgumentException();
-          if (i == len)
-            throw new IllegalArgumentException();
-          c = str.charAt(i++);
-          index = Integer.parseInt(str.subSequence(formatStart + 1, formatStart + 1 + numSize).toString()) - 1;
-          argument = formatArgs[index];
-          replacement = String.valueOf(argument);
-
-          int specSize;
-          switch (c) {
-            case 'f':
-            case 'd':
-            case 's':
-              assertFormatArgumentType(c, argument);
-              specSize = 1;
-              break;
-            case '0':
-              int widthSize = 0;
-              int numStart = i;
-              while (i < len && StringUtils.isNumeric(c = str.charAt(i++)))
-                widthSize++;
-              if (widthSize == 0)
-                throw new IllegalArgumentException();
-              assertFormatArgumentType(c, argument);
-              int width = Integer.parseInt(str.subSequence(numStart, numStart + widthSize).toString());
-              int paddingSize = width - replacement.length();
-              if (paddingSize > 0) {
-                StringBuilder b = new StringBuilder(width);
-                do {
-                  b.append('0');
-                } while (--paddingSize > 0);
-                b.append(replacement);
-                replacement = b.toString();
-              }
-              specSize = 1 + widthSize + 1;
-              break;
-            default:
-              throw new IllegalArgumentException();
-          }
-
-          str.replace(formatStart, formatStart + 1 + numSize + 1 + specSize, replacement);
-          i = formatStart + replacement.length();
-          break;
-        }
-      }
-
-      if (creator != null) {
-        int formatEnd = formatStart + replacement.length();
-        Object span = creator.onCreateSpan(str, formatStart, formatEnd, index, Text.needFakeBold(replacement));
-        if (span != null) {
-          str.setSpan(span, formatStart, formatEnd, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-          spanCount++;
-          continue;
-        }
-      }
-      if (argument instanceof Spanned) {
-        Spanned spanned = (Spanned) argument;
-        Object[] spans = spanned.getSpans(0, spanned.length(), Object.class);
-        if (spans != null && spans.length > 0) {
-          for (Object span : spans) {
-            int startIndex = spanned.getSpanStart(span);
-            int endIndex = spanned.getSpanEnd(span);
-            str.setSpan(span, formatStart + startIndex, formatStart + endIndex, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            spanCount++;
-          }
-        }
-      }
+      String result = template.format(locale(), formatArgs);
+      return result != null ? result : String.format(locale(), format, formatArgs);
     }
-    return spanCount > 0 ? str : str.toString();
+    return template.format(creator, formatArgs);
   }
 
   // Counters
@@ -3927,6 +3841,7 @@ public class Lang {
   }
 
   public static void putCachedStrings (String languageCode, TdApi.LanguagePackString[] strings) {
+    LangTemplate.clear();
     if (!cachedStrings().isEmpty()) {
       for (TdApi.LanguagePackString string : strings) {
         String cacheKey = makeStringCacheKey(languageCode, string.key);
@@ -3943,6 +3858,7 @@ public class Lang {
 
   public static void clearCachedStrings () {
     cachedStrings().clear();
+    LangTemplate.clear();
   }
 
   public static String makeStringCacheKey (String languageCode, String key) {
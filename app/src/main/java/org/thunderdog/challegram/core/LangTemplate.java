@@ -0,0 +1,273 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.core;
+
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.util.text.Text;
+
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import me.vkryl.core.StringUtils;
+
+/**
+ * Language pack string, parsed once into literals and argument specifiers: {@code %s}, {@code %d}, {@code %f},
+ * {@code %1$s}, {@code %2$02d} and {@code %%}.
+ *
+ * Spanned formatting follows the rules of {@link Lang#formatString(String, boolean, Lang.SpanCreator, Object...)}.
+ * Plain formatting produces the same output as {@link String#format(Locale, String, Object...)},
+ * and returns {@code null} whenever it can't guarantee that (e.g. for {@code %f} or localized digits),
+ * so the caller falls back to {@link String#format(Locale, String, Object...)}.
+ */
+final class LangTemplate {
+  private static final int MAX_CACHE_SIZE = 1024;
+  private static final ConcurrentHashMap<String, LangTemplate> cache = new ConcurrentHashMap<>();
+
+  private static Locale lastLocale;
+  private static boolean lastLocaleHasAsciiDigits;
+
+  @NonNull
+  static LangTemplate obtain (@NonNull String format) {
+    LangTemplate template = cache.get(format);
+    if (template == null) {
+      template = new LangTemplate(format);
+      if (cache.size() >= MAX_CACHE_SIZE) {
+        cache.clear();
+      }
+      cache.put(format, template);
+    }
+    return template;
+  }
+
+  static void clear () {
+    cache.clear();
+  }
+
+  // literals[i] precedes argument i, last literal follows the last argument
+  private final String[] literals;
+  private final int[] argIndexes;
+  private final char[] argTypes;
+  private final int[] argWidths;
+  private final boolean hasFloatArgs;
+  @Nullable
+  private final String error;
+
+  private LangTemplate (String format) {
+    final ArrayList<String> literals = new ArrayList<>();
+    final ArrayList<int[]> args = new ArrayList<>(); // {index, type, width}
+    String error = null;
+    try {
+      final int len = format.length();
+      final StringBuilder literal = new StringBuilder();
+      int argumentIndex = 0; // used for arguments without index
+      int i = 0;
+      while (i < len) {
+        char c = format.charAt(i++);
+        if (c != '%') {
+          literal.append(c);
+          continue;
+        }
+        if (i == len)
+          throw new IllegalArgumentException("Invalid specifier format: %");
+        c = format.charAt(i);
+        int index, width = 0;
+        switch (c) {
+          case '%': { // %%
+            literal.append('%');
+            i++;
+            continue;
+          }
+          case 'f': case 'd': case 's': { // %f, %d, %s
+            index = argumentIndex++;
+            i++;
+            break;
+          }
+          default: { // %1$s, %1$d, %1$s, %2$02d
+            final int numStart = i;
+            int numSize = 0;
+            while (i < len && StringUtils.isNumeric(c = format.charAt(i++)))
+              numSize++;
+            if (numSize == 0)
+              throw new IllegalArgumentException();
+            if (c != '$')
+              throw new IllegalArgumentException();
+            if (i == len)
+              throw new IllegalArgumentException();
+            c = format.charAt(i++);
+            index = Integer.parseInt(format.substring(numStart, numStart + numSize)) - 1;
+            if (c == '0') {
+              final int widthStart = i;
+              int widthSize = 0;
+              while (i < len && StringUtils.isNumeric(c = format.charAt(i++)))
+                widthSize++;
+              if (widthSize == 0)
+                throw new IllegalArgumentException();
+              width = Integer.parseInt(format.substring(widthStart, widthStart + widthSize));
+            }
+            if (c != 'f' && c != 'd' && c != 's')
+              throw new IllegalArgumentException();
+            break;
+          }
+        }
+        literals.add(literal.toString());
+        literal.setLength(0);
+        args.add(new int[] {index, c, width});
+      }
+      literals.add(literal.toString());
+    } catch (IllegalArgumentException e) {
+      error = e.getMessage() != null ? e.getMessage() : "Unsupported format: " + format;
+    }
+    this.error = error;
+    if (error != null) {
+      this.literals = null;
+      this.argIndexes = this.argWidths = null;
+      this.argTypes = null;
+      this.hasFloatArgs = false;
+      return;
+    }
+    final int argCount = args.size();
+    this.literals = literals.toArray(new String[0]);
+    this.argIndexes = new int[argCount];
+    this.argTypes = new char[argCount];
+    this.argWidths = new int[argCount];
+    boolean hasFloatArgs = false;
+    for (int i = 0; i < argCount; i++) {
+      int[] arg = args.get(i);
+      argIndexes[i] = arg[0];
+      argTypes[i] = (char) arg[1];
+      argWidths[i] = arg[2];
+      if (argTypes[i] == 'f') {
+        hasFloatArgs = true;
+      }
+    }
+    this.hasFloatArgs = hasFloatArgs;
+  }
+
+  private static synchronized boolean hasAsciiDigits (Locale locale) {
+    if (lastLocale != locale) {
+      lastLocaleHasAsciiDigits = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+      lastLocale = locale;
+    }
+    return lastLocaleHasAsciiDigits;
+  }
+
+  /**
+   * @return Same result as {@link String#format(Locale, String, Object...)}, or {@code null},
+   * if it has to be used instead
+   */
+  @Nullable
+  public String format (Locale locale, Object[] formatArgs) {
+    if (error != null || hasFloatArgs) {
+      return null;
+    }
+    if (argIndexes.length == 0) {
+      return literals[0];
+    }
+    if (formatArgs == null) {
+      return null;
+    }
+    final StringBuilder b = new StringBuilder();
+    for (int i = 0; i < argIndexes.length; i++) {
+      b.append(literals[i]);
+      final int index = argIndexes[i];
+      if (index < 0 || index >= formatArgs.length) {
+        return null;
+      }
+      final Object argument = formatArgs[index];
+      if (argTypes[i] == 'd') {
+        if (!(argument instanceof Integer || argument instanceof Long) || !hasAsciiDigits(locale)) {
+          return null;
+        }
+        final long value = ((Number) argument).longValue();
+        if (value < 0 && argWidths[i] > 0) {
+          return null;
+        }
+        appendPadded(b, String.valueOf(value), argWidths[i]);
+      } else {
+        if (argWidths[i] > 0 || argument instanceof Formattable) {
+          return null;
+        }
+        b.append(argument);
+      }
+    }
+    b.append(literals[literals.length - 1]);
+    return b.toString();
+  }
+
+  /**
+   * Same as {@link Lang#formatString(String, boolean, Lang.SpanCreator, Object...)}, without parsing the format.
+   */
+  public CharSequence format (@Nullable Lang.SpanCreator creator, Object[] formatArgs) {
+    if (error != null) {
+      throw new IllegalArgumentException(error);
+    }
+    final SpannableStringBuilder str = new SpannableStringBuilder();
+    int spanCount = 0;
+    for (int i = 0; i < argIndexes.length; i++) {
+      str.append(literals[i]);
+      final int index = argIndexes[i];
+      final Object argument = formatArgs[index];
+      Lang.assertFormatArgumentType(argTypes[i], argument);
+      String replacement = String.valueOf(argument);
+      if (argWidths[i] > 0) {
+        StringBuilder b = new StringBuilder(argWidths[i]);
+        appendPadded(b, replacement, argWidths[i]);
+        replacement = b.toString();
+      }
+      final int formatStart = str.length();
+      str.append(replacement);
+      final int formatEnd = str.length();
+
+      if (creator != null) {
+        Object span = creator.onCreateSpan(str, formatStart, formatEnd, index, Text.needFakeBold(replacement));
+        if (span != null) {
+          str.setSpan(span, formatStart, formatEnd, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+          spanCount++;
+          continue;
+        }
+      }
+      if (argument instanceof Spanned) {
+        Spanned spanned = (Spanned) argument;
+        Object[] spans = spanned.getSpans(0, spanned.length(), Object.class);
+        if (spans != null && spans.length > 0) {
+          for (Object span : spans) {
+            int startIndex = spanned.getSpanStart(span);
+            int endIndex = spanned.getSpanEnd(span);
+            str.setSpan(span, formatStart + startIndex, formatStart + endIndex, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            spanCount++;
+          }
+        }
+      }
+    }
+    str.append(literals[literals.length - 1]);
+    return spanCount > 0 ? str : str.toString();
+  }
+
+  private static void appendPadded (StringBuilder b, String value, int width) {
+    for (int paddingSize = width - value.length(); paddingSize > 0; paddingSize--) {
+      b.append('0');
+    }
+    b.append(value);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.core;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import me.vkryl.core.lambda.Future;
+
+/**
+ * Component that is created on first use instead of application launch.
+ *
+ * Each creation is recorded as a {@link StartupTrace} span.
+ * Requesting the component from its own factory on the same thread, directly or through other components,
+ * results in {@link IllegalStateException} instead of a stack overflow.
+ */
+public final class LazyInit<T> {
+  private static final ThreadLocal<LazyInit<?>> creating = new ThreadLocal<>();
+
+  private final String name;
+  private final Future<T> factory;
+
+  private volatile T value;
+  private boolean isCreating;
+  @Nullable
+  private LazyInit<?> parent;
+
+  public LazyInit (@NonNull String name, @NonNull Future<T> factory) {
+    this.name = name;
+    this.factory = factory;
+  }
+
+  public String getName () {
+    return name;
+  }
+
+  @AnyThread
+  public boolean isInitialized () {
+    return value != null;
+  }
+
+  /**
+   * @return Component, if it was already created, {@code null} otherwise
+   */
+  @Nullable
+  @AnyThread
+  public T peek () {
+    return value;
+  }
+
+  @NonNull
+  @AnyThread
+  public T get () {
+    T value = this.value;
+    if (value != null) {
+      return value;
+    }
+    synchronized (this) {
+      value = this.value;
+      if (value == null) {
+        if (isCreating) {
+          throw new IllegalStateException("Recursive creation: " + chain(name));
+        }
+        isCreating = true;
+        parent = creating.get();
+        creating.set(this);
+        try {
+          value = StartupTrace.trace("lazy:" + name, factory);
+          if (value == null) {
+            throw new IllegalStateException(name + " factory returned null");
+          }
+          this.value = value;
+        } finally {
+          creating.set(parent);
+          parent = null;
+          isCreating = false;
+        }
+      }
+    }
+    return value;
+  }
+
+  private static String chain (String tail) {
+    StringBuilder b = new StringBuilder();
+    for (LazyInit<?> init = creating.get(); init != null; init = init.parent) {
+      b.insert(0, " -> ").insert(0, init.name);
+    }
+    return b.append(tail).toString();
+  }
+}
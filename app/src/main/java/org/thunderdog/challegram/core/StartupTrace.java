@@ -0,0 +1,201 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.core;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import me.vkryl.core.lambda.Future;
+
+/**
+ * Named spans of application startup steps, e.g. opening settings database or creating TDLib client.
+ *
+ * Spans can be nested and can be recorded on any thread. Recording continues after {@link #markReady()},
+ * so late initialization of lazy components (see {@link LazyInit}) is visible as well,
+ * until {@link #MAX_SPAN_COUNT} spans are recorded.
+ */
+public final class StartupTrace {
+  private static final int MAX_SPAN_COUNT = 512;
+
+  public static final class Span {
+    private final String name;
+    private final String threadName;
+    private final int depth;
+    private final long startNanos;
+    private long durationNanos = -1;
+
+    private Span (String name, String threadName, int depth, long startNanos) {
+      this.name = name;
+      this.threadName = threadName;
+      this.depth = depth;
+      this.startNanos = startNanos;
+    }
+
+    public String getName () {
+      return name;
+    }
+
+    public String getThreadName () {
+      return threadName;
+    }
+
+    public int getDepth () {
+      return depth;
+    }
+
+    /**
+     * @return Time passed between process start and span start
+     */
+    public long getStartTime (TimeUnit unit) {
+      return unit.convert(startNanos - originNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getDuration (TimeUnit unit) {
+      return durationNanos != -1 ? unit.convert(durationNanos, TimeUnit.NANOSECONDS) : -1;
+    }
+
+    public boolean isFinished () {
+      return durationNanos != -1;
+    }
+
+    public void end () {
+      final long endNanos = System.nanoTime();
+      synchronized (spans) {
+        if (durationNanos == -1) {
+          durationNanos = endNanos - startNanos;
+        }
+      }
+      Integer depth = currentDepth.get();
+      currentDepth.set(depth != null && depth > 0 ? depth - 1 : 0);
+    }
+
+    @Override
+    @NonNull
+    public String toString () {
+      StringBuilder b = new StringBuilder();
+      for (int i = 0; i < depth; i++) {
+        b.append("  ");
+      }
+      b.append(name)
+        .append(" +").append(getStartTime(TimeUnit.MILLISECONDS)).append("ms");
+      if (durationNanos != -1) {
+        b.append(" took ").append(getDuration(TimeUnit.MICROSECONDS) / 1000.0).append("ms");
+      } else {
+        b.append(" (unfinished)");
+      }
+      return b.append(" [").append(threadName).append("]").toString();
+    }
+  }
+
+  private static final ArrayList<Span> spans = new ArrayList<>();
+  private static final ThreadLocal<Integer> currentDepth = new ThreadLocal<>();
+  private static final long originNanos = processStartNanos();
+  private static long readyNanos;
+
+  private StartupTrace () { }
+
+  private static long processStartNanos () {
+    final long now = System.nanoTime();
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+      return now - TimeUnit.MILLISECONDS.toNanos(SystemClock.uptimeMillis() - Process.getStartUptimeMillis());
+    }
+    // Closest known point: first access to this class
+    return now;
+  }
+
+  @AnyThread
+  public static Span begin (String name) {
+    Integer depth = currentDepth.get();
+    if (depth == null) {
+      depth = 0;
+    }
+    currentDepth.set(depth + 1);
+    Span span = new Span(name, Thread.currentThread().getName(), depth, System.nanoTime());
+    synchronized (spans) {
+      if (spans.size() < MAX_SPAN_COUNT) {
+        spans.add(span);
+      }
+    }
+    return span;
+  }
+
+  @AnyThread
+  public static void run (String name, Runnable act) {
+    Span span = begin(name);
+    try {
+      act.run();
+    } finally {
+      span.end();
+    }
+  }
+
+  @AnyThread
+  public static <T> T trace (String name, Future<T> factory) {
+    Span span = begin(name);
+    try {
+      return factory.getValue();
+    } finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Marks application as initialized and logs recorded spans, when launch speed has to be measured.
+   */
+  public static void markReady () {
+    final ArrayList<Span> spans;
+    synchronized (StartupTrace.spans) {
+      if (readyNanos != 0) {
+        return;
+      }
+      readyNanos = System.nanoTime();
+      if (!Log.needMeasureLaunchSpeed()) {
+        return;
+      }
+      spans = new ArrayList<>(StartupTrace.spans);
+    }
+    StringBuilder b = new StringBuilder("==== STARTUP TRACE, READY IN ")
+      .append(TimeUnit.NANOSECONDS.toMillis(readyNanos - originNanos))
+      .append("ms ====");
+    for (Span span : spans) {
+      b.append('\n').append(span);
+    }
+    Log.i("%s", b.toString());
+  }
+
+  /**
+   * @return Time passed between process start and {@link #markReady()}, or -1 if application is not yet ready
+   */
+  public static long getReadyTime (TimeUnit unit) {
+    synchronized (spans) {
+      return readyNanos != 0 ? unit.convert(readyNanos - originNanos, TimeUnit.NANOSECONDS) : -1;
+    }
+  }
+
+  public static ArrayList<Span> getSpans () {
+    synchronized (spans) {
+      return new ArrayList<>(spans);
+    }
+  }
+}
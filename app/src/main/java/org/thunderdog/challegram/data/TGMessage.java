@@ -1179,6 +1179,46 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
     messageReactions.onUpdateTextSize();
   }
 
+  // Layout release
+
+  private boolean isLayoutReleased;
+
+  /**
+   * Releases memory held by content layout, e.g. {@link Text} instances,
+   * while the message is far from the viewport. Content size must not change, and released parts must be built again
+   * by {@link #buildContent(int)}.
+   *
+   * @return {@code true} if anything was released
+   */
+  protected boolean onReleaseContentLayout () {
+    return false;
+  }
+
+  /**
+   * Does nothing while message is held by any view: views kept in RecyclerView caches may be drawn again without binding.
+   */
+  @UiThread
+  public final void releaseLayout () {
+    if (!isLayoutReleased && BitwiseUtils.hasFlag(flags, FLAG_LAYOUT_BUILT) && !currentViews.hasAnyTargetToInvalidate() && onReleaseContentLayout()) {
+      isLayoutReleased = true;
+    }
+  }
+
+  public final boolean isLayoutReleased () {
+    return isLayoutReleased;
+  }
+
+  /**
+   * Builds content released by {@link #releaseLayout()} again, when message is bound to a view (including RecyclerView prefetch).
+   * Must not be called while drawing.
+   */
+  @UiThread
+  public final void restoreLayout () {
+    if (isLayoutReleased) {
+      rebuildContent();
+    }
+  }
+
   public void prepareLayout () {
     if (this.width != 0) {
       rebuildLayout();
@@ -1193,6 +1233,7 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
     }
 
     this.width = width;
+    this.isLayoutReleased = false;
 
     if (useBubbles()) {
       pRealContentX = computeBubbleLeft();
@@ -1333,6 +1374,7 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
 
   protected boolean rebuildContent () {
     if ((flags & FLAG_LAYOUT_BUILT) != 0) {
+      isLayoutReleased = false;
       updateContentPositions(true);
       buildContent(pContentMaxWidth);
       buildBubble(false);
@@ -1933,6 +1975,11 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
   }
 
   public final void draw (MessageView view, Canvas c, @NonNull AvatarReceiver avatarReceiver, Receiver replyReceiver, ComplexReceiver replyTextMediaReceiver, DoubleImageReceiver previewReceiver, ImageReceiver contentReceiver, GifReceiver gifReceiver, ComplexReceiver complexReceiver) {
+    if (isLayoutReleased) {
+      // Layout is restored only when binding, and messages held by any view are never released
+      Log.bug("Drawing message with released layout, chatId:%d, messageId:%d", msg.chatId, msg.id);
+    }
+
     final int viewWidth = view.getMeasuredWidth();
     final int viewHeight = view.getMeasuredHeight();
 
@@ -7767,34 +7814,53 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
     }
   }
 
-  private static TextStyleProvider styleProvider, simpleStyleProvider, biggerStyleProvider, smallerStyleProvider, nameProvider, timeProvider, reactionBubbleProvider, bubbleServiceProvider;
+  // Accessed from layout threads, see MessageLayoutPool
+  private static volatile TextStyleProvider styleProvider, simpleStyleProvider, biggerStyleProvider, smallerStyleProvider, nameProvider, timeProvider, reactionBubbleProvider, bubbleServiceProvider;
 
   public static TextStyleProvider reactionsTextStyleProvider () {
     if (reactionBubbleProvider == null) {
-      reactionBubbleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-4f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(reactionBubbleProvider);
+      synchronized (TGMessage.class) {
+        if (reactionBubbleProvider == null) {
+          TextStyleProvider provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-4f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
+          Settings.instance().addChatFontSizeChangeListener(provider);
+          reactionBubbleProvider = provider;
+        }
+      }
     }
     return reactionBubbleProvider;
   }
 
   public static TextStyleProvider simpleTextStyleProvider () {
     if (simpleStyleProvider == null) {
-      simpleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(Settings.CHAT_FONT_SIZE_DEFAULT);
+      synchronized (TGMessage.class) {
+        if (simpleStyleProvider == null) {
+          simpleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(Settings.CHAT_FONT_SIZE_DEFAULT);
+        }
+      }
     }
     return simpleStyleProvider;
   }
 
   public static TextStyleProvider getNameStyleProvider () {
     if (nameProvider == null) {
-      nameProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(15f);
+      synchronized (TGMessage.class) {
+        if (nameProvider == null) {
+          nameProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(15f);
+        }
+      }
     }
     return nameProvider;
   }
 
   public static TextStyleProvider getTextStyleProvider () {
     if (styleProvider == null) {
-      styleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(styleProvider);
+      synchronized (TGMessage.class) {
+        if (styleProvider == null) {
+          TextStyleProvider provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
+          Settings.instance().addChatFontSizeChangeListener(provider);
+          styleProvider = provider;
+        }
+      }
     }
     return styleProvider;
   }
@@ -7809,31 +7875,50 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
 
   public static TextStyleProvider bubbleServiceTextStyleProvider () {
     if (bubbleServiceProvider == null) {
-      bubbleServiceProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-2f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(bubbleServiceProvider);
+      synchronized (TGMessage.class) {
+        if (bubbleServiceProvider == null) {
+          TextStyleProvider provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-2f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
+          Settings.instance().addChatFontSizeChangeListener(provider);
+          bubbleServiceProvider = provider;
+        }
+      }
     }
     return bubbleServiceProvider;
   }
 
   public static TextStyleProvider getSmallerTextStyleProvider () {
     if (smallerStyleProvider == null) {
-      smallerStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-1f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(smallerStyleProvider);
+      synchronized (TGMessage.class) {
+        if (smallerStyleProvider == null) {
+          TextStyleProvider provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-1f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
+          Settings.instance().addChatFontSizeChangeListener(provider);
+          smallerStyleProvider = provider;
+        }
+      }
     }
     return smallerStyleProvider;
   }
 
   public static TextStyleProvider getBiggerTextStyleProvider () {
     if (biggerStyleProvider == null) {
-      biggerStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(1f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(biggerStyleProvider);
+      synchronized (TGMessage.class) {
+        if (biggerStyleProvider == null) {
+          TextStyleProvider provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(1f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
+          Settings.instance().addChatFontSizeChangeListener(provider);
+          biggerStyleProvider = provider;
+        }
+      }
     }
     return biggerStyleProvider;
   }
 
   public static TextStyleProvider getTimeTextStyleProvider () {
     if (timeProvider == null) {
-      timeProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(11f);
+      synchronized (TGMessage.class) {
+        if (timeProvider == null) {
+          timeProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(11f);
+        }
+      }
     }
     return timeProvider;
   }
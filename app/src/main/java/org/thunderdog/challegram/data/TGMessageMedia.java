@@ -500,6 +500,16 @@ public class TGMessageMedia extends TGMessage {
     }
   }
 
+  @Override
+  protected boolean onReleaseContentLayout () {
+    if (wrapper == null) {
+      return false;
+    }
+    // Mosaic layout is small, caption is what takes memory
+    wrapper.releaseLayout();
+    return wrapper.isLayoutReleased();
+  }
+
   @Override
   protected void onAnimatorAttachedToMessage (long messageId, FactorAnimator animator) {
     mosaicWrapper.setSelectionAnimator(messageId, animator);
@@ -372,6 +372,23 @@ public class TGMessageText extends TGMessage {
     }
   }
 
+  @Override
+  protected boolean onReleaseContentLayout () {
+    TextWrapper wrapper = null;
+    for (ListAnimator.Entry<TextWrapper> entry : visibleText) {
+      if (wrapper != null) {
+        // Text is being replaced
+        return false;
+      }
+      wrapper = entry.item;
+    }
+    if (wrapper == null) {
+      return false;
+    }
+    wrapper.releaseLayout();
+    return wrapper.isLayoutReleased();
+  }
+
   private boolean setLinkPreview (TdApi.LinkPreview linkPreview, @Nullable TdApi.LinkPreviewOptions linkPreviewOptions) {
     if (linkPreview != null) {
       String url = null;
@@ -0,0 +1,331 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.data;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.core.Background;
+import org.thunderdog.challegram.telegram.CleanupStartupDelegate;
+import org.thunderdog.challegram.telegram.Tdlib;
+import org.thunderdog.challegram.telegram.TdlibSettingsManager;
+import org.thunderdog.challegram.unsorted.Settings;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import me.vkryl.core.StringUtils;
+import me.vkryl.core.util.Blob;
+
+/**
+ * Detected languages and translations of message texts, shared by all {@link TranslationsManager} of the account.
+ *
+ * Entries are keyed by a 64-bit hash of the text, so the cache doesn't keep original texts in memory,
+ * and are evicted in least-recently-used order. Detected languages are also saved to disk,
+ * so reopened chats don't need to run language detection again. They are restored on {@link Background} thread
+ * on first access, which reports a miss until restoration completes. Translations are kept in memory only,
+ * as they contain message contents, which are otherwise stored only in the TDLib database.
+ */
+public final class TranslationCache implements CleanupStartupDelegate {
+  private static final int MAX_LANGUAGE_COUNT = 4096;
+  private static final int MAX_PERSISTENT_LANGUAGE_COUNT = 2048;
+  private static final int MAX_TRANSLATED_CHAR_COUNT = 256 * 1024;
+  private static final int PERSIST_DELAY_MS = 5000;
+  private static final String KEY_LANGUAGES = "translation_languages";
+
+  private static final class TranslationKey {
+    final long textHash;
+    final String language;
+
+    TranslationKey (long textHash, String language) {
+      this.textHash = textHash;
+      this.language = language;
+    }
+
+    @Override
+    public boolean equals (Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof TranslationKey))
+        return false;
+      TranslationKey other = (TranslationKey) obj;
+      return textHash == other.textHash && language.equals(other.language);
+    }
+
+    @Override
+    public int hashCode () {
+      return 31 * (int) (textHash ^ (textHash >>> 32)) + language.hashCode();
+    }
+  }
+
+  /**
+   * Snapshot of cache counters since the cache was created.
+   */
+  public static final class Stats {
+    public final long languageHitCount, languageMissCount;
+    public final long translationHitCount, translationMissCount;
+    public final long evictionCount;
+    public final int languageCount, translationCount, translatedCharCount;
+
+    private Stats (long languageHitCount, long languageMissCount, long translationHitCount, long translationMissCount, long evictionCount, int languageCount, int translationCount, int translatedCharCount) {
+      this.languageHitCount = languageHitCount;
+      this.languageMissCount = languageMissCount;
+      this.translationHitCount = translationHitCount;
+      this.translationMissCount = translationMissCount;
+      this.evictionCount = evictionCount;
+      this.languageCount = languageCount;
+      this.translationCount = translationCount;
+      this.translatedCharCount = translatedCharCount;
+    }
+
+    private static float hitRate (long hitCount, long missCount) {
+      final long total = hitCount + missCount;
+      return total > 0 ? (float) hitCount / (float) total : 0f;
+    }
+
+    public float getLanguageHitRate () {
+      return hitRate(languageHitCount, languageMissCount);
+    }
+
+    public float getTranslationHitRate () {
+      return hitRate(translationHitCount, translationMissCount);
+    }
+
+    @Override
+    @NonNull
+    public String toString () {
+      return "TranslationCache { languages = " + languageCount + "/" + MAX_LANGUAGE_COUNT +
+        " (hitRate " + (int) (getLanguageHitRate() * 100f) + "%)" +
+        ", translations = " + translationCount + " (" + translatedCharCount + "/" + MAX_TRANSLATED_CHAR_COUNT + " chars" +
+        ", hitRate " + (int) (getTranslationHitRate() * 100f) + "%)" +
+        ", evicted = " + evictionCount + " }";
+    }
+  }
+
+  private final Tdlib tdlib;
+
+  private final LinkedHashMap<Long, String> languages = new LinkedHashMap<Long, String>(16, .75f, true) {
+    @Override
+    protected boolean removeEldestEntry (Map.Entry<Long, String> eldest) {
+      if (size() > MAX_LANGUAGE_COUNT) {
+        evictionCount++;
+        return true;
+      }
+      return false;
+    }
+  };
+  private final LinkedHashMap<TranslationKey, TdApi.FormattedText> translations = new LinkedHashMap<>(16, .75f, true);
+  private int translatedCharCount;
+
+  private long languageHitCount, languageMissCount;
+  private long translationHitCount, translationMissCount;
+  private long evictionCount;
+
+  private boolean isLoaded, isLoading, isPersistScheduled;
+  private int generation;
+
+  public TranslationCache (Tdlib tdlib) {
+    this.tdlib = tdlib;
+    tdlib.listeners().addCleanupListener(this);
+  }
+
+  /**
+   * FNV-1a hash of the text, used instead of the text itself as the cache key.
+   */
+  public static long hashOf (@NonNull String text) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < text.length(); i++) {
+      hash ^= text.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  @Nullable
+  @AnyThread
+  public synchronized String getTextLanguage (long textHash) {
+    ensureLoaded();
+    String language = languages.get(textHash);
+    if (language != null) {
+      languageHitCount++;
+    } else {
+      languageMissCount++;
+    }
+    return language;
+  }
+
+  @AnyThread
+  public synchronized void putTextLanguage (long textHash, @Nullable String language) {
+    if (StringUtils.isEmpty(language)) {
+      return;
+    }
+    ensureLoaded();
+    if (!languages.containsKey(textHash)) {
+      languages.put(textHash, language);
+      schedulePersist();
+    }
+  }
+
+  @Nullable
+  @AnyThread
+  public synchronized TdApi.FormattedText getTranslation (long textHash, @Nullable String language) {
+    if (language == null) {
+      return null;
+    }
+    TdApi.FormattedText translation = translations.get(new TranslationKey(textHash, language));
+    if (translation != null) {
+      translationHitCount++;
+    } else {
+      translationMissCount++;
+    }
+    return translation;
+  }
+
+  @AnyThread
+  public synchronized void putTranslation (long textHash, @NonNull String language, @Nullable TdApi.FormattedText translation) {
+    if (translation == null) {
+      return;
+    }
+    TdApi.FormattedText prevTranslation = translations.put(new TranslationKey(textHash, language), translation);
+    if (prevTranslation != null) {
+      translatedCharCount -= prevTranslation.text.length();
+    }
+    translatedCharCount += translation.text.length();
+    Iterator<TdApi.FormattedText> itr = translations.values().iterator();
+    while (translatedCharCount > MAX_TRANSLATED_CHAR_COUNT && translations.size() > 1) {
+      TdApi.FormattedText eldestTranslation = itr.next();
+      itr.remove();
+      translatedCharCount -= eldestTranslation.text.length();
+      evictionCount++;
+    }
+  }
+
+  @NonNull
+  @AnyThread
+  public synchronized Stats getStats () {
+    return new Stats(languageHitCount, languageMissCount, translationHitCount, translationMissCount, evictionCount, languages.size(), translations.size(), translatedCharCount);
+  }
+
+  @Override
+  public void onPerformUserCleanup () {
+    synchronized (this) {
+      generation++;
+      languages.clear();
+      translations.clear();
+      translatedCharCount = 0;
+      isLoaded = true;
+    }
+    Settings.instance().pmc().remove(languagesKey());
+  }
+
+  // Persistence
+
+  private String languagesKey () {
+    return TdlibSettingsManager.key(KEY_LANGUAGES, tdlib.id());
+  }
+
+  private void ensureLoaded () {
+    // Called within synchronized block
+    if (isLoaded || isLoading) {
+      return;
+    }
+    isLoading = true;
+    final int generation = this.generation;
+    Background.instance().post(() -> load(generation));
+  }
+
+  private void load (int generation) {
+    LinkedHashMap<Long, String> restoredLanguages = null;
+    byte[] data = Settings.instance().pmc().getByteArray(languagesKey());
+    if (data != null && data.length > 0) {
+      try {
+        Blob blob = new Blob(data);
+        final int count = blob.readVarint();
+        restoredLanguages = new LinkedHashMap<>(count);
+        for (int i = 0; i < count; i++) {
+          long textHash = blob.readLong();
+          String language = blob.readString();
+          restoredLanguages.put(textHash, language);
+        }
+      } catch (Throwable t) {
+        Log.e("Unable to restore detected languages", t);
+        restoredLanguages = null;
+      }
+    }
+    synchronized (this) {
+      isLoading = false;
+      if (this.generation != generation || isLoaded) {
+        return;
+      }
+      isLoaded = true;
+      if (restoredLanguages != null && !restoredLanguages.isEmpty()) {
+        // Languages detected while loading are the most recently used ones
+        LinkedHashMap<Long, String> detectedLanguages = new LinkedHashMap<>(languages);
+        languages.clear();
+        languages.putAll(restoredLanguages);
+        languages.putAll(detectedLanguages);
+      }
+    }
+  }
+
+  private void schedulePersist () {
+    // Called within synchronized block
+    if (!isPersistScheduled) {
+      isPersistScheduled = true;
+      final int generation = this.generation;
+      Background.instance().post(() -> persist(generation), PERSIST_DELAY_MS);
+    }
+  }
+
+  private void persist (int generation) {
+    final byte[] data;
+    synchronized (this) {
+      isPersistScheduled = false;
+      if (this.generation != generation) {
+        return;
+      }
+      if (!isLoaded) {
+        // Don't overwrite saved languages before they are restored
+        schedulePersist();
+        return;
+      }
+      // Most recently used entries are at the end
+      int skipCount = Math.max(0, languages.size() - MAX_PERSISTENT_LANGUAGE_COUNT);
+      final int count = languages.size() - skipCount;
+      int size = Blob.sizeOf(count);
+      int index = 0;
+      for (String language : languages.values()) {
+        if (index++ >= skipCount) {
+          size += 8 + Blob.sizeOf(language, false);
+        }
+      }
+      Blob blob = new Blob(size);
+      blob.writeVarint(count);
+      index = 0;
+      for (Map.Entry<Long, String> entry : languages.entrySet()) {
+        if (index++ >= skipCount) {
+          blob.writeLong(entry.getKey());
+          blob.writeString(entry.getValue());
+        }
+      }
+      data = blob.toByteArray();
+    }
+    Settings.instance().pmc().putByteArray(languagesKey(), data);
+  }
+}
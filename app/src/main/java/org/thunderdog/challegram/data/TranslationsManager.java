@@ -7,8 +7,6 @@ import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.telegram.Tdlib;
 import org.thunderdog.challegram.util.TranslationCounterDrawable;
 
-import java.util.HashMap;
-
 import me.vkryl.core.StringUtils;
 import tgx.td.Td;
 
@@ -126,43 +124,33 @@ public final class TranslationsManager {
 
 
 
-  private final HashMap<String, TranslatedCachedValue> mTranslationsCache2 = new HashMap<>();
-
-  private static class TranslatedCachedValue {
-    public final String originalLanguage;
-    public final HashMap<String, TdApi.FormattedText> translationsCache;
+  private String lastHashedText;
+  private long lastTextHash;
 
-    public TranslatedCachedValue (String originalLanguage) {
-      this.originalLanguage = originalLanguage;
-      this.translationsCache = new HashMap<>();
+  private long hashOf (String text) {
+    if (lastHashedText == null || !lastHashedText.equals(text)) {
+      lastTextHash = TranslationCache.hashOf(text);
+      lastHashedText = text;
     }
+    return lastTextHash;
   }
 
   public @Nullable String getCachedTextLanguage (String text) {
-    TranslatedCachedValue cachedValue = mTranslationsCache2.get(text);
-    return (cachedValue != null ? cachedValue.originalLanguage : null);
+    return tdlib.translationCache().getTextLanguage(hashOf(text));
   }
 
   public void saveCachedTextLanguage (String text, String language) {
-    if (!mTranslationsCache2.containsKey(text)) {
-      mTranslationsCache2.put(text, new TranslatedCachedValue(language));
-    }
+    tdlib.translationCache().putTextLanguage(hashOf(text), language);
   }
 
   public @Nullable TdApi.FormattedText getCachedTextTranslation (String text, String language) {
-    TranslatedCachedValue cachedValue = mTranslationsCache2.get(text);
-    return (cachedValue != null ? cachedValue.translationsCache.get(language) : null);
+    return tdlib.translationCache().getTranslation(hashOf(text), language);
   }
 
   public void saveCachedTextTranslation (String text, String language, TdApi.FormattedText translated) {
-    TranslatedCachedValue cachedValue = mTranslationsCache2.get(text);
-    if (cachedValue != null) {
-      cachedValue.translationsCache.put(language, translated);
-    }
+    tdlib.translationCache().putTranslation(hashOf(text), language, translated);
   }
 
-
-
   public static TdApi.FormattedText prepareTextToTranslate (TdApi.FormattedText text) {
     if (text == null || text.entities == null || text.entities.length == 0) {
       return text;
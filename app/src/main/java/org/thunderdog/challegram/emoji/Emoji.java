@@ -32,6 +32,7 @@ import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.U;
 import org.thunderdog.challegram.core.Media;
+import org.thunderdog.challegram.core.StartupTrace;
 import org.thunderdog.challegram.data.TD;
 import org.thunderdog.challegram.telegram.TGLegacyManager;
 import org.thunderdog.challegram.telegram.Tdlib;
@@ -69,13 +70,13 @@ public class Emoji {
     if (instance == null) {
       synchronized (Emoji.class) {
         if (instance == null)
-          instance = new Emoji();
+          instance = StartupTrace.trace("Emoji", Emoji::new);
       }
     }
     return instance;
   }
 
-  private final HashMap<String, EmojiInfo> rects;
+  private final EmojiTrie trie;
   private final ReferenceList<EmojiChangeListener> emojiChangeListeners = new ReferenceList<>();
 
   private final CountLimiter singleLimiter = newSingleLimiter();
@@ -133,8 +134,21 @@ public class Emoji {
 
     this.defaultTone = Settings.instance().getEmojiDefaultTone();
 
+    this.trie = new EmojiTrie(newEmojiInfos(), EmojiData.instance().getEmojiAliases());
+  }
+
+  /**
+   * Lookup-only instance for {@link #replaceEmoji(CharSequence, int, int, CountLimiter, Callback)} with a callback,
+   * without emoji pack, recents and tones.
+   */
+  Emoji (EmojiTrie trie) {
+    this.trie = trie;
+    this.emojiText = new LocalVar<>();
+  }
+
+  static HashMap<String, EmojiInfo> newEmojiInfos () {
     int totalCount = EmojiData.getTotalDataCount();
-    this.rects = new HashMap<>(totalCount);
+    HashMap<String, EmojiInfo> rects = new HashMap<>(totalCount);
     for (int sectionIndex = 0; sectionIndex < EmojiData.data.length; sectionIndex++) {
       int count2 = (int) Math.ceil(EmojiData.data[sectionIndex].length / (float) EmojiCode.SPLIT_COUNT);
       for (int emojiIndex = 0; emojiIndex < EmojiData.data[sectionIndex].length; emojiIndex++) {
@@ -143,6 +157,7 @@ public class Emoji {
         rects.put(EmojiData.data[sectionIndex][emojiIndex], new EmojiInfo(sectionIndex, page, position));
       }
     }
+    return rects;
   }
 
   public void changeEmojiPack (Settings.EmojiPack emojiPack) {
@@ -639,24 +654,7 @@ public class Emoji {
     if (StringUtils.isEmpty(codeCs)) {
       return null;
     }
-    String code = codeCs.toString();
-    EmojiInfo info = rects.get(code);
-    if (info == null) {
-      String newCode = EmojiData.instance().getEmojiAlias(code);
-      if (newCode != null) {
-        code = newCode;
-        info = rects.get(code);
-      }
-    }
-    if (info == null && allowRetry) {
-      char lastChar = code.charAt(code.length() - 1);
-      if (lastChar == '\u200D' || lastChar == '\uFE0F') {
-        return getEmojiInfo(code.subSequence(0, code.length() - 1), true);
-      }
-      if (code.length() == 3 && code.charAt(1) == '\uFE0F') {
-        return getEmojiInfo(Character.toString(code.charAt(0)) + code.charAt(2));
-      }
-    }
+    EmojiInfo info = trie.resolve(codeCs, allowRetry);
     /*if (info == null) {
       CharSequence fixedEmoji = fixEmoji(code);
       if (!fixedEmoji.equals(code)) {
@@ -664,10 +662,8 @@ public class Emoji {
       }
     }*/
     if (info == null) {
-      Log.i("Warning. No drawable for emoji: %s", StringUtils.toUtfString(code));
-      return null;
+      Log.i("Warning. No drawable for emoji: %s", StringUtils.toUtfString(codeCs.toString()));
     }
-
     return info;
   }
 
@@ -731,6 +727,9 @@ public class Emoji {
   }
 
   public interface Callback {
+    /**
+     * @param code Emoji sequence. May be a reused buffer, so it must not be stored after the call.
+     */
     boolean onEmojiFound (CharSequence input, CharSequence code, EmojiInfo info, int position, int length);
   }
 
@@ -801,8 +800,8 @@ public class Emoji {
         } else if (startIndex != -1) {
           if (emojiCode.length() > 0) {
             // SAME CODE BEGIN
-            final String code = emojiCode.toString();
-            final EmojiInfo info = getEmojiInfo(code, false);
+            final StringBuilder code = emojiCode;
+            final EmojiInfo info = trie.find(code, 0, code.length());
             if (info != null) {
               if (callback != null) {
                 callback.onEmojiFound(cs, code, info, startIndex, startLength);
@@ -830,14 +829,11 @@ public class Emoji {
                 if (componentStartIndex == 0) {
                   componentLength--;
                 }
-                EmojiInfo componentInfo = null;
-                while (componentLength > 0 && componentInfo == null) {
-                  String componentCode = code.substring(componentStartIndex, componentStartIndex + componentLength);
-                  componentInfo = getEmojiInfo(componentCode, false);
-                  if (componentInfo == null) {
-                    componentLength--;
-                    continue;
-                  }
+                final int componentCodeLength = trie.findLongestPrefix(code, componentStartIndex, componentStartIndex + componentLength);
+                EmojiInfo componentInfo = componentCodeLength > 0 ? trie.find(code, componentStartIndex, componentStartIndex + componentCodeLength) : null;
+                if (componentInfo != null) {
+                  componentLength = componentCodeLength;
+                  final CharSequence componentCode = code.subSequence(componentStartIndex, componentStartIndex + componentCodeLength);
                   while (componentStartIndex + componentAddIndex + componentLength < startLength) {
                     char nextComponentChar = cs.charAt(startIndex + componentStartIndex + componentAddIndex + componentLength);
                     if (nextComponentChar == '\uFE0F') {
@@ -859,8 +855,8 @@ public class Emoji {
                   if (countLimiter != null && !countLimiter.incrementEmojiCount()) {
                     abort = true;
                   }
-                  componentStartIndex += componentCode.length();
-                  componentAddIndex += componentLength - componentCode.length();
+                  componentStartIndex += componentCodeLength;
+                  componentAddIndex += componentLength - componentCodeLength;
                 }
                 if (componentInfo == null) {
                   componentStartIndex++;
@@ -941,8 +937,8 @@ public class Emoji {
         }
         if (doneEmoji) {
           // SAME CODE BEGIN
-          final String code = emojiCode.toString();
-          final EmojiInfo info = getEmojiInfo(code, false);
+          final StringBuilder code = emojiCode;
+          final EmojiInfo info = trie.find(code, 0, code.length());
           if (info != null) {
             if (callback != null) {
               callback.onEmojiFound(cs, code, info, startIndex, startLength);
@@ -970,14 +966,11 @@ public class Emoji {
               if (componentStartIndex == 0) {
                 componentLength--;
               }
-              EmojiInfo componentInfo = null;
-              while (componentLength > 0 && componentInfo == null) {
-                String componentCode = code.substring(componentStartIndex, componentStartIndex + componentLength);
-                componentInfo = getEmojiInfo(componentCode, false);
-                if (componentInfo == null) {
-                  componentLength--;
-                  continue;
-                }
+              final int componentCodeLength = trie.findLongestPrefix(code, componentStartIndex, componentStartIndex + componentLength);
+              EmojiInfo componentInfo = componentCodeLength > 0 ? trie.find(code, componentStartIndex, componentStartIndex + componentCodeLength) : null;
+              if (componentInfo != null) {
+                componentLength = componentCodeLength;
+                final CharSequence componentCode = code.subSequence(componentStartIndex, componentStartIndex + componentCodeLength);
                 while (componentStartIndex + componentAddIndex + componentLength < startLength) {
                   char nextComponentChar = cs.charAt(startIndex + componentStartIndex + componentAddIndex + componentLength);
                   if (nextComponentChar == '\uFE0F') {
@@ -999,8 +992,8 @@ public class Emoji {
                 if (countLimiter != null && !countLimiter.incrementEmojiCount()) {
                   abort = true;
                 }
-                componentStartIndex += componentCode.length();
-                componentAddIndex += componentLength - componentCode.length();
+                componentStartIndex += componentCodeLength;
+                componentAddIndex += componentLength - componentCodeLength;
               }
               if (componentInfo == null) {
                 componentStartIndex++;
@@ -0,0 +1,219 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.emoji;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Compiled trie of all known emoji sequences (including legacy aliases) over UTF-16 chars.
+ *
+ * Nodes are stored in flat arrays, children of each node are sorted by char,
+ * so lookups don't allocate and don't need to convert text ranges to strings.
+ * Built once and immutable after that, so it can be used from any thread.
+ */
+class EmojiTrie {
+  // Children of node i are childChars/childNodes[childStart[i] .. childStart[i + 1])
+  private final int[] childStart;
+  private final char[] childChars;
+  private final int[] childNodes;
+  private final EmojiInfo[] values;
+  private final Map<String, String> aliases;
+
+  private static final class Node {
+    final ArrayList<Node> children = new ArrayList<>(2);
+    char c;
+    EmojiInfo value;
+
+    Node obtainChild (char c) {
+      int low = 0, high = children.size() - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        char midChar = children.get(mid).c;
+        if (midChar < c) {
+          low = mid + 1;
+        } else if (midChar > c) {
+          high = mid - 1;
+        } else {
+          return children.get(mid);
+        }
+      }
+      Node child = new Node();
+      child.c = c;
+      children.add(low, child);
+      return child;
+    }
+  }
+
+  /**
+   * @param infos Exact emoji sequences
+   * @param aliases Alternative sequences mapped to the sequences from {@code infos}. Used only when not present in {@code infos}.
+   */
+  EmojiTrie (@NonNull Map<String, EmojiInfo> infos, @NonNull Map<String, String> aliases) {
+    this.aliases = aliases;
+    Node root = new Node();
+    for (Map.Entry<String, EmojiInfo> entry : infos.entrySet()) {
+      insert(root, entry.getKey(), entry.getValue());
+    }
+    for (Map.Entry<String, String> alias : aliases.entrySet()) {
+      if (!infos.containsKey(alias.getKey())) {
+        EmojiInfo info = infos.get(alias.getValue());
+        if (info != null) {
+          insert(root, alias.getKey(), info);
+        }
+      }
+    }
+
+    // Breadth-first, so children of each node occupy a continuous range
+    ArrayList<Node> queue = new ArrayList<>();
+    queue.add(root);
+    for (int i = 0; i < queue.size(); i++) {
+      queue.addAll(queue.get(i).children);
+    }
+    final int nodeCount = queue.size();
+    this.childStart = new int[nodeCount + 1];
+    this.childChars = new char[nodeCount - 1];
+    this.childNodes = new int[nodeCount - 1];
+    this.values = new EmojiInfo[nodeCount];
+    int edgeCount = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      Node node = queue.get(i);
+      values[i] = node.value;
+      childStart[i] = edgeCount;
+      for (Node child : node.children) {
+        childChars[edgeCount] = child.c;
+        childNodes[edgeCount] = edgeCount + 1;
+        edgeCount++;
+      }
+    }
+    childStart[nodeCount] = edgeCount;
+  }
+
+  private static void insert (Node root, String sequence, EmojiInfo info) {
+    Node node = root;
+    for (int i = 0; i < sequence.length(); i++) {
+      node = node.obtainChild(sequence.charAt(i));
+    }
+    if (node.value == null) {
+      node.value = info;
+    }
+  }
+
+  private int next (int node, char c) {
+    int low = childStart[node], high = childStart[node + 1] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      char midChar = childChars[mid];
+      if (midChar < c) {
+        low = mid + 1;
+      } else if (midChar > c) {
+        high = mid - 1;
+      } else {
+        return childNodes[mid];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return Emoji that exactly matches the given sequence, or {@code null} if it is unknown
+   */
+  @Nullable
+  public EmojiInfo find (CharSequence cs, int start, int end) {
+    if (start >= end) {
+      return null;
+    }
+    int node = 0;
+    for (int i = start; i < end; i++) {
+      if ((node = next(node, cs.charAt(i))) == -1) {
+        return null;
+      }
+    }
+    return values[node];
+  }
+
+  /**
+   * Same as {@link #find}, but when the sequence is unknown, also tries its legacy alias and,
+   * if {@code allowRetry} is set, the sequence without trailing ZWJ or VS16,
+   * or without VS16 between the two chars of a three-char sequence.
+   */
+  @Nullable
+  public EmojiInfo resolve (CharSequence cs, boolean allowRetry) {
+    EmojiInfo info = find(cs, 0, cs.length());
+    if (info != null || cs.length() == 0) {
+      return info;
+    }
+    String code = cs.toString();
+    String newCode = aliases.get(code);
+    if (newCode != null) {
+      code = newCode;
+    }
+    if (allowRetry) {
+      char lastChar = code.charAt(code.length() - 1);
+      if (lastChar == '\u200D' || lastChar == '\uFE0F') {
+        return resolve(code.subSequence(0, code.length() - 1), true);
+      }
+      if (code.length() == 3 && code.charAt(1) == '\uFE0F') {
+        return resolve(Character.toString(code.charAt(0)) + code.charAt(2), true);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the longest known emoji that starts at {@code start} and ends before {@code end}.
+   *
+   * @return Length of the found emoji, or 0 if there's none
+   */
+  public int findLongestPrefix (CharSequence cs, int start, int end) {
+    int node = 0, length = 0;
+    for (int i = start; i < end; i++) {
+      if ((node = next(node, cs.charAt(i))) == -1) {
+        break;
+      }
+      if (values[node] != null) {
+        length = i - start + 1;
+      }
+    }
+    return length;
+  }
+
+  public int getNodeCount () {
+    return values.length;
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    int valueCount = 0;
+    for (EmojiInfo value : values) {
+      if (value != null) {
+        valueCount++;
+      }
+    }
+    return "EmojiTrie { nodes = " + values.length + ", sequences = " + valueCount + ", maxFanOut = " + maxFanOut() + " }";
+  }
+
+  private int maxFanOut () {
+    int max = 0;
+    for (int i = 0; i + 1 < childStart.length; i++) {
+      max = Math.max(max, childStart[i + 1] - childStart[i]);
+    }
+    return max;
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.U;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of mutable bitmaps grouped into power-of-two size classes by allocation size.
+ *
+ * Bitmaps obtained from the pool are meant to be passed to {@link android.graphics.BitmapFactory.Options#inBitmap},
+ * which since KitKat accepts any mutable bitmap with a large enough allocation.
+ */
+public final class BitmapPool {
+  private static final int SIZE_CLASS_COUNT = 32;
+
+  @SuppressWarnings("unchecked")
+  private final ArrayList<Bitmap>[] sizeClasses = new ArrayList[SIZE_CLASS_COUNT];
+  private long maxBytes;
+  private long currentBytes;
+
+  private int hitCount, missCount, putCount, rejectCount;
+
+  public BitmapPool (long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public static boolean isSupported () {
+    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+  }
+
+  public static int getByteCount (@NonNull Bitmap bitmap) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+      return bitmap.getAllocationByteCount();
+    } else {
+      return bitmap.getByteCount();
+    }
+  }
+
+  public static int getByteCount (int width, int height, @Nullable Bitmap.Config config) {
+    final int bytesPerPixel;
+    if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+      bytesPerPixel = 2;
+    } else if (config == Bitmap.Config.ALPHA_8) {
+      bytesPerPixel = 1;
+    } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.RGBA_F16) {
+      bytesPerPixel = 8;
+    } else {
+      bytesPerPixel = 4;
+    }
+    return width * height * bytesPerPixel;
+  }
+
+  private static int sizeClassOf (int byteCount) {
+    return 31 - Integer.numberOfLeadingZeros(Math.max(1, byteCount));
+  }
+
+  private static boolean isReusable (Bitmap bitmap) {
+    if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable())
+      return false;
+    return Build.VERSION.SDK_INT < Build.VERSION_CODES.O || bitmap.getConfig() != Bitmap.Config.HARDWARE;
+  }
+
+  /**
+   * Finds a bitmap that can hold at least {@code byteCount} bytes.
+   * Only the matching and the next size class are checked, so returned bitmap is never more than 4x larger than needed.
+   */
+  @Nullable
+  public synchronized Bitmap obtain (int byteCount) {
+    if (!isSupported() || byteCount <= 0) {
+      return null;
+    }
+    final int sizeClass = sizeClassOf(byteCount);
+    for (int i = sizeClass; i < Math.min(sizeClass + 2, SIZE_CLASS_COUNT); i++) {
+      ArrayList<Bitmap> bitmaps = sizeClasses[i];
+      if (bitmaps == null)
+        continue;
+      for (int index = bitmaps.size() - 1; index >= 0; index--) {
+        Bitmap bitmap = bitmaps.get(index);
+        int bitmapByteCount = getByteCount(bitmap);
+        if (bitmapByteCount >= byteCount) {
+          bitmaps.remove(index);
+          currentBytes -= bitmapByteCount;
+          hitCount++;
+          return bitmap;
+        }
+      }
+    }
+    missCount++;
+    return null;
+  }
+
+  /**
+   * Takes ownership of the bitmap. If it cannot be reused, it gets recycled immediately.
+   */
+  public void release (@Nullable Bitmap bitmap) {
+    if (bitmap == null)
+      return;
+    if (!isSupported() || !isReusable(bitmap) || !put(bitmap)) {
+      U.recycle(bitmap);
+    }
+  }
+
+  private synchronized boolean put (Bitmap bitmap) {
+    final int byteCount = getByteCount(bitmap);
+    if (byteCount > maxBytes / 2) {
+      rejectCount++;
+      return false;
+    }
+    final int sizeClass = sizeClassOf(byteCount);
+    ArrayList<Bitmap> bitmaps = sizeClasses[sizeClass];
+    if (bitmaps == null) {
+      sizeClasses[sizeClass] = bitmaps = new ArrayList<>();
+    }
+    bitmaps.add(bitmap);
+    currentBytes += byteCount;
+    putCount++;
+    trimToSize(maxBytes);
+    return true;
+  }
+
+  public synchronized void setMaxBytes (long maxBytes) {
+    this.maxBytes = maxBytes;
+    trimToSize(maxBytes);
+  }
+
+  public synchronized void trimToSize (long maxBytes) {
+    // Drop largest bitmaps first: they are the least likely to match a request
+    for (int sizeClass = SIZE_CLASS_COUNT - 1; sizeClass >= 0 && currentBytes > maxBytes; sizeClass--) {
+      ArrayList<Bitmap> bitmaps = sizeClasses[sizeClass];
+      if (bitmaps == null)
+        continue;
+      while (!bitmaps.isEmpty() && currentBytes > maxBytes) {
+        Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+        currentBytes -= getByteCount(bitmap);
+        U.recycle(bitmap);
+      }
+    }
+  }
+
+  public void clear () {
+    trimToSize(0);
+  }
+
+  @Override
+  @NonNull
+  public synchronized String toString () {
+    return "BitmapPool { bytes = " + currentBytes + "/" + maxBytes + ", hits = " + hitCount + ", misses = " + missCount + ", puts = " + putCount + ", rejects = " + rejectCount + " }";
+  }
+}
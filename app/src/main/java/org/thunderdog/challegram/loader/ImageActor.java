@@ -33,13 +33,27 @@ public class ImageActor implements ImageReader.Listener, AudioController.ApicLis
   private ImageFile file;
 
   private volatile boolean isCancelled;
+  private volatile @ImageDecodeQueue.Priority int priority;
 
-  public ImageActor (ImageFile file) {
+  public ImageActor (ImageFile file, @ImageDecodeQueue.Priority int priority) {
     this.file = file;
+    this.priority = priority;
+  }
+
+  public @ImageDecodeQueue.Priority int getPriority () {
+    return priority;
+  }
+
+  public void raisePriority (@ImageDecodeQueue.Priority int priority) {
+    if (priority > this.priority) {
+      this.priority = priority;
+      ImageReader.instance().decodeQueue().updatePriority(this, file, priority);
+    }
   }
 
   public void cancel () {
     this.isCancelled = true;
+    ImageReader.instance().decodeQueue().cancel(this, file);
     if (cancellationSignal != null)
       cancellationSignal.cancel();
     if (file instanceof ImageApicFile) {
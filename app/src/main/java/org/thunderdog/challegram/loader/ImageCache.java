@@ -18,19 +18,15 @@ import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.os.Build;
-import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.thunderdog.challegram.Log;
-import org.thunderdog.challegram.U;
+import org.thunderdog.challegram.telegram.LongEntityStore;
 import org.thunderdog.challegram.tool.UI;
 
-import java.lang.ref.WeakReference;
-import java.util.HashMap;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
 
 import me.vkryl.core.unit.ByteUnit;
 
@@ -44,82 +40,93 @@ public class ImageCache {
     return instance;
   }
 
-  public static HashMap<String, AtomicInteger> getReferenceCounters () {
-    return instance().getCounters();
+  /**
+   * @return Lock that must be held when reference count changes must be atomic with cache lookups
+   */
+  public static Object getReferenceLock () {
+    return instance().lock;
   }
 
-  private final HashMap<String, AtomicInteger> counters;
-  private final HashMap<String, Integer> rotations;
-  private final HashMap<String, WeakReference<Bitmap>> references;
-  private class BitmapLruCache extends LruCache<String, Bitmap> {
-    public BitmapLruCache (int maxSize) {
-      super(maxSize);
-    }
+  private static final class Entry {
+    final long key;
+    final String name;
+    final int accountId, fileId;
 
-    @Override
-    protected int sizeOf (String key, Bitmap value) {
-      if (value == null || value.isRecycled())
-        return 1;
-      if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB_MR1) {
-        return value.getRowBytes() * value.getHeight();
-      } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
-        return value.getByteCount();
-      } else {
-        return value.getAllocationByteCount();
-      }
-    }
+    Bitmap bitmap;
+    int byteCount;
+    int referenceCount;
+    int rotation;
 
-    @Override
-    protected void entryRemoved (boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
-      if (!counters.containsKey(key)) {
-        if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
-          Log.v(Log.TAG_IMAGE_LOADER, "#%s: recycling bitmap in entryRemoved", key);
-        }
-        U.recycle(oldValue);
-      }
+    boolean inMemcache;
+    Entry prev, next; // LRU list, head is the most recently used entry
+    Entry collision; // Next entry with the same key, but different name
+
+    Entry (long key, String name, int accountId, int fileId) {
+      this.key = key;
+      this.name = name;
+      this.accountId = accountId;
+      this.fileId = fileId;
     }
   }
 
-  private final BitmapLruCache memcache;
+  private final Object lock = new Object();
+  private final LongEntityStore<Entry> entries = new LongEntityStore<>(256);
+  private final BitmapPool pool;
 
-  private static final boolean ALLOW_REFERENCES = true;
+  private Entry head, tail;
+  private long memcacheBytes;
+  private long memcacheMaxBytes;
 
   private ImageCache () {
-    counters = new HashMap<>();
-    rotations = new HashMap<>();
-    memcache = new BitmapLruCache(getMemcacheSize());
-    references = new HashMap<>();
+    memcacheMaxBytes = getDefaultMemcacheSize();
+    pool = new BitmapPool(memcacheMaxBytes / 4);
   }
 
-  private boolean hasInMemcache (String key) {
-    return memcache.get(key) != null;
-  }
-
-  private int getMemcacheSize () {
+  private static long getDefaultMemcacheSize () {
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-      int mib = Math.min(15, ((ActivityManager) UI.getAppContext().getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass() / 7);
-      return (int) ByteUnit.MIB.toBytes(mib);
+      ActivityManager activityManager = (ActivityManager) UI.getAppContext().getSystemService(Context.ACTIVITY_SERVICE);
+      int memoryClass = activityManager.getMemoryClass();
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && activityManager.isLowRamDevice()) {
+        memoryClass /= 2;
+      }
+      int mib = Math.max(3, Math.min(48, memoryClass / 7));
+      return ByteUnit.MIB.toBytes(mib);
     } else {
-      return (int) ByteUnit.MIB.toBytes(3);
+      return ByteUnit.MIB.toBytes(3);
+    }
+  }
+
+  /**
+   * Changes memory budget for decoded bitmaps. Reuse pool gets a quarter of this value.
+   */
+  public void setMemcacheSize (long maxBytes) {
+    synchronized (lock) {
+      this.memcacheMaxBytes = maxBytes;
+      trimToSize(maxBytes);
+    }
+    pool.setMaxBytes(maxBytes / 4);
+  }
+
+  public long getMemcacheSize () {
+    synchronized (lock) {
+      return memcacheMaxBytes;
     }
   }
 
-  public HashMap<String, AtomicInteger> getCounters () {
-    return counters;
+  public BitmapPool pool () {
+    return pool;
   }
 
   public void addReference (ImageFile file, Bitmap bitmap) {
     if (file != null && bitmap != null) {
-      synchronized (counters) {
-        final String key = file.toString();
-        AtomicInteger count = counters.get(key);
-        if (count != null) {
-          count.incrementAndGet();
-        } else {
-          counters.put(key, count = new AtomicInteger(1));
+      synchronized (lock) {
+        Entry entry = obtainEntry(file);
+        if (entry.bitmap == null) {
+          entry.bitmap = bitmap;
         }
+        entry.referenceCount++;
         if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
-          Log.v(Log.TAG_IMAGE_LOADER, "#%s: reference++: %d", key, count.get());
+          Log.v(Log.TAG_IMAGE_LOADER, "#%s: reference++: %d", file.toString(), entry.referenceCount);
         }
       }
     } else {
@@ -131,28 +138,20 @@ public class ImageCache {
 
   public void removeReference (ImageFile file, Bitmap bitmap) {
     if (file != null && bitmap != null) {
-      synchronized (counters) {
-        String key = file.toString();
-
-        AtomicInteger count = counters.get(key);
-        if (count != null) {
-          int result = count.decrementAndGet();
-          if (result < 0)
-            throw new IllegalStateException("key:" + key);
+      synchronized (lock) {
+        Entry entry = findEntry(file);
+        if (entry != null && entry.referenceCount > 0) {
+          int result = --entry.referenceCount;
           if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
-            Log.v(Log.TAG_IMAGE_LOADER, "#%s: reference--: %d", key, result);
+            Log.v(Log.TAG_IMAGE_LOADER, "#%s: reference--: %d", file.toString(), result);
           }
-          if (result == 0) {
-            counters.remove(key);
-            if (!hasInMemcache(key)) {
-              if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
-                Log.v(Log.TAG_IMAGE_LOADER, "#%s: recycling bitmap in removeReference", key);
-              }
-              U.recycle(bitmap);
-            }
-            if (ALLOW_REFERENCES) {
-              references.remove(key);
+          if (result == 0 && !entry.inMemcache) {
+            if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+              Log.v(Log.TAG_IMAGE_LOADER, "#%s: releasing bitmap in removeReference", file.toString());
             }
+            removeEntry(entry);
+            entry.bitmap = null;
+            pool.release(bitmap);
           }
         }
       }
@@ -168,72 +167,187 @@ public class ImageCache {
   }
 
   public void putBitmap (ImageFile file, Bitmap bitmap) {
-    final String key = file.toString();
-    memcache.put(key, bitmap);
-    if (file.getRotation() != 0) {
-      rotations.put(key, file.getRotation());
-    }
-    if (ALLOW_REFERENCES) {
-      synchronized (counters) {
-        references.put(key, new WeakReference<>(bitmap));
+    if (bitmap == null)
+      return;
+    synchronized (lock) {
+      Entry entry = obtainEntry(file);
+      Bitmap oldBitmap = entry.bitmap;
+      if (entry.inMemcache) {
+        unlink(entry);
       }
+      if (oldBitmap != null && oldBitmap != bitmap && entry.referenceCount == 0) {
+        pool.release(oldBitmap);
+      }
+      entry.bitmap = bitmap;
+      entry.byteCount = bitmap.isRecycled() ? 1 : BitmapPool.getByteCount(bitmap);
+      entry.rotation = file.getRotation();
+      linkFirst(entry);
+      trimToSize(memcacheMaxBytes);
     }
   }
 
   public Bitmap getBitmap (ImageFile file) {
-    final String key = file.toString();
-    final Bitmap cached = memcache.get(key);
-    if (cached != null) {
-      Integer rotation = rotations.get(key);
-      if (rotation != null) {
-        file.setRotation(rotation);
-      }
-    }
-    if (ALLOW_REFERENCES && cached == null) {
-      synchronized (counters) {
-        final WeakReference<Bitmap> reference = references.get(key);
-        final Bitmap referenced = reference != null ? reference.get() : null;
-        if (referenced == null || referenced.isRecycled()) {
-          references.remove(key);
-        } else {
-          return referenced;
+    synchronized (lock) {
+      Entry entry = findEntry(file);
+      if (entry == null) {
+        return null;
+      }
+      Bitmap bitmap = entry.bitmap;
+      if (bitmap == null || bitmap.isRecycled()) {
+        if (entry.referenceCount == 0) {
+          if (entry.inMemcache) {
+            unlink(entry);
+          }
+          removeEntry(entry);
+        }
+        return null;
+      }
+      if (entry.inMemcache) {
+        if (head != entry) {
+          unlink(entry);
+          linkFirst(entry);
+        }
+        if (entry.rotation != 0) {
+          file.setRotation(entry.rotation);
         }
       }
+      return bitmap;
     }
-    return cached;
   }
 
   @Override
   @NonNull
   public String toString () {
-    return "ImageCache { counters = " + counters.size() + ", memcache = " + memcache.size() + " }";
+    synchronized (lock) {
+      return "ImageCache { entries = " + entries.size() + ", memcache = " + memcacheBytes + "/" + memcacheMaxBytes + ", " + pool + " }";
+    }
   }
 
   public void clear (boolean withMemcache) {
-    synchronized (counters) {
-      if (withMemcache) {
-        counters.clear();
-      }
+    if (!withMemcache) {
+      return;
     }
-    if (withMemcache) {
-      memcache.evictAll();
+    synchronized (lock) {
+      // Referenced bitmaps are still drawn, so they stay with their entries until removeReference
+      while (tail != null) {
+        evict(tail);
+      }
     }
+    pool.clear();
   }
 
   public void clearForAccount (int accountId) {
-    synchronized (counters) {
-      final String prefix = "account" + accountId + "_";
-      /*U.removeByPrefix(counters, prefix);
-      U.removeByPrefix(rotations, prefix);
-      if (ALLOW_REFERENCES) {
-        U.removeByPrefix(references, prefix);
-      }*/
-      Set<String> snapshot = memcache.snapshot().keySet();
-      for (String key : snapshot) {
-        if (key.startsWith(prefix)) {
-          memcache.remove(key);
+    synchronized (lock) {
+      ArrayList<Entry> removed = null;
+      for (Entry entry = head; entry != null; entry = entry.next) {
+        if (entry.accountId == accountId) {
+          if (removed == null)
+            removed = new ArrayList<>();
+          removed.add(entry);
+        }
+      }
+      if (removed != null) {
+        for (Entry entry : removed) {
+          evict(entry);
         }
       }
     }
   }
+
+  // Internal
+
+  @Nullable
+  private Entry findEntry (ImageFile file) {
+    Entry entry = entries.get(file.getCacheKey());
+    if (entry == null) {
+      return null;
+    }
+    if (entry.collision == null) {
+      // Keys are 64-bit hashes of file names, so account and file are enough to tell apart the only entry
+      return entry.accountId == file.accountId() && entry.fileId == file.getId() ? entry : null;
+    }
+    final String name = file.toString();
+    while (entry != null && !entry.name.equals(name)) {
+      entry = entry.collision;
+    }
+    return entry;
+  }
+
+  private Entry obtainEntry (ImageFile file) {
+    Entry entry = findEntry(file);
+    if (entry == null) {
+      final long key = file.getCacheKey();
+      entry = new Entry(key, file.toString(), file.accountId(), file.getId());
+      entry.collision = entries.get(key);
+      entries.put(key, entry);
+    }
+    return entry;
+  }
+
+  private void removeEntry (Entry entry) {
+    Entry first = entries.get(entry.key);
+    if (first == entry) {
+      if (entry.collision != null) {
+        entries.put(entry.key, entry.collision);
+      } else {
+        entries.remove(entry.key);
+      }
+    } else {
+      for (Entry prev = first; prev != null; prev = prev.collision) {
+        if (prev.collision == entry) {
+          prev.collision = entry.collision;
+          break;
+        }
+      }
+    }
+    entry.collision = null;
+  }
+
+  private void linkFirst (Entry entry) {
+    entry.prev = null;
+    entry.next = head;
+    if (head != null) {
+      head.prev = entry;
+    } else {
+      tail = entry;
+    }
+    head = entry;
+    entry.inMemcache = true;
+    memcacheBytes += entry.byteCount;
+  }
+
+  private void unlink (Entry entry) {
+    if (entry.prev != null) {
+      entry.prev.next = entry.next;
+    } else {
+      head = entry.next;
+    }
+    if (entry.next != null) {
+      entry.next.prev = entry.prev;
+    } else {
+      tail = entry.prev;
+    }
+    entry.prev = entry.next = null;
+    entry.inMemcache = false;
+    memcacheBytes -= entry.byteCount;
+  }
+
+  private void evict (Entry entry) {
+    unlink(entry);
+    if (entry.referenceCount == 0) {
+      if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+        Log.v(Log.TAG_IMAGE_LOADER, "#%s: releasing bitmap on eviction", entry.name);
+      }
+      removeEntry(entry);
+      Bitmap bitmap = entry.bitmap;
+      entry.bitmap = null;
+      pool.release(bitmap);
+    }
+  }
+
+  private void trimToSize (long maxBytes) {
+    while (memcacheBytes > maxBytes && tail != null) {
+      evict(tail);
+    }
+  }
 }
@@ -0,0 +1,236 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader;
+
+import android.os.Process;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.Log;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of still image decoders.
+ *
+ * Pending decodes are ordered by priority, then by submission order.
+ * Requests for the same cacheable image key that arrive while a decode is still pending are merged into it,
+ * and the result is delivered to all of them. Pending decodes are dropped once all their actors get cancelled.
+ */
+public final class ImageDecodeQueue {
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({
+    Priority.PREFETCH,
+    Priority.DEFAULT,
+    Priority.VISIBLE
+  })
+  public @interface Priority {
+    /** Receivers whose view is not on screen yet. Raised to {@link #VISIBLE} once it is. */
+    int PREFETCH = 0;
+    int DEFAULT = 1, VISIBLE = 2;
+  }
+
+  private final class Task implements Runnable, Comparable<Task> {
+    final String key;
+    final long sequence;
+    final ImageFile file;
+    final String path;
+    final long enqueueTime;
+
+    volatile int priority;
+    // Guarded by pendingTasks
+    final ArrayList<ImageActor> actors = new ArrayList<>(1);
+    final ArrayList<ImageReader.Listener> listeners = new ArrayList<>(1);
+
+    Task (String key, long sequence, ImageActor actor, ImageFile file, String path, ImageReader.Listener listener, int priority) {
+      this.key = key;
+      this.sequence = sequence;
+      this.file = file;
+      this.path = path;
+      this.actors.add(actor);
+      this.listeners.add(listener);
+      this.priority = priority;
+      this.enqueueTime = System.nanoTime();
+    }
+
+    @Override
+    public int compareTo (Task other) {
+      if (priority != other.priority) {
+        return Integer.compare(other.priority, priority);
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+
+    boolean removeActor (ImageActor actor) {
+      final int index = actors.indexOf(actor);
+      if (index != -1) {
+        actors.remove(index);
+        listeners.remove(index);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void run () {
+      ImageActor actor = null;
+      final ImageReader.Listener listener;
+      synchronized (pendingTasks) {
+        if (pendingTasks.get(key) == this) {
+          pendingTasks.remove(key);
+        }
+        // Decode on behalf of any actor that is still interested in the result
+        for (ImageActor pendingActor : actors) {
+          if (!pendingActor.isCancelled()) {
+            actor = pendingActor;
+            break;
+          }
+        }
+        if (actor == null) {
+          listener = null;
+        } else if (listeners.size() == 1) {
+          listener = listeners.get(0);
+        } else {
+          final ImageReader.Listener[] listeners = this.listeners.toArray(new ImageReader.Listener[0]);
+          listener = (success, result) -> {
+            for (ImageReader.Listener pendingListener : listeners) {
+              pendingListener.onImageLoaded(success, result);
+            }
+          };
+        }
+      }
+      if (actor == null) {
+        stats.onDropped();
+        return;
+      }
+      final long startTime = System.nanoTime();
+      stats.onStarted(startTime - enqueueTime);
+      try {
+        ImageReader.instance().decodeImage(actor, file, path, listener);
+      } catch (Throwable t) {
+        Log.e(Log.TAG_IMAGE_LOADER, "#%s: Image decode failed", t, file.toString());
+        listener.onImageLoaded(false, null);
+      }
+      stats.onCompleted(System.nanoTime() - startTime);
+    }
+  }
+
+  private final ThreadPoolExecutor executor;
+  private final HashMap<String, Task> pendingTasks = new HashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private final ImageStageStats stats = new ImageStageStats("ImageDecodeQueue");
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  public ImageDecodeQueue () {
+    final int poolSize = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    final AtomicInteger threadCount = new AtomicInteger();
+    final ThreadFactory threadFactory = r -> {
+      Thread thread = new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+        r.run();
+      }, "ImageDecoder#" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), threadFactory);
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  public void decode (ImageActor actor, ImageFile file, String path, ImageReader.Listener listener) {
+    final String key = file.toString();
+    final int priority = actor.getPriority();
+    final Task task;
+    synchronized (pendingTasks) {
+      Task pendingTask = pendingTasks.get(key);
+      // Bitmaps that don't go to ImageCache get recycled by their actor, so they can't be shared
+      if (pendingTask != null && file.shouldBeCached()) {
+        // Decode hasn't started yet: deliver its result to this actor as well
+        if (!pendingTask.actors.contains(actor)) {
+          pendingTask.actors.add(actor);
+          pendingTask.listeners.add(listener);
+        }
+        coalescedCount.incrementAndGet();
+        if (priority > pendingTask.priority && executor.remove(pendingTask)) {
+          pendingTask.priority = priority;
+          executor.execute(pendingTask);
+        }
+        return;
+      }
+      task = new Task(key, sequence.incrementAndGet(), actor, file, path, listener, priority);
+      if (pendingTask == null) {
+        pendingTasks.put(key, task);
+      }
+    }
+    stats.onEnqueued();
+    executor.execute(task);
+  }
+
+  /**
+   * Drops decode that has not started yet.
+   */
+  public void cancel (ImageActor actor, ImageFile file) {
+    final String key = file.toString();
+    synchronized (pendingTasks) {
+      Task task = pendingTasks.get(key);
+      if (task == null || !task.removeActor(actor) || !task.actors.isEmpty())
+        return;
+      pendingTasks.remove(key);
+      if (!executor.remove(task))
+        return;
+    }
+    stats.onDropped();
+  }
+
+  /**
+   * Raises priority of a pending decode, e.g. when image becomes visible.
+   */
+  public void updatePriority (ImageActor actor, ImageFile file, @Priority int priority) {
+    synchronized (pendingTasks) {
+      Task task = pendingTasks.get(file.toString());
+      if (task != null && task.actors.contains(actor) && task.priority < priority && executor.remove(task)) {
+        task.priority = priority;
+        executor.execute(task);
+      }
+    }
+  }
+
+  public ImageStageStats getStats () {
+    return stats;
+  }
+
+  public long getCoalescedCount () {
+    return coalescedCount.get();
+  }
+
+  public int getPoolSize () {
+    return executor.getMaximumPoolSize();
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    return stats + ", coalesced = " + getCoalescedCount() + ", workers = " + executor.getActiveCount() + "/" + getPoolSize();
+  }
+}
@@ -80,6 +80,7 @@ public class ImageFile {
   private int size, blurRadius, scaleType;
   private int flags;
   protected String key;
+  private long cacheKey;
 
   protected final byte[] bytes;
 
@@ -421,6 +422,27 @@ public class ImageFile {
     return (key != null ? key : (key = buildImageKey()));
   }
 
+  /**
+   * @return Compact non-zero 64-bit key derived from {@link #toString()}, used by {@link ImageCache}
+   */
+  public final long getCacheKey () {
+    if (cacheKey == 0) {
+      cacheKey = makeCacheKey(toString());
+    }
+    return cacheKey;
+  }
+
+  private static long makeCacheKey (String key) {
+    // FNV-1a
+    long hash = 0xcbf29ce484222325L;
+    final int length = key.length();
+    for (int i = 0; i < length; i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash != 0 ? hash : 1;
+  }
+
   public byte getType () {
     return TYPE_BASIC;
   }
@@ -534,6 +556,7 @@ public class ImageFile {
 
   public void notifyChanged () {
     this.key = null;
+    this.cacheKey = 0;
     if (changeListeners != null) {
       for (ChangeListener listener : changeListeners) {
         listener.onImageChanged(this);
@@ -57,6 +57,10 @@ public class ImageLoader {
   private final Set<Watcher> tempWatchers = new ArraySet<>();
 
   public void loadFile (final ImageFile file, ImageReader.Listener listener) {
+    loadFile(file, ImageDecodeQueue.Priority.DEFAULT, listener);
+  }
+
+  public void loadFile (final ImageFile file, @ImageDecodeQueue.Priority int priority, ImageReader.Listener listener) {
     AtomicReference<WatcherReference> reference = new AtomicReference<>();
     Watcher watcher = new Watcher() {
       @Override
@@ -67,7 +71,7 @@ public class ImageLoader {
       }
     };
     tempWatchers.add(watcher);
-    reference.set(new WatcherReference(watcher));
+    reference.set(new WatcherReference(watcher, priority));
     requestFile(file, reference.get());
   }
 
@@ -88,7 +92,7 @@ public class ImageLoader {
     }
 
     if (record == null) {
-      ImageActor actor = new ImageActor(file);
+      ImageActor actor = new ImageActor(file, reference.getPriority());
       record = new ImageWatchers(file, actor, reference);
       synchronized (watchers) {
         watchers.put(file.toString(), record);
@@ -184,6 +188,30 @@ public class ImageLoader {
     }
   }
 
+  /**
+   * Raises priority of the reference and of pending decodes it waits for, e.g. when receiver becomes visible.
+   */
+  public void raisePriority (WatcherReference reference, @ImageDecodeQueue.Priority int priority) {
+    if (reference.raisePriority(priority)) {
+      raisePriority(reference);
+    }
+  }
+
+  void raisePriority (WatcherReference reference) {
+    if (Thread.currentThread() != thread) {
+      thread.raisePriority(reference);
+      return;
+    }
+
+    synchronized (watchers) {
+      for (ImageWatchers record : watchers.values()) {
+        if (record.hasWatcher(reference)) {
+          record.getActor().raisePriority(reference.getPriority());
+        }
+      }
+    }
+  }
+
   public void removeWatcher (WatcherReference reference) {
     if (Thread.currentThread() != thread) {
       thread.removeWatcher(reference);
@@ -365,6 +393,10 @@ public class ImageLoader {
       return;
     }
 
+    if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+      Log.i(Log.TAG_IMAGE_LOADER, "clear: %s, %s", thread.getStats(), ImageReader.instance().decodeQueue().getStats());
+    }
+
     synchronized (watchers) {
       if (accountId == TdlibAccount.NO_ID) {
         workers.clear();
@@ -58,14 +58,20 @@ public class ImageReader {
     return instance;
   }
 
-  private static byte[] bytesThumb;
+  private static final ThreadLocal<byte[]> bytesThumb = new ThreadLocal<>();
 
   private final ImageReaderThread imageThread, videoThread, memThread;
+  private final ImageDecodeQueue decodeQueue;
 
   private ImageReader () {
     imageThread = new ImageReaderThread();
     videoThread = new ImageReaderThread();
     memThread = new ImageReaderThread();
+    decodeQueue = new ImageDecodeQueue();
+  }
+
+  public ImageDecodeQueue decodeQueue () {
+    return decodeQueue;
   }
 
   public void post (Runnable r) {
@@ -78,13 +84,22 @@ public class ImageReader {
 
   @SuppressWarnings (value={"SpellCheckingInspection", "deprecation"})
   public void readImage (final ImageActor actor, final ImageFile file, final String path, final Listener listener) {
-    ImageReaderThread thread = file.getBytes() != null ? memThread : file instanceof ImageVideoThumbFile || file instanceof ImageMp3File || (file instanceof ImageGalleryFile && ((ImageGalleryFile) file).isVideo()) ? videoThread : imageThread;
+    ImageReaderThread thread = file.getBytes() != null ? memThread : file instanceof ImageVideoThumbFile || file instanceof ImageMp3File || (file instanceof ImageGalleryFile && ((ImageGalleryFile) file).isVideo()) ? videoThread : null;
+
+    if (thread == null) {
+      decodeQueue.decode(actor, file, path, listener);
+      return;
+    }
 
     if (Thread.currentThread() != thread) {
       thread.readImage(actor, file, path, listener);
       return;
     }
 
+    decodeImage(actor, file, path, listener);
+  }
+
+  void decodeImage (final ImageActor actor, final ImageFile file, final String path, final Listener listener) {
     if (actor.isCancelled()) {
       return;
     }
@@ -311,9 +326,10 @@ public class ImageReader {
             bitmap = null;
           } else {
             int len = (int) f.length();
-            byte[] data = bytesThumb != null && bytesThumb.length >= len ? bytesThumb : null;
-            if (data == null) {
-              bytesThumb = data = new byte[len];
+            byte[] data = bytesThumb.get();
+            if (data == null || data.length < len) {
+              data = new byte[len];
+              bytesThumb.set(data);
             }
             f.readFully(data, 0, len);
             bitmap = BitmapFactory.decodeByteArray(data, 0, len, opts);
@@ -353,9 +369,7 @@ public class ImageReader {
           }
 
           if (bitmap == null) {
-            try (FileInputStream is = new FileInputStream(cacheFile)) {
-              bitmap = BitmapFactory.decodeStream(is, null, opts);
-            }
+            bitmap = decodeCachedFile(file, cacheFile, opts);
           }
         }
       }
@@ -649,6 +663,40 @@ public class ImageReader {
     decodeFile(path, opts);
   }
 
+  private static Bitmap decodeCachedFile (ImageFile file, File cacheFile, BitmapFactory.Options opts) throws IOException {
+    Bitmap reuseBitmap = null;
+    if (file.shouldBeCached() && BitmapPool.isSupported()) {
+      // Cached bitmaps return to ImageCache pool on eviction, so decode them as mutable and reuse previously evicted ones
+      opts.inMutable = true;
+      if (opts.outWidth > 0 && opts.outHeight > 0) {
+        int sampleSize = Math.max(1, opts.inSampleSize);
+        int width = (opts.outWidth + sampleSize - 1) / sampleSize;
+        int height = (opts.outHeight + sampleSize - 1) / sampleSize;
+        reuseBitmap = ImageCache.instance().pool().obtain(BitmapPool.getByteCount(width, height, opts.inPreferredConfig));
+      }
+    }
+    Bitmap bitmap = null;
+    if (reuseBitmap != null) {
+      opts.inBitmap = reuseBitmap;
+      try (FileInputStream is = new FileInputStream(cacheFile)) {
+        bitmap = BitmapFactory.decodeStream(is, null, opts);
+      } catch (IllegalArgumentException e) {
+        Log.w(Log.TAG_IMAGE_LOADER, "#%s: Cannot decode into pooled bitmap", e, file.toString());
+      } finally {
+        opts.inBitmap = null;
+      }
+      if (bitmap == null) {
+        ImageCache.instance().pool().release(reuseBitmap);
+      }
+    }
+    if (bitmap == null) {
+      try (FileInputStream is = new FileInputStream(cacheFile)) {
+        bitmap = BitmapFactory.decodeStream(is, null, opts);
+      }
+    }
+    return bitmap;
+  }
+
   public static Bitmap decodeFile (String path, BitmapFactory.Options opts) {
     try (InputStream is = U.openInputStream(path)) {
       return BitmapFactory.decodeStream(is, null, opts);
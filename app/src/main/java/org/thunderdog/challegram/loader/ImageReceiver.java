@@ -91,7 +91,7 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
     }
     this.metadataPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG);
     this.view = view;
-    this.reference = new WatcherReference(this);
+    this.reference = new WatcherReference(this, ImageDecodeQueue.Priority.VISIBLE);
     this.drawRegion = new Rect();
     this.bitmapRect = new Rect();
 
@@ -721,6 +721,8 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
           }
 
           if (!file.isCacheOnly()) {
+            // Off-screen receivers (e.g. bound ahead of scroll) decode after everything else, until they are drawn
+            reference.setPriority(isTargetViewShown() ? ImageDecodeQueue.Priority.VISIBLE : ImageDecodeQueue.Priority.PREFETCH);
             ImageLoader.instance().requestFile(file, reference);
           }
         } else {
@@ -808,7 +810,7 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
       final ImageFile oldFile = this.file;
 
       if (oldBitmap != bitmap) {
-        synchronized (ImageCache.getReferenceCounters()) {
+        synchronized (ImageCache.getReferenceLock()) {
           if (needRefs1 && oldBitmap != null) {
             ImageCache.instance().removeReference(oldFile, oldBitmap);
           }
@@ -827,7 +829,7 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
       ImageFile oldFile = this.file;
       Bitmap oldBitmap = this.bitmap;
 
-      synchronized (ImageCache.getReferenceCounters()) {
+      synchronized (ImageCache.getReferenceLock()) {
         this.file = file;
         setBitmap(bitmap);
 
@@ -916,6 +918,7 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
 
   @Override
   public void drawPlaceholder (Canvas c) {
+    onDisplayed();
     drawPlaceholderRounded(c, radius);
   }
 
@@ -930,6 +933,16 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
     }
   }
 
+  private boolean isTargetViewShown () {
+    return view == null || view.isShown();
+  }
+
+  private void onDisplayed () {
+    if (file != null && reference.getPriority() != ImageDecodeQueue.Priority.VISIBLE) {
+      ImageLoader.instance().raisePriority(reference, ImageDecodeQueue.Priority.VISIBLE);
+    }
+  }
+
   @Override
   public void detach () {
     if (!isDetached) {
@@ -1163,6 +1176,7 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
   @Override
   public void draw (Canvas c) {
     if (!U.isValidBitmap(bitmap)) {
+      onDisplayed();
       return;
     }
 
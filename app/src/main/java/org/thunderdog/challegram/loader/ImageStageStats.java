@@ -0,0 +1,120 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue depth and latency counters of a single image loading stage.
+ */
+public final class ImageStageStats {
+  private final String name;
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger maxQueueDepth = new AtomicInteger();
+  private final AtomicLong enqueuedCount = new AtomicLong();
+  private final AtomicLong completedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private final AtomicLong totalRunNanos = new AtomicLong();
+  private final AtomicLong maxRunNanos = new AtomicLong();
+
+  public ImageStageStats (String name) {
+    this.name = name;
+  }
+
+  void onEnqueued () {
+    enqueuedCount.incrementAndGet();
+    int depth = queueDepth.incrementAndGet();
+    int maxDepth;
+    while (depth > (maxDepth = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(maxDepth, depth));
+  }
+
+  void onDropped () {
+    queueDepth.decrementAndGet();
+    droppedCount.incrementAndGet();
+  }
+
+  void onStarted (long waitNanos) {
+    queueDepth.decrementAndGet();
+    totalWaitNanos.addAndGet(waitNanos);
+    updateMax(maxWaitNanos, waitNanos);
+  }
+
+  void onCompleted (long runNanos) {
+    completedCount.incrementAndGet();
+    totalRunNanos.addAndGet(runNanos);
+    updateMax(maxRunNanos, runNanos);
+  }
+
+  private static void updateMax (AtomicLong max, long value) {
+    long currentMax;
+    while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value));
+  }
+
+  public int getQueueDepth () {
+    return queueDepth.get();
+  }
+
+  public int getMaxQueueDepth () {
+    return maxQueueDepth.get();
+  }
+
+  public long getEnqueuedCount () {
+    return enqueuedCount.get();
+  }
+
+  public long getCompletedCount () {
+    return completedCount.get();
+  }
+
+  public long getDroppedCount () {
+    return droppedCount.get();
+  }
+
+  public long getAverageWait (TimeUnit unit) {
+    long count = completedCount.get();
+    return count > 0 ? unit.convert(totalWaitNanos.get() / count, TimeUnit.NANOSECONDS) : 0;
+  }
+
+  public long getMaxWait (TimeUnit unit) {
+    return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  public long getAverageRunTime (TimeUnit unit) {
+    long count = completedCount.get();
+    return count > 0 ? unit.convert(totalRunNanos.get() / count, TimeUnit.NANOSECONDS) : 0;
+  }
+
+  public long getMaxRunTime (TimeUnit unit) {
+    return unit.convert(maxRunNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    return name + " { depth = " + getQueueDepth() + " (max " + getMaxQueueDepth() + ")" +
+      ", enqueued = " + getEnqueuedCount() +
+      ", completed = " + getCompletedCount() +
+      ", dropped = " + getDroppedCount() +
+      ", wait = " + getAverageWait(TimeUnit.MICROSECONDS) + "us (max " + getMaxWait(TimeUnit.MICROSECONDS) + "us)" +
+      ", run = " + getAverageRunTime(TimeUnit.MICROSECONDS) + "us (max " + getMaxRunTime(TimeUnit.MICROSECONDS) + "us) }";
+  }
+}
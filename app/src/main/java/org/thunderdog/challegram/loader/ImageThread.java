@@ -16,10 +16,13 @@ package org.thunderdog.challegram.loader;
 
 import android.graphics.Bitmap;
 import android.os.Message;
+import android.os.SystemClock;
 
 import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.core.BaseThread;
 
+import java.util.concurrent.TimeUnit;
+
 public class ImageThread extends BaseThread {
   private static final int REQUEST = 0;
   private static final int REMOVE_WATCHER = 1;
@@ -27,37 +30,60 @@ public class ImageThread extends BaseThread {
   private static final int ACTOR_RESULT = 3;
   private static final int CLEAR = 4;
   private static final int DOWNLOAD_FILE_PERSISTENT = 5;
+  private static final int RAISE_PRIORITY = 6;
+
+  private final ImageStageStats stats = new ImageStageStats("ImageThread");
 
   public ImageThread () {
     super("ImageThread");
   }
 
+  public ImageStageStats getStats () {
+    return stats;
+  }
+
+  private void enqueue (Message msg) {
+    stats.onEnqueued();
+    sendMessage(msg, 0);
+  }
+
   public void request (ImageFile file, WatcherReference reference) {
-    sendMessage(Message.obtain(getHandler(), REQUEST, new Object[] {file, reference}), 0);
+    enqueue(Message.obtain(getHandler(), REQUEST, new Object[] {file, reference}));
   }
 
   public void removeWatcher (WatcherReference reference) {
-    sendMessage(Message.obtain(getHandler(), REMOVE_WATCHER, reference), 0);
+    enqueue(Message.obtain(getHandler(), REMOVE_WATCHER, reference));
+  }
+
+  public void raisePriority (WatcherReference reference) {
+    enqueue(Message.obtain(getHandler(), RAISE_PRIORITY, reference));
   }
 
   public void downloadFilePersistent (ImageFileRemote persistentFile, TdApi.File file) {
-    sendMessage(Message.obtain(getHandler(), DOWNLOAD_FILE_PERSISTENT, new Object[] {persistentFile, file}), 0);
+    enqueue(Message.obtain(getHandler(), DOWNLOAD_FILE_PERSISTENT, new Object[] {persistentFile, file}));
   }
 
   public void onLoad (ImageActor actor, TdApi.File file) {
-    sendMessage(Message.obtain(getHandler(), LOAD_COMPLETE, new Object[] {actor, file}), 0);
+    enqueue(Message.obtain(getHandler(), LOAD_COMPLETE, new Object[] {actor, file}));
   }
 
   public void onResult (ImageFile file, boolean success, Bitmap bitmap) {
-    sendMessage(Message.obtain(getHandler(), ACTOR_RESULT, success ? 1 : 0, 0, new Object[] {file, bitmap}), 0);
+    enqueue(Message.obtain(getHandler(), ACTOR_RESULT, success ? 1 : 0, 0, new Object[] {file, bitmap}));
   }
 
   public void clear (int accountId, boolean withMemcache) {
-    sendMessage(Message.obtain(getHandler(), CLEAR, accountId, withMemcache ? 1 : 0), 0);
+    enqueue(Message.obtain(getHandler(), CLEAR, accountId, withMemcache ? 1 : 0));
   }
 
   @Override
   protected void process (Message msg) {
+    final long startTime = SystemClock.uptimeMillis();
+    stats.onStarted(TimeUnit.MILLISECONDS.toNanos(Math.max(0, startTime - msg.getWhen())));
+    processImpl(msg);
+    stats.onCompleted(TimeUnit.MILLISECONDS.toNanos(SystemClock.uptimeMillis() - startTime));
+  }
+
+  private void processImpl (Message msg) {
     switch (msg.what) {
       case REQUEST: {
         Object[] data = (Object[]) msg.obj;
@@ -73,6 +99,10 @@ public class ImageThread extends BaseThread {
         ImageLoader.instance().removeWatcher((WatcherReference) msg.obj);
         break;
       }
+      case RAISE_PRIORITY: {
+        ImageLoader.instance().raisePriority((WatcherReference) msg.obj);
+        break;
+      }
       case LOAD_COMPLETE: {
         Object[] data = (Object[]) msg.obj;
 
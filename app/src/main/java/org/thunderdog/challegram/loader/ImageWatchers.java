@@ -49,11 +49,16 @@ public class ImageWatchers {
       return false;
 
     actor.watcherJoined(reference);
+    actor.raisePriority(reference.getPriority());
     watcherList.add(reference);
 
     return true;
   }
 
+  public boolean hasWatcher (WatcherReference reference) {
+    return watcherList != null && watcherList.contains(reference);
+  }
+
   public boolean removeWatcher (WatcherReference reference) {
     if (watcherList == null || !watcherList.contains(reference))
       return false;
@@ -21,9 +21,35 @@ import java.lang.ref.WeakReference;
 
 public class WatcherReference {
   private Reference<Watcher> reference;
+  private volatile @ImageDecodeQueue.Priority int priority;
 
   public WatcherReference (Watcher watcher) {
+    this(watcher, ImageDecodeQueue.Priority.DEFAULT);
+  }
+
+  public WatcherReference (Watcher watcher, @ImageDecodeQueue.Priority int priority) {
     this.reference = new WeakReference<>(watcher);
+    this.priority = priority;
+  }
+
+  public @ImageDecodeQueue.Priority int getPriority () {
+    return priority;
+  }
+
+  /**
+   * Changes priority of future requests, e.g. before requesting the next file.
+   * Pending requests keep their priority, use {@link ImageLoader#raisePriority} to raise it.
+   */
+  public void setPriority (@ImageDecodeQueue.Priority int priority) {
+    this.priority = priority;
+  }
+
+  boolean raisePriority (@ImageDecodeQueue.Priority int priority) {
+    if (priority > this.priority) {
+      this.priority = priority;
+      return true;
+    }
+    return false;
   }
 
   public void imageLoaded (ImageFile file, boolean success, Bitmap bitmap) {
@@ -15,6 +15,7 @@
 package org.thunderdog.challegram.loader.gif;
 
 import android.graphics.Bitmap;
+import android.os.SystemClock;
 import android.view.View;
 
 import androidx.annotation.IntDef;
@@ -73,7 +74,8 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
   private @Nullable GifState gif;
   private final int[] metadata;
   private final double[] lottieMetadata;
-  private final GifThread thread;
+  private final GifFrameScheduler scheduler;
+  private final GifFrameScheduler.Lane lane;
   private final boolean isLottie;
   private int lottieCacheState = LOTTIE_CACHE_NONE;
 
@@ -88,15 +90,16 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
 
   private final boolean isPlayOnce;
 
-  public GifActor (final GifFile file, GifThread thread) {
+  public GifActor (final GifFile file, GifFrameScheduler scheduler) {
     this.isPlayOnce = file.isPlayOnce();
     file.setVibrationPattern(Emoji.VIBRATION_PATTERN_NONE);
     this.maxFrameRate = file.hasOptimizations() || Settings.instance().getNewSetting(Settings.SETTING_FLAG_LIMIT_STICKERS_FPS) ? REDUCED_MAX_FRAME_RATE : DEFAULT_MAX_FRAME_RATE;
     this.isLottie = file.getGifType() == GifFile.TYPE_TG_LOTTIE;
     this.metadata = new int[4];
     this.lottieMetadata = new double[3];
-    this.thread = thread;
     this.file = file;
+    this.scheduler = scheduler;
+    this.lane = scheduler.register(this);
     this.isPlaybackFrozen = isFrozen(file);
 
     this.remoteFileHandler = new Client.ResultHandler() {
@@ -207,8 +210,10 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
       if ((flags & FLAG_LOADING_FILE) != 0) {
         file.tdlib().client().send(new TdApi.CancelDownloadFile(file.getFileId(), false), fileLoadHandler);
         flags &= ~FLAG_LOADING_FILE;
+        // Decoding hasn't started, there's nothing to destroy
+        lane.close();
       } else {
-        thread.onDestroy(this);
+        lane.onDestroy();
       }
     }
   }
@@ -240,7 +245,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
     Td.copyTo(file, localFile);
 
     if ((flags & FLAG_CANCELLED) == 0) {
-      thread.startDecoding(this, file.local.path);
+      lane.startDecoding(file.local.path);
     }
   }
 
@@ -417,7 +422,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
       this.gif = gif;
     }
     if (!isPlaybackFrozen) {
-      thread.prepareNextFrame(this);
+      lane.prepareNextFrame(nextFrameDeadline());
       scheduleNext(false);
     } else {
       GifBridge.instance().dispatchGifFrameChanged(file, gif, false);
@@ -637,6 +642,37 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
     }
   }
 
+  private double averageFrameRate () {
+    if (isLottie) {
+      return Math.min(maxFrameRate(), frameRate);
+    } else {
+      return metadata[2] != 0 ? (double) metadata[2] / 1000.0 : 25.0;
+    }
+  }
+
+  // Any thread
+  private long nextFrameDeadline () {
+    final double avgFrameRate = averageFrameRate();
+    long frameDelayMs = avgFrameRate > 0 ? (long) (1000.0 / avgFrameRate) : 0;
+    if (file.isHighPriorityForDecode()) {
+      frameDelayMs /= 2;
+    }
+    return SystemClock.uptimeMillis() + frameDelayMs;
+  }
+
+  // Decoder thread
+  boolean hasPendingFrame () {
+    final GifState gif;
+    synchronized (gifLock) {
+      gif = this.gif;
+    }
+    return gif != null && gif.hasNext();
+  }
+
+  public GifFrameScheduler.FrameStats getFrameStats () {
+    return lane.getStats();
+  }
+
   private double frameDelta () {
     return Math.max(1.0, frameRate / maxFrameRate());
   }
@@ -660,13 +696,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
     final float screenFrameRate = Screen.refreshRate();
     final double screenFrameRateDelay = 1000.0 / screenFrameRate;
 
-    final double avgFrameRate;
-    if (isLottie) {
-      avgFrameRate = Math.min(maxFrameRate(), frameRate);
-    } else {
-      avgFrameRate = metadata[2] != 0 ? (double) metadata[2] / 1000.0 : 25.0;
-    }
-    final double avgFrameRateDelay = 1000.0 / avgFrameRate;
+    final double avgFrameRateDelay = 1000.0 / averageFrameRate();
     if (isLottie) {
       frameDelay = Math.max(screenFrameRateDelay, avgFrameRateDelay);
       nextTimeStamp = 0;
@@ -785,7 +815,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
         }
         if (isPlayingRoundVideo) {
           if (TdlibManager.instance().player().isPlayingMessage(file.getChatId(), file.getMessageId())) {
-            thread.prepareStartFrame(this);
+            lane.prepareStartFrame();
             if (lastTimeStamp != 0) {
               scheduleNext(true);
             }
@@ -793,7 +823,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
           return false;
         }
         if (GifBridge.instance().canScheduleNextFrame(this, file.getFileId())) {
-          thread.prepareNextFrame(this);
+          lane.prepareNextFrame(nextFrameDeadline());
           scheduleNext(false);
           return true;
         }
@@ -805,6 +835,9 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
   // Decoder thread
   public void onDestroy () {
     destroyDecoder();
+    if (Log.isEnabled(Log.TAG_GIF_LOADER)) {
+      Log.i(Log.TAG_GIF_LOADER, "#%s: actor destroyed, %s, lanes stolen by idle workers: %d", file.toString(), getFrameStats(), scheduler.getStolenCount());
+    }
     if (file != null && file.isRoundVideo()) {
       TdlibManager.instance().player().removeTrackChangeListener(this);
     }
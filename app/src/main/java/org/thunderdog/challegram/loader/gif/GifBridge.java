@@ -18,11 +18,13 @@ import android.view.View;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.Keep;
+import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 import androidx.collection.ArraySet;
 
 import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.core.LazyInit;
 import org.thunderdog.challegram.telegram.Tdlib;
 
 import java.util.ArrayList;
@@ -34,68 +36,40 @@ import me.vkryl.core.lambda.RunnableData;
 import tgx.td.Td;
 
 public class GifBridge {
-  private static GifBridge instance;
+  private static final LazyInit<GifBridge> instance = new LazyInit<>("GifBridge", GifBridge::new);
 
   public static GifBridge instance () {
-    if (instance == null) {
-      instance = new GifBridge();
-    }
-    return instance;
+    return instance.get();
+  }
+
+  /**
+   * @return Instance, if any GIF was requested before, {@code null} otherwise
+   */
+  @Nullable
+  public static GifBridge peekInstance () {
+    return instance.peek();
   }
 
-  private static final int THREAD_POOL_SIZE = 2;
   private final GifBridgeThread thread;
   private final HashMap<String, GifRecord> records = new HashMap<>();
   private final HashMap<Integer, ArrayList<GifRecord>> fileIdToRecordList = new HashMap<>();
   private final ArrayList<GifRecord> playingRoundVideos = new ArrayList<>();
-  // TODO: rework to executors
-  private int lastUsedThread, lastUsedEmojiThread;
-  private final GifThread[] threads, emojiThreads;
-  private final GifThread[] lottieThreads;
+  private final LazyInit<GifFrameScheduler> frameScheduler = new LazyInit<>("GifFrameScheduler", () ->
+    new GifFrameScheduler(GifFrameScheduler.defaultWorkerCount())
+  );
 
   private GifBridge () {
     thread = new GifBridgeThread();
-    // TODO: rework to executors
-    threads = new GifThread[THREAD_POOL_SIZE];
-    for (int i = 0; i < threads.length; i++) {
-      threads[i] = new GifThread(i);
-    }
-    emojiThreads = new GifThread[THREAD_POOL_SIZE];
-    for (int i = 0; i < emojiThreads.length; i++) {
-      emojiThreads[i] = new GifThread(i);
-    }
-    lottieThreads = new GifThread[5];
-    for (int i = 0; i < lottieThreads.length; i++) {
-      lottieThreads[i] = new GifThread(i);
-    }
-  }
-
-  private GifThread obtainFrameThread (GifFile file) {
-    if (file.getGifType() == GifFile.TYPE_TG_LOTTIE) {
-      if (file.isHighPriorityForDecode()) {
-        return lottieThreads[lottieThreads.length - 1];
-      }
-      return lottieThreads[file.getOptimizationMode()];
-    } else {
-      // TODO rework to executors
-      if (file.getOptimizationMode() == GifFile.OptimizationMode.EMOJI) {
-        if (++lastUsedEmojiThread == THREAD_POOL_SIZE) {
-          lastUsedEmojiThread = 0;
-        }
-        return emojiThreads[lastUsedEmojiThread];
-      } else {
-        if (++lastUsedThread == THREAD_POOL_SIZE) {
-          lastUsedThread = 0;
-        }
-        return threads[lastUsedThread];
-      }
-    }
   }
 
   public GifBridgeThread getBaseThread () {
     return thread;
   }
 
+  public GifFrameScheduler getFrameScheduler () {
+    return frameScheduler.get();
+  }
+
   @Keep
   private final Set<GifWatcher> tempWatchers = new ArraySet<>();
 
@@ -124,7 +98,7 @@ public class GifBridge {
     GifRecord record = records.get(key);
 
     if (record == null) {
-      GifActor actor = new GifActor(file, obtainFrameThread(file));
+      GifActor actor = new GifActor(file, frameScheduler.get());
       record = new GifRecord(file, actor, reference);
       synchronized (records) {
         records.put(key, record);
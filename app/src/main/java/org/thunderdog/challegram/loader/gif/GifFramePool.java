@@ -0,0 +1,188 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.gif;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.U;
+import org.thunderdog.challegram.core.LazyInit;
+import org.thunderdog.challegram.loader.BitmapPool;
+import org.thunderdog.challegram.tool.UI;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import me.vkryl.core.unit.ByteUnit;
+
+/**
+ * Frame bitmaps of destroyed {@link GifState}s, grouped by exact width, height and config,
+ * so animations reopened after scrolling don't allocate their frames again.
+ *
+ * Groups are kept in least-recently-used order, and the whole pool is limited by byte size.
+ */
+public final class GifFramePool {
+  private static final LazyInit<GifFramePool> instance = new LazyInit<>("GifFramePool", GifFramePool::new);
+
+  public static GifFramePool instance () {
+    return instance.get();
+  }
+
+  /**
+   * @return Instance, if any GIF frames were pooled or requested before, {@code null} otherwise
+   */
+  @Nullable
+  public static GifFramePool peekInstance () {
+    return instance.peek();
+  }
+
+  private final LinkedHashMap<Long, ArrayDeque<Bitmap>> groups = new LinkedHashMap<>(16, .75f, true);
+  private long maxBytes;
+  private long currentBytes;
+
+  private long hitCount, missCount, putCount, rejectCount, evictionCount;
+
+  private GifFramePool () {
+    this.maxBytes = getDefaultMaxBytes();
+  }
+
+  private static long getDefaultMaxBytes () {
+    ActivityManager activityManager = (ActivityManager) UI.getAppContext().getSystemService(Context.ACTIVITY_SERVICE);
+    int memoryClass = activityManager.getMemoryClass();
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && activityManager.isLowRamDevice()) {
+      memoryClass /= 2;
+    }
+    int mib = Math.max(2, Math.min(32, memoryClass / 8));
+    return ByteUnit.MIB.toBytes(mib);
+  }
+
+  private static long keyOf (int width, int height, @NonNull Bitmap.Config config) {
+    return ((long) (width & 0xffffff) << 40) | ((long) (height & 0xffffff) << 16) | config.ordinal();
+  }
+
+  /**
+   * @return Mutable bitmap of the exact size and config, cleared to transparent, or {@code null}, if there's none
+   */
+  @Nullable
+  @AnyThread
+  public Bitmap obtain (int width, int height, @NonNull Bitmap.Config config) {
+    Bitmap bitmap = take(keyOf(width, height, config));
+    if (bitmap != null) {
+      bitmap.eraseColor(Color.TRANSPARENT);
+    }
+    return bitmap;
+  }
+
+  private synchronized Bitmap take (long key) {
+    ArrayDeque<Bitmap> bitmaps = groups.get(key);
+    Bitmap bitmap = bitmaps != null ? bitmaps.poll() : null;
+    if (bitmap == null) {
+      missCount++;
+      return null;
+    }
+    if (bitmaps.isEmpty()) {
+      groups.remove(key);
+    }
+    currentBytes -= BitmapPool.getByteCount(bitmap);
+    hitCount++;
+    return bitmap;
+  }
+
+  /**
+   * Takes ownership of the bitmap. If it cannot be reused, it gets recycled immediately.
+   */
+  @AnyThread
+  public void release (@Nullable Bitmap bitmap) {
+    if (bitmap == null || bitmap.isRecycled())
+      return;
+    Bitmap.Config config = bitmap.getConfig();
+    if (config == null || !bitmap.isMutable() || !put(keyOf(bitmap.getWidth(), bitmap.getHeight(), config), bitmap)) {
+      U.recycle(bitmap);
+    }
+  }
+
+  private synchronized boolean put (long key, Bitmap bitmap) {
+    final int byteCount = BitmapPool.getByteCount(bitmap);
+    if (byteCount > maxBytes / 2) {
+      rejectCount++;
+      return false;
+    }
+    ArrayDeque<Bitmap> bitmaps = groups.get(key);
+    if (bitmaps == null) {
+      groups.put(key, bitmaps = new ArrayDeque<>());
+    }
+    bitmaps.offer(bitmap);
+    currentBytes += byteCount;
+    putCount++;
+    trimToSize(maxBytes);
+    return true;
+  }
+
+  public synchronized void trimToSize (long maxBytes) {
+    // Least recently used sizes go first
+    Iterator<ArrayDeque<Bitmap>> itr = groups.values().iterator();
+    while (currentBytes > maxBytes && itr.hasNext()) {
+      ArrayDeque<Bitmap> bitmaps = itr.next();
+      while (currentBytes > maxBytes && !bitmaps.isEmpty()) {
+        Bitmap bitmap = bitmaps.poll();
+        currentBytes -= BitmapPool.getByteCount(bitmap);
+        evictionCount++;
+        U.recycle(bitmap);
+      }
+      if (bitmaps.isEmpty()) {
+        itr.remove();
+      }
+    }
+  }
+
+  /**
+   * Shrinks the pool according to {@link ComponentCallbacks2#onTrimMemory(int)} level.
+   */
+  @AnyThread
+  public void onTrimMemory (int level) {
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+      clear();
+    } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      synchronized (this) {
+        trimToSize(maxBytes / 2);
+      }
+    }
+    if (Log.isEnabled(Log.TAG_GIF_LOADER)) {
+      Log.i(Log.TAG_GIF_LOADER, "onTrimMemory level:%d, %s", level, this);
+    }
+  }
+
+  public void clear () {
+    trimToSize(0);
+  }
+
+  @Override
+  @NonNull
+  public synchronized String toString () {
+    return "GifFramePool { bytes = " + currentBytes + "/" + maxBytes + ", sizes = " + groups.size() +
+      ", allocationsAvoided = " + hitCount + ", allocations = " + missCount +
+      ", puts = " + putCount + ", rejects = " + rejectCount + ", evictions = " + evictionCount + " }";
+  }
+}
@@ -0,0 +1,380 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.gif;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.Log;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shared frame rendering scheduler for all {@link GifActor}s.
+ *
+ * Every actor owns a {@link Lane}: jobs of the same lane run one at a time and in order,
+ * as native decoders are not thread-safe. Lanes are assigned to the least loaded worker,
+ * ready lanes are picked by their earliest frame deadline and idle workers steal ready lanes from the busiest worker.
+ */
+public final class GifFrameScheduler {
+  private static final int JOB_START_DECODING = 0;
+  private static final int JOB_PREPARE_START_FRAME = 1;
+  private static final int JOB_PREPARE_NEXT_FRAME = 2;
+  private static final int JOB_DESTROY = 3;
+
+  private static final class Job {
+    final int type;
+    final String path;
+    final long deadline;
+
+    Job (int type, String path, long deadline) {
+      this.type = type;
+      this.path = path;
+      this.deadline = deadline;
+    }
+  }
+
+  /**
+   * Frame-time statistics of a single actor. Updated on worker threads, read from any thread.
+   */
+  public static final class FrameStats {
+    private final AtomicLong frameCount = new AtomicLong(), totalFrameTimeNanos = new AtomicLong(), maxFrameTimeNanos = new AtomicLong();
+    private final AtomicLong lateCount = new AtomicLong(), droppedCount = new AtomicLong();
+
+    private void onFrame (long frameTimeNanos, boolean isLate) {
+      frameCount.incrementAndGet();
+      totalFrameTimeNanos.addAndGet(frameTimeNanos);
+      long maxFrameTimeNanos;
+      do {
+        maxFrameTimeNanos = this.maxFrameTimeNanos.get();
+      } while (frameTimeNanos > maxFrameTimeNanos && !this.maxFrameTimeNanos.compareAndSet(maxFrameTimeNanos, frameTimeNanos));
+      if (isLate) {
+        lateCount.incrementAndGet();
+      }
+    }
+
+    private void onDropped () {
+      droppedCount.incrementAndGet();
+    }
+
+    public long getFrameCount () {
+      return frameCount.get();
+    }
+
+    public long getAverageFrameTime (TimeUnit unit) {
+      long frameCount = this.frameCount.get();
+      return frameCount > 0 ? unit.convert(totalFrameTimeNanos.get() / frameCount, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    public long getMaxFrameTime (TimeUnit unit) {
+      return unit.convert(maxFrameTimeNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return Number of frames that were decoded after their deadline
+     */
+    public long getLateCount () {
+      return lateCount.get();
+    }
+
+    /**
+     * @return Number of frame requests that were skipped, because they were either redundant or too late
+     */
+    public long getDroppedCount () {
+      return droppedCount.get();
+    }
+
+    @Override
+    @NonNull
+    public String toString () {
+      return "frames: " + getFrameCount() +
+        ", avg: " + getAverageFrameTime(TimeUnit.MICROSECONDS) + "us" +
+        ", max: " + getMaxFrameTime(TimeUnit.MICROSECONDS) + "us" +
+        ", late: " + getLateCount() +
+        ", dropped: " + getDroppedCount();
+    }
+  }
+
+  public final class Lane implements Comparable<Lane> {
+    private final GifActor actor;
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+    private final FrameStats stats = new FrameStats();
+    private final long sequence;
+    private int worker;
+    private long deadline;
+    private boolean isQueued, isRunning, isClosed;
+    private int pendingFrameCount;
+
+    private Lane (GifActor actor, int worker, long sequence) {
+      this.actor = actor;
+      this.worker = worker;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo (Lane other) {
+      return deadline != other.deadline ? Long.compare(deadline, other.deadline) : Long.compare(sequence, other.sequence);
+    }
+
+    public FrameStats getStats () {
+      return stats;
+    }
+
+    // GifBridge thread
+    public void startDecoding (String path) {
+      submit(this, JOB_START_DECODING, path, SystemClock.uptimeMillis());
+    }
+
+    // GifBridge thread
+    public void prepareStartFrame () {
+      submit(this, JOB_PREPARE_START_FRAME, null, SystemClock.uptimeMillis());
+    }
+
+    // Any thread
+    public void prepareNextFrame (long deadline) {
+      submit(this, JOB_PREPARE_NEXT_FRAME, null, deadline);
+    }
+
+    // GifBridge thread
+    public void onDestroy () {
+      submit(this, JOB_DESTROY, null, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Unregisters the lane without running any jobs, e.g. when actor was cancelled before decoding started.
+     */
+    // GifBridge thread
+    public void close () {
+      lock.lock();
+      try {
+        closeLane(this);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition hasWork = lock.newCondition();
+  private final PriorityQueue<Lane>[] queues;
+  private final int[] laneCounts;
+  private long laneSequence;
+  private int idleWorkerCount;
+  private long stolenCount;
+
+  @SuppressWarnings("unchecked")
+  public GifFrameScheduler (int workerCount) {
+    this.queues = new PriorityQueue[workerCount];
+    this.laneCounts = new int[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      queues[i] = new PriorityQueue<>();
+      final int workerId = i;
+      Thread thread = new Thread(() -> runWorker(workerId), "GifFrameWorker#" + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  public static int defaultWorkerCount () {
+    return Math.max(2, Math.min(6, Runtime.getRuntime().availableProcessors() - 2));
+  }
+
+  public Lane register (GifActor actor) {
+    lock.lock();
+    try {
+      int worker = 0;
+      for (int i = 1; i < laneCounts.length; i++) {
+        if (laneCounts[i] < laneCounts[worker]) {
+          worker = i;
+        }
+      }
+      laneCounts[worker]++;
+      return new Lane(actor, worker, ++laneSequence);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getStolenCount () {
+    lock.lock();
+    try {
+      return stolenCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void submit (Lane lane, int type, String path, long deadline) {
+    lock.lock();
+    try {
+      if (lane.isClosed) {
+        return;
+      }
+      if (type == JOB_PREPARE_NEXT_FRAME) {
+        if (lane.pendingFrameCount > 0) {
+          // Frame request is already pending, no need to queue another one
+          lane.stats.onDropped();
+          return;
+        }
+        lane.pendingFrameCount++;
+      }
+      lane.jobs.offer(new Job(type, path, deadline));
+      if (!lane.isQueued && !lane.isRunning) {
+        enqueue(lane);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void closeLane (Lane lane) {
+    if (!lane.isClosed) {
+      lane.isClosed = true;
+      lane.jobs.clear();
+      laneCounts[lane.worker]--;
+    }
+  }
+
+  private void enqueue (Lane lane) {
+    Job job = lane.jobs.peek();
+    lane.deadline = job != null ? job.deadline : SystemClock.uptimeMillis();
+    lane.isQueued = true;
+    queues[lane.worker].offer(lane);
+    if (idleWorkerCount > 0) {
+      hasWork.signalAll();
+    }
+  }
+
+  private Lane takeLane (int workerId) throws InterruptedException {
+    while (true) {
+      Lane lane = queues[workerId].poll();
+      if (lane == null) {
+        lane = steal(workerId);
+      }
+      if (lane != null) {
+        lane.isQueued = false;
+        if (lane.isClosed) {
+          // closeLane already released its slot in laneCounts
+          continue;
+        }
+        return lane;
+      }
+      idleWorkerCount++;
+      try {
+        hasWork.await();
+      } finally {
+        idleWorkerCount--;
+      }
+    }
+  }
+
+  private Lane steal (int workerId) {
+    int victim = -1;
+    int victimSize = 0;
+    for (int i = 0; i < queues.length; i++) {
+      if (i != workerId && queues[i].size() > victimSize) {
+        victim = i;
+        victimSize = queues[i].size();
+      }
+    }
+    if (victim == -1) {
+      return null;
+    }
+    Lane lane = queues[victim].poll();
+    if (lane != null && !lane.isClosed) {
+      laneCounts[lane.worker]--;
+      laneCounts[workerId]++;
+      lane.worker = workerId;
+      stolenCount++;
+    }
+    return lane;
+  }
+
+  private void runWorker (int workerId) {
+    while (true) {
+      final Lane lane;
+      final Job job;
+      lock.lock();
+      try {
+        lane = takeLane(workerId);
+        job = lane.jobs.poll();
+        lane.isRunning = true;
+        if (job != null && job.type == JOB_PREPARE_NEXT_FRAME) {
+          lane.pendingFrameCount--;
+        }
+      } catch (InterruptedException e) {
+        Log.e(Log.TAG_GIF_LOADER, "GifFrameScheduler worker interrupted", e);
+        return;
+      } finally {
+        lock.unlock();
+      }
+      try {
+        if (job != null) {
+          runJob(lane, job);
+        }
+      } catch (Throwable t) {
+        Log.e(Log.TAG_GIF_LOADER, "Frame job failed", t);
+      }
+      lock.lock();
+      try {
+        lane.isRunning = false;
+        if (job != null && job.type == JOB_DESTROY) {
+          closeLane(lane);
+        } else if (!lane.jobs.isEmpty()) {
+          enqueue(lane);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private static void runJob (Lane lane, Job job) {
+    final GifActor actor = lane.actor;
+    switch (job.type) {
+      case JOB_START_DECODING: {
+        actor.startDecoding(job.path);
+        break;
+      }
+      case JOB_PREPARE_START_FRAME: {
+        actor.prepareStartFrame();
+        break;
+      }
+      case JOB_PREPARE_NEXT_FRAME: {
+        final long now = SystemClock.uptimeMillis();
+        final boolean isLate = now > job.deadline;
+        if (isLate && actor.hasPendingFrame()) {
+          // Decoded frame is still waiting to be displayed, a new request will come once it is applied
+          lane.stats.onDropped();
+          break;
+        }
+        final long startTime = System.nanoTime();
+        actor.prepareNextFrame();
+        lane.stats.onFrame(System.nanoTime() - startTime, isLate);
+        break;
+      }
+      case JOB_DESTROY: {
+        actor.onDestroy();
+        break;
+      }
+    }
+  }
+}
@@ -85,7 +85,10 @@ public class GifState {
   public boolean init (FrameReader reader, int numInit, Bitmap.Config config) {
     synchronized (busy) {
       for (int i = 0; i < queueSize; i++) {
-        Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        Bitmap bitmap = GifFramePool.instance().obtain(width, height, config);
+        if (bitmap == null) {
+          bitmap = Bitmap.createBitmap(width, height, config);
+        }
         if (bitmap == null) {
           return false;
         }
@@ -148,14 +151,17 @@ public class GifState {
   }
 
   private void recycleImpl () {
-    for (Frame bitmap : busy) {
-      if (bitmap != null && !bitmap.isRecycled()) {
-        bitmap.recycle();
+    // Receivers draw only within this lock and only from busy frames,
+    // so once both queues are cleared, bitmaps can be reused by other animations
+    final GifFramePool pool = GifFramePool.instance();
+    for (Frame frame : busy) {
+      if (frame != null) {
+        pool.release(frame.bitmap);
       }
     }
-    for (Frame bitmap : free) {
-      if (bitmap != null && !bitmap.isRecycled()) {
-        bitmap.recycle();
+    for (Frame frame : free) {
+      if (frame != null) {
+        pool.release(frame.bitmap);
       }
     }
     busy.clear();
@@ -19,14 +19,18 @@ import android.os.SystemClock;
 
 import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.core.BaseThread;
+import org.thunderdog.challegram.core.LazyInit;
 import org.thunderdog.challegram.data.TD;
 import org.thunderdog.challegram.telegram.TdlibAccount;
 import org.thunderdog.challegram.unsorted.Settings;
+import org.thunderdog.challegram.unsorted.SettingsDatabase;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.TreeSet;
 
 import me.vkryl.core.FileUtils;
 import me.vkryl.core.StringUtils;
@@ -34,27 +38,36 @@ import me.vkryl.leveldb.LevelDB;
 
 @Deprecated
 public class LottieCache {
-  private static LottieCache instance;
+  private static final LazyInit<LottieCache> instance = new LazyInit<>("LottieCache", LottieCache::new);
 
   public static LottieCache instance () {
-    if (instance == null) {
-      synchronized (LottieCache.class) {
-        if (instance == null) {
-          instance = new LottieCache();
-        }
-      }
-    }
-    return instance;
+    return instance.get();
   }
 
-  private final BaseThread gcThread = new BaseThread("LottieCacheGcThread");
-  private final BaseThread[] threadPool = new BaseThread[4];
+  private final LazyInit<BaseThread> gcThread = newThread("LottieCacheGcThread");
+  @SuppressWarnings("unchecked")
+  private final LazyInit<BaseThread>[] threadPool = new LazyInit[] {
+    newThread("LottieCacheThread-0"),
+    newThread("LottieCacheThread-1"),
+    newThread("LottieCacheThread-2"),
+    newThread("LottieCacheThread-3")
+  };
 
   private LottieCache () { }
 
+  private static LazyInit<BaseThread> newThread (String name) {
+    return new LazyInit<>(name, () -> new BaseThread(name));
+  }
+
   public boolean clear () {
     if (FileUtils.delete(LottieCache.getCacheDir(), true)) {
       Settings.instance().pmc().removeByPrefix(LOTTIE_KEY_PREFIX);
+      gcThread.get().post(() -> {
+        synchronized (entries) {
+          entries.clear();
+          entriesByTime.clear();
+        }
+      }, 0);
       cancelScheduledGc();
       return true;
     }
@@ -101,7 +114,8 @@ public class LottieCache {
 
     @Override
     public int compareTo (Entry o) {
-      return Long.compare(time, o.time);
+      int result = Long.compare(time, o.time);
+      return result != 0 ? result : key.compareTo(o.key);
     }
 
     public File toFile (File cacheDir) {
@@ -109,105 +123,156 @@ public class LottieCache {
     }
   }
 
-  private void limitFileCount (int count, String key) {
-    gcThread.post(() -> {
-      final LevelDB db = Settings.instance().pmc();
-      final File cacheDir = getCacheDir();
-      List<Entry> entries = new ArrayList<>();
-      List<String> brokenKeys = null;
-      for (LevelDB.Entry entry : db.find(LOTTIE_KEY_PREFIX)) {
-        Entry e;
-        try {
-          e = new Entry(entry.key(), entry.asLong());
-        } catch (IllegalArgumentException t) {
-          Log.e("Bad lottie cache key: %s", t);
-          if (brokenKeys == null)
-            brokenKeys = new ArrayList<>();
-          brokenKeys.add(entry.key());
-          continue;
-        }
-        entries.add(e);
+  // In-memory index of all cache files with expiry time, guarded by entries.
+  // Loaded from LevelDB once on gcThread, then updated along with the persisted keys,
+  // so admission, eviction and expiry take O(log n) instead of a full keyspace scan and sort.
+  // Used keys are added synchronously by getCacheFile, so checkFile never sees a fresh file as expired
+
+  private final HashMap<String, Entry> entries = new HashMap<>();
+  private final TreeSet<Entry> entriesByTime = new TreeSet<>();
+  private boolean isIndexLoaded, isThumbnailsCleared;
+
+  private void ensureIndexLoaded () {
+    // Called within synchronized (entries)
+    if (isIndexLoaded)
+      return;
+    isIndexLoaded = true;
+    final SettingsDatabase db = Settings.instance().pmc();
+    List<String> brokenKeys = null;
+    for (LevelDB.Entry entry : db.find(LOTTIE_KEY_PREFIX)) {
+      Entry e;
+      try {
+        e = new Entry(entry.key(), entry.asLong());
+      } catch (IllegalArgumentException t) {
+        Log.e("Bad lottie cache key: %s", t);
+        if (brokenKeys == null)
+          brokenKeys = new ArrayList<>();
+        brokenKeys.add(entry.key());
+        continue;
       }
-      if (brokenKeys != null) {
-        db.edit();
-        for (String brokenKey : brokenKeys) {
-          db.remove(brokenKey);
-        }
-        db.apply();
+      if (!entries.containsKey(e.key)) {
+        // Keys used before the index was loaded are newer than the persisted ones
+        addEntry(e);
       }
-      Collections.sort(entries);
-      int extraCount = (entries.size() - count);
-      int index = 0;
-      SharedPreferences.Editor editor = null;
-      while (extraCount > 0 && index < entries.size()) {
-        Entry entry = entries.get(index++);
-        if (!entry.key.equals(key)) {
-          if (editor == null)
-            editor = db.edit();
-          delete(cacheDir, entry, editor);
-          extraCount--;
-        }
+    }
+    if (brokenKeys != null) {
+      db.edit();
+      for (String brokenKey : brokenKeys) {
+        db.remove(brokenKey);
       }
-      if (editor != null) {
-        editor.apply();
+      db.apply();
+    }
+  }
+
+  private void addEntry (Entry entry) {
+    Entry prevEntry = entries.put(entry.key, entry);
+    if (prevEntry != null) {
+      entriesByTime.remove(prevEntry);
+    }
+    entriesByTime.add(entry);
+  }
+
+  private void removeEntry (Entry entry) {
+    entries.remove(entry.key);
+    entriesByTime.remove(entry);
+  }
+
+  private void onCacheFileUsed (String key, long time, int maxCount) {
+    Entry entry;
+    try {
+      entry = new Entry(key, time);
+    } catch (IllegalArgumentException t) {
+      Log.e("Bad lottie cache key: %s", t);
+      return;
+    }
+    // Registered before the key is persisted, so concurrent checkFile or gc don't delete the file that is about to be used
+    synchronized (entries) {
+      addEntry(entry);
+    }
+    Settings.instance().pmc().putLong(key, time);
+    gcThread.get().post(() -> {
+      synchronized (entries) {
+        ensureIndexLoaded();
+        limitFileCount(maxCount, key);
       }
     }, 0);
   }
 
-  private static void delete (File cacheDir, Entry entry, SharedPreferences.Editor editor) {
+  private void limitFileCount (int count, String key) {
+    // Called on gcThread within synchronized (entries)
+    int extraCount = entries.size() - count;
+    if (extraCount <= 0)
+      return;
+    final File cacheDir = getCacheDir();
+    SharedPreferences.Editor editor = null;
+    Iterator<Entry> itr = entriesByTime.iterator();
+    while (extraCount > 0 && itr.hasNext()) {
+      Entry entry = itr.next();
+      if (!entry.key.equals(key)) {
+        if (editor == null)
+          editor = Settings.instance().pmc().edit();
+        if (delete(cacheDir, entry, editor)) {
+          itr.remove();
+          entries.remove(entry.key);
+        }
+        extraCount--;
+      }
+    }
+    if (editor != null) {
+      editor.apply();
+    }
+  }
+
+  private static boolean delete (File cacheDir, Entry entry, SharedPreferences.Editor editor) {
     File file = entry.toFile(cacheDir);
     if (!file.exists() || file.delete()) {
       editor.remove(entry.key);
+      return true;
     }
+    return false;
   }
 
   public void gc () {
-    gcThread.post(() -> {
-      long nextTime = -1;
+    gcThread.get().post(() -> {
       final File cacheDir = getCacheDir();
 
-      File[] accountDirs = cacheDir.listFiles();
-      if (accountDirs != null) {
-        for (File accountDir : accountDirs) {
-          File[] thumbnailDirs = accountDir.listFiles((dir, name) -> "0".equals(name) || name.startsWith("thumbs"));
-          if (thumbnailDirs != null) {
-            for (File thumbnailDir : thumbnailDirs) {
-              FileUtils.delete(thumbnailDir, true);
+      if (!isThumbnailsCleared) {
+        // Thumbnails are removed once they are loaded (see checkFile),
+        // so only files left by the previous process have to be found
+        isThumbnailsCleared = true;
+        File[] accountDirs = cacheDir.listFiles();
+        if (accountDirs != null) {
+          for (File accountDir : accountDirs) {
+            File[] thumbnailDirs = accountDir.listFiles((dir, name) -> "0".equals(name) || name.startsWith("thumbs"));
+            if (thumbnailDirs != null) {
+              for (File thumbnailDir : thumbnailDirs) {
+                FileUtils.delete(thumbnailDir, true);
+              }
             }
           }
         }
       }
 
-      long now = System.currentTimeMillis();
-      final LevelDB db = Settings.instance().pmc();
-      SharedPreferences.Editor editor = null;
-      List<String> brokenKeys = null;
-      for (LevelDB.Entry entry : db.find(LOTTIE_KEY_PREFIX)) {
-        Entry e;
-        try {
-          e = new Entry(entry.key(), entry.asLong());
-        } catch (IllegalArgumentException t) {
-          Log.e("Bad lottie cache key: %s", t);
-          if (brokenKeys == null)
-            brokenKeys = new ArrayList<>();
-          brokenKeys.add(entry.key());
-          continue;
-        }
-        if (now >= e.time) {
+      synchronized (entries) {
+        ensureIndexLoaded();
+        long now = System.currentTimeMillis();
+        SharedPreferences.Editor editor = null;
+        while (!entriesByTime.isEmpty() && now >= entriesByTime.first().time) {
+          Entry entry = entriesByTime.pollFirst();
           if (editor == null)
-            editor = db.edit();
-          delete(cacheDir, e, editor);
+            editor = Settings.instance().pmc().edit();
+          // Key of the file that couldn't be deleted stays persisted, so it's retried after restart
+          delete(cacheDir, entry, editor);
+          entries.remove(entry.key);
+        }
+        if (editor != null)
+          editor.apply();
+        if (!entriesByTime.isEmpty()) {
+          scheduleGc(entriesByTime.first().time - now, true);
         } else {
-          nextTime = nextTime == -1 ? e.time : Math.min(nextTime, e.time);
+          cancelScheduledGc();
         }
       }
-      if (editor != null)
-        editor.apply();
-      if (nextTime != -1) {
-        scheduleGc(nextTime - now, true);
-      } else {
-        cancelScheduledGc();
-      }
     }, 0);
   }
 
@@ -217,13 +282,13 @@ public class LottieCache {
     if (scheduledAt == 0 || (SystemClock.uptimeMillis() + timeout < scheduledAt) || force) {
       cancelScheduledGc();
       scheduledAt = SystemClock.uptimeMillis() + timeout;
-      gcThread.post(gcRunnable, timeout);
+      gcThread.get().post(gcRunnable, timeout);
     }
   }
 
   private void cancelScheduledGc () {
     if (scheduledAt != 0) {
-      gcThread.getHandler().removeCallbacks(gcRunnable);
+      gcThread.get().getHandler().removeCallbacks(gcRunnable);
       scheduledAt = 0;
     }
   }
@@ -245,10 +310,7 @@ public class LottieCache {
   }
 
   public BaseThread thread (int optimizationLevel) {
-    if (threadPool[optimizationLevel] == null) {
-      threadPool[optimizationLevel] = new BaseThread("LottieCacheThread-" + optimizationLevel);
-    }
-    return threadPool[optimizationLevel];
+    return threadPool[optimizationLevel].get();
   }
 
   private static final String LOTTIE_KEY_PREFIX = "lottie_";
@@ -265,8 +327,8 @@ public class LottieCache {
     File originalFile = new File(file.getFilePath());
     if (keepAliveMs > 0) {
       String key = getCacheFileKey(accountId, optimize, size, colorKey, originalFile.getName());
-      Settings.instance().pmc().putLong(key, System.currentTimeMillis() + keepAliveMs);
-      instance().limitFileCount(maxCount, key);
+      long time = System.currentTimeMillis() + keepAliveMs;
+      instance().onCacheFileUsed(key, time, maxCount);
       instance().scheduleGc(keepAliveMs, false);
     }
     return new File(cacheDir, originalFile.getName());
@@ -280,17 +342,23 @@ public class LottieCache {
   }
 
   public void checkFile (GifFile file, File cacheFile, boolean optimize, int size, int fitzpatrickType) {
-    gcThread.post(() -> {
+    gcThread.get().post(() -> {
       if (optimize) {
         cacheFile.delete();
       } else {
         String colorKey = fitzpatrickType != 0 ? Integer.toString(fitzpatrickType) : null;
         String key = getCacheFileKey(file.tdlib != null ? file.tdlib.accountId() : TdlibAccount.NO_ID, optimize, size, colorKey, new File(file.getFilePath()).getName());
-        long time = Settings.instance().getLong(key, 0);
-        if (time == 0 || System.currentTimeMillis() >= time) {
-          cacheFile.delete();
-          Settings.instance().remove(key);
-          gc();
+        synchronized (entries) {
+          ensureIndexLoaded();
+          Entry entry = entries.get(key);
+          if (entry == null || System.currentTimeMillis() >= entry.time) {
+            cacheFile.delete();
+            Settings.instance().pmc().remove(key);
+            if (entry != null) {
+              removeEntry(entry);
+            }
+            gc();
+          }
         }
       }
     }, 0);
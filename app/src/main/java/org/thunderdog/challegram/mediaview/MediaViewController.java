@@ -80,6 +80,7 @@ import org.thunderdog.challegram.data.TGWebPage;
 import org.thunderdog.challegram.loader.AvatarReceiver;
 import org.thunderdog.challegram.loader.DoubleImageReceiver;
 import org.thunderdog.challegram.loader.ImageCache;
+import org.thunderdog.challegram.loader.ImageDecodeQueue;
 import org.thunderdog.challegram.loader.ImageFile;
 import org.thunderdog.challegram.loader.ImageFilteredFile;
 import org.thunderdog.challegram.loader.ImageGalleryFile;
@@ -5718,7 +5719,7 @@ public class MediaViewController extends ViewController<MediaViewController.Args
       });
     } else {
       if (reference == null) {
-        reference = new WatcherReference(this);
+        reference = new WatcherReference(this, ImageDecodeQueue.Priority.VISIBLE);
       }
       ImageLoader.instance().requestFile(sourceFile, reference);
     }
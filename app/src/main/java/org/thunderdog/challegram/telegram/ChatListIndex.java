@@ -0,0 +1,277 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.drinkless.tdlib.TdApi;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import tgx.td.Td;
+
+/**
+ * Sorted chat list backed by a size-augmented treap and a chatId index.
+ *
+ * Lookup by chat identifier, insertion, removal, position change and index resolution
+ * are all O(log n), while iteration order and indices stay identical
+ * to the previous {@code ArrayList} + {@code Collections.binarySearch} approach.
+ */
+final class ChatListIndex implements Iterable<TdlibChatList.Entry> {
+  private static final class Node {
+    final TdlibChatList.Entry entry;
+    final int priority;
+
+    Node left, right;
+    int size = 1;
+
+    Node (TdlibChatList.Entry entry, int priority) {
+      this.entry = entry;
+      this.priority = priority;
+    }
+
+    void reset () {
+      left = right = null;
+      size = 1;
+    }
+  }
+
+  private final Comparator<TdlibChatList.Entry> comparator;
+  private final HashMap<Long, Node> nodes = new HashMap<>();
+  private Node root;
+  private int seed = 0x2545F491;
+
+  ChatListIndex (Comparator<TdlibChatList.Entry> comparator) {
+    this.comparator = comparator;
+  }
+
+  public int size () {
+    return size(root);
+  }
+
+  public boolean isEmpty () {
+    return root == null;
+  }
+
+  @Nullable
+  public TdlibChatList.Entry find (long chatId) {
+    Node node = nodes.get(chatId);
+    return node != null ? node.entry : null;
+  }
+
+  public int indexOf (long chatId) {
+    Node node = nodes.get(chatId);
+    return node != null ? rankOf(node.entry) : -1;
+  }
+
+  public TdlibChatList.Entry get (int index) {
+    if (index < 0 || index >= size())
+      throw new IndexOutOfBoundsException(Integer.toString(index));
+    Node node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index > leftSize) {
+        index -= leftSize + 1;
+        node = node.right;
+      } else {
+        return node.entry;
+      }
+    }
+  }
+
+  /**
+   * @return index at which entry has been inserted
+   */
+  public int add (TdlibChatList.Entry entry) {
+    if (nodes.containsKey(entry.chat.id))
+      throw new IllegalStateException();
+    Node node = new Node(entry, nextPriority());
+    root = insert(root, node);
+    nodes.put(entry.chat.id, node);
+    return rankOf(entry);
+  }
+
+  /**
+   * @return index from which entry has been removed, or -1, if there was no such entry
+   */
+  public int remove (long chatId) {
+    Node node = nodes.remove(chatId);
+    if (node == null)
+      return -1;
+    int index = rankOf(node.entry);
+    root = delete(root, node.entry);
+    return index;
+  }
+
+  /**
+   * Updates effective position of the entry and moves it to the new place.
+   *
+   * @return new index of the entry
+   */
+  public int reposition (long chatId, TdApi.ChatPosition position) {
+    Node node = nodes.get(chatId);
+    if (node == null)
+      throw new IllegalStateException();
+    root = delete(root, node.entry);
+    Td.copyTo(position, node.entry.effectivePosition);
+    node.reset();
+    root = insert(root, node);
+    return rankOf(node.entry);
+  }
+
+  @NonNull
+  @Override
+  public Iterator<TdlibChatList.Entry> iterator () {
+    return new Iterator<TdlibChatList.Entry>() {
+      private final ArrayList<Node> stack = new ArrayList<>();
+
+      {
+        pushLeft(root);
+      }
+
+      private void pushLeft (Node node) {
+        while (node != null) {
+          stack.add(node);
+          node = node.left;
+        }
+      }
+
+      @Override
+      public boolean hasNext () {
+        return !stack.isEmpty();
+      }
+
+      @Override
+      public TdlibChatList.Entry next () {
+        if (stack.isEmpty())
+          throw new NoSuchElementException();
+        Node node = stack.remove(stack.size() - 1);
+        pushLeft(node.right);
+        return node.entry;
+      }
+    };
+  }
+
+  // Internal
+
+  private int nextPriority () {
+    // xorshift32, deterministic to keep behavior reproducible
+    int x = seed;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    return seed = x;
+  }
+
+  private static int size (@Nullable Node node) {
+    return node != null ? node.size : 0;
+  }
+
+  private static void update (Node node) {
+    node.size = size(node.left) + size(node.right) + 1;
+  }
+
+  private int rankOf (TdlibChatList.Entry entry) {
+    int rank = 0;
+    Node node = root;
+    while (node != null) {
+      int cmp = comparator.compare(entry, node.entry);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        rank += size(node.left) + 1;
+        node = node.right;
+      } else {
+        return rank + size(node.left);
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  private static Node rotateRight (Node node) {
+    Node left = node.left;
+    node.left = left.right;
+    update(node);
+    left.right = node;
+    update(left);
+    return left;
+  }
+
+  private static Node rotateLeft (Node node) {
+    Node right = node.right;
+    node.right = right.left;
+    update(node);
+    right.left = node;
+    update(right);
+    return right;
+  }
+
+  private Node insert (@Nullable Node parent, Node node) {
+    if (parent == null)
+      return node;
+    int cmp = comparator.compare(node.entry, parent.entry);
+    if (cmp == 0)
+      throw new IllegalStateException();
+    if (cmp < 0) {
+      parent.left = insert(parent.left, node);
+      if (parent.left.priority > parent.priority)
+        return rotateRight(parent);
+    } else {
+      parent.right = insert(parent.right, node);
+      if (parent.right.priority > parent.priority)
+        return rotateLeft(parent);
+    }
+    update(parent);
+    return parent;
+  }
+
+  private Node delete (@Nullable Node parent, TdlibChatList.Entry entry) {
+    if (parent == null)
+      throw new IllegalStateException();
+    int cmp = comparator.compare(entry, parent.entry);
+    if (cmp == 0)
+      return merge(parent.left, parent.right);
+    if (cmp < 0) {
+      parent.left = delete(parent.left, entry);
+    } else {
+      parent.right = delete(parent.right, entry);
+    }
+    update(parent);
+    return parent;
+  }
+
+  private static Node merge (@Nullable Node left, @Nullable Node right) {
+    if (left == null)
+      return right;
+    if (right == null)
+      return left;
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      update(left);
+      return left;
+    } else {
+      right.left = merge(left, right.left);
+      update(right);
+      return right;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import org.thunderdog.challegram.data.TD;
 import org.thunderdog.challegram.loader.ImageFileLocal;
 import org.thunderdog.challegram.tool.UI;
 import org.thunderdog.challegram.unsorted.Settings;
+import org.thunderdog.challegram.unsorted.SettingsDatabase;
 
 import java.io.File;
 import java.io.IOException;
@@ -194,7 +195,7 @@ public class DisplayInformation {
 
   void storeEmojiStatusMetadata (long customEmojiId, @Nullable TdApi.Sticker sticker) {
     // Called when metadata about emoji status was loaded
-    LevelDB pmc = Settings.instance().pmc();
+    SettingsDatabase pmc = Settings.instance().pmc();
     if (sticker != null) {
       this.emojiStatusCache = new EmojiStatusCache(customEmojiId, sticker, false);
       this.emojiStatusCache.saveAll(pmc, prefix);
@@ -205,7 +206,7 @@ public class DisplayInformation {
   }
 
   static void storeEmojiStatusMetadata (String prefix, long customEmojiId, @Nullable TdApi.Sticker sticker) {
-    LevelDB pmc = Settings.instance().pmc();
+    SettingsDatabase pmc = Settings.instance().pmc();
     if (sticker != null) {
       EmojiStatusCache cache = new EmojiStatusCache(customEmojiId, sticker, false);
       cache.saveAll(pmc, prefix);
@@ -238,7 +239,7 @@ public class DisplayInformation {
   }
 
   private void saveAll () {
-    LevelDB editor = Settings.instance().edit();
+    SettingsDatabase editor = Settings.instance().edit();
     editor.putLong(prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_ID, userId);
     editor.putLong(prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_FLAGS, flags);
     editor.putString(prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_NAME1, firstName);
@@ -489,7 +490,7 @@ public class DisplayInformation {
         return new EmojiStatusCache(remoteEmojiStatusId, remoteEmojiStatus, false);
       }
 
-      LevelDB pmc = Settings.instance().pmc();
+      SettingsDatabase pmc = Settings.instance().pmc();
       long cachedEmojiStatusId = pmc.getLong(prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_EMOJI_STATUS_PREFIX +
         Settings.KEY_EMOJI_STATUS_SUFFIX_ID,
         0
@@ -886,7 +887,7 @@ public class DisplayInformation {
       try {
         prefix = prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_EMOJI_STATUS_PREFIX;
 
-        LevelDB pmc = Settings.instance().pmc();
+        SettingsDatabase pmc = Settings.instance().pmc();
         byte[] metadata = pmc.getByteArray(prefix + Settings.KEY_EMOJI_STATUS_SUFFIX_METADATA);
         TdApi.Sticker emojiStatus = deserializeEmojiStatusMetadata(customEmojiId, metadata);
         if (emojiStatus == null) {
@@ -958,7 +959,7 @@ public class DisplayInformation {
       return blob.toByteArray();
     }
 
-    public static void saveStickerFile (LevelDB editor, String prefix, long customEmojiId, TdApi.File sticker) {
+    public static void saveStickerFile (SettingsDatabase editor, String prefix, long customEmojiId, TdApi.File sticker) {
       byte[] fileData = serializeStickerFile(customEmojiId, sticker);
       if (fileData != null) {
         editor.putByteArray(prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_EMOJI_STATUS_PREFIX +
@@ -972,7 +973,7 @@ public class DisplayInformation {
       }
     }
 
-    public static void saveThumbnail (LevelDB editor, String prefix, long customEmojiId, TdApi.Thumbnail thumbnail) {
+    public static void saveThumbnail (SettingsDatabase editor, String prefix, long customEmojiId, TdApi.Thumbnail thumbnail) {
       byte[] thumbnailData = serializeThumbnail(customEmojiId, thumbnail);
       if (thumbnailData != null) {
         editor.putByteArray(prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_EMOJI_STATUS_PREFIX +
@@ -986,7 +987,7 @@ public class DisplayInformation {
       }
     }
 
-    public void saveAll (LevelDB editor, String prefix) {
+    public void saveAll (SettingsDatabase editor, String prefix) {
       editor.putLong(prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_EMOJI_STATUS_PREFIX +
         Settings.KEY_EMOJI_STATUS_SUFFIX_ID,
         emojiStatusId
@@ -1002,7 +1003,7 @@ public class DisplayInformation {
       saveThumbnail(editor, prefix, emojiStatusId, sticker.thumbnail);
     }
 
-    public static void removeAll (LevelDB editor, String prefix) {
+    public static void removeAll (SettingsDatabase editor, String prefix) {
       editor.removeByPrefix(prefix + Settings.KEY_ACCOUNT_INFO_SUFFIX_EMOJI_STATUS_PREFIX);
     }
   }
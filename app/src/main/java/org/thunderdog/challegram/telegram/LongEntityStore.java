@@ -0,0 +1,258 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open-addressing map with primitive {@code long} keys, used to store TDLib entities.
+ *
+ * Reads are lock-free and may be performed from any thread.
+ * Writes must be serialized by the caller (e.g. performed under the same lock or on the TDLib thread).
+ *
+ * Key {@code 0} is reserved and never stored.
+ */
+public final class LongEntityStore<T> implements Iterable<T> {
+  private static final int MIN_CAPACITY = 16;
+
+  private static final class Table {
+    final AtomicLongArray keys;
+    final AtomicReferenceArray<Object> values;
+    final int mask;
+
+    Table (int capacity) {
+      this.keys = new AtomicLongArray(capacity);
+      this.values = new AtomicReferenceArray<>(capacity);
+      this.mask = capacity - 1;
+    }
+  }
+
+  private volatile Table table;
+  private volatile int size;
+  private int usedSlots;
+
+  public LongEntityStore () {
+    this(MIN_CAPACITY);
+  }
+
+  public LongEntityStore (int initialCapacity) {
+    this.table = new Table(capacityFor(initialCapacity));
+  }
+
+  private static int capacityFor (int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private static int hash (long key) {
+    // fmix64 from MurmurHash3
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
+  @AnyThread
+  public int size () {
+    return size;
+  }
+
+  @AnyThread
+  public boolean isEmpty () {
+    return size == 0;
+  }
+
+  @AnyThread
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public T get (long key) {
+    if (key == 0) {
+      return null;
+    }
+    final Table table = this.table;
+    int index = hash(key) & table.mask;
+    while (true) {
+      long existingKey = table.keys.get(index);
+      if (existingKey == 0) {
+        return null;
+      }
+      if (existingKey == key) {
+        return (T) table.values.get(index);
+      }
+      index = (index + 1) & table.mask;
+    }
+  }
+
+  @AnyThread
+  public boolean containsKey (long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @return Previous value associated with the key
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public T put (long key, @NonNull T value) {
+    if (key == 0)
+      throw new IllegalArgumentException();
+    //noinspection ConstantConditions
+    if (value == null)
+      throw new IllegalArgumentException();
+    Table table = this.table;
+    int index = hash(key) & table.mask;
+    while (true) {
+      long existingKey = table.keys.get(index);
+      if (existingKey == key) {
+        T prevValue = (T) table.values.getAndSet(index, value);
+        if (prevValue == null) {
+          size++;
+        }
+        return prevValue;
+      }
+      if (existingKey == 0) {
+        break;
+      }
+      index = (index + 1) & table.mask;
+    }
+    if ((usedSlots + 1) * 4 > (table.mask + 1) * 3) {
+      table = rehash(size + 1);
+      index = hash(key) & table.mask;
+      while (table.keys.get(index) != 0) {
+        index = (index + 1) & table.mask;
+      }
+    }
+    // Value must become visible before the key, so readers never observe a key without its value
+    table.values.set(index, value);
+    table.keys.set(index, key);
+    usedSlots++;
+    size++;
+    return null;
+  }
+
+  /**
+   * Removed entries leave a tombstone that is dropped on the next rehash.
+   *
+   * @return Removed value
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public T remove (long key) {
+    if (key == 0) {
+      return null;
+    }
+    final Table table = this.table;
+    int index = hash(key) & table.mask;
+    while (true) {
+      long existingKey = table.keys.get(index);
+      if (existingKey == 0) {
+        return null;
+      }
+      if (existingKey == key) {
+        T prevValue = (T) table.values.getAndSet(index, null);
+        if (prevValue != null) {
+          size--;
+        }
+        return prevValue;
+      }
+      index = (index + 1) & table.mask;
+    }
+  }
+
+  public void clear () {
+    this.table = new Table(MIN_CAPACITY);
+    this.usedSlots = 0;
+    this.size = 0;
+  }
+
+  private Table rehash (int expectedSize) {
+    final Table oldTable = this.table;
+    final Table newTable = new Table(capacityFor(expectedSize));
+    int usedSlots = 0;
+    final int oldCapacity = oldTable.mask + 1;
+    for (int i = 0; i < oldCapacity; i++) {
+      long key = oldTable.keys.get(i);
+      Object value = oldTable.values.get(i);
+      if (key == 0 || value == null) {
+        continue;
+      }
+      int index = hash(key) & newTable.mask;
+      while (newTable.keys.get(index) != 0) {
+        index = (index + 1) & newTable.mask;
+      }
+      newTable.values.set(index, value);
+      newTable.keys.set(index, key);
+      usedSlots++;
+    }
+    this.usedSlots = usedSlots;
+    this.table = newTable;
+    return newTable;
+  }
+
+  /**
+   * Iterates over values present in the store at the moment of the call.
+   * Concurrent modifications do not cause failures, but might not be reflected.
+   */
+  @AnyThread
+  @NonNull
+  @Override
+  public Iterator<T> iterator () {
+    final Table table = this.table;
+    return new Iterator<T>() {
+      private int index = -1;
+      private Object next = advance();
+
+      private Object advance () {
+        final int capacity = table.mask + 1;
+        while (++index < capacity) {
+          if (table.keys.get(index) != 0) {
+            Object value = table.values.get(index);
+            if (value != null) {
+              return value;
+            }
+          }
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext () {
+        return next != null;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public T next () {
+        if (next == null)
+          throw new NoSuchElementException();
+        T result = (T) next;
+        next = advance();
+        return result;
+      }
+    };
+  }
+}
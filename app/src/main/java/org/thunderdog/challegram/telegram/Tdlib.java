@@ -17,6 +17,7 @@ package org.thunderdog.challegram.telegram;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Debug;
 import android.os.Looper;
 import android.os.Message;
 import android.os.SystemClock;
@@ -56,11 +57,13 @@ import org.thunderdog.challegram.component.chat.TdlibSingleUnreadReactionsManage
 import org.thunderdog.challegram.component.dialogs.ChatView;
 import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.core.Lang;
+import org.thunderdog.challegram.core.StartupTrace;
 import org.thunderdog.challegram.data.AvatarPlaceholder;
 import org.thunderdog.challegram.data.ContentPreview;
 import org.thunderdog.challegram.data.TD;
 import org.thunderdog.challegram.data.TGMessage;
 import org.thunderdog.challegram.data.TGReaction;
+import org.thunderdog.challegram.data.TranslationCache;
 import org.thunderdog.challegram.emoji.Emoji;
 import org.thunderdog.challegram.emoji.EmojiCodes;
 import org.thunderdog.challegram.filegen.TdlibFileGenerationManager;
@@ -245,15 +248,18 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     }
   };
 
-  private static final class ClientHolder implements Client.ResultHandler, Client.ExceptionHandler {
+  private static final class ClientHolder implements Client.ResultHandler, Client.ExceptionHandler, TdlibAccountScheduler.UpdateSource {
     private final Tdlib tdlib;
-    private final Client client;
+    private volatile TdlibClient client;
 
     private final TdlibResourceManager resources, updates;
+    private final TdlibUpdatePipeline updatePipeline;
     private boolean running = true;
 
     private long initializationTime;
-    private long timeWasted;
+    // Written only on TDLib thread, times are in nanoseconds
+    private volatile long updateCount, timeWasted, cpuTimeWasted;
+    private final TdlibAccountScheduler.AccountStats accountStats;
 
     private boolean logged;
 
@@ -271,7 +277,25 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     public ClientHolder (Tdlib tdlib) {
       Log.i(Log.TAG_ACCOUNTS, "Creating client #%d", runningClients.incrementAndGet());
       this.tdlib = tdlib;
-      this.client = Client.create(this, this, this);
+      this.accountStats = tdlib.context.accountScheduler().stats(tdlib.accountId);
+      this.accountStats.setUpdateSource(this);
+      this.updatePipeline = new TdlibUpdatePipeline(tdlib.updateStats, new TdlibUpdatePipeline.Sink() {
+        @Override
+        public void processUpdate (TdApi.Update update) {
+          tdlib.processUpdate(ClientHolder.this, update);
+        }
+
+        @Override
+        public void onBatchStarted () {
+          tdlib.onUpdateBatchStarted();
+        }
+
+        @Override
+        public void onBatchFinished () {
+          tdlib.onUpdateBatchFinished();
+        }
+      }, this::executeOnTdlibThread);
+      this.client = new TdlibClient(Client.create(this, this, this), updatePipeline::flush);
       tdlib.updateParameters(client);
       if (Config.NEED_ONLINE) {
         if (tdlib.isOnline) {
@@ -290,6 +314,15 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
       runOnTdlibThread(after, 0);
     }
 
+    private void executeOnTdlibThread (Runnable task) {
+      if (client != null) {
+        runOnTdlibThread(task);
+      } else {
+        // Client.create may deliver first updates on TDLib thread before client is assigned
+        task.run();
+      }
+    }
+
     public void runOnTdlibThread (Runnable after, double timeoutSeconds) {
       runOnTdlibThread(after, timeoutSeconds, null);
     }
@@ -361,7 +394,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     }
 
     public void sendFakeUpdate (TdApi.Update update) {
-      runOnTdlibThread(() -> tdlib.processUpdate(this, update));
+      runOnTdlibThread(() -> updatePipeline.submit(update));
     }
 
     @Override
@@ -376,18 +409,24 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     @Override
     public void onResult (TdApi.Object object) {
       if (running) {
-        long ms = SystemClock.uptimeMillis();
+        final long startTime = System.nanoTime();
+        final long startCpuTime = Debug.threadCpuTimeNanos();
         if (object instanceof TdApi.Update) {
-          tdlib.processUpdate(this, (TdApi.Update) object);
+          updatePipeline.submit((TdApi.Update) object);
         } else {
           Log.e("Invalid update type: %s", object);
         }
+        final long elapsedNanos = System.nanoTime() - startTime;
+        if (startCpuTime != -1) {
+          cpuTimeWasted += Debug.threadCpuTimeNanos() - startCpuTime;
+        }
+        timeWasted += elapsedNanos;
+        updateCount++;
         if (Log.needMeasureLaunchSpeed()) {
-          ms = SystemClock.uptimeMillis() - ms;
+          long ms = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
           if (ms > 100) {
             Log.e("%s took %dms", object.toString(), ms);
           }
-          timeWasted += ms;
         }
       } else {
         Log.w("Ignored update: %s", object);
@@ -404,6 +443,8 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
       // Nothing to do anymore?
       // client.close();
       Log.i(Log.TAG_ACCOUNTS, "client.close() done in %dms, accountId:%d, accountsNum:%d", SystemClock.uptimeMillis() - ms, tdlib.accountId, runningClients.decrementAndGet());
+      Log.i(Log.TAG_ACCOUNTS, "%s", accountStats);
+      Log.i(Log.TAG_ACCOUNTS, "listeners of account %d: %s", tdlib.accountId, tdlib.listeners().dispatchStats());
     }
 
     public long timeSinceInitializationMs () {
@@ -411,7 +452,22 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     }
 
     public long timeWasted () {
-      return timeWasted;
+      return TimeUnit.NANOSECONDS.toMillis(timeWasted);
+    }
+
+    @Override
+    public long getUpdateCount () {
+      return updateCount;
+    }
+
+    @Override
+    public long getUpdateTime (TimeUnit unit) {
+      return unit.convert(timeWasted, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getUpdateCpuTime (TimeUnit unit) {
+      return unit.convert(cpuTimeWasted, TimeUnit.NANOSECONDS);
     }
   }
 
@@ -428,7 +484,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
 
   private final Object clientLock = new Object();
   private final Object dataLock = new Object();
-  private final HashMap<Long, TdApi.Chat> chats = new HashMap<>();
+  private final LongEntityStore<TdApi.Chat> chats = new LongEntityStore<>();
   private final HashMap<Long, TdApi.ChatActiveStories> activeStories = new HashMap<>();
   private final SparseIntArray storyListChatCount = new SparseIntArray();
   private final SparseArrayCompat<StoryList> storyLists = new SparseArrayCompat<>();
@@ -443,6 +499,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
   private final TdlibEmojiManager emoji;
   private final TdlibEmojiReactionsManager reactions;
   private final TdlibOutlineManager outline;
+  private final TranslationCache translationCache;
   private final TdlibSingleton<TdApi.Stickers> genericReactionEffects;
   private final TdlibListeners listeners;
   private final TdlibFilesManager filesManager;
@@ -559,6 +616,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
       Log.v("INITIALIZATION: Tdlib.stickerOutline -> %dms", SystemClock.uptimeMillis() - ms);
       ms = SystemClock.uptimeMillis();
     }
+    this.translationCache = new TranslationCache(this);
     this.genericReactionEffects = new TdlibSingleton<>(this, () -> new TdApi.GetCustomEmojiReactionAnimations());
     if (needMeasure) {
       Log.v("INITIALIZATION: Tdlib.genericReactionEffects -> %dms", SystemClock.uptimeMillis() - ms);
@@ -625,7 +683,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
 
     synchronized (clientLock) {
       if (client == null)
-        client = newClient();
+        client = StartupTrace.trace("Tdlib.newClient", this::newClient);
     }
     if (needMeasure) {
       Log.i("INITIALIZATION: Tdlib.newClient() -> %dms", SystemClock.uptimeMillis() - ms);
@@ -1575,13 +1633,13 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
         return;
       }
     }
-    //FIXME?
-    new Thread(this::clientHolder).start();
+    // Waiting for the paused client to close is not allowed on TDLib thread
+    context.accountScheduler().schedule(accountId, this::clientHolder);
   }
 
   public boolean ownsClient (Client client) {
     synchronized (clientLock) {
-      return this.client != null && this.client.client == client;
+      return this.client != null && this.client.client.wraps(client);
     }
   }
 
@@ -1631,7 +1689,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     ui().postDelayed(forceAnr, 7500);
   }
 
-  public Client client () { // TODO migrate all tdlib.client().send(..) to tdlib.send(..)
+  public TdlibClient client () { // TODO migrate all tdlib.client().send(..) to tdlib.send(..)
     return clientHolder().client;
   }
 
@@ -1674,22 +1732,22 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
   }
 
   public <T extends TdApi.Object> void send (TdApi.Function<T> function, ResultHandler<T> handler) {
-    send(client(), function, handler);
+    send(function, ResultHandler.toTdlibHandler(handler));
   }
 
   public <T extends TdApi.Object> void sendAll (TdApi.Function<T>[] functions, @NonNull ResultHandler<T> handler, @Nullable Runnable after) {
     sendAll(functions, ResultHandler.toTdlibHandler(handler), after);
   }
 
-  public static <T extends TdApi.Object> void send (Client client, TdApi.Function<T> function, ResultHandler<T> handler) {
+  public static <T extends TdApi.Object> void send (TdlibClient client, TdApi.Function<T> function, ResultHandler<T> handler) {
     send(client, function, ResultHandler.toTdlibHandler(handler));
   }
 
   private <T extends TdApi.Object> void send (TdApi.Function<T> function, Client.ResultHandler handler) {
-    send(client(), function, handler);
+    client().send(function, handler);
   }
 
-  private static <T extends TdApi.Object> void send (Client client, TdApi.Function<T> function, Client.ResultHandler handler) {
+  private static <T extends TdApi.Object> void send (TdlibClient client, TdApi.Function<T> function, Client.ResultHandler handler) {
     client.send(function, handler);
   }
 
@@ -1738,8 +1796,8 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     return null;
   }
 
-  private void performOptional (@NonNull RunnableData<Client> runnable, @Nullable Runnable onFailure) {
-    Client client;
+  private void performOptional (@NonNull RunnableData<TdlibClient> runnable, @Nullable Runnable onFailure) {
+    TdlibClient client;
     synchronized (clientLock) {
       if (instancePaused)
         return;
@@ -2300,6 +2358,10 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     return outline;
   }
 
+  public TranslationCache translationCache () {
+    return translationCache;
+  }
+
   public TdlibSingleton<TdApi.Stickers> genericAnimationEffects () {
     return genericReactionEffects;
   }
@@ -2607,20 +2669,13 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     if (chatId == 0) {
       return null;
     }
-    final TdApi.Chat chat;
-    synchronized (dataLock) {
-      chat = chats.get(chatId);
-    }
-    return chat;
+    return chats.get(chatId);
   }
 
   public @NonNull TdApi.Chat chatStrict (long chatId) {
-    final TdApi.Chat chat;
-    synchronized (dataLock) {
-      chat = chats.get(chatId);
-      if (chat == null) {
-        throw new IllegalStateException("updateChat not received for id:" + chatId);
-      }
+    final TdApi.Chat chat = chats.get(chatId);
+    if (chat == null) {
+      throw new IllegalStateException("updateChat not received for id:" + chatId);
     }
     return chat;
   }
@@ -2709,13 +2764,11 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
 
   public @NonNull List<TdApi.Chat> chats (long[] chatIds) {
     final ArrayList<TdApi.Chat> result = new ArrayList<>(chatIds.length);
-    synchronized (dataLock) {
-      for (long chatId : chatIds) {
-        TdApi.Chat chat = chats.get(chatId);
-        if (TdlibUtils.assertChat(chatId, chat))
-          continue;
-        result.add(chat);
-      }
+    for (long chatId : chatIds) {
+      TdApi.Chat chat = chats.get(chatId);
+      if (TdlibUtils.assertChat(chatId, chat))
+        continue;
+      result.add(chat);
     }
     return result;
   }
@@ -3450,7 +3503,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
   public @NonNull List<Long> getPinnedChats (final @Nullable TdApi.ChatList chatList) {
     synchronized (dataLock) {
       List<TdApi.Chat> pinnedChats = null;
-      for (TdApi.Chat chat : chats.values()) {
+      for (TdApi.Chat chat : chats) {
         TdApi.ChatPosition position = ChatPosition.findPosition(chat, chatList);
         if (position != null && position.isPinned) {
           if (pinnedChats == null)
@@ -5756,7 +5809,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     }
   }
 
-  private void updateLanguageParameters (Client client, boolean isInitialization) {
+  private void updateLanguageParameters (TdlibClient client, boolean isInitialization) {
     if (isInitialization) {
       this.languagePackId = Settings.instance().getLanguagePackInfo().id;
       client.send(new TdApi.SetOption("language_pack_database_path", new TdApi.OptionValueString(context.languageDatabasePath())), okHandler());
@@ -5795,7 +5848,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     }
   }
 
-  private void updateNotificationParameters (Client client) {
+  private void updateNotificationParameters (TdlibClient client) {
     final int notificationGroupCountMax, notificationGroupSizeMax;
 
     if (Config.FORCE_DISABLE_NOTIFICATIONS || isServiceInstance()) {
@@ -5968,7 +6021,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     );
   }
 
-  private void checkConnectionParams (Client client, boolean force) {
+  private void checkConnectionParams (TdlibClient client, boolean force) {
     Map<String, Object> params = newConnectionParams();
     String connectionParams = JSON.stringify(JSON.toObject(params));
     if (connectionParams != null && (force || !StringUtils.equalsOrBothEmpty(lastReportedConnectionParams, connectionParams))) {
@@ -5979,7 +6032,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
 
   private Thread tdlibThread;
 
-  private void updateParameters (Client client) {
+  private void updateParameters (TdlibClient client) {
     Client.ResultHandler okHandler = object -> {
       updateTdlibThread();
       switch (object.getConstructor()) {
@@ -7060,6 +7113,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
   private static final int MSG_ACTION_USER_STATUS = 8;
   private static final int MSG_ACTION_DISPATCH_TERMS_OF_SERVICE = 9;
   private static final int MSG_ACTION_UPDATE_LANG_PACK = 11;
+  private static final int MSG_ACTION_USER_STATUS_LIST = 12;
   private static final int MSG_ACTION_MESSAGE_ACTION_PREFIX = 100000;
 
   void handleUiMessage (Message msg) {
@@ -7085,6 +7139,11 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
       case MSG_ACTION_USER_STATUS:
         cache().onUpdateUserStatusInternal((TdApi.UpdateUserStatus) msg.obj, msg.arg1 == 1);
         break;
+      case MSG_ACTION_USER_STATUS_LIST:
+        for (TdApi.UpdateUserStatus update : (TdApi.UpdateUserStatus[]) msg.obj) {
+          cache().onUpdateUserStatusInternal(update, msg.arg1 == 1);
+        }
+        break;
       case MSG_ACTION_DISPATCH_TERMS_OF_SERVICE:
         ui().handleTermsOfService((TdApi.UpdateTermsOfService) msg.obj);
         break;
@@ -7106,6 +7165,46 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     ui().sendMessage(ui().obtainMessage(MSG_ACTION_USER_STATUS, uiOnly ? 1 : 0, 0, update));
   }
 
+  @TdlibThread
+  void dispatchUserStatusUpdate (TdApi.UpdateUserStatus update) {
+    if (isProcessingUpdateBatch) {
+      batchedUserStatuses.add(update);
+    } else {
+      dispatchUserStatus(update, false);
+    }
+  }
+
+  // Update batches
+
+  private final TdlibUpdatePipeline.Stats updateStats = new TdlibUpdatePipeline.Stats();
+  private final ArrayList<TdApi.UpdateUserStatus> batchedUserStatuses = new ArrayList<>();
+  private boolean isProcessingUpdateBatch;
+
+  @AnyThread
+  public TdlibUpdatePipeline.Stats updateStats () {
+    return updateStats;
+  }
+
+  @TdlibThread
+  private void onUpdateBatchStarted () {
+    isProcessingUpdateBatch = true;
+  }
+
+  @TdlibThread
+  private void onUpdateBatchFinished () {
+    isProcessingUpdateBatch = false;
+    if (batchedUserStatuses.isEmpty()) {
+      return;
+    }
+    if (batchedUserStatuses.size() == 1) {
+      dispatchUserStatus(batchedUserStatuses.get(0), false);
+    } else {
+      TdApi.UpdateUserStatus[] updates = batchedUserStatuses.toArray(new TdApi.UpdateUserStatus[0]);
+      ui().sendMessage(ui().obtainMessage(MSG_ACTION_USER_STATUS_LIST, 0, 0, updates));
+    }
+    batchedUserStatuses.clear();
+  }
+
   @AnyThread
   public void dispatchCallStateChanged (final int callId, final @CallState int newState) {
     ui().sendMessage(ui().obtainMessage(MSG_ACTION_CALL_STATE, callId, newState));
@@ -8710,7 +8809,8 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
 
       int fileId = update.file.id;
       if (!ImageLoader.instance().onProgress(this, update.file)) {
-        if (!GifBridge.instance().onProgress(this, fileId, TD.getFileProgress(update.file))) {
+        GifBridge gifBridge = GifBridge.peekInstance();
+        if (gifBridge == null || !gifBridge.onProgress(this, fileId, TD.getFileProgress(update.file))) {
           // Nothing?
         }
       }
@@ -8721,7 +8821,8 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener, Da
     if (TD.isFileLoaded(update.file)) {
       files().onFileLoaded(update);
       if (!ImageLoader.instance().onLoad(this, update.file)) {
-        if (!GifBridge.instance().onLoad(this, update.file)) {
+        GifBridge gifBridge = GifBridge.peekInstance();
+        if (gifBridge == null || !gifBridge.onLoad(this, update.file)) {
           // Nothing?
         }
       }
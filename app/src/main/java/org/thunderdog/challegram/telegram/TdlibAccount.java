@@ -27,6 +27,7 @@ import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.U;
 import org.thunderdog.challegram.component.dialogs.ChatView;
 import org.thunderdog.challegram.config.Config;
+import org.thunderdog.challegram.core.StartupTrace;
 import org.thunderdog.challegram.data.AvatarPlaceholder;
 import org.thunderdog.challegram.data.TD;
 import org.thunderdog.challegram.loader.ImageFile;
@@ -380,7 +381,7 @@ public class TdlibAccount implements Comparable<TdlibAccount>, TdlibProvider {
       throw new AssertionError();
     Throwable error = null;
     try {
-      tdlib = new Tdlib(this, tdlibInstanceMode());
+      tdlib = StartupTrace.trace("Tdlib#" + id, () -> new Tdlib(this, tdlibInstanceMode()));
     } catch (Throwable t) {
       if (t instanceof InterruptedException || t.getCause() instanceof InterruptedException) {
         throw t;
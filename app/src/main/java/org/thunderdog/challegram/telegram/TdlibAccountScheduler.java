@@ -0,0 +1,288 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.collection.SparseArrayCompat;
+
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.core.Background;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking account jobs (e.g. waiting for a paused TDLib client to close before recreating it)
+ * on a bounded pool, instead of a new thread per job.
+ *
+ * Jobs of the current account run first and immediately. Jobs of other accounts are staggered by {@link #STAGGER_MS},
+ * so resuming the app or handling a push for many accounts doesn't wake up all clients at once.
+ * At most one job per account is pending at a time.
+ */
+public final class TdlibAccountScheduler {
+  private static final int MAX_THREAD_COUNT = 2;
+  private static final long STAGGER_MS = 150;
+
+  /**
+   * Time spent processing TDLib updates by a single client.
+   */
+  public interface UpdateSource {
+    long getUpdateCount ();
+    long getUpdateTime (TimeUnit unit);
+    long getUpdateCpuTime (TimeUnit unit);
+  }
+
+  /**
+   * Per-account time spent in scheduled jobs and in processing of TDLib updates.
+   *
+   * Update time is counted by the current client itself, totals of previous clients are added when it is replaced.
+   */
+  public static final class AccountStats {
+    private final int accountId;
+    private long jobCount;
+    private long totalWaitNanos, totalRunNanos, maxRunNanos;
+    private long totalCpuMillis;
+    private UpdateSource updateSource;
+    private long closedUpdateCount, closedUpdateNanos, closedUpdateCpuNanos;
+
+    private AccountStats (int accountId) {
+      this.accountId = accountId;
+    }
+
+    private synchronized void onJobFinished (long waitNanos, long runNanos, long cpuMillis) {
+      jobCount++;
+      totalWaitNanos += waitNanos;
+      totalRunNanos += runNanos;
+      totalCpuMillis += cpuMillis;
+      if (runNanos > maxRunNanos) {
+        maxRunNanos = runNanos;
+      }
+    }
+
+    synchronized void setUpdateSource (UpdateSource updateSource) {
+      if (this.updateSource != null) {
+        closedUpdateCount += this.updateSource.getUpdateCount();
+        closedUpdateNanos += this.updateSource.getUpdateTime(TimeUnit.NANOSECONDS);
+        closedUpdateCpuNanos += this.updateSource.getUpdateCpuTime(TimeUnit.NANOSECONDS);
+      }
+      this.updateSource = updateSource;
+    }
+
+    public int getAccountId () {
+      return accountId;
+    }
+
+    public synchronized long getJobCount () {
+      return jobCount;
+    }
+
+    public synchronized long getTotalWaitTime (TimeUnit unit) {
+      return unit.convert(totalWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getTotalRunTime (TimeUnit unit) {
+      return unit.convert(totalRunNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getMaxRunTime (TimeUnit unit) {
+      return unit.convert(maxRunNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getTotalCpuTime (TimeUnit unit) {
+      return unit.convert(totalCpuMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized long getUpdateCount () {
+      return closedUpdateCount + (updateSource != null ? updateSource.getUpdateCount() : 0);
+    }
+
+    public synchronized long getUpdateTime (TimeUnit unit) {
+      return unit.convert(closedUpdateNanos + (updateSource != null ? updateSource.getUpdateTime(TimeUnit.NANOSECONDS) : 0), TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getUpdateCpuTime (TimeUnit unit) {
+      return unit.convert(closedUpdateCpuNanos + (updateSource != null ? updateSource.getUpdateCpuTime(TimeUnit.NANOSECONDS) : 0), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    @NonNull
+    public synchronized String toString () {
+      return "account " + accountId +
+        ": jobs = " + jobCount +
+        ", wait = " + getTotalWaitTime(TimeUnit.MILLISECONDS) + "ms" +
+        ", run = " + getTotalRunTime(TimeUnit.MILLISECONDS) + "ms (max " + getMaxRunTime(TimeUnit.MILLISECONDS) + "ms)" +
+        ", cpu = " + totalCpuMillis + "ms" +
+        ", updates = " + getUpdateCount() +
+        " in " + getUpdateTime(TimeUnit.MILLISECONDS) + "ms (cpu " + getUpdateCpuTime(TimeUnit.MILLISECONDS) + "ms)";
+    }
+  }
+
+  private final class Job implements Runnable, Comparable<Job> {
+    final int accountId;
+    final Runnable act;
+    final long sequence;
+    volatile boolean isForeground;
+    boolean isSubmitted;
+    long enqueueTime;
+
+    Job (int accountId, Runnable act, long sequence, boolean isForeground) {
+      this.accountId = accountId;
+      this.act = act;
+      this.sequence = sequence;
+      this.isForeground = isForeground;
+    }
+
+    @Override
+    public int compareTo (Job other) {
+      if (isForeground != other.isForeground) {
+        return isForeground ? -1 : 1;
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+
+    @Override
+    public void run () {
+      synchronized (pendingJobs) {
+        if (pendingJobs.get(accountId) == this) {
+          pendingJobs.remove(accountId);
+        }
+      }
+      final long startTime = System.nanoTime();
+      final long startCpuTime = SystemClock.currentThreadTimeMillis();
+      try {
+        act.run();
+      } catch (Throwable t) {
+        Log.e(Log.TAG_ACCOUNTS, "Account job failed, accountId:%d", t, accountId);
+      }
+      final long endTime = System.nanoTime();
+      stats(accountId).onJobFinished(startTime - enqueueTime, endTime - startTime, SystemClock.currentThreadTimeMillis() - startCpuTime);
+    }
+  }
+
+  private final TdlibManager context;
+  private final ThreadPoolExecutor executor;
+  private final SparseArrayCompat<Job> pendingJobs = new SparseArrayCompat<>();
+  private final SparseArrayCompat<AccountStats> stats = new SparseArrayCompat<>();
+  private long sequence;
+  private long nextBackgroundJobTime;
+
+  TdlibAccountScheduler (TdlibManager context) {
+    this.context = context;
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(MAX_THREAD_COUNT, MAX_THREAD_COUNT, 10, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), r -> {
+      Thread thread = new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+        r.run();
+      }, "TdlibAccountScheduler#" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  private boolean isForeground (int accountId) {
+    TdlibAccount currentAccount = context.currentAccount();
+    return currentAccount != null && currentAccount.id == accountId;
+  }
+
+  /**
+   * Schedules blocking job for the given account.
+   * Does nothing when a job for the same account is already pending, as it will run later anyway.
+   */
+  @AnyThread
+  public void schedule (int accountId, Runnable act) {
+    final boolean isForeground = isForeground(accountId);
+    final Job job;
+    final long delayMs;
+    synchronized (pendingJobs) {
+      Job pendingJob = pendingJobs.get(accountId);
+      if (pendingJob != null) {
+        if (isForeground && !pendingJob.isForeground) {
+          // Account became current while waiting for its turn
+          if (!pendingJob.isSubmitted) {
+            pendingJob.isForeground = true;
+            submit(pendingJob);
+          } else if (executor.remove(pendingJob)) {
+            pendingJob.isForeground = true;
+            executor.execute(pendingJob);
+          }
+        }
+        return;
+      }
+      job = new Job(accountId, act, ++sequence, isForeground);
+      pendingJobs.put(accountId, job);
+      if (isForeground) {
+        delayMs = 0;
+      } else {
+        final long now = SystemClock.uptimeMillis();
+        final long runTime = Math.max(now, nextBackgroundJobTime);
+        nextBackgroundJobTime = runTime + STAGGER_MS;
+        delayMs = runTime - now;
+      }
+    }
+    job.enqueueTime = System.nanoTime();
+    if (delayMs > 0) {
+      Background.instance().post(() -> {
+        synchronized (pendingJobs) {
+          submit(job);
+        }
+      }, (int) delayMs);
+    } else {
+      synchronized (pendingJobs) {
+        submit(job);
+      }
+    }
+  }
+
+  private void submit (Job job) {
+    if (!job.isSubmitted) {
+      job.isSubmitted = true;
+      executor.execute(job);
+    }
+  }
+
+  @NonNull
+  @AnyThread
+  public AccountStats stats (int accountId) {
+    synchronized (stats) {
+      AccountStats accountStats = stats.get(accountId);
+      if (accountStats == null) {
+        accountStats = new AccountStats(accountId);
+        stats.put(accountId, accountStats);
+      }
+      return accountStats;
+    }
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    StringBuilder b = new StringBuilder("TdlibAccountScheduler { active = ")
+      .append(executor.getActiveCount()).append("/").append(MAX_THREAD_COUNT)
+      .append(", queued = ").append(executor.getQueue().size()).append(" }");
+    synchronized (stats) {
+      for (int i = 0; i < stats.size(); i++) {
+        b.append('\n').append(stats.valueAt(i));
+      }
+    }
+    return b.toString();
+  }
+}
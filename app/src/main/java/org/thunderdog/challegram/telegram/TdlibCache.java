@@ -50,7 +50,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import me.vkryl.android.AppInstallationUtil;
@@ -111,8 +110,8 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
   private final Tdlib tdlib;
   private volatile long myUserId;
 
-  private final HashMap<Long, TdApi.User> users = new HashMap<>();
-  private final HashMap<Long, TdApi.UserFullInfo> userFulls = new HashMap<>();
+  private final LongEntityStore<TdApi.User> users = new LongEntityStore<>();
+  private final LongEntityStore<TdApi.UserFullInfo> userFulls = new LongEntityStore<>();
   private final ReferenceLongMap<UserDataChangeListener> userListeners = new ReferenceLongMap<>(true);
 
   private final ReferenceMap.FullnessListener<Long, UserStatusChangeListener> statusFullnessListener = (list, isFull) -> setRefreshNeeded(isFull);
@@ -120,13 +119,13 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
   private final ReferenceLongMap<UserStatusChangeListener> simpleStatusListeners = new ReferenceLongMap<>(true, null);
   private final ReferenceList<MyUserDataChangeListener> myUserListeners = new ReferenceList<>(true);
 
-  private final HashMap<Long, TdApi.BasicGroup> basicGroup = new HashMap<>();
-  private final HashMap<Long, TdApi.BasicGroupFullInfo> basicGroupFull = new HashMap<>();
+  private final LongEntityStore<TdApi.BasicGroup> basicGroup = new LongEntityStore<>();
+  private final LongEntityStore<TdApi.BasicGroupFullInfo> basicGroupFull = new LongEntityStore<>();
   private final ReferenceList<BasicGroupDataChangeListener> groupsGlobalListeners = new ReferenceList<>(true);
   private final ReferenceLongMap<BasicGroupDataChangeListener> groupListeners = new ReferenceLongMap<>(true);
 
-  private final HashMap<Long, TdApi.Supergroup> supergroups = new HashMap<>();
-  private final HashMap<Long, TdApi.SupergroupFullInfo> supergroupsFulls = new HashMap<>();
+  private final LongEntityStore<TdApi.Supergroup> supergroups = new LongEntityStore<>();
+  private final LongEntityStore<TdApi.SupergroupFullInfo> supergroupsFulls = new LongEntityStore<>();
   private final LongSparseLongArray supergroupsFullsLastUpdateTime = new LongSparseLongArray();
   private final ReferenceList<SupergroupDataChangeListener> supergroupsGlobalListeners = new ReferenceList<>();
   private final ReferenceLongMap<SupergroupDataChangeListener> supergroupListeners = new ReferenceLongMap<>();
@@ -539,7 +538,7 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
         user.status = update.status;
       }
     }
-    tdlib.dispatchUserStatus(update, false);
+    tdlib.dispatchUserStatusUpdate(update);
   }
 
   @UiThread
@@ -868,16 +867,14 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
 
   public int users (long[] userIds, ArrayList<TdApi.User> out) {
     int addedCount = 0;
-    synchronized (dataLock) {
-      for (long userId : userIds) {
-        if (userId != 0) {
-          TdApi.User user = users.get(userId);
-          if (user != null) {
-            out.add(user);
-            addedCount++;
-          } else {
-            Log.bug("updateUser missing for userId:%d", userId);
-          }
+    for (long userId : userIds) {
+      if (userId != 0) {
+        TdApi.User user = users.get(userId);
+        if (user != null) {
+          out.add(user);
+          addedCount++;
+        } else {
+          Log.bug("updateUser missing for userId:%d", userId);
         }
       }
     }
@@ -889,34 +886,28 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
       Log.bug("getUser for userId=0");
       return null;
     }
-    synchronized (dataLock) {
-      TdApi.User user = users.get(userId);
-      if (user == null)
-        Log.bug("updateUser missing for userId:%d", userId);
-      return user;
-    }
+    TdApi.User user = users.get(userId);
+    if (user == null)
+      Log.bug("updateUser missing for userId:%d", userId);
+    return user;
   }
 
   @NonNull
   public TdApi.User userStrict (long userId) {
     if (userId == 0)
       throw new IllegalArgumentException();
-    synchronized (dataLock) {
-      TdApi.User user = users.get(userId);
-      if (user == null)
-        throw new IllegalStateException("id" + userId);
-      return user;
-    }
+    TdApi.User user = users.get(userId);
+    if (user == null)
+      throw new IllegalStateException("id" + userId);
+    return user;
   }
 
   public boolean userLastSeenAvailable (long userId) {
     if (userId == 0)
       return false;
-    synchronized (dataLock) {
-      TdApi.User user = users.get(userId);
-      TdApi.UserStatus status = user != null ? user.status : null;
-      return status != null && status.getConstructor() == TdApi.UserStatusOffline.CONSTRUCTOR && ((TdApi.UserStatusOffline) status).wasOnline != 0;
-    }
+    TdApi.User user = users.get(userId);
+    TdApi.UserStatus status = user != null ? user.status : null;
+    return status != null && status.getConstructor() == TdApi.UserStatusOffline.CONSTRUCTOR && ((TdApi.UserStatusOffline) status).wasOnline != 0;
   }
 
   public boolean userGeneral (long userId) {
@@ -1133,37 +1124,27 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
   }
 
   public @Nullable TdApi.User searchUser (String username, boolean allowDisabled) {
-    TdApi.User result = null;
-    synchronized (dataLock) {
-      final Set<HashMap.Entry<Long, TdApi.User>> entries = users.entrySet();
-      for (HashMap.Entry<Long, TdApi.User> entry : entries) {
-        TdApi.User user = entry.getValue();
-        if (Td.findUsername(user, username, allowDisabled)) {
-          result = user;
-          break;
-        }
+    for (TdApi.User user : users) {
+      if (Td.findUsername(user, username, allowDisabled)) {
+        return user;
       }
     }
-    return result;
+    return null;
   }
 
   @Nullable
   public TdApi.BasicGroup basicGroup (long basicGroupId) {
-    synchronized (dataLock) {
-      return basicGroup.get(basicGroupId);
-    }
+    return basicGroup.get(basicGroupId);
   }
 
   @NonNull
   public TdApi.BasicGroup basicGroupStrict (long basicGroupId) {
     if (basicGroupId == 0)
       throw new IllegalArgumentException();
-    synchronized (dataLock) {
-      TdApi.BasicGroup group = basicGroup.get(basicGroupId);
-      if (group == null)
-        throw new IllegalStateException("id:" + basicGroupId);
-      return group;
-    }
+    TdApi.BasicGroup group = basicGroup.get(basicGroupId);
+    if (group == null)
+      throw new IllegalStateException("id:" + basicGroupId);
+    return group;
   }
 
   public boolean basicGroupActive (long basicGroupId) {
@@ -1228,21 +1209,17 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
 
   @Nullable
   public TdApi.Supergroup supergroup (long supergroupId) {
-    synchronized (dataLock) {
-      return supergroups.get(supergroupId);
-    }
+    return supergroups.get(supergroupId);
   }
 
   @NonNull
   public TdApi.Supergroup supergroupStrict (long supergroupId) {
     if (supergroupId == 0)
       throw new IllegalArgumentException();
-    synchronized (dataLock) {
-      TdApi.Supergroup supergroup = supergroups.get(supergroupId);
-      if (supergroup == null)
-        throw new IllegalStateException("id:" + supergroupId);
-      return supergroup;
-    }
+    TdApi.Supergroup supergroup = supergroups.get(supergroupId);
+    if (supergroup == null)
+      throw new IllegalStateException("id:" + supergroupId);
+    return supergroup;
   }
 
   @Nullable
@@ -1341,11 +1318,8 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
   }
 
   public @Nullable TdApi.User myUser () {
-    TdApi.User result;
-    synchronized (dataLock) {
-      result = myUserId != 0 ? users.get(myUserId) : null;
-    }
-    return result;
+    final long myUserId = this.myUserId;
+    return myUserId != 0 ? users.get(myUserId) : null;
   }
 
   public boolean isOnline (long userId) {
@@ -1358,15 +1332,7 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
     if (tdlib.isServiceNotificationsChat(ChatId.fromUserId(userId))) {
       return false;
     }
-    boolean isOnline;
-    synchronized (dataLock) {
-      if (userId != myUserId) {
-        isOnline = TD.isOnline(users.get(userId));
-      } else {
-        isOnline = true;
-      }
-    }
-    return isOnline;
+    return TD.isOnline(users.get(userId));
   }
 
   /*public int secondsTillOffline (long userId) {
@@ -23,7 +23,6 @@ import org.thunderdog.challegram.data.TD;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -31,7 +30,6 @@ import me.vkryl.core.lambda.Filter;
 import me.vkryl.core.lambda.RunnableBool;
 import me.vkryl.core.lambda.RunnableData;
 import tgx.td.ChatPosition;
-import tgx.td.Td;
 
 public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterChangeListener {
   public static class Entry implements Comparable<Entry> {
@@ -76,7 +74,7 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
 
   private final Tdlib tdlib;
   private final TdApi.ChatList chatList;
-  private final ArrayList<Entry> list = new ArrayList<>();
+  private final ChatListIndex list = new ChatListIndex(this);
   private final List<Runnable> onLoadMore = new ArrayList<>();
   private final List<RunnableData<TdApi.Chat>> perChatCallbacks = new ArrayList<>();
 
@@ -333,14 +331,7 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
   }
 
   private int indexOfEntry (long chatId) {
-    int index = 0;
-    for (Entry entry : list) {
-      if (entry.chat.id == chatId) {
-        return index;
-      }
-      index++;
-    }
-    return -1;
+    return list.indexOf(chatId);
   }
 
   // Updates handling
@@ -364,26 +355,21 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
         addChatToList(new Entry(chat, chatList(), position), changeInfo);
       }
     } else if (position.order == 0) {
-      removeChatFromList(prevIndex, changeInfo);
+      removeChatFromList(chat.id, prevIndex, changeInfo);
     } else {
       final Entry existingEntry;
       if (changeInfo.orderChanged()) {
         int newIndex;
         synchronized (list) {
-          existingEntry = list.remove(prevIndex);
-          Td.copyTo(position, existingEntry.effectivePosition);
-          newIndex = Collections.binarySearch(this.list, existingEntry, this);
-          if (newIndex >= 0)
-            throw new IllegalStateException();
-          newIndex = newIndex * -1 - 1;
-          list.add(newIndex, existingEntry);
+          existingEntry = list.find(chat.id);
+          newIndex = list.reposition(chat.id, position);
         }
         if (newIndex != prevIndex) {
           tdlib.listeners().updateChatMoved(this, existingEntry.chat, prevIndex, newIndex, changeInfo);
           return;
         }
       } else {
-        existingEntry = list.get(prevIndex);
+        existingEntry = list.find(chat.id);
       }
       if (changeInfo.metadataChanged()) {
         tdlib.listeners().updateChatChanged(this, existingEntry.chat, prevIndex, changeInfo);
@@ -396,11 +382,7 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
   private void addChatToList (Entry entry, Tdlib.ChatChange changeInfo) {
     int atIndex;
     synchronized (list) {
-      atIndex = Collections.binarySearch(this.list, entry, this);
-      if (atIndex >= 0)
-        throw new IllegalStateException();
-      atIndex = atIndex * -1 - 1;
-      list.add(atIndex, entry);
+      atIndex = list.add(entry);
     }
     for (RunnableData<TdApi.Chat> perChatCallback : perChatCallbacks) {
       perChatCallback.runWithData(entry.chat);
@@ -408,10 +390,11 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
     tdlib.listeners().updateChatAdded(this, entry.chat, atIndex, changeInfo);
   }
 
-  private void removeChatFromList (int fromIndex, Tdlib.ChatChange changeInfo) {
+  private void removeChatFromList (long chatId, int fromIndex, Tdlib.ChatChange changeInfo) {
     Entry entry;
     synchronized (list) {
-      entry = list.remove(fromIndex);
+      entry = list.find(chatId);
+      list.remove(chatId);
     }
     tdlib.listeners().updateChatRemoved(this, entry.chat, fromIndex, changeInfo);
   }
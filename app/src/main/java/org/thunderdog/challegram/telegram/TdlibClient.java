@@ -0,0 +1,50 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.drinkless.tdlib.Client;
+import org.drinkless.tdlib.TdApi;
+
+/**
+ * {@link Client} of a single account, which keeps TDLib guarantee that updates are handled before responses that follow them.
+ *
+ * {@link TdlibUpdatePipeline} holds some updates for a short window, so every response first processes
+ * all pending updates, and only then is passed to its handler. Responses and updates are delivered on the same thread.
+ */
+public final class TdlibClient {
+  private final Client client;
+  private final Runnable barrier;
+
+  TdlibClient (@NonNull Client client, @NonNull Runnable barrier) {
+    this.client = client;
+    this.barrier = barrier;
+  }
+
+  @AnyThread
+  public void send (TdApi.Function<?> function, @Nullable Client.ResultHandler handler) {
+    client.send(function, handler != null ? result -> {
+      barrier.run();
+      handler.onResult(result);
+    } : null);
+  }
+
+  boolean wraps (Client client) {
+    return this.client == client;
+  }
+}
@@ -15,6 +15,7 @@
 package org.thunderdog.challegram.telegram;
 
 import org.thunderdog.challegram.unsorted.Settings;
+import org.thunderdog.challegram.unsorted.SettingsDatabase;
 
 import me.vkryl.leveldb.LevelDB;
 
@@ -116,7 +117,7 @@ public class TdlibCounter {
     if (isEmpty()) {
       Settings.instance().pmc().removeByPrefix(prefix);
     } else {
-      LevelDB editor = Settings.instance().edit();
+      SettingsDatabase editor = Settings.instance().edit();
 
       if (areChats) {
         if (chatCount > 0)
@@ -14,21 +14,29 @@
  */
 package org.thunderdog.challegram.telegram;
 
+import android.os.SystemClock;
+
+import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 
 import org.drinkless.tdlib.TdApi;
-import org.thunderdog.challegram.util.BatchOperationHandler;
+import org.thunderdog.challegram.core.Background;
+import org.thunderdog.challegram.tool.UI;
+import org.thunderdog.challegram.unsorted.Settings;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import me.vkryl.core.lambda.RunnableData;
 import me.vkryl.core.reference.ReferenceList;
@@ -59,39 +67,306 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
 
   protected abstract Result newEntry (@NonNull Key key, @Nullable Value value, @Nullable TdApi.Error error);
 
+  // Bounds & persistence
+
+  /**
+   * Weight of the entry used to bound memory usage. Entries are evicted in least-recently-used order,
+   * once total weight exceeds the value passed to {@link #TdlibDataManager(Tdlib, int)}.
+   */
+  protected int weightOf (@NonNull Result entry) {
+    return 1;
+  }
+
+  /**
+   * Converts keys to values that can be stored in {@link Settings}, see {@link #TdlibDataManager(Tdlib, int, String, KeySerializer)}.
+   */
+  protected interface KeySerializer<Key> {
+    long serialize (@NonNull Key key);
+    @NonNull Key deserialize (long serializedKey);
+  }
+
+  // Batching
+
+  /**
+   * @return Maximum number of keys passed to a single {@link #requestData(int, Collection)} call
+   */
+  protected int getMaxBatchSize () {
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * @return Maximum number of batches being loaded at the same time. Remaining keys wait for one of them to finish.
+   */
+  protected int getMaxInFlightBatchCount () {
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Snapshot of cache counters since the manager was created.
+   */
+  public static final class Stats {
+    public final long hitCount, missCount, evictionCount, requestCount, restoredCount;
+    public final int size, weight, maxWeight;
+    public final long batchCount, maxBatchNanos, totalBatchNanos;
+
+    private Stats (long hitCount, long missCount, long evictionCount, long requestCount, long restoredCount, int size, int weight, int maxWeight, long batchCount, long maxBatchNanos, long totalBatchNanos) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.requestCount = requestCount;
+      this.restoredCount = restoredCount;
+      this.size = size;
+      this.weight = weight;
+      this.maxWeight = maxWeight;
+      this.batchCount = batchCount;
+      this.maxBatchNanos = maxBatchNanos;
+      this.totalBatchNanos = totalBatchNanos;
+    }
+
+    public float getHitRate () {
+      final long total = hitCount + missCount;
+      return total > 0 ? (float) hitCount / (float) total : 0f;
+    }
+
+    /**
+     * @return Average time between sending a batch and receiving its last entry
+     */
+    public long getAverageBatchTime (TimeUnit unit) {
+      return batchCount > 0 ? unit.convert(totalBatchNanos / batchCount, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    @Override
+    @NonNull
+    public String toString () {
+      return "size = " + size + " (weight " + weight + "/" + maxWeight + ")" +
+        ", hits = " + hitCount +
+        ", misses = " + missCount +
+        ", evicted = " + evictionCount +
+        ", requested = " + requestCount +
+        ", restored = " + restoredCount +
+        ", batches = " + batchCount + " (avg " + getAverageBatchTime(TimeUnit.MILLISECONDS) + "ms, max " + TimeUnit.NANOSECONDS.toMillis(maxBatchNanos) + "ms)" +
+        ", hitRate = " + (int) (getHitRate() * 100f) + "%";
+    }
+  }
+
+  private static final int MAX_PERSISTENT_KEY_COUNT = 1000;
+  private static final int PERSIST_DELAY_MS = 5000;
+  private static final long NOT_FOUND_TTL_MS = TimeUnit.DAYS.toMillis(1);
+  private static final long COALESCE_DELAY_MS = 10;
+  private static final long MAX_COALESCE_DELAY_MS = 50;
+
+  private static final class Batch {
+    final long startTime = System.nanoTime();
+    int remainingCount;
+    final boolean isLimited;
+
+    Batch (int keyCount, boolean isLimited) {
+      this.remainingCount = keyCount;
+      this.isLimited = isLimited;
+    }
+  }
+
   protected final Tdlib tdlib;
 
   private final Object dataLock = new Object();
-  private final Map<Key, Result> entries = new HashMap<>();
-  private final Set<Key> postponedKeys = new HashSet<>();
-  private final Set<Key> loadingKeys = new HashSet<>();
+  private final LinkedHashMap<Key, Result> entries = new LinkedHashMap<>(16, .75f, true);
+  private final int maxWeight;
+  private int totalWeight;
+  private long hitCount, missCount, evictionCount, requestCount, restoredCount;
+  private boolean isPersistScheduled;
+  private final @Nullable String persistentKeysKey;
+  private final @Nullable KeySerializer<Key> keySerializer;
+  // Keys that TDLib reported as not found, with the time of the response. Newest keys are at the end
+  private final LinkedHashMap<Key, Long> notFoundTimes = new LinkedHashMap<>();
+  private final Set<Key> postponedKeys = new LinkedHashSet<>();
+  private final Map<Key, Batch> loadingKeys = new HashMap<>();
+  // Number of watchers that were added and not forgotten yet, i.e. keys that are needed on screen
+  private final Map<Key, Integer> watcherCounts = new HashMap<>();
+  private int inFlightBatchCount;
+  private boolean isFlushPending;
+  private long firstDelayedRequestTime;
+  private long batchCount, maxBatchNanos, totalBatchNanos;
   private final ReferenceMap<Key, Watcher<Key, Value, Result>> watcherReferences = new ReferenceMap<>(true);
   private final Map<Key, List<Watcher<Key, Value, Result>>> watchers = new LinkedHashMap<>();
 
   private int contextId;
 
   protected TdlibDataManager (Tdlib tdlib) {
+    this(tdlib, Integer.MAX_VALUE);
+  }
+
+  protected TdlibDataManager (Tdlib tdlib, int maxWeight) {
+    this(tdlib, maxWeight, null, null);
+  }
+
+  /**
+   * @param persistentKeysKey Settings key to remember keys that were not found in.
+   * Such keys are not requested again for a day, including after restart, as values themselves can't be persisted.
+   */
+  protected TdlibDataManager (Tdlib tdlib, int maxWeight, @Nullable String persistentKeysKey, @Nullable KeySerializer<Key> keySerializer) {
+    if ((persistentKeysKey != null) != (keySerializer != null))
+      throw new IllegalArgumentException();
     this.tdlib = tdlib;
+    this.maxWeight = maxWeight;
+    this.persistentKeysKey = persistentKeysKey;
+    this.keySerializer = keySerializer;
     tdlib.listeners().addCleanupListener(this);
   }
 
   // Listeners
 
+  @Override
+  public final void onPerformStartup (boolean isAfterRestart) {
+    restoreNotFoundKeys();
+  }
+
+  @Override
+  public final void onPerformUserCleanup () {
+    synchronized (dataLock) {
+      contextId++;
+      clearEntries();
+      clearLoadingState();
+      notFoundTimes.clear();
+    }
+    if (persistentKeysKey != null) {
+      Settings.instance().remove(TdlibSettingsManager.key(persistentKeysKey, tdlib.id()));
+    }
+  }
+
   @Override
   public final void onPerformRestart () {
     synchronized (dataLock) {
       contextId++;
-      entries.clear();
+      clearEntries();
+      clearLoadingState();
       // TODO cancel all pending requests
     }
   }
 
+  private void clearEntries () {
+    entries.clear();
+    totalWeight = 0;
+  }
+
+  private void clearLoadingState () {
+    // Responses to requests of the previous context are ignored, so these keys have to be requested again
+    loadingKeys.clear();
+    watcherCounts.clear();
+    inFlightBatchCount = 0;
+    isFlushPending = false;
+  }
+
+  public final Stats getStats () {
+    synchronized (dataLock) {
+      return new Stats(hitCount, missCount, evictionCount, requestCount, restoredCount, entries.size(), totalWeight, maxWeight, batchCount, maxBatchNanos, totalBatchNanos);
+    }
+  }
+
+  // Bounds
+
+  private void putEntry (Result entry) {
+    Result prevEntry = entries.put(entry.key, entry);
+    if (prevEntry != null) {
+      totalWeight -= weightOf(prevEntry);
+    }
+    totalWeight += weightOf(entry);
+    Iterator<Result> itr = entries.values().iterator();
+    while (totalWeight > maxWeight && entries.size() > 1) {
+      Result eldestEntry = itr.next();
+      itr.remove();
+      totalWeight -= weightOf(eldestEntry);
+      evictionCount++;
+    }
+  }
+
+  // Persistence
+
+  private void restoreNotFoundKeys () {
+    if (persistentKeysKey == null || keySerializer == null) {
+      return;
+    }
+    // Pairs of serialized key and response time
+    long[] data = Settings.instance().getLongArray(TdlibSettingsManager.key(persistentKeysKey, tdlib.id()));
+    if (data == null || data.length == 0) {
+      return;
+    }
+    synchronized (dataLock) {
+      for (int i = 0; i + 1 < data.length; i += 2) {
+        Key key = keySerializer.deserialize(data[i]);
+        if (!notFoundTimes.containsKey(key)) {
+          notFoundTimes.put(key, data[i + 1]);
+        }
+      }
+    }
+  }
+
+  @Nullable
+  private Result restoreNotFoundEntry (Key key) {
+    // Called within dataLock
+    Long time = notFoundTimes.get(key);
+    if (time == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - time >= NOT_FOUND_TTL_MS) {
+      notFoundTimes.remove(key);
+      return null;
+    }
+    Result entry = newEntry(key, null, newNotFoundError());
+    putEntry(entry);
+    restoredCount++;
+    return entry;
+  }
+
+  private void onNotFoundKeysChanged (int contextId) {
+    // Called within dataLock
+    while (notFoundTimes.size() > MAX_PERSISTENT_KEY_COUNT) {
+      Iterator<Key> itr = notFoundTimes.keySet().iterator();
+      itr.next();
+      itr.remove();
+    }
+    if (!isPersistScheduled) {
+      isPersistScheduled = true;
+      Background.instance().post(() -> persistNotFoundKeys(contextId), PERSIST_DELAY_MS);
+    }
+  }
+
+  private void persistNotFoundKeys (int contextId) {
+    final long[] data;
+    synchronized (dataLock) {
+      isPersistScheduled = false;
+      if (this.contextId != contextId || persistentKeysKey == null || keySerializer == null) {
+        return;
+      }
+      final long now = System.currentTimeMillis();
+      long[] pairs = new long[notFoundTimes.size() * 2];
+      int count = 0;
+      for (Map.Entry<Key, Long> notFound : notFoundTimes.entrySet()) {
+        if (now - notFound.getValue() < NOT_FOUND_TTL_MS) {
+          pairs[count++] = keySerializer.serialize(notFound.getKey());
+          pairs[count++] = notFound.getValue();
+        }
+      }
+      data = count == pairs.length ? pairs : Arrays.copyOf(pairs, count);
+    }
+    Settings.instance().putLongArray(TdlibSettingsManager.key(persistentKeysKey, tdlib.id()), data);
+  }
+
+  private static TdApi.Error newNotFoundError () {
+    return new TdApi.Error(404, "Not Found");
+  }
+
   // Impl
 
   @UiThread
   public final Result find (Key key) {
     synchronized (dataLock) {
-      return entries.get(key);
+      Result entry = findEntry(key);
+      if (entry != null) {
+        hitCount++;
+      } else {
+        missCount++;
+      }
+      return entry;
     }
   }
 
@@ -123,14 +398,18 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
   @Nullable
   public final Result findOrPostponeRequest (Key key, Watcher<Key, Value, Result> watcher, boolean strongReference) {
     synchronized (dataLock) {
-      Result entry = entries.get(key);
+      Result entry = findEntry(key);
       if (entry != null) {
+        hitCount++;
         return entry;
       }
-      if (!loadingKeys.contains(key)) {
+      missCount++;
+      if (!loadingKeys.containsKey(key)) {
         postponedKeys.add(key);
       }
       if (watcher != null) {
+        Integer watcherCount = watcherCounts.get(key);
+        watcherCounts.put(key, watcherCount != null ? watcherCount + 1 : 1);
         if (strongReference) {
           addWatcherImpl(key, watcher);
         } else {
@@ -141,6 +420,16 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
     }
   }
 
+  @Nullable
+  private Result findEntry (Key key) {
+    // Called within dataLock
+    Result entry = entries.get(key);
+    if (entry == null && !notFoundTimes.isEmpty()) {
+      entry = restoreNotFoundEntry(key);
+    }
+    return entry;
+  }
+
   private void addWatcherImpl (Key key, Watcher<Key, Value, Result> watcher) {
     List<Watcher<Key, Value, Result>> list = watchers.get(key);
     if (list != null && !list.contains(watcher)) {
@@ -154,9 +443,19 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
 
   public final void forgetWatcher (Key key, Watcher<Key, Value, Result> watcher) {
     watcherReferences.remove(key, watcher);
+    synchronized (dataLock) {
+      Integer watcherCount = watcherCounts.get(key);
+      if (watcherCount != null) {
+        if (watcherCount > 1) {
+          watcherCounts.put(key, watcherCount - 1);
+        } else {
+          watcherCounts.remove(key);
+        }
+      }
+    }
   }
 
-  private final BatchOperationHandler delayedHandler = new BatchOperationHandler(this::performPostponedRequests, 10);
+  private final Runnable delayedFlush = this::performPostponedRequests;
 
   @UiThread
   public void performPostponedRequest (Key key) {
@@ -165,31 +464,118 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
       if (postponedKeys.isEmpty() || !postponedKeys.remove(key)) {
         return;
       }
-      loadingKeys.add(key);
+      // Explicitly requested key doesn't wait for other batches
+      loadingKeys.put(key, newBatch(1, false));
+      requestCount++;
       contextId = this.contextId;
     }
     requestData(contextId, Set.of(key));
   }
 
+  /**
+   * Waits for more keys while they keep coming, but no longer than {@link #MAX_COALESCE_DELAY_MS} since the first call.
+   * Each call moves the flush to {@link #COALESCE_DELAY_MS} from now, unless it's already due earlier.
+   * Once a full batch is postponed, requests are sent immediately.
+   */
   @UiThread
   public void performPostponedRequestsDelayed () {
-    delayedHandler.performOperation();
+    final long delay;
+    synchronized (dataLock) {
+      if (postponedKeys.size() < getMaxBatchSize()) {
+        final long now = SystemClock.uptimeMillis();
+        if (firstDelayedRequestTime == 0) {
+          firstDelayedRequestTime = now;
+        }
+        delay = Math.max(0, Math.min(COALESCE_DELAY_MS, firstDelayedRequestTime + MAX_COALESCE_DELAY_MS - now));
+      } else {
+        delay = -1;
+      }
+    }
+    UI.cancel(delayedFlush);
+    if (delay >= 0) {
+      UI.post(delayedFlush, delay);
+    } else {
+      performPostponedRequests();
+    }
   }
 
-  @UiThread
+  /**
+   * Requests postponed keys in batches of up to {@link #getMaxBatchSize()} keys.
+   * Keys with watchers go first. When {@link #getMaxInFlightBatchCount()} is reached,
+   * remaining keys are requested once one of the batches is loaded.
+   */
+  @AnyThread
   public void performPostponedRequests () {
-    final Set<Key> keysToRequest;
+    final List<Set<Key>> batches = new ArrayList<>();
     int contextId;
     synchronized (dataLock) {
+      firstDelayedRequestTime = 0;
+      isFlushPending = false;
       if (postponedKeys.isEmpty()) {
         return;
       }
-      loadingKeys.addAll(postponedKeys);
-      keysToRequest = new HashSet<>(postponedKeys);
-      postponedKeys.clear();
+      final int maxBatchSize = getMaxBatchSize();
+      final int maxInFlightBatchCount = getMaxInFlightBatchCount();
+      while (!postponedKeys.isEmpty()) {
+        if (inFlightBatchCount >= maxInFlightBatchCount) {
+          isFlushPending = true;
+          break;
+        }
+        Set<Key> keysToRequest = new LinkedHashSet<>(Math.min(maxBatchSize, postponedKeys.size()));
+        for (Key key : postponedKeys) {
+          if (keysToRequest.size() == maxBatchSize)
+            break;
+          if (watcherCounts.containsKey(key)) {
+            keysToRequest.add(key);
+          }
+        }
+        if (keysToRequest.size() < maxBatchSize) {
+          for (Key key : postponedKeys) {
+            if (keysToRequest.size() == maxBatchSize)
+              break;
+            keysToRequest.add(key);
+          }
+        }
+        postponedKeys.removeAll(keysToRequest);
+        Batch batch = newBatch(keysToRequest.size(), true);
+        for (Key key : keysToRequest) {
+          loadingKeys.put(key, batch);
+        }
+        requestCount += keysToRequest.size();
+        batches.add(keysToRequest);
+      }
       contextId = this.contextId;
     }
-    requestData(contextId, keysToRequest);
+    for (Set<Key> keysToRequest : batches) {
+      requestData(contextId, keysToRequest);
+    }
+  }
+
+  private Batch newBatch (int keyCount, boolean isLimited) {
+    // Called within dataLock
+    if (isLimited) {
+      inFlightBatchCount++;
+    }
+    return new Batch(keyCount, isLimited);
+  }
+
+  /**
+   * @return {@code true} if there are postponed keys waiting for the batch to finish
+   */
+  private boolean onBatchEntryLoaded (Batch batch) {
+    // Called within dataLock
+    if (--batch.remainingCount > 0) {
+      return false;
+    }
+    final long batchNanos = System.nanoTime() - batch.startTime;
+    batchCount++;
+    totalBatchNanos += batchNanos;
+    maxBatchNanos = Math.max(maxBatchNanos, batchNanos);
+    if (batch.isLimited) {
+      inFlightBatchCount--;
+      return isFlushPending;
+    }
+    return false;
   }
 
   protected final boolean isCancelled (int contextId) {
@@ -198,31 +584,42 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
     }
   }
 
-  @UiThread
+  @AnyThread
   protected abstract void requestData (int contextId, Collection<Key> keysToRequest);
 
   @TdlibThread
   protected final void processData (int contextId, @NonNull Key key, @Nullable Value value) {
     if (value != null) {
-      processEntry(contextId, newEntry(key, value, null));
+      processEntry(contextId, newEntry(key, value, null), false);
     } else {
-      processError(contextId, key, new TdApi.Error(404, "Not Found"));
+      processEntry(contextId, newEntry(key, null, newNotFoundError()), true);
     }
   }
 
   @TdlibThread
   protected final void processError (int contextId, @NonNull Key key, @NonNull TdApi.Error error) {
-    processEntry(contextId, newEntry(key, null, error));
+    processEntry(contextId, newEntry(key, null, error), false);
   }
 
   @TdlibThread
-  private void processEntry (int contextId, Result entry) {
+  private void processEntry (int contextId, Result entry, boolean isNotFound) {
     List<Watcher<Key, Value, Result>> watcherList;
     synchronized (dataLock) {
       if (this.contextId != contextId)
         return;
-      entries.put(entry.key, entry);
+      putEntry(entry);
+      if (persistentKeysKey != null) {
+        // Errors other than missing data are not remembered, so the key is requested again after restart
+        if (isNotFound) {
+          notFoundTimes.remove(entry.key);
+          notFoundTimes.put(entry.key, System.currentTimeMillis());
+          onNotFoundKeysChanged(contextId);
+        } else if (!entry.isNotFound() && notFoundTimes.remove(entry.key) != null) {
+          onNotFoundKeysChanged(contextId);
+        }
+      }
       watcherList = watchers.remove(entry.key);
+      watcherCounts.remove(entry.key);
     }
     ReferenceList<Watcher<Key, Value, Result>> referenceList = watcherReferences.removeAll(entry.key);
     if (referenceList != null) {
@@ -236,10 +633,17 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
         watcher.onEntryLoaded(this, entry);
       }
     }
+    boolean needFlush = false;
     synchronized (dataLock) {
       if (this.contextId != contextId)
         return;
-      loadingKeys.remove(entry.key);
+      Batch batch = loadingKeys.remove(entry.key);
+      if (batch != null) {
+        needFlush = onBatchEntryLoaded(batch);
+      }
+    }
+    if (needFlush) {
+      performPostponedRequests();
     }
   }
 
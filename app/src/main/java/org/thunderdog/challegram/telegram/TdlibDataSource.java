@@ -22,12 +22,14 @@ import androidx.media3.datasource.DataSource;
 import androidx.media3.datasource.DataSpec;
 
 import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.U;
 import org.thunderdog.challegram.data.TD;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -91,6 +93,85 @@ public final class TdlibDataSource extends BaseDataSource {
     }
   }
 
+  /**
+   * Read statistics of a data source since it was opened: how many reads were served from the read-ahead buffer,
+   * and how long reader waited for the data to be downloaded.
+   */
+  public static final class Stats {
+    private long readCount, bufferedReadCount, bytesRead;
+    private long fileReadCount, fileBytesRead;
+    private long stallCount, stallNanos, maxStallNanos;
+
+    private synchronized void onRead (int byteCount, boolean fromBuffer) {
+      readCount++;
+      bytesRead += byteCount;
+      if (fromBuffer) {
+        bufferedReadCount++;
+      }
+    }
+
+    private synchronized void onFileRead (int byteCount) {
+      fileReadCount++;
+      fileBytesRead += byteCount;
+    }
+
+    private synchronized void onStall (long nanos) {
+      stallCount++;
+      stallNanos += nanos;
+      maxStallNanos = Math.max(maxStallNanos, nanos);
+    }
+
+    private synchronized void reset () {
+      readCount = bufferedReadCount = bytesRead = 0;
+      fileReadCount = fileBytesRead = 0;
+      stallCount = stallNanos = maxStallNanos = 0;
+    }
+
+    public synchronized long getReadCount () {
+      return readCount;
+    }
+
+    public synchronized long getBufferedReadCount () {
+      return bufferedReadCount;
+    }
+
+    public synchronized long getFileReadCount () {
+      return fileReadCount;
+    }
+
+    public synchronized long getStallCount () {
+      return stallCount;
+    }
+
+    public synchronized long getAverageBytesPerRead () {
+      return readCount > 0 ? bytesRead / readCount : 0;
+    }
+
+    public synchronized long getAverageBytesPerFileRead () {
+      return fileReadCount > 0 ? fileBytesRead / fileReadCount : 0;
+    }
+
+    public synchronized long getStallTime (TimeUnit unit) {
+      return unit.convert(stallNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    @NonNull
+    public synchronized String toString () {
+      return "reads: " + readCount + " (buffered: " + bufferedReadCount + ", " + getAverageBytesPerRead() + " bytes/read)" +
+        ", file reads: " + fileReadCount + " (" + getAverageBytesPerFileRead() + " bytes/read)" +
+        ", stalls: " + stallCount + " in " + getStallTime(TimeUnit.MILLISECONDS) + "ms (max " + TimeUnit.NANOSECONDS.toMillis(maxStallNanos) + "ms)";
+    }
+  }
+
+  private final Stats stats = new Stats();
+
+  public Stats getStats () {
+    return stats;
+  }
+
+  private static final int READ_AHEAD_BUFFER_SIZE = 128 * 1024;
+
   private Uri uri;
   private long bytesRead;
   private Tdlib tdlib;
@@ -124,6 +205,7 @@ public final class TdlibDataSource extends BaseDataSource {
 
     this.uri = uri;
     this.bytesRead = dataSpec.position;
+    this.stats.reset();
     this.tdlib = TdlibManager.getTdlib(accountId);
 
     final TdApi.Function<?> function = !StringUtils.isEmpty(remoteId) ? new TdApi.GetRemoteFile(remoteId, null) : new TdApi.GetFile(fileId);
@@ -174,7 +256,11 @@ public final class TdlibDataSource extends BaseDataSource {
     TdApi.File currentFile;
     synchronized (fileLock) {
       currentFile = this.file;
-      boolean notify = currentFile != null && currentFile.id == file.file.id && Td.copyTo(file.file, currentFile);
+      if (currentFile == null || currentFile.id != file.file.id) {
+        return;
+      }
+      final long prevDownloadOffset = currentFile.local.downloadOffset;
+      boolean notify = Td.copyTo(file.file, currentFile) && canWakeUp(currentFile, prevDownloadOffset);
       if (notify && this.latch != null) {
         this.latch.countDown();
         this.latch = null;
@@ -182,6 +268,15 @@ public final class TdlibDataSource extends BaseDataSource {
     }
   }
 
+  private boolean canWakeUp (TdApi.File file, long prevDownloadOffset) {
+    final long offset = waitOffset;
+    if (offset == -1 || file.local.isDownloadingCompleted || !file.local.isDownloadingActive || file.local.downloadOffset != prevDownloadOffset) {
+      return true;
+    }
+    // Download continues within the same range: wake up reader only once it reaches the awaited offset
+    return offset < file.local.downloadOffset || offset < file.local.downloadOffset + file.local.downloadedPrefixSize;
+  }
+
   private long getAvailableSize (TdApi.File file, long offset, int length) {
     long available;
     if (file.local.isDownloadingCompleted) {
@@ -201,7 +296,37 @@ public final class TdlibDataSource extends BaseDataSource {
 
   private final TdApi.File localFile = new TdApi.File(0, 0, 0, new TdApi.LocalFile(), new TdApi.RemoteFile());
   private CountDownLatch latch;
+  private long waitOffset = -1;
   private RandomAccessFile openFile;
+  private long filePosition;
+
+  // Bytes [readAheadOffset, readAheadOffset + readAheadSize) of the file, already known to be downloaded
+  private byte[] readAheadBuffer;
+  private long readAheadOffset;
+  private int readAheadSize;
+
+  private int readBuffered (byte[] buffer, int bufferOffset, int readLength, long offset) {
+    if (readAheadSize == 0 || offset < readAheadOffset || offset >= readAheadOffset + readAheadSize) {
+      return 0;
+    }
+    final int start = (int) (offset - readAheadOffset);
+    final int count = Math.min(readLength, readAheadSize - start);
+    System.arraycopy(readAheadBuffer, start, buffer, bufferOffset, count);
+    return count;
+  }
+
+  private int readFile (byte[] buffer, int bufferOffset, int readLength, long offset) throws IOException {
+    if (filePosition != offset) {
+      openFile.seek(offset);
+      filePosition = offset;
+    }
+    int readCount = openFile.read(buffer, bufferOffset, readLength);
+    if (readCount > 0) {
+      filePosition += readCount;
+      stats.onFileRead(readCount);
+    }
+    return readCount;
+  }
 
   private boolean acquireReference (TdApi.File file, long offset) {
     if (!referenceAcquired && file.local.canBeDownloaded) {
@@ -227,11 +352,19 @@ public final class TdlibDataSource extends BaseDataSource {
     if (readLength == 0) {
       return 0;
     }
+    final int bufferedCount = readBuffered(buffer, bufferOffset, readLength, bytesRead);
+    if (bufferedCount > 0) {
+      bytesTransferred(bufferedCount);
+      bytesRead += bufferedCount;
+      stats.onRead(bufferedCount, true);
+      return bufferedCount;
+    }
     try {
       boolean first = true;
       do {
         final TdApi.File file;
         final CountDownLatch latch;
+        final long offset = bytesRead;
         synchronized (fileLock) {
           if (this.file != null) {
             Td.copyTo(this.file, localFile);
@@ -242,6 +375,7 @@ public final class TdlibDataSource extends BaseDataSource {
             } else {
               this.latch = latch = new CountDownLatch(1);
             }
+            this.waitOffset = offset;
           } else {
             file = null;
             latch = null;
@@ -249,7 +383,6 @@ public final class TdlibDataSource extends BaseDataSource {
         }
         if (file == null)
           throw new TdlibDataSourceException("file == null");
-        final long offset = bytesRead;
         if (file.size != 0 && offset >= file.size)
           return C.RESULT_END_OF_INPUT;
 
@@ -261,29 +394,46 @@ public final class TdlibDataSource extends BaseDataSource {
             acquireReference(file, offset);
           }
         }
-        long available = getAvailableSize(file, offset, readLength);
+        // Ask for more than requested, so that the following reads are served from memory
+        long available = getAvailableSize(file, offset, Math.max(readLength, READ_AHEAD_BUFFER_SIZE));
         if (available == 0) {
-          latch.await();
+          awaitData(latch);
           continue;
         }
         try {
-          boolean opened = false;
           synchronized (fileLock) {
             if (openFile == null) {
               openFile = new RandomAccessFile(file.local.path, "r");
-              opened = true;
+              filePosition = 0;
+            }
+          }
+          int readCount;
+          if (available <= readLength) {
+            readCount = readFile(buffer, bufferOffset, (int) available, offset);
+          } else {
+            if (readAheadBuffer == null) {
+              readAheadBuffer = new byte[READ_AHEAD_BUFFER_SIZE];
+            }
+            readAheadSize = 0;
+            int fillCount = readFile(readAheadBuffer, 0, (int) Math.min(available, READ_AHEAD_BUFFER_SIZE), offset);
+            if (fillCount > 0) {
+              readAheadOffset = offset;
+              readAheadSize = fillCount;
+            }
+            readCount = readBuffered(buffer, bufferOffset, readLength, offset);
+            if (readCount == 0) {
+              readCount = fillCount;
             }
           }
-          if (opened && offset > 0) {
-            openFile.seek(offset);
+          if (readCount > 0) {
+            bytesTransferred(readCount);
+            bytesRead += readCount;
+            stats.onRead(readCount, false);
           }
-          int readCount = openFile.read(buffer, bufferOffset, available > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) available);
-          bytesTransferred(readCount);
-          bytesRead += readCount;
           return readCount;
         } catch (IOException e) {
           if (acquireReference(file, offset)) {
-            latch.await();
+            awaitData(latch);
           } else {
             throw new TdlibDataSourceException(e);
           }
@@ -294,6 +444,12 @@ public final class TdlibDataSource extends BaseDataSource {
     }
   }
 
+  private void awaitData (CountDownLatch latch) throws InterruptedException {
+    final long startTime = System.nanoTime();
+    latch.await();
+    stats.onStall(System.nanoTime() - startTime);
+  }
+
   @Nullable
   @Override
   public Uri getUri () {
@@ -315,7 +471,10 @@ public final class TdlibDataSource extends BaseDataSource {
         U.closeFile(this.openFile);
         this.openFile = null;
       }
+      this.waitOffset = -1;
     }
+    readAheadBuffer = null;
+    readAheadSize = 0;
     if (tdlib != null && file != null) {
       if (referenceAcquired) {
         tdlib.files().removeCloudReference(file, listener);
@@ -323,6 +482,9 @@ public final class TdlibDataSource extends BaseDataSource {
       }
       tdlib.listeners().removeFileListener(file.id, listener);
       transferEnded();
+      if (Log.isEnabled(Log.TAG_PLAYER)) {
+        Log.v(Log.TAG_PLAYER, "TdlibDataSource closed, fileId:%d, %s", file.id, stats);
+      }
     }
     tdlib = null;
   }
@@ -52,8 +52,23 @@ public final class TdlibEmojiManager extends TdlibDataManager<Long, TdApi.Sticke
     }
   }
 
+  private static final int MAX_ENTRY_COUNT = 4000;
+
+  private static final KeySerializer<Long> KEY_SERIALIZER = new KeySerializer<>() {
+    @Override
+    public long serialize (@NonNull Long customEmojiId) {
+      return customEmojiId;
+    }
+
+    @NonNull
+    @Override
+    public Long deserialize (long customEmojiId) {
+      return customEmojiId;
+    }
+  };
+
   public TdlibEmojiManager (Tdlib tdlib) {
-    super(tdlib);
+    super(tdlib, MAX_ENTRY_COUNT, "custom_emoji_not_found", KEY_SERIALIZER);
   }
 
   @Override
@@ -61,6 +76,16 @@ public final class TdlibEmojiManager extends TdlibDataManager<Long, TdApi.Sticke
     return new Entry(key, value, error);
   }
 
+  @Override
+  protected int getMaxBatchSize () {
+    return TdConstants.MAX_CUSTOM_EMOJI_COUNT_PER_REQUEST;
+  }
+
+  @Override
+  protected int getMaxInFlightBatchCount () {
+    return 3;
+  }
+
   @Override
   protected void requestData (int contextId, Collection<Long> keysToRequest) {
     long[][] customEmojiIdsChunks = toLongArray(keysToRequest, TdConstants.MAX_CUSTOM_EMOJI_COUNT_PER_REQUEST);
@@ -0,0 +1,199 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.drinkless.tdlib.TdApi;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pending operation and latest progress of files, keyed by file id.
+ *
+ * There is only one writer at a time: all updates must happen within {@code synchronized (TdlibFilesManager.this)}.
+ * Reads don't take any lock: every slot of the open-addressing table holds an immutable entry,
+ * and slots and the table itself are published with volatile writes.
+ * Entries without pending operation and progress are dropped when the table is resized.
+ */
+final class TdlibFileStateRegistry {
+  private static final int MIN_CAPACITY = 64;
+
+  public static final class State {
+    public static final State EMPTY = new State(0, null);
+
+    public final int operation;
+    @Nullable
+    public final TdApi.File file;
+
+    private State (int operation, @Nullable TdApi.File file) {
+      this.operation = operation;
+      this.file = file;
+    }
+
+    public boolean isEmpty () {
+      return operation == 0 && file == null;
+    }
+  }
+
+  private static final class Entry {
+    final int fileId;
+    final State state;
+
+    Entry (int fileId, State state) {
+      this.fileId = fileId;
+      this.state = state;
+    }
+  }
+
+  private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+
+  // Accessed by the writer only
+  private int entryCount;
+  private long updateCount, resizeCount;
+
+  private static int indexOf (int fileId, int mask) {
+    int hash = fileId * 0x9e3779b9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  /**
+   * @return index of the slot that holds the file, or of the empty slot where it would be inserted
+   */
+  private static int findIndex (AtomicReferenceArray<Entry> table, int fileId) {
+    final int mask = table.length() - 1;
+    for (int index = indexOf(fileId, mask); ; index = (index + 1) & mask) {
+      Entry entry = table.get(index);
+      if (entry == null || entry.fileId == fileId) {
+        return index;
+      }
+    }
+  }
+
+  private AtomicReferenceArray<Entry> resize (AtomicReferenceArray<Entry> table) {
+    int liveCount = 0;
+    for (int i = 0; i < table.length(); i++) {
+      Entry entry = table.get(i);
+      if (entry != null && !entry.state.isEmpty()) {
+        liveCount++;
+      }
+    }
+    // Keeps at least a quarter of the table free for new entries, so compaction is amortized.
+    // Table never shrinks, as files are usually loaded in bursts
+    int capacity = table.length();
+    if ((liveCount + 1) * 4 > capacity) {
+      capacity <<= 1;
+    }
+    AtomicReferenceArray<Entry> newTable = new AtomicReferenceArray<>(capacity);
+    for (int i = 0; i < table.length(); i++) {
+      Entry entry = table.get(i);
+      if (entry != null && !entry.state.isEmpty()) {
+        newTable.set(findIndex(newTable, entry.fileId), entry);
+      }
+    }
+    // Readers that still use the old table see dropped entries as empty, which they are
+    this.entryCount = liveCount;
+    this.table = newTable;
+    this.resizeCount++;
+    return newTable;
+  }
+
+  @NonNull
+  @AnyThread
+  public State get (int fileId) {
+    // Slot may be taken by another file right after probing, so the probed entry is used instead of reading it again
+    AtomicReferenceArray<Entry> table = this.table;
+    final int mask = table.length() - 1;
+    for (int index = indexOf(fileId, mask); ; index = (index + 1) & mask) {
+      Entry entry = table.get(index);
+      if (entry == null) {
+        return State.EMPTY;
+      }
+      if (entry.fileId == fileId) {
+        return entry.state;
+      }
+    }
+  }
+
+  @AnyThread
+  public int getOperation (int fileId) {
+    return get(fileId).operation;
+  }
+
+  public void setOperation (int fileId, int operation) {
+    update(fileId, true, operation, false, null);
+  }
+
+  public void setFile (int fileId, @Nullable TdApi.File file) {
+    update(fileId, false, 0, true, file);
+  }
+
+  public void remove (int fileId) {
+    update(fileId, true, 0, true, null);
+  }
+
+  private void update (int fileId, boolean setOperation, int operation, boolean setFile, @Nullable TdApi.File file) {
+    // Called within synchronized (TdlibFilesManager.this)
+    updateCount++;
+    AtomicReferenceArray<Entry> table = this.table;
+    int index = findIndex(table, fileId);
+    Entry entry = table.get(index);
+    State prevState = entry != null ? entry.state : State.EMPTY;
+    State newState = new State(
+      setOperation ? operation : prevState.operation,
+      setFile ? file : prevState.file
+    );
+    if (entry == null) {
+      if (newState.isEmpty()) {
+        return;
+      }
+      if ((entryCount + 1) * 2 > table.length()) {
+        table = resize(table);
+        index = findIndex(table, fileId);
+      }
+      entryCount++;
+    }
+    table.set(index, new Entry(fileId, newState));
+  }
+
+  public interface StateVisitor {
+    void onVisit (int fileId, @NonNull State state);
+  }
+
+  /**
+   * Visits all files with pending operation or progress, as of the latest table snapshot.
+   */
+  @AnyThread
+  public void forEach (@NonNull StateVisitor visitor) {
+    AtomicReferenceArray<Entry> table = this.table;
+    for (int i = 0; i < table.length(); i++) {
+      Entry entry = table.get(i);
+      if (entry != null && !entry.state.isEmpty()) {
+        visitor.onVisit(entry.fileId, entry.state);
+      }
+    }
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    // Called within synchronized (TdlibFilesManager.this)
+    return "TdlibFileStateRegistry { entries = " + entryCount + "/" + table.length() +
+      ", updates = " + updateCount +
+      ", resizes = " + resizeCount + " }";
+  }
+}
@@ -18,6 +18,7 @@ import android.content.SharedPreferences;
 import android.os.Build;
 import android.util.SparseIntArray;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.IntDef;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
@@ -43,7 +44,6 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -89,8 +89,8 @@ public class TdlibFilesManager implements GlobalConnectionListener {
   private final ReferenceIntMap<FileListener> listeners;
   private final ReferenceIntMap<SimpleListener> simpleListeners;
   private final ReferenceList<FileListener> globalListeners;
-  private final SparseIntArray pendingOperations;
-  private final HashMap<Integer, TdApi.File> pendingFiles;
+  // Written within synchronized (this), read without locks
+  private final TdlibFileStateRegistry fileStates;
 
   private final SparseArrayCompat<List<FileUpdateListener>> activeCloudReferences;
   private final SparseIntArray downloadingCloudFiles;
@@ -104,8 +104,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
     this.simpleListeners = new ReferenceIntMap<>(true);
     this.globalListeners = new ReferenceList<>(true);
 
-    this.pendingOperations = new SparseIntArray();
-    this.pendingFiles = new HashMap<>();
+    this.fileStates = new TdlibFileStateRegistry();
 
     this.activeCloudReferences = new SparseArrayCompat<>();
     this.downloadingCloudFiles = new SparseIntArray();
@@ -298,7 +297,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
   }
 
   private void seekFileInternal (TdApi.File file, long offset, long limit) {
-    if (!TD.withinDistance(file, offset) && pendingOperations.get(file.id) == OPERATION_DOWNLOAD) {
+    if (!TD.withinDistance(file, offset) && fileStates.getOperation(file.id) == OPERATION_DOWNLOAD) {
       if (!Config.DEBUG_DISABLE_DOWNLOAD) {
         Log.i("FILES: downloadFile %d offset=%d", file.id, offset);
         tdlib.client().send(new TdApi.DownloadFile(file.id, CLOUD_PRIORITY, offset, limit, false), filesHandler);
@@ -328,7 +327,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
       activeCloudReferences.put(file.id, references);
       if (!file.local.isDownloadingActive) {
         synchronized (this) {
-          int pendingOperation = pendingOperations.get(file.id);
+          int pendingOperation = fileStates.getOperation(file.id);
           if (pendingOperation == OPERATION_NONE) {
             downloadingCloudFiles.put(file.id, 1);
             downloadFileInternal(file.id, CLOUD_PRIORITY, offset, 0, null);
@@ -361,7 +360,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
           if (hasStartedDownloadByCloud) {
             downloadingCloudFiles.removeAt(i);
           }
-          int pendingOperation = pendingOperations.get(file.id);
+          int pendingOperation = fileStates.getOperation(file.id);
           if (pendingOperation != OPERATION_NONE && hasStartedDownloadByCloud) {
             tdlib.client().send(new TdApi.CancelDownloadFile(file.id, false), filesHandler);
           }
@@ -386,10 +385,10 @@ public class TdlibFilesManager implements GlobalConnectionListener {
 
   private boolean addFileListener (final TdApi.File file, final @NonNull FileListener listener) {
     if (listeners.add(file.id, listener)) {
-      int pendingOperation = pendingOperations.get(file.id);
-      if (pendingOperation != OPERATION_NONE) {
+      TdlibFileStateRegistry.State fileState = fileStates.get(file.id);
+      if (fileState.operation != OPERATION_NONE) {
         listener.onFileLoadStateChanged(tdlib, file.id, STATE_IN_PROGRESS, null);
-        TdApi.File pendingFile = pendingFiles.get(file.id);
+        TdApi.File pendingFile = fileState.file;
         if (pendingFile != null) {
           Td.copyTo(pendingFile, file);
           float progress = TD.getFileProgress(file);
@@ -478,9 +477,9 @@ public class TdlibFilesManager implements GlobalConnectionListener {
   }*/
 
   private void downloadFileInternal (int fileId, int priority, long offset, long limit, final @Nullable Client.ResultHandler handler) {
-    int pendingOperation = pendingOperations.get(fileId);
+    int pendingOperation = fileStates.getOperation(fileId);
     if (pendingOperation == OPERATION_NONE) {
-      pendingOperations.put(fileId, OPERATION_DOWNLOAD);
+      fileStates.setOperation(fileId, OPERATION_DOWNLOAD);
       notifyFileState(fileId, STATE_IN_PROGRESS, null);
       if (Log.isEnabled(Log.TAG_TDLIB_FILES)) {
         Log.i(Log.TAG_TDLIB_FILES, "downloadFileInternal id=%d priority=%d offset=%d", fileId, priority, offset);
@@ -511,8 +510,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
   }
 
   private void removePendingOperation (int fileId) {
-    pendingOperations.delete(fileId);
-    pendingFiles.remove(fileId);
+    fileStates.remove(fileId);
   }
 
   // Download for whatever reason
@@ -545,7 +543,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
 
   public boolean cancelDownloadOrUploadFile (int fileId, boolean weak, boolean byUserRequest) { // When user clicks on cancel button on photo
     synchronized (this) {
-      int pendingOperation = pendingOperations.get(fileId);
+      int pendingOperation = fileStates.getOperation(fileId);
       if (pendingOperation != OPERATION_NONE) {
         if (byUserRequest) {
           manuallyCancelledFiles.add(fileId);
@@ -558,22 +556,18 @@ public class TdlibFilesManager implements GlobalConnectionListener {
     return false;
   }
 
+  @AnyThread
   public boolean hasPendingOperation (int fileId) {
-    synchronized (this) {
-      return pendingOperations.indexOfKey(fileId) >= 0;
-    }
+    return fileStates.getOperation(fileId) != OPERATION_NONE;
   }
 
   public void cancelAllPendingDownloads () { // When Data Saver becomes active due to network type change
     synchronized (this) {
-      final int size = pendingOperations.size();
-      for (int i = size - 1; i >= 0; i--) {
-        int pendingOperation = pendingOperations.valueAt(i);
-        if (pendingOperation == OPERATION_DOWNLOAD) {
-          int fileId = pendingOperations.keyAt(i);
-          cancelDownloadOrUploadFileInternal(fileId, pendingOperation, false);
+      fileStates.forEach((fileId, state) -> {
+        if (state.operation == OPERATION_DOWNLOAD) {
+          cancelDownloadOrUploadFileInternal(fileId, state.operation, false);
         }
-      }
+      });
     }
   }
 
@@ -610,9 +604,8 @@ public class TdlibFilesManager implements GlobalConnectionListener {
   // Update handlers
 
   public void onFileUpdate (TdApi.UpdateFile update) {
-    // pendingOperations.get()
     synchronized (this) {
-      int pendingOperation = pendingOperations.get(update.file.id);
+      int pendingOperation = fileStates.getOperation(update.file.id);
 
       if (pendingOperation != OPERATION_NONE) {
         if (!update.file.remote.isUploadingActive && !update.file.local.isDownloadingActive && !update.file.remote.isUploadingCompleted && !update.file.local.isDownloadingCompleted) {
@@ -620,7 +613,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
           notifyFileState(update.file.id, STATE_PAUSED, null);
         }
       } else if (update.file.local.isDownloadingActive) {
-        pendingOperations.put(update.file.id, OPERATION_DOWNLOAD);
+        fileStates.setOperation(update.file.id, OPERATION_DOWNLOAD);
         notifyFileState(update.file.id, STATE_IN_PROGRESS, null);
       }
 
@@ -670,10 +663,12 @@ public class TdlibFilesManager implements GlobalConnectionListener {
   }*/
 
   public void onFileProgress (TdApi.UpdateFile update) {
+    // Ordered with state changes, so progress never arrives after STATE_PAUSED or STATE_DOWNLOADED_OR_UPLOADED
+    // and doesn't bring back progress of a file that has already finished. Readers of fileStates still don't block
     synchronized (this) {
       float progress = TD.getFileProgress(update.file);
       if (progress > 0f) {
-        pendingFiles.put(update.file.id, update.file);
+        fileStates.setFile(update.file.id, update.file);
       }
       notifyFileProgress(update.file);
     }
@@ -682,7 +677,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
   public void onFileLoaded (TdApi.UpdateFile update) {
     synchronized (this) {
       final int fileId = update.file.id;
-      int pendingOperation = pendingOperations.get(fileId);
+      int pendingOperation = fileStates.getOperation(fileId);
       this.manuallyCancelledFiles.remove(fileId);
       if (pendingOperation != OPERATION_NONE) {
         if (TD.isFileLoadedAndExists(update.file)) {
@@ -700,7 +695,7 @@ public class TdlibFilesManager implements GlobalConnectionListener {
   public void onFileUpdated (TdApi.UpdateFile update) {
     synchronized (this) {
       final int fileId = update.file.id;
-      int pendingOperation = pendingOperations.get(fileId);
+      int pendingOperation = fileStates.getOperation(fileId);
       if (pendingOperation != OPERATION_NONE) {
         removePendingOperation(fileId);
       }
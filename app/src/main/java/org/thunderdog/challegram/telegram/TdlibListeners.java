@@ -17,15 +17,16 @@ package org.thunderdog.challegram.telegram;
 import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.collection.LongSparseArray;
 
 import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.data.TD;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import me.vkryl.core.lambda.RunnableData;
 import me.vkryl.core.reference.ReferenceIntMap;
@@ -73,7 +74,7 @@ public class TdlibListeners {
 
   final ReferenceMap<String, ReactionLoadListener> reactionLoadListeners;
 
-  final Map<String, List<TdApi.Message>> pendingMessages = new HashMap<>();
+  final LongSparseArray<LongSparseArray<List<TdApi.Message>>> pendingMessages = new LongSparseArray<>();
 
   public TdlibListeners (Tdlib tdlib) {
     this.tdlib = tdlib;
@@ -116,21 +117,49 @@ public class TdlibListeners {
   }
 
   public void subscribeToUpdates (TdApi.Message message) {
-    String key = message.chatId + "_" + message.id;
-    List<TdApi.Message> messages = pendingMessages.get(key);
+    LongSparseArray<List<TdApi.Message>> chatMessages = pendingMessages.get(message.chatId);
+    if (chatMessages == null) {
+      chatMessages = new LongSparseArray<>();
+      pendingMessages.put(message.chatId, chatMessages);
+    }
+    List<TdApi.Message> messages = chatMessages.get(message.id);
     if (messages == null) {
       messages = new ArrayList<>();
-      pendingMessages.put(key, messages);
+      chatMessages.put(message.id, messages);
     }
     messages.add(message);
   }
 
   public void unsubscribeFromUpdates (TdApi.Message message) {
-    String key = message.chatId + "_" + message.id;
-    List<TdApi.Message> messages = pendingMessages.get(key);
+    List<TdApi.Message> messages = findPendingMessages(message.chatId, message.id);
     if (messages != null && messages.remove(message) && messages.isEmpty()) {
-      pendingMessages.remove(key);
+      removePendingMessages(message.chatId, message.id);
+    }
+  }
+
+  @Nullable
+  private List<TdApi.Message> findPendingMessages (long chatId, long messageId) {
+    if (pendingMessages.isEmpty()) {
+      return null;
     }
+    LongSparseArray<List<TdApi.Message>> chatMessages = pendingMessages.get(chatId);
+    return chatMessages != null ? chatMessages.get(messageId) : null;
+  }
+
+  @Nullable
+  private List<TdApi.Message> removePendingMessages (long chatId, long messageId) {
+    LongSparseArray<List<TdApi.Message>> chatMessages = pendingMessages.get(chatId);
+    if (chatMessages == null) {
+      return null;
+    }
+    List<TdApi.Message> messages = chatMessages.get(messageId);
+    if (messages != null) {
+      chatMessages.remove(messageId);
+      if (chatMessages.isEmpty()) {
+        pendingMessages.remove(chatId);
+      }
+    }
+    return messages;
   }
 
   @AnyThread
@@ -558,6 +587,97 @@ public class TdlibListeners {
 
   // Generic updates template
 
+  // Message & chat listeners dispatch
+
+  /**
+   * Counts message and chat listener invocations, split between wildcard subscribers
+   * ({@link #subscribeForGlobalUpdates}) and subscribers of a specific chat.
+   * Counts only while {@link Log#TAG_ACCOUNTS} is enabled and is logged there when account client is closed.
+   */
+  public static final class DispatchStats {
+    private final AtomicLong dispatchCount = new AtomicLong();
+    private final AtomicLong globalInvocationCount = new AtomicLong();
+    private final AtomicLong keyedInvocationCount = new AtomicLong();
+
+    public boolean isEnabled () {
+      return Log.isEnabled(Log.TAG_ACCOUNTS);
+    }
+
+    public void reset () {
+      dispatchCount.set(0);
+      globalInvocationCount.set(0);
+      keyedInvocationCount.set(0);
+    }
+
+    public long getDispatchCount () {
+      return dispatchCount.get();
+    }
+
+    public long getGlobalInvocationCount () {
+      return globalInvocationCount.get();
+    }
+
+    public long getKeyedInvocationCount () {
+      return keyedInvocationCount.get();
+    }
+
+    public double getInvocationsPerDispatch () {
+      long dispatchCount = this.dispatchCount.get();
+      return dispatchCount > 0 ? (double) (globalInvocationCount.get() + keyedInvocationCount.get()) / (double) dispatchCount : 0;
+    }
+
+    @Nullable
+    private <T> Iterator<T> track (@Nullable Iterator<T> iterator, boolean isKeyed) {
+      if (!isEnabled()) {
+        return iterator;
+      }
+      if (isKeyed) {
+        dispatchCount.incrementAndGet();
+      }
+      if (iterator == null) {
+        return null;
+      }
+      final AtomicLong counter = isKeyed ? keyedInvocationCount : globalInvocationCount;
+      return new Iterator<T>() {
+        @Override
+        public boolean hasNext () {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public T next () {
+          counter.incrementAndGet();
+          return iterator.next();
+        }
+      };
+    }
+
+    @Override
+    @NonNull
+    public String toString () {
+      return "dispatches: " + getDispatchCount() +
+        ", global: " + getGlobalInvocationCount() +
+        ", keyed: " + getKeyedInvocationCount() +
+        ", per dispatch: " + getInvocationsPerDispatch();
+    }
+  }
+
+  private final DispatchStats dispatchStats = new DispatchStats();
+
+  public DispatchStats dispatchStats () {
+    return dispatchStats;
+  }
+
+  @Nullable
+  private <T> Iterator<T> globalListeners (ReferenceList<T> list) {
+    return dispatchStats.track(list.iterator(), false);
+  }
+
+  @Nullable
+  private <T> Iterator<T> keyedListeners (ReferenceLongMap<T> map, long chatId) {
+    return dispatchStats.track(map.iterator(chatId), true);
+  }
+
   private static <T> void runUpdate (@Nullable Iterator<T> list, RunnableData<T> act) {
     if (list != null) {
       while (list.hasNext()) {
@@ -568,8 +688,8 @@ public class TdlibListeners {
   }
 
   private void runChatUpdate (long chatId, RunnableData<ChatListener> act) {
-    runUpdate(chatListeners.iterator(), act);
-    runUpdate(specificChatListeners.iterator(chatId), act);
+    runUpdate(globalListeners(chatListeners), act);
+    runUpdate(keyedListeners(specificChatListeners, chatId), act);
   }
 
   // updateNewMessage
@@ -583,8 +703,8 @@ public class TdlibListeners {
   }
 
   void updateNewMessage (TdApi.UpdateNewMessage update) {
-    updateNewMessage(update, messageListeners.iterator());
-    updateNewMessage(update, messageChatListeners.iterator(update.message.chatId));
+    updateNewMessage(update, globalListeners(messageListeners));
+    updateNewMessage(update, keyedListeners(messageChatListeners, update.message.chatId));
   }
 
   // updateMessageSendSucceeded
@@ -598,9 +718,17 @@ public class TdlibListeners {
   }
 
   private void replaceMessage (long oldMessageId, TdApi.Message message) {
-    List<TdApi.Message> messagesToUpdate = pendingMessages.remove(message.chatId + "_" + oldMessageId);
+    if (pendingMessages.isEmpty()) {
+      return;
+    }
+    List<TdApi.Message> messagesToUpdate = removePendingMessages(message.chatId, oldMessageId);
     if (messagesToUpdate != null && !messagesToUpdate.isEmpty()) {
-      pendingMessages.put(message.chatId + "_" + message.id, messagesToUpdate);
+      LongSparseArray<List<TdApi.Message>> chatMessages = pendingMessages.get(message.chatId);
+      if (chatMessages == null) {
+        chatMessages = new LongSparseArray<>();
+        pendingMessages.put(message.chatId, chatMessages);
+      }
+      chatMessages.put(message.id, messagesToUpdate);
       for (TdApi.Message dst : messagesToUpdate) {
         Td.copyTo(message, dst);
       }
@@ -609,8 +737,8 @@ public class TdlibListeners {
 
   void updateMessageSendSucceeded (TdApi.UpdateMessageSendSucceeded update) {
     replaceMessage(update.oldMessageId, update.message);
-    updateMessageSendSucceeded(update, messageListeners.iterator());
-    updateMessageSendSucceeded(update, messageChatListeners.iterator(update.message.chatId));
+    updateMessageSendSucceeded(update, globalListeners(messageListeners));
+    updateMessageSendSucceeded(update, keyedListeners(messageChatListeners, update.message.chatId));
   }
 
   // updateMessageSendFailed
@@ -625,8 +753,8 @@ public class TdlibListeners {
 
   void updateMessageSendFailed (TdApi.UpdateMessageSendFailed update) {
     replaceMessage(update.oldMessageId, update.message);
-    updateMessageSendFailed(update, messageListeners.iterator());
-    updateMessageSendFailed(update, messageChatListeners.iterator(update.message.chatId));
+    updateMessageSendFailed(update, globalListeners(messageListeners));
+    updateMessageSendFailed(update, keyedListeners(messageChatListeners, update.message.chatId));
   }
 
   // updateMessageSendAcknowledged
@@ -640,8 +768,8 @@ public class TdlibListeners {
   }
 
   void updateMessageSendAcknowledged (TdApi.UpdateMessageSendAcknowledged update) {
-    updateMessageSendAcknowledged(update, messageListeners.iterator());
-    updateMessageSendAcknowledged(update, messageChatListeners.iterator(update.chatId));
+    updateMessageSendAcknowledged(update, globalListeners(messageListeners));
+    updateMessageSendAcknowledged(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updateMessageContent
@@ -655,14 +783,14 @@ public class TdlibListeners {
   }
 
   void updateMessageContent (TdApi.UpdateMessageContent update) {
-    List<TdApi.Message> messages = pendingMessages.get(update.chatId + "_" + update.messageId);
+    List<TdApi.Message> messages = findPendingMessages(update.chatId, update.messageId);
     if (messages != null) {
       for (TdApi.Message message : messages) {
         message.content = update.newContent;
       }
     }
-    updateMessageContent(update, messageListeners.iterator());
-    updateMessageContent(update, messageChatListeners.iterator(update.chatId));
+    updateMessageContent(update, globalListeners(messageListeners));
+    updateMessageContent(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updatePoll (fake via updateMessageContent)
@@ -695,15 +823,15 @@ public class TdlibListeners {
   }
 
   void updateMessageEdited (TdApi.UpdateMessageEdited update) {
-    List<TdApi.Message> messages = pendingMessages.get(update.chatId + "_" + update.messageId);
+    List<TdApi.Message> messages = findPendingMessages(update.chatId, update.messageId);
     if (messages != null) {
       for (TdApi.Message message : messages) {
         message.editDate = update.editDate;
         message.replyMarkup = update.replyMarkup;
       }
     }
-    updateMessageEdited(update, messageListeners.iterator());
-    updateMessageEdited(update, messageChatListeners.iterator(update.chatId));
+    updateMessageEdited(update, globalListeners(messageListeners));
+    updateMessageEdited(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updateMessageContentOpened
@@ -717,14 +845,14 @@ public class TdlibListeners {
   }
 
   void updateMessageContentOpened (TdApi.UpdateMessageContentOpened update) {
-    List<TdApi.Message> messages = pendingMessages.get(update.chatId + "_" + update.messageId);
+    List<TdApi.Message> messages = findPendingMessages(update.chatId, update.messageId);
     if (messages != null) {
       for (TdApi.Message message : messages) {
         TD.setMessageOpened(message);
       }
     }
-    updateMessageContentOpened(update, messageListeners.iterator());
-    updateMessageContentOpened(update, messageChatListeners.iterator(update.chatId));
+    updateMessageContentOpened(update, globalListeners(messageListeners));
+    updateMessageContentOpened(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updateAnimatedEmojiMessageClicked
@@ -738,8 +866,8 @@ public class TdlibListeners {
   }
 
   void updateAnimatedEmojiMessageClicked (TdApi.UpdateAnimatedEmojiMessageClicked update) {
-    updateAnimatedEmojiMessageClicked(update, messageListeners.iterator());
-    updateAnimatedEmojiMessageClicked(update, messageChatListeners.iterator(update.chatId));
+    updateAnimatedEmojiMessageClicked(update, globalListeners(messageListeners));
+    updateAnimatedEmojiMessageClicked(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updateMessageIsPinned
@@ -753,14 +881,14 @@ public class TdlibListeners {
   }
 
   void updateMessageIsPinned (TdApi.UpdateMessageIsPinned update) {
-    List<TdApi.Message> messages = pendingMessages.get(update.chatId + "_" + update.messageId);
+    List<TdApi.Message> messages = findPendingMessages(update.chatId, update.messageId);
     if (messages != null) {
       for (TdApi.Message message : messages) {
         message.isPinned = update.isPinned;
       }
     }
-    updateMessageIsPinned(update, messageListeners.iterator());
-    updateMessageIsPinned(update, messageChatListeners.iterator(update.chatId));
+    updateMessageIsPinned(update, globalListeners(messageListeners));
+    updateMessageIsPinned(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updateMessagePendingContentUpdated
@@ -774,8 +902,8 @@ public class TdlibListeners {
   }
 
   void updateMessagePendingContentChanged (long chatId, long messageId) {
-    updateMessagePendingContentChanged(chatId, messageId, messageEditListeners.iterator());
-    updateMessagePendingContentChanged(chatId, messageId, messageEditChatListeners.iterator(chatId));
+    updateMessagePendingContentChanged(chatId, messageId, globalListeners(messageEditListeners));
+    updateMessagePendingContentChanged(chatId, messageId, keyedListeners(messageEditChatListeners, chatId));
   }
 
   // updateMessageLiveLocationViewed
@@ -789,8 +917,8 @@ public class TdlibListeners {
   }
 
   void updateMessageLiveLocationViewed (TdApi.UpdateMessageLiveLocationViewed update) {
-    updateMessageLiveLocationViewed(update, messageListeners.iterator());
-    updateMessageLiveLocationViewed(update, messageChatListeners.iterator(update.chatId));
+    updateMessageLiveLocationViewed(update, globalListeners(messageListeners));
+    updateMessageLiveLocationViewed(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updateMessageMentionRead
@@ -804,17 +932,17 @@ public class TdlibListeners {
   }
 
   void updateMessageMentionRead (TdApi.UpdateMessageMentionRead update, boolean counterChanged, boolean availabilityChanged) {
-    List<TdApi.Message> messages = pendingMessages.get(update.chatId + "_" + update.messageId);
+    List<TdApi.Message> messages = findPendingMessages(update.chatId, update.messageId);
     if (messages != null) {
       for (TdApi.Message message : messages) {
         message.containsUnreadMention = false;
       }
     }
-    updateMessageMentionRead(update, messageListeners.iterator());
-    updateMessageMentionRead(update, messageChatListeners.iterator(update.chatId));
+    updateMessageMentionRead(update, globalListeners(messageListeners));
+    updateMessageMentionRead(update, keyedListeners(messageChatListeners, update.chatId));
     if (counterChanged) {
-      updateChatUnreadMentionCount(update.chatId, update.unreadMentionCount, availabilityChanged, chatListeners.iterator());
-      updateChatUnreadMentionCount(update.chatId, update.unreadMentionCount, availabilityChanged, specificChatListeners.iterator(update.chatId));
+      updateChatUnreadMentionCount(update.chatId, update.unreadMentionCount, availabilityChanged, globalListeners(chatListeners));
+      updateChatUnreadMentionCount(update.chatId, update.unreadMentionCount, availabilityChanged, keyedListeners(specificChatListeners, update.chatId));
     }
   }
 
@@ -874,14 +1002,14 @@ public class TdlibListeners {
   }
 
   void updateMessageInteractionInfo (TdApi.UpdateMessageInteractionInfo update) {
-    List<TdApi.Message> messages = pendingMessages.get(update.chatId + "_" + update.messageId);
+    List<TdApi.Message> messages = findPendingMessages(update.chatId, update.messageId);
     if (messages != null) {
       for (TdApi.Message message : messages) {
         message.interactionInfo = update.interactionInfo;
       }
     }
-    updateMessageInteractionInfo(update, messageListeners.iterator());
-    updateMessageInteractionInfo(update, messageChatListeners.iterator(update.chatId));
+    updateMessageInteractionInfo(update, globalListeners(messageListeners));
+    updateMessageInteractionInfo(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updateMessageUnreadReactions
@@ -895,21 +1023,21 @@ public class TdlibListeners {
   }
 
   void updateMessageUnreadReactions (TdApi.UpdateMessageUnreadReactions update, boolean counterChanged, boolean availabilityChanged, TdApi.Chat chat, TdlibChatList[] chatLists) {
-    List<TdApi.Message> messages = pendingMessages.get(update.chatId + "_" + update.messageId);
+    List<TdApi.Message> messages = findPendingMessages(update.chatId, update.messageId);
     if (messages != null) {
       for (TdApi.Message message : messages) {
         message.unreadReactions = update.unreadReactions;
       }
     }
-    updateMessageUnreadReactions(update, messageListeners.iterator());
-    updateMessageUnreadReactions(update, messageChatListeners.iterator(update.chatId));
+    updateMessageUnreadReactions(update, globalListeners(messageListeners));
+    updateMessageUnreadReactions(update, keyedListeners(messageChatListeners, update.chatId));
     if (counterChanged) {
-      updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, chatListeners.iterator());
-      updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, specificChatListeners.iterator(update.chatId));
+      updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, globalListeners(chatListeners));
+      updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, keyedListeners(specificChatListeners, update.chatId));
     }
     if (counterChanged) {
-      updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, chatListeners.iterator());
-      updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, specificChatListeners.iterator(update.chatId));
+      updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, globalListeners(chatListeners));
+      updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, keyedListeners(specificChatListeners, update.chatId));
       if (chatLists != null) {
         for (TdlibChatList chatList : chatLists) {
           iterateChatListListeners(chatList, listener ->
@@ -931,8 +1059,8 @@ public class TdlibListeners {
   }
 
   void updateMessagesDeleted (TdApi.UpdateDeleteMessages update) {
-    updateMessagesDeleted(update, messageListeners.iterator());
-    updateMessagesDeleted(update, messageChatListeners.iterator(update.chatId));
+    updateMessagesDeleted(update, globalListeners(messageListeners));
+    updateMessagesDeleted(update, keyedListeners(messageChatListeners, update.chatId));
   }
 
   // updateChatUnreadMentionCount
@@ -946,8 +1074,8 @@ public class TdlibListeners {
   }
 
   void updateChatUnreadMentionCount (TdApi.UpdateChatUnreadMentionCount update, boolean availabilityChanged) {
-    updateChatUnreadMentionCount(update.chatId, update.unreadMentionCount, availabilityChanged, chatListeners.iterator());
-    updateChatUnreadMentionCount(update.chatId, update.unreadMentionCount, availabilityChanged, specificChatListeners.iterator(update.chatId));
+    updateChatUnreadMentionCount(update.chatId, update.unreadMentionCount, availabilityChanged, globalListeners(chatListeners));
+    updateChatUnreadMentionCount(update.chatId, update.unreadMentionCount, availabilityChanged, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateChatUnreadReactionCount
@@ -961,8 +1089,8 @@ public class TdlibListeners {
   }
 
   void updateChatUnreadReactionCount (TdApi.UpdateChatUnreadReactionCount update, boolean availabilityChanged, TdApi.Chat chat, TdlibChatList[] chatLists) {
-    updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, chatListeners.iterator());
-    updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, specificChatListeners.iterator(update.chatId));
+    updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, globalListeners(chatListeners));
+    updateChatUnreadReactionCount(update.chatId, update.unreadReactionCount, availabilityChanged, keyedListeners(specificChatListeners, update.chatId));
     if (chatLists != null) {
       for (TdlibChatList chatList : chatLists) {
         iterateChatListListeners(chatList, listener ->
@@ -990,8 +1118,8 @@ public class TdlibListeners {
   }
 
   void updateChatLastMessage (TdApi.UpdateChatLastMessage update, @Nullable List<Tdlib.ChatListChange> listChanges) {
-    updateChatLastMessage(update.chatId, update.lastMessage, listChanges, chatListeners.iterator());
-    updateChatLastMessage(update.chatId, update.lastMessage, listChanges, specificChatListeners.iterator(update.chatId));
+    updateChatLastMessage(update.chatId, update.lastMessage, listChanges, globalListeners(chatListeners));
+    updateChatLastMessage(update.chatId, update.lastMessage, listChanges, keyedListeners(specificChatListeners, update.chatId));
     if (listChanges != null) {
       for (Tdlib.ChatListChange listChange : listChanges) {
         listChange.list.onUpdateChatPosition(listChange.chat, listChange.change);
@@ -1016,8 +1144,8 @@ public class TdlibListeners {
     boolean orderChanged = listChange.change.orderChanged();
     boolean sourceChanged = listChange.change.sourceChanged();
     boolean pinStateChanged = listChange.change.pinStateChanged();
-    updateChatPosition(update.chatId, update.position, orderChanged, sourceChanged, pinStateChanged, chatListeners.iterator());
-    updateChatPosition(update.chatId, update.position, orderChanged, sourceChanged, pinStateChanged, specificChatListeners.iterator(update.chatId));
+    updateChatPosition(update.chatId, update.position, orderChanged, sourceChanged, pinStateChanged, globalListeners(chatListeners));
+    updateChatPosition(update.chatId, update.position, orderChanged, sourceChanged, pinStateChanged, keyedListeners(specificChatListeners, update.chatId));
     listChange.list.onUpdateChatPosition(listChange.chat, listChange.change);
   }
 
@@ -1046,8 +1174,8 @@ public class TdlibListeners {
   }
 
   void updateChatPermissions (TdApi.UpdateChatPermissions update) {
-    updateChatPermissions(update.chatId, update.permissions, chatListeners.iterator());
-    updateChatPermissions(update.chatId, update.permissions, specificChatListeners.iterator(update.chatId));
+    updateChatPermissions(update.chatId, update.permissions, globalListeners(chatListeners));
+    updateChatPermissions(update.chatId, update.permissions, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateChatTitle
@@ -1061,8 +1189,8 @@ public class TdlibListeners {
   }
 
   void updateChatTitle (TdApi.UpdateChatTitle update, TdApi.Chat chat, TdlibChatList[] chatLists) {
-    updateChatTitle(update, chatListeners.iterator());
-    updateChatTitle(update, specificChatListeners.iterator(update.chatId));
+    updateChatTitle(update, globalListeners(chatListeners));
+    updateChatTitle(update, keyedListeners(specificChatListeners, update.chatId));
     if (chatLists != null) {
       for (TdlibChatList chatList : chatLists) {
         iterateChatListListeners(chatList, listener ->
@@ -1083,8 +1211,8 @@ public class TdlibListeners {
   }
 
   void updateChatTheme (TdApi.UpdateChatTheme update, TdApi.Chat chat, TdlibChatList[] chatLists) {
-    updateChatTheme(update, chatListeners.iterator());
-    updateChatTheme(update, specificChatListeners.iterator(update.chatId));
+    updateChatTheme(update, globalListeners(chatListeners));
+    updateChatTheme(update, keyedListeners(specificChatListeners, update.chatId));
     if (chatLists != null) {
       for (TdlibChatList chatList : chatLists) {
         iterateChatListListeners(chatList, listener ->
@@ -1105,8 +1233,8 @@ public class TdlibListeners {
   }
 
   void updateChatPhoto (TdApi.UpdateChatPhoto update) {
-    updateChatPhoto(update, chatListeners.iterator());
-    updateChatPhoto(update, specificChatListeners.iterator(update.chatId));
+    updateChatPhoto(update, globalListeners(chatListeners));
+    updateChatPhoto(update, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateChatActionBar
@@ -1136,8 +1264,8 @@ public class TdlibListeners {
   }
 
   void updateChatHasScheduledMessages (TdApi.UpdateChatHasScheduledMessages update) {
-    updateChatHasScheduledMessages(update, chatListeners.iterator());
-    updateChatHasScheduledMessages(update, specificChatListeners.iterator(update.chatId));
+    updateChatHasScheduledMessages(update, globalListeners(chatListeners));
+    updateChatHasScheduledMessages(update, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateChatHasProtectedContent
@@ -1151,8 +1279,8 @@ public class TdlibListeners {
   }
 
   void updateChatHasProtectedContent (TdApi.UpdateChatHasProtectedContent update) {
-    updateChatHasProtectedContent(update, chatListeners.iterator());
-    updateChatHasProtectedContent(update, specificChatListeners.iterator(update.chatId));
+    updateChatHasProtectedContent(update, globalListeners(chatListeners));
+    updateChatHasProtectedContent(update, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateChatReadInbox
@@ -1166,8 +1294,8 @@ public class TdlibListeners {
   }
 
   void updateChatReadInbox (TdApi.UpdateChatReadInbox update, boolean availabilityChanged, TdApi.Chat chat, TdlibChatList[] chatLists) {
-    updateChatReadInbox(update, availabilityChanged, chatListeners.iterator());
-    updateChatReadInbox(update, availabilityChanged, specificChatListeners.iterator(update.chatId));
+    updateChatReadInbox(update, availabilityChanged, globalListeners(chatListeners));
+    updateChatReadInbox(update, availabilityChanged, keyedListeners(specificChatListeners, update.chatId));
     if (chatLists != null) {
       for (TdlibChatList chatList : chatLists) {
         iterateChatListListeners(chatList, listener ->
@@ -1188,8 +1316,8 @@ public class TdlibListeners {
   }
 
   void updateChatReadOutbox (TdApi.UpdateChatReadOutbox update) {
-    updateChatReadOutbox(update, chatListeners.iterator());
-    updateChatReadOutbox(update, specificChatListeners.iterator(update.chatId));
+    updateChatReadOutbox(update, globalListeners(chatListeners));
+    updateChatReadOutbox(update, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateChatReplyMarkup
@@ -1203,8 +1331,8 @@ public class TdlibListeners {
   }
 
   void updateChatReplyMarkup (TdApi.UpdateChatReplyMarkup update) {
-    updateChatReplyMarkup(update, chatListeners.iterator());
-    updateChatReplyMarkup(update, specificChatListeners.iterator(update.chatId));
+    updateChatReplyMarkup(update, globalListeners(chatListeners));
+    updateChatReplyMarkup(update, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateChatDraftMessage
@@ -1229,8 +1357,8 @@ public class TdlibListeners {
   }
 
   void updateChatDraftMessage (TdApi.UpdateChatDraftMessage update, List<Tdlib.ChatListChange> listChanges) {
-    updateChatDraftMessage(update.chatId, update.draftMessage, listChanges, chatListeners.iterator());
-    updateChatDraftMessage(update.chatId, update.draftMessage, listChanges, specificChatListeners.iterator(update.chatId));
+    updateChatDraftMessage(update.chatId, update.draftMessage, listChanges, globalListeners(chatListeners));
+    updateChatDraftMessage(update.chatId, update.draftMessage, listChanges, keyedListeners(specificChatListeners, update.chatId));
     if (listChanges != null) {
       for (Tdlib.ChatListChange listChange : listChanges) {
         listChange.list.onUpdateChatPosition(listChange.chat, listChange.change);
@@ -1260,8 +1388,8 @@ public class TdlibListeners {
   }
 
   void updateChatAvailableReactions (TdApi.UpdateChatAvailableReactions update) {
-    updateChatAvailableReactions(update, chatListeners.iterator());
-    updateChatAvailableReactions(update, specificChatListeners.iterator(update.chatId));
+    updateChatAvailableReactions(update, globalListeners(chatListeners));
+    updateChatAvailableReactions(update, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateCall
@@ -1335,8 +1463,8 @@ public class TdlibListeners {
   }
 
   void updateChatOnlineMemberCount (TdApi.UpdateChatOnlineMemberCount update) {
-    updateChatOnlineMemberCount(update.chatId, update.onlineMemberCount, chatListeners.iterator());
-    updateChatOnlineMemberCount(update.chatId, update.onlineMemberCount, specificChatListeners.iterator(update.chatId));
+    updateChatOnlineMemberCount(update.chatId, update.onlineMemberCount, globalListeners(chatListeners));
+    updateChatOnlineMemberCount(update.chatId, update.onlineMemberCount, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateMessageTtlSetting
@@ -1350,8 +1478,8 @@ public class TdlibListeners {
   }
 
   void updateChatMessageAutoDeleteTime (TdApi.UpdateChatMessageAutoDeleteTime update) {
-    updateChatMessageAutoDeleteTime(update.chatId, update.messageAutoDeleteTime, chatListeners.iterator());
-    updateChatMessageAutoDeleteTime(update.chatId, update.messageAutoDeleteTime, specificChatListeners.iterator(update.chatId));
+    updateChatMessageAutoDeleteTime(update.chatId, update.messageAutoDeleteTime, globalListeners(chatListeners));
+    updateChatMessageAutoDeleteTime(update.chatId, update.messageAutoDeleteTime, keyedListeners(specificChatListeners, update.chatId));
   }
 
   // updateChatActiveStories
@@ -1365,8 +1493,8 @@ public class TdlibListeners {
   }
 
   void updateChatActiveStories (TdApi.UpdateChatActiveStories update) {
-    updateChatActiveStories(update.activeStories, chatListeners.iterator());
-    updateChatActiveStories(update.activeStories, specificChatListeners.iterator(update.activeStories.chatId));
+    updateChatActiveStories(update.activeStories, globalListeners(chatListeners));
+    updateChatActiveStories(update.activeStories, keyedListeners(specificChatListeners, update.activeStories.chatId));
   }
 
   // updateStory
@@ -1811,7 +1939,7 @@ public class TdlibListeners {
     for (ChatListener listener : chatListeners) {
       listener.onChatDefaultDisableNotifications(update.chatId, update.defaultDisableNotification);
     }
-    Iterator<ChatListener> list = specificChatListeners.iterator(update.chatId);
+    Iterator<ChatListener> list = keyedListeners(specificChatListeners, update.chatId);
     if (list != null) {
       while (list.hasNext()) {
         list.next().onChatDefaultDisableNotifications(update.chatId, update.defaultDisableNotification);
@@ -1825,7 +1953,7 @@ public class TdlibListeners {
     for (ChatListener listener : chatListeners) {
       listener.onChatDefaultMessageSenderIdChanged(update.chatId, update.messageSenderId);
     }
-    Iterator<ChatListener> list = specificChatListeners.iterator(update.chatId);
+    Iterator<ChatListener> list = keyedListeners(specificChatListeners, update.chatId);
     if (list != null) {
       while (list.hasNext()) {
         list.next().onChatDefaultMessageSenderIdChanged(update.chatId, update.messageSenderId);
@@ -40,6 +40,7 @@ import org.thunderdog.challegram.U;
 import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.core.Background;
 import org.thunderdog.challegram.core.BaseThread;
+import org.thunderdog.challegram.core.StartupTrace;
 import org.thunderdog.challegram.core.WatchDog;
 import org.thunderdog.challegram.core.WatchDogContext;
 import org.thunderdog.challegram.data.TD;
@@ -309,6 +310,7 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
   private final LiveLocationManager liveLocationManager = new LiveLocationManager(this);
   private final TdlibNotificationManager.NotificationQueue notificationQueue = new TdlibNotificationManager.NotificationQueue("NotificationQueue", this);
   private final CallManager calls = new CallManager(this);
+  private final TdlibAccountScheduler accountScheduler = new TdlibAccountScheduler(this);
   private final Settings.ProxyChangeListener proxyChangeListener = new Settings.ProxyChangeListener() {
     @Override
     public void onProxyConfigurationChanged (int proxyId, @Nullable TdApi.InternalLinkTypeProxy proxy, String description, boolean isCurrent, boolean isNewAdd) {
@@ -496,6 +498,10 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
     return calls;
   }
 
+  public TdlibAccountScheduler accountScheduler () {
+    return accountScheduler;
+  }
+
   public LiveLocationManager liveLocation () {
     return liveLocationManager;
   }
@@ -505,7 +511,7 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
   }
 
   private void load (int specificAccountId, boolean forceService) {
-    readAccountConfig();
+    StartupTrace.run("TdlibManager.readAccountConfig", this::readAccountConfig);
     TdlibAccount selectedAccount = specificAccountId != TdlibAccount.NO_ID ? accounts.get(specificAccountId) : currentAccount;
     if (forceService && !selectedAccount.isService()) {
       selectedAccount = accounts.get(serviceAccountId());
@@ -552,7 +558,7 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
 
   // Client modification
 
-  void modifyClient (Tdlib tdlib, Client client) {
+  void modifyClient (Tdlib tdlib, TdlibClient client) {
     if (isEmulator) {
       client.send(new TdApi.SetOption("is_emulator", new TdApi.OptionValueBoolean(true)), tdlib.okHandler());
     }
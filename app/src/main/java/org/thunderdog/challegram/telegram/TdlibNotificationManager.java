@@ -56,6 +56,7 @@ import org.thunderdog.challegram.ui.MainController;
 import org.thunderdog.challegram.ui.MessagesController;
 import org.thunderdog.challegram.unsorted.Passcode;
 import org.thunderdog.challegram.unsorted.Settings;
+import org.thunderdog.challegram.unsorted.SettingsDatabase;
 
 import java.io.File;
 import java.lang.annotation.ElementType;
@@ -676,7 +677,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
     if (getDefaultVibrateMode(scope) != vibrateMode || (Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE && getDefaultVibrateOnlyIfSilent(scope) != onlyIfSilent)) {
       LocalScopeNotificationSettings settings = getLocalNotificationSettings(scope);
       settings.setVibrateMode(vibrateMode, onlyIfSilent);
-      LevelDB editor = Settings.instance().edit();
+      SettingsDatabase editor = Settings.instance().edit();
       if (vibrateMode != VIBRATE_MODE_DEFAULT) {
         editor.putInt(settings.suffix(KEY_SUFFIX_VIBRATE), vibrateMode);
       } else {
@@ -737,7 +738,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
    */
   public void setCustomVibrateMode (long chatId, int vibrateMode, boolean onlyIfSilent) {
     int oldVibrateMode = getCustomVibrateMode(chatId, VIBRATE_MODE_DEFAULT);
-    final LevelDB editor = Settings.instance().edit();
+    final SettingsDatabase editor = Settings.instance().edit();
     if (vibrateMode == VIBRATE_MODE_DEFAULT) {
       editor.remove(key(_CUSTOM_VIBRATE_KEY + chatId));
       if (Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE) {
@@ -805,7 +806,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
     if (getDefaultPriorityOrImportance(scope) != priorityOrImportance) {
       LocalScopeNotificationSettings settings = getLocalNotificationSettings(scope);
       settings.setPriorityOrImportance(priorityOrImportance);
-      LevelDB editor = Settings.instance().edit();
+      SettingsDatabase editor = Settings.instance().edit();
       if (priorityOrImportance != DEFAULT_PRIORITY_OR_IMPORTANCE) {
         editor.putInt(settings.suffix(KEY_SUFFIX_PRIORITY_OR_IMPORTANCE_KEY), priorityOrImportance);
       } else {
@@ -843,7 +844,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
    */
   public void setCustomPriorityOrImportance (long chatId, int priorityOrImportance) {
     int oldPriorityOrImportance = getCustomPriorityOrImportance(chatId, PRIORITY_OR_IMPORTANCE_UNSET);
-    final LevelDB editor = Settings.instance().edit();
+    final SettingsDatabase editor = Settings.instance().edit();
     if (priorityOrImportance == PRIORITY_OR_IMPORTANCE_UNSET) {
       editor.remove(key(_CUSTOM_PRIORITY_OR_IMPORTANCE_KEY + chatId));
     } else {
@@ -880,7 +881,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
     if (getDefaultLedColor(scope) != ledColor) {
       LocalScopeNotificationSettings settings = getLocalNotificationSettings(scope);
       settings.setLedColor(ledColor);
-      LevelDB editor = Settings.instance().edit();
+      SettingsDatabase editor = Settings.instance().edit();
       if (ledColor != LED_COLOR_DEFAULT) {
         editor.putInt(settings.suffix(KEY_SUFFIX_LED), ledColor);
       } else {
@@ -906,7 +907,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
 
   public void setCustomLedColor (long chatId, int ledColor) {
     int oldLedColor = getCustomLedColor(chatId, LED_COLOR_UNSET);
-    LevelDB editor = Settings.instance().edit();
+    SettingsDatabase editor = Settings.instance().edit();
     if (ledColor == LED_COLOR_UNSET) {
       editor.remove(key(_CUSTOM_LED_KEY + chatId));
     } else {
@@ -1011,7 +1012,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
     LocalScopeNotificationSettings settings = getLocalNotificationSettings(scope);
     if (!compareSounds(settings.getSound(), newSound) || !StringUtils.equalsOrBothEmpty(settings.getSoundName(), newSoundName) || !StringUtils.equalsOrBothEmpty(settings.getSoundPath(), newSoundPath)) {
       settings.setSound(newSound, newSoundName, newSoundPath);
-      LevelDB editor = Settings.instance().edit();
+      SettingsDatabase editor = Settings.instance().edit();
       if (newSound != null)
         editor.putString(settings.suffix(KEY_SUFFIX_SOUND), newSound);
       else
@@ -1072,7 +1073,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
   public void setCustomSound (long chatId, @Nullable String customSound, @Nullable String customSoundName, @Nullable String customSoundPath) {
     customSound = fixSoundUri(customSound);
     String oldSound = getCustomSound(chatId, null);
-    LevelDB editor = Settings.instance().edit();
+    SettingsDatabase editor = Settings.instance().edit();
     if (customSound == null) {
       editor.remove(key(_CUSTOM_SOUND_KEY + chatId));
     } else {
@@ -1187,7 +1188,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
   }
 
   @TargetApi(Build.VERSION_CODES.O)
-  private void incrementChannelVersion (@Nullable TdApi.NotificationSettingsScope scope, long chatId, LevelDB editor) {
+  private void incrementChannelVersion (@Nullable TdApi.NotificationSettingsScope scope, long chatId, SettingsDatabase editor) {
     long selfUserId = tdlib.myUserId();
     LocalScopeNotificationSettings settings = chatId != 0 ? null : getLocalNotificationSettings(scope);
     String key = chatId != 0 ? key(_CHANNEL_VERSION_CUSTOM_KEY + chatId) : settings.prefix(KEY_PREFIX_CHANNEL_VERSION);
@@ -1530,7 +1531,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
 
   public void resetNotificationSettings (boolean onlyLocal) {
     final int accountId = tdlib.id();
-    LevelDB editor = Settings.instance().edit();
+    SettingsDatabase editor = Settings.instance().edit();
     editor
       .remove(key(_INAPP_VIBRATE_KEY, accountId))
       .remove(key(_INAPP_SOUNDS_KEY, accountId))
@@ -135,6 +135,7 @@ public class TdlibNotificationUtils {
 
   public static Bitmap buildLargeIcon (Tdlib tdlib, TdApi.File rawFile, TdlibAccentColor accentColor, Letters letters, boolean allowSyncDownload, boolean allowDownload) {
     Bitmap avatarBitmap = null;
+    ImageFile referencedFile = null;
     if (rawFile != null) {
       tdlib.files().syncFile(rawFile, null, 500);
       boolean fileLoaded = TD.isFileLoadedAndExists(rawFile);
@@ -145,10 +146,18 @@ public class TdlibNotificationUtils {
       if (fileLoaded) {
         ImageFile file = new ImageFile(tdlib, rawFile);
         file.setSize(iconSize());
-        avatarBitmap = ImageCache.instance().getBitmap(file);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && avatarBitmap != null) {
-          if (avatarBitmap.getConfig() == Bitmap.Config.HARDWARE) {
-            avatarBitmap = null;
+        // Cached bitmap may go back to the pool and be decoded into while it's drawn here,
+        // so it stays referenced until the icon is built
+        synchronized (ImageCache.getReferenceLock()) {
+          avatarBitmap = ImageCache.instance().getBitmap(file);
+          if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && avatarBitmap != null) {
+            if (avatarBitmap.getConfig() == Bitmap.Config.HARDWARE) {
+              avatarBitmap = null;
+            }
+          }
+          if (avatarBitmap != null) {
+            ImageCache.instance().addReference(file, avatarBitmap);
+            referencedFile = file;
           }
         }
         if (avatarBitmap == null) {
@@ -166,60 +175,66 @@ public class TdlibNotificationUtils {
     }
 
     Bitmap bitmap = null;
-    synchronized (TdlibNotificationUtils.class) {
-      if (fillingPaint == null) {
-        fillingPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        fillingPaint.setStyle(Paint.Style.FILL);
-
-        bitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG);
-        bitmapPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+    try {
+      synchronized (TdlibNotificationUtils.class) {
+        if (fillingPaint == null) {
+          fillingPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+          fillingPaint.setStyle(Paint.Style.FILL);
+
+          bitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG);
+          bitmapPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+
+          lettersPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+          lettersPaint.setTypeface(Fonts.getRobotoMedium());
+          lettersPaint.setColor(0xffffffff);
+
+          lettersPaintFake = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+          lettersPaintFake.setTypeface(Fonts.getRobotoRegular());
+          lettersPaintFake.setColor(0xffffffff);
+        }
 
-        lettersPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        lettersPaint.setTypeface(Fonts.getRobotoMedium());
-        lettersPaint.setColor(0xffffffff);
+        lettersPaint.setTextSize(Screen.dp(20f, MAX_DENSITY));
+        lettersPaintFake.setTextSize(Screen.dp(20f, MAX_DENSITY));
 
-        lettersPaintFake = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        lettersPaintFake.setTypeface(Fonts.getRobotoRegular());
-        lettersPaintFake.setColor(0xffffffff);
-      }
+        try {
+          int size = iconSize();
+          Bitmap createdBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+          Canvas c = new Canvas(createdBitmap);
 
-      lettersPaint.setTextSize(Screen.dp(20f, MAX_DENSITY));
-      lettersPaintFake.setTextSize(Screen.dp(20f, MAX_DENSITY));
+          long complexColor = accentColor.getPrimaryComplexColor();
+          final @ThemeId int themeId = tdlib.settings().globalTheme();
+          final int color = Theme.toColorInt(complexColor, themeId);
 
-      try {
-        int size = iconSize();
-        Bitmap createdBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
-        Canvas c = new Canvas(createdBitmap);
-
-        long complexColor = accentColor.getPrimaryComplexColor();
-        final @ThemeId int themeId = tdlib.settings().globalTheme();
-        final int color = Theme.toColorInt(complexColor, themeId);
-
-        bitmapPaint.setColor(color);
-        if (Device.ROUND_NOTIFICAITON_IMAGE) {
-          fillingPaint.setColor(color);
-          c.drawCircle(size / 2f, size / 2f, size / 2f, fillingPaint);
-        } else {
-          c.drawColor(color);
-        }
+          bitmapPaint.setColor(color);
+          if (Device.ROUND_NOTIFICAITON_IMAGE) {
+            fillingPaint.setColor(color);
+            c.drawCircle(size / 2f, size / 2f, size / 2f, fillingPaint);
+          } else {
+            c.drawColor(color);
+          }
 
-        if (avatarBitmap == null) {
-          final long lettersComplexColor = accentColor.getPrimaryContentComplexColor();
-          final int lettersColor = Theme.toColorInt(lettersComplexColor, themeId);
-          final Paint paint = letters.needFakeBold ? lettersPaintFake : lettersPaint;
-          paint.setColor(lettersColor);
-          c.drawText(letters.text, size / 2f - U.measureText(letters.text, letters.needFakeBold ? lettersPaintFake : lettersPaint) / 2, size / 2f + Screen.dp(8f, MAX_DENSITY), paint);
-        } else {
-          float scale = (float) size / (float) avatarBitmap.getWidth();
-          c.save();
-          c.scale(scale, scale, size / 2f, size / 2f);
-          c.drawBitmap(avatarBitmap, size / 2f - avatarBitmap.getWidth() / 2f, size / 2f - avatarBitmap.getHeight() / 2f, bitmapPaint);
-          c.restore();
+          if (avatarBitmap == null) {
+            final long lettersComplexColor = accentColor.getPrimaryContentComplexColor();
+            final int lettersColor = Theme.toColorInt(lettersComplexColor, themeId);
+            final Paint paint = letters.needFakeBold ? lettersPaintFake : lettersPaint;
+            paint.setColor(lettersColor);
+            c.drawText(letters.text, size / 2f - U.measureText(letters.text, letters.needFakeBold ? lettersPaintFake : lettersPaint) / 2, size / 2f + Screen.dp(8f, MAX_DENSITY), paint);
+          } else {
+            float scale = (float) size / (float) avatarBitmap.getWidth();
+            c.save();
+            c.scale(scale, scale, size / 2f, size / 2f);
+            c.drawBitmap(avatarBitmap, size / 2f - avatarBitmap.getWidth() / 2f, size / 2f - avatarBitmap.getHeight() / 2f, bitmapPaint);
+            c.restore();
+          }
+          bitmap = createdBitmap;
+          U.recycle(c);
+        } catch (Throwable t) {
+          Log.e(Log.TAG_FCM, "Cannot build large icon", t);
         }
-        bitmap = createdBitmap;
-        U.recycle(c);
-      } catch (Throwable t) {
-        Log.e(Log.TAG_FCM, "Cannot build large icon", t);
+      }
+    } finally {
+      if (referencedFile != null) {
+        ImageCache.instance().removeReference(referencedFile, avatarBitmap);
       }
     }
 
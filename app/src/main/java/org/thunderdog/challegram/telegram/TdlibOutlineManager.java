@@ -54,8 +54,11 @@ public class TdlibOutlineManager extends TdlibDataManager<String, TdApi.Outline,
     }
   }
 
+  // Total number of path commands, as outlines differ in size a lot
+  private static final int MAX_COMMAND_COUNT = 100_000;
+
   public TdlibOutlineManager (Tdlib tdlib) {
-    super(tdlib);
+    super(tdlib, MAX_COMMAND_COUNT);
   }
 
   public void requestStickerOutline (int stickerFileId, boolean forAnimatedEmoji, boolean forClickedAnimatedEmojiMessage, Watcher watcher) {
@@ -85,6 +88,28 @@ public class TdlibOutlineManager extends TdlibDataManager<String, TdApi.Outline,
     return new Entry(key, value, error);
   }
 
+  @Override
+  protected int getMaxBatchSize () {
+    // Each key is a separate request
+    return 50;
+  }
+
+  @Override
+  protected int getMaxInFlightBatchCount () {
+    return 2;
+  }
+
+  @Override
+  protected int weightOf (@NonNull Entry entry) {
+    int weight = 1;
+    if (entry.value != null) {
+      for (TdApi.ClosedVectorPath path : entry.value.paths) {
+        weight += path.commands.length;
+      }
+    }
+    return weight;
+  }
+
   private static class ParsedKey {
     public static final int TYPE_STICKER_OUTLINE = 1;
     public static final int TYPE_WEB_APP_PLACEHOLDER = 2;
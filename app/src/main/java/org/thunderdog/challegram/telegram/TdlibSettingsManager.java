@@ -33,6 +33,7 @@ import org.thunderdog.challegram.theme.Theme;
 import org.thunderdog.challegram.theme.ThemeId;
 import org.thunderdog.challegram.theme.ThemeManager;
 import org.thunderdog.challegram.unsorted.Settings;
+import org.thunderdog.challegram.unsorted.SettingsDatabase;
 import org.thunderdog.challegram.util.DeviceTokenType;
 
 import java.util.Arrays;
@@ -596,7 +597,7 @@ public class TdlibSettingsManager implements CleanupStartupDelegate {
   }
 
   public void deleteHiddenNotificationIds () {
-    LevelDB db = Settings.instance().pmc();
+    SettingsDatabase db = Settings.instance().pmc();
     db.removeByPrefix(key(NOTIFICATION_DATA_PREFIX, tdlib.id()));
     db.removeByPrefix(key(NOTIFICATION_GROUP_DATA_PREFIX, tdlib.id()));
     db.flush();
@@ -631,7 +632,7 @@ public class TdlibSettingsManager implements CleanupStartupDelegate {
       unregisterDevice(accountId);
       return;
     }
-    LevelDB pmc = Settings.instance().edit();
+    SettingsDatabase pmc = Settings.instance().edit();
     Settings.storeDeviceToken(deviceToken, pmc,
       key(DEVICE_TOKEN_TYPE_KEY, accountId),
       key(DEVICE_TOKEN_OR_ENDPOINT_KEY, accountId)
@@ -777,7 +778,7 @@ public class TdlibSettingsManager implements CleanupStartupDelegate {
     if (_notificationErrorCount == null) {
       int versionCode = Settings.instance().getInt(key(NOTIFICATION_VERSION_KEY, tdlib.id()), BuildConfig.VERSION_CODE);
       if (versionCode != BuildConfig.VERSION_CODE) {
-        LevelDB editor = Settings.instance().edit();
+        SettingsDatabase editor = Settings.instance().edit();
         editor.removeByPrefix(key(NOTIFICATION_ERROR_KEY, tdlib.id()));
         editor.remove(key(NOTIFICATION_VERSION_KEY, tdlib.id()));
         editor.apply();
@@ -829,7 +830,7 @@ public class TdlibSettingsManager implements CleanupStartupDelegate {
     final String prefix = key(NOTIFICATION_ERROR_KEY, tdlib.id());
     final String existingKey = Settings.instance().pmc().findByValue(prefix, value);
 
-    LevelDB editor = Settings.instance().edit();
+    SettingsDatabase editor = Settings.instance().edit();
     if (isFirst) {
       editor.putInt(key(NOTIFICATION_VERSION_KEY, tdlib.id()), BuildConfig.VERSION_CODE);
     }
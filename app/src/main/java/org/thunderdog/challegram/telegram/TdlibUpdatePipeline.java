@@ -0,0 +1,366 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.SparseArrayCompat;
+
+import org.drinkless.tdlib.TdApi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stage between TDLib client and {@link Tdlib#processUpdate}.
+ *
+ * Updates that only carry the latest state of a single entity
+ * (e.g. {@link TdApi.UpdateUserStatus} or {@link TdApi.UpdateChatReadInbox})
+ * are held for a short window: when a newer update for the same entity arrives, the pending one is dropped
+ * and the newer one is queued after all updates that arrived before it.
+ * Any other update acts as a barrier: all pending updates are processed before it, in order of arrival,
+ * so updates that create, delete or otherwise depend on previous state are never reordered.
+ * Responses to requests act as barriers as well, see {@link TdlibClient}.
+ *
+ * Pending updates are processed as a single batch, which allows {@link Sink} to dispatch resulting notifications at once.
+ *
+ * All methods except {@link #getStats()} must be called on the same thread.
+ */
+public final class TdlibUpdatePipeline {
+  static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+  static final int MAX_BATCH_SIZE = 256;
+
+  public interface Sink {
+    void processUpdate (TdApi.Update update);
+    default void onBatchStarted () { }
+    default void onBatchFinished () { }
+  }
+
+  private static final class Key {
+    final int constructor;
+    final long id, subId;
+
+    Key (int constructor, long id, long subId) {
+      this.constructor = constructor;
+      this.id = id;
+      this.subId = subId;
+    }
+
+    @Override
+    public boolean equals (Object obj) {
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return other.constructor == constructor && other.id == id && other.subId == subId;
+    }
+
+    @Override
+    public int hashCode () {
+      int result = constructor;
+      result = 31 * result + (int) (id ^ (id >>> 32));
+      result = 31 * result + (int) (subId ^ (subId >>> 32));
+      return result;
+    }
+  }
+
+  @Nullable
+  private static Key coalescingKey (TdApi.Update update) {
+    switch (update.getConstructor()) {
+      case TdApi.UpdateUserStatus.CONSTRUCTOR:
+        return new Key(TdApi.UpdateUserStatus.CONSTRUCTOR, ((TdApi.UpdateUserStatus) update).userId, 0);
+      case TdApi.UpdateChatReadInbox.CONSTRUCTOR:
+        return new Key(TdApi.UpdateChatReadInbox.CONSTRUCTOR, ((TdApi.UpdateChatReadInbox) update).chatId, 0);
+      case TdApi.UpdateChatReadOutbox.CONSTRUCTOR:
+        return new Key(TdApi.UpdateChatReadOutbox.CONSTRUCTOR, ((TdApi.UpdateChatReadOutbox) update).chatId, 0);
+      case TdApi.UpdateChatLastMessage.CONSTRUCTOR:
+        // positions always contain full list of chat positions, so the latest update fully replaces previous ones
+        return new Key(TdApi.UpdateChatLastMessage.CONSTRUCTOR, ((TdApi.UpdateChatLastMessage) update).chatId, 0);
+      case TdApi.UpdateMessageInteractionInfo.CONSTRUCTOR: {
+        TdApi.UpdateMessageInteractionInfo interactionInfo = (TdApi.UpdateMessageInteractionInfo) update;
+        return new Key(TdApi.UpdateMessageInteractionInfo.CONSTRUCTOR, interactionInfo.chatId, interactionInfo.messageId);
+      }
+    }
+    return null;
+  }
+
+  private final Stats stats;
+  private final Sink sink;
+  @Nullable
+  private final Executor flushExecutor;
+  private final Runnable flushTask;
+
+  private final ArrayList<TdApi.Update> pendingUpdates = new ArrayList<>();
+  private final HashMap<Key, Integer> pendingIndexes = new HashMap<>();
+  private long[] pendingTimes = new long[16];
+  private boolean flushScheduled, isFlushing;
+
+  /**
+   * @param flushExecutor Executor that runs tasks on the same thread updates are submitted on.
+   *                      When {@code null}, pending updates are processed only on barrier, when window expires or on {@link #flush()}.
+   */
+  public TdlibUpdatePipeline (@NonNull Stats stats, @NonNull Sink sink, @Nullable Executor flushExecutor) {
+    this.stats = stats;
+    this.sink = sink;
+    this.flushExecutor = flushExecutor;
+    this.flushTask = () -> {
+      flushScheduled = false;
+      flush();
+    };
+  }
+
+  public Stats getStats () {
+    return stats;
+  }
+
+  public void submit (TdApi.Update update) {
+    final long now = System.nanoTime();
+    stats.onReceived();
+    final Key key = coalescingKey(update);
+    if (key == null) {
+      flush();
+      process(update, now);
+      return;
+    }
+    Integer existingIndex = pendingIndexes.get(key);
+    if (existingIndex != null) {
+      // Keep arrival order: newer update must not be processed before updates that arrived earlier
+      pendingUpdates.set(existingIndex, null);
+      stats.onCoalesced();
+    }
+    int index = pendingUpdates.size();
+    if (index == pendingTimes.length) {
+      long[] times = new long[index << 1];
+      System.arraycopy(pendingTimes, 0, times, 0, index);
+      pendingTimes = times;
+    }
+    pendingTimes[index] = now;
+    pendingIndexes.put(key, index);
+    pendingUpdates.add(update);
+    if (pendingUpdates.size() >= MAX_BATCH_SIZE || now - pendingTimes[0] >= WINDOW_NANOS) {
+      flush();
+    } else if (!flushScheduled && flushExecutor != null) {
+      flushScheduled = true;
+      flushExecutor.execute(flushTask);
+    }
+  }
+
+  public void flush () {
+    if (isFlushing || pendingUpdates.isEmpty()) {
+      return;
+    }
+    isFlushing = true;
+    final int pendingCount = pendingUpdates.size();
+    int batchSize = 0;
+    sink.onBatchStarted();
+    try {
+      for (int i = 0; i < pendingCount; i++) {
+        TdApi.Update update = pendingUpdates.get(i);
+        if (update != null) {
+          process(update, pendingTimes[i]);
+          batchSize++;
+        }
+      }
+    } finally {
+      pendingUpdates.clear();
+      pendingIndexes.clear();
+      isFlushing = false;
+      sink.onBatchFinished();
+    }
+    stats.onBatch(batchSize);
+  }
+
+  private void process (TdApi.Update update, long receiveTime) {
+    final long startTime = System.nanoTime();
+    sink.processUpdate(update);
+    final long endTime = System.nanoTime();
+    stats.onProcessed(update, startTime - receiveTime, endTime - startTime);
+  }
+
+  /**
+   * Feeds recorded update stream through a new pipeline without a TDLib client,
+   * e.g. to compare coalescing results or measure handlers offline.
+   */
+  public static Stats replay (Iterable<TdApi.Update> updates, Sink sink) {
+    Stats stats = new Stats();
+    TdlibUpdatePipeline pipeline = new TdlibUpdatePipeline(stats, sink, null);
+    for (TdApi.Update update : updates) {
+      pipeline.submit(update);
+    }
+    pipeline.flush();
+    return stats;
+  }
+
+  /**
+   * Log2-bucketed latency histogram, first bucket covers everything below 1 microsecond.
+   */
+  public static final class LatencyHistogram {
+    private static final int BUCKET_COUNT = 24;
+
+    private final String name;
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count, totalNanos, maxNanos;
+
+    LatencyHistogram (String name) {
+      this.name = name;
+    }
+
+    void add (long nanos) {
+      long micros = nanos / 1000;
+      int bucket = micros > 0 ? Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros)) : 0;
+      buckets[bucket]++;
+      count++;
+      totalNanos += nanos;
+      if (nanos > maxNanos) {
+        maxNanos = nanos;
+      }
+    }
+
+    public String getName () {
+      return name;
+    }
+
+    public long getCount () {
+      return count;
+    }
+
+    public long getTotalTime (TimeUnit unit) {
+      return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxTime (TimeUnit unit) {
+      return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return Upper bound of the bucket that contains requested percentile, in microseconds
+     */
+    public long getPercentileMicros (double percentile) {
+      if (count == 0)
+        return 0;
+      long threshold = (long) Math.ceil(count * percentile);
+      long seen = 0;
+      for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+        seen += buckets[bucket];
+        if (seen >= threshold) {
+          return 1L << bucket;
+        }
+      }
+      return 1L << (BUCKET_COUNT - 1);
+    }
+
+    @Override
+    @NonNull
+    public String toString () {
+      return name + ": " + count + " in " + getTotalTime(TimeUnit.MICROSECONDS) + "us" +
+        ", p50 < " + getPercentileMicros(.5) + "us" +
+        ", p99 < " + getPercentileMicros(.99) + "us" +
+        ", max " + getMaxTime(TimeUnit.MICROSECONDS) + "us";
+    }
+  }
+
+  /**
+   * Update counters and per-type processing latency. Written on TDLib thread, can be read from any thread.
+   */
+  public static final class Stats {
+    private final SparseArrayCompat<LatencyHistogram> processingTime = new SparseArrayCompat<>();
+    private final LatencyHistogram queueTime = new LatencyHistogram("queue");
+    private long receivedCount, coalescedCount, batchCount, batchedCount;
+    private int maxBatchSize;
+
+    synchronized void onReceived () {
+      receivedCount++;
+    }
+
+    synchronized void onCoalesced () {
+      coalescedCount++;
+    }
+
+    synchronized void onBatch (int batchSize) {
+      batchCount++;
+      batchedCount += batchSize;
+      if (batchSize > maxBatchSize) {
+        maxBatchSize = batchSize;
+      }
+    }
+
+    synchronized void onProcessed (TdApi.Update update, long queueNanos, long processingNanos) {
+      final int constructor = update.getConstructor();
+      LatencyHistogram histogram = processingTime.get(constructor);
+      if (histogram == null) {
+        histogram = new LatencyHistogram(update.getClass().getSimpleName());
+        processingTime.put(constructor, histogram);
+      }
+      histogram.add(processingNanos);
+      queueTime.add(queueNanos);
+    }
+
+    @AnyThread
+    public synchronized long getReceivedCount () {
+      return receivedCount;
+    }
+
+    @AnyThread
+    public synchronized long getCoalescedCount () {
+      return coalescedCount;
+    }
+
+    @AnyThread
+    public synchronized long getBatchCount () {
+      return batchCount;
+    }
+
+    @AnyThread
+    public synchronized int getMaxBatchSize () {
+      return maxBatchSize;
+    }
+
+    /**
+     * @return Histograms of processing time for every received update type, slowest types first
+     */
+    @AnyThread
+    public synchronized ArrayList<LatencyHistogram> getProcessingTime () {
+      ArrayList<LatencyHistogram> result = new ArrayList<>(processingTime.size());
+      for (int i = 0; i < processingTime.size(); i++) {
+        result.add(processingTime.valueAt(i));
+      }
+      Collections.sort(result, (a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+      return result;
+    }
+
+    @AnyThread
+    public synchronized LatencyHistogram getQueueTime () {
+      return queueTime;
+    }
+
+    @Override
+    @NonNull
+    public synchronized String toString () {
+      StringBuilder b = new StringBuilder("updates: ").append(receivedCount)
+        .append(", coalesced: ").append(coalescedCount)
+        .append(", batches: ").append(batchCount)
+        .append(" (avg ").append(batchCount > 0 ? batchedCount / batchCount : 0)
+        .append(", max ").append(maxBatchSize).append(")\n")
+        .append(queueTime);
+      for (LatencyHistogram histogram : getProcessingTime()) {
+        b.append('\n').append(histogram);
+      }
+      return b.toString();
+    }
+  }
+}
@@ -14,8 +14,11 @@
  */
 package org.thunderdog.challegram.tool;
 
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import me.vkryl.core.StringUtils;
@@ -70,14 +73,14 @@ public class EmojiData {
     return count;
   }
 
-  private final HashSet<Character> dataCharsMap;
+  private final BitSet dataCharsSet;
   private final Set<String> emojiColoredSet, emojiColored2dMap;
   private final HashMap<String, String> emojiAliasMap;
 
   private EmojiData () {
-    this.dataCharsMap = new HashSet<>(dataChars.length);
+    this.dataCharsSet = new BitSet();
     for (char dataChar : dataChars) {
-      dataCharsMap.add(dataChar);
+      dataCharsSet.set(dataChar);
     }
 
     this.emojiColored2dMap = Emojis.colored2dSet();
@@ -115,6 +118,10 @@ public class EmojiData {
     return emojiAliasMap.get(emoji);
   }
 
+  public Map<String, String> getEmojiAliases () {
+    return Collections.unmodifiableMap(emojiAliasMap);
+  }
+
   public static final int STATE_NO_COLORS = 0;
   public static final int STATE_HAS_ONE_COLOR = 1;
   public static final int STATE_HAS_TWO_COLORS = 2;
@@ -130,8 +137,8 @@ public class EmojiData {
     return STATE_NO_COLORS;
   }
 
-  public boolean containsDataChar (Character c) {
-    return dataCharsMap.contains(c);
+  public boolean containsDataChar (char c) {
+    return dataCharsSet.get(c);
   }
 
   public String colorize (String code, String color1, String[] otherColors) {
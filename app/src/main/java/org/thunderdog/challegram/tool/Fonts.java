@@ -196,6 +196,13 @@ public class Fonts {
       );
     }
 
+    /**
+     * @return Storage with the same typefaces and flags, which creates its own paints
+     */
+    public TextPaintStorage copy () {
+      return new TextPaintStorage(this);
+    }
+
     public TextPaintStorage (@NonNull Typeface regularTypeface, int paintFlags) {
       this(regularTypeface, null, null, null, null, null, paintFlags);
     }
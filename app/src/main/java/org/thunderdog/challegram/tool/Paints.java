@@ -42,12 +42,15 @@ import org.thunderdog.challegram.util.text.TextStyleProvider;
 import org.thunderdog.challegram.widget.ProgressComponent;
 
 import java.lang.ref.SoftReference;
+import java.util.Arrays;
 
 import me.vkryl.core.MathUtils;
+import me.vkryl.core.lambda.Future;
 import me.vkryl.core.util.LocalVar;
 
 public class Paints {
   public static void reset () {
+    layoutPaintsVersion++;
     // This should actually be inside the activity context to avoid issues like this, but for legacy reasons it's easier to simply do this for now, instead of having to refactor 1k+ references without breaking anything
     if (videoStrokePaint != null)
       videoStrokePaint.setStrokeWidth(Screen.dp(3f));
@@ -131,12 +134,20 @@ public class Paints {
     return placeholder;
   }
 
+  private static TextPaint newSmallTitlePaint () {
+    TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+    paint.setColor(Theme.textAccentColor());
+    paint.setTextSize(Screen.dp(13f));
+    paint.setTypeface(Fonts.getRobotoRegular());
+    return paint;
+  }
+
   public static TextPaint getSmallTitlePaint () {
+    if (isLayoutThread()) {
+      return layoutPaint(LAYOUT_PAINT_SMALL_TITLE, Paints::newSmallTitlePaint);
+    }
     if (smallTitlePaint == null) {
-      smallTitlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-      smallTitlePaint.setColor(Theme.textAccentColor());
-      smallTitlePaint.setTextSize(Screen.dp(13f));
-      smallTitlePaint.setTypeface(Fonts.getRobotoRegular());
+      smallTitlePaint = newSmallTitlePaint();
       ThemeManager.addThemeListener(smallTitlePaint, ColorId.text);
     }
     return smallTitlePaint;
@@ -144,17 +155,29 @@ public class Paints {
 
   private static int lastCommandColor;
 
+  private static TextPaint newCommandPaint () {
+    TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+    paint.setColor(Theme.textAccentColor());
+    paint.setTypeface(Fonts.getRobotoRegular());
+    paint.setTextSize(Screen.dp(14f));
+    return paint;
+  }
+
   public static TextPaint getCommandPaint () {
+    if (isLayoutThread()) {
+      return layoutPaint(LAYOUT_PAINT_COMMAND, Paints::newCommandPaint);
+    }
     if (commandPaint == null) {
-      commandPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-      commandPaint.setColor(lastCommandColor = Theme.textAccentColor());
-      commandPaint.setTypeface(Fonts.getRobotoRegular());
-      commandPaint.setTextSize(Screen.dp(14f));
+      commandPaint = newCommandPaint();
+      lastCommandColor = commandPaint.getColor();
     }
     return commandPaint;
   }
 
   public static TextPaint getCommandPaint (int color) {
+    if (isLayoutThread()) {
+      return colorPaint(getCommandPaint(), color);
+    }
     TextPaint paint = getCommandPaint();
     if (lastCommandColor != color) {
       paint.setColor(lastCommandColor = color);
@@ -309,6 +332,18 @@ public class Paints {
     }
   }
 
+  private static TextPaint newBoldPaint (float dp, boolean fake) {
+    TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+    paint.setTextSize(Screen.dp(dp));
+    if (fake) {
+      paint.setTypeface(Fonts.getRobotoRegular());
+      paint.setFakeBoldText(true);
+    } else {
+      paint.setTypeface(Fonts.getRobotoMedium());
+    }
+    return paint;
+  }
+
   private static TextPaint boldPaint15Fake, boldPaint15;
   private static TextPaint boldPaint13Fake, boldPaint13;
   private static TextPaint boldPaint14Fake, boldPaint14;
@@ -319,20 +354,25 @@ public class Paints {
     return paint;
   }
 
+  private static TextPaint newBoldPaint15 (boolean fake) {
+    return newBoldPaint(15f, fake);
+  }
+
   public static TextPaint getBoldPaint15 (boolean fake) {
     if (fake) {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_BOLD_15_FAKE, () -> newBoldPaint15(true));
+      }
       if (boldPaint15Fake == null) {
-        boldPaint15Fake = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        boldPaint15Fake.setTextSize(Screen.dp(15f));
-        boldPaint15Fake.setTypeface(Fonts.getRobotoRegular());
-        boldPaint15Fake.setFakeBoldText(true);
+        boldPaint15Fake = newBoldPaint15(true);
       }
       return boldPaint15Fake;
     } else {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_BOLD_15, () -> newBoldPaint15(false));
+      }
       if (boldPaint15 == null) {
-        boldPaint15 = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        boldPaint15.setTextSize(Screen.dp(15f));
-        boldPaint15.setTypeface(Fonts.getRobotoMedium());
+        boldPaint15 = newBoldPaint15(false);
       }
       return boldPaint15;
     }
@@ -344,20 +384,25 @@ public class Paints {
     return paint;
   }
 
+  private static TextPaint newBoldPaint14 (boolean fake) {
+    return newBoldPaint(15f, fake);
+  }
+
   public static TextPaint getBoldPaint14 (boolean fake) {
     if (fake) {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_BOLD_14_FAKE, () -> newBoldPaint14(true));
+      }
       if (boldPaint14Fake == null) {
-        boldPaint14Fake = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        boldPaint14Fake.setTextSize(Screen.dp(15f));
-        boldPaint14Fake.setTypeface(Fonts.getRobotoRegular());
-        boldPaint14Fake.setFakeBoldText(true);
+        boldPaint14Fake = newBoldPaint14(true);
       }
       return boldPaint14Fake;
     } else {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_BOLD_14, () -> newBoldPaint14(false));
+      }
       if (boldPaint14 == null) {
-        boldPaint14 = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        boldPaint14.setTextSize(Screen.dp(15f));
-        boldPaint14.setTypeface(Fonts.getRobotoMedium());
+        boldPaint14 = newBoldPaint14(false);
       }
       return boldPaint14;
     }
@@ -369,20 +414,25 @@ public class Paints {
     return paint;
   }
 
+  private static TextPaint newBoldPaint13 (boolean fake) {
+    return newBoldPaint(13f, fake);
+  }
+
   public static TextPaint getBoldPaint13 (boolean fake) {
     if (fake) {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_BOLD_13_FAKE, () -> newBoldPaint13(true));
+      }
       if (boldPaint13Fake == null) {
-        boldPaint13Fake = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        boldPaint13Fake.setTextSize(Screen.dp(13f));
-        boldPaint13Fake.setTypeface(Fonts.getRobotoRegular());
-        boldPaint13Fake.setFakeBoldText(true);
+        boldPaint13Fake = newBoldPaint13(true);
       }
       return boldPaint13Fake;
     } else {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_BOLD_13, () -> newBoldPaint13(false));
+      }
       if (boldPaint13 == null) {
-        boldPaint13 = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        boldPaint13.setTextSize(Screen.dp(13f));
-        boldPaint13.setTypeface(Fonts.getRobotoMedium());
+        boldPaint13 = newBoldPaint13(false);
       }
       return boldPaint13;
     }
@@ -390,23 +440,28 @@ public class Paints {
 
   private static TextPaint titlePaint, titlePaintFake, titleBigPaint, titleBigPaintFake, subtitlePaint;
 
+  private static TextPaint newTitlePaint (boolean fake) {
+    TextPaint paint = newBoldPaint(15f, fake);
+    paint.setColor(Theme.textAccentColor());
+    return paint;
+  }
+
   public static TextPaint getTitlePaint (boolean fake) {
     if (fake) {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_TITLE_FAKE, () -> newTitlePaint(true));
+      }
       if (titlePaintFake == null) {
-        titlePaintFake = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        titlePaintFake.setColor(Theme.textAccentColor());
-        titlePaintFake.setTextSize(Screen.dp(15f));
-        titlePaintFake.setTypeface(Fonts.getRobotoRegular());
-        titlePaintFake.setFakeBoldText(true);
+        titlePaintFake = newTitlePaint(true);
         ThemeManager.addThemeListener(titlePaintFake, ColorId.text);
       }
       return titlePaintFake;
     } else {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_TITLE, () -> newTitlePaint(false));
+      }
       if (titlePaint == null) {
-        titlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        titlePaint.setColor(Theme.textAccentColor());
-        titlePaint.setTextSize(Screen.dp(15f));
-        titlePaint.setTypeface(Fonts.getRobotoMedium());
+        titlePaint = newTitlePaint(false);
         ThemeManager.addThemeListener(titlePaint, ColorId.text);
       }
       return titlePaint;
@@ -417,35 +472,48 @@ public class Paints {
     return getTitleBigPaint(false);
   }
 
+  private static TextPaint newTitleBigPaint (boolean fake) {
+    TextPaint paint = newBoldPaint(16f, fake);
+    paint.setColor(Theme.textAccentColor());
+    return paint;
+  }
+
   public static TextPaint getTitleBigPaint (boolean fake) {
     if (fake) {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_TITLE_BIG_FAKE, () -> newTitleBigPaint(true));
+      }
       if (titleBigPaintFake == null) {
-        titleBigPaintFake = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        titleBigPaintFake.setColor(Theme.textAccentColor());
-        titleBigPaintFake.setTextSize(Screen.dp(16f));
-        titleBigPaintFake.setTypeface(Fonts.getRobotoRegular());
-        titleBigPaintFake.setFakeBoldText(true);
+        titleBigPaintFake = newTitleBigPaint(true);
         ThemeManager.addThemeListener(titleBigPaintFake, ColorId.text);
       }
       return titleBigPaintFake;
     } else {
+      if (isLayoutThread()) {
+        return layoutPaint(LAYOUT_PAINT_TITLE_BIG, () -> newTitleBigPaint(false));
+      }
       if (titleBigPaint == null) {
-        titleBigPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        titleBigPaint.setColor(Theme.textAccentColor());
-        titleBigPaint.setTextSize(Screen.dp(16f));
-        titleBigPaint.setTypeface(Fonts.getRobotoMedium());
+        titleBigPaint = newTitleBigPaint(false);
         ThemeManager.addThemeListener(titleBigPaint, ColorId.text);
       }
       return titleBigPaint;
     }
   }
 
+  private static TextPaint newSubtitlePaint () {
+    TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+    paint.setColor(Theme.textDecentColor());
+    paint.setTextSize(Screen.dp(13f));
+    paint.setTypeface(Fonts.getRobotoRegular());
+    return paint;
+  }
+
   public static TextPaint getSubtitlePaint () {
+    if (isLayoutThread()) {
+      return layoutPaint(LAYOUT_PAINT_SUBTITLE, Paints::newSubtitlePaint);
+    }
     if (subtitlePaint == null) {
-      subtitlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-      subtitlePaint.setColor(Theme.textDecentColor());
-      subtitlePaint.setTextSize(Screen.dp(13f));
-      subtitlePaint.setTypeface(Fonts.getRobotoRegular());
+      subtitlePaint = newSubtitlePaint();
       ThemeManager.addThemeListener(subtitlePaint, ColorId.textLight);
     }
     return subtitlePaint;
@@ -1017,6 +1085,9 @@ public class Paints {
   }
 
   public static TextPaint getTextPaint16 () {
+    if (isLayoutThread()) {
+      return sizePaint(layoutPaint(LAYOUT_PAINT_TEXT_16, () -> newTextPaint(Fonts.getRobotoRegular())), 16f);
+    }
     if (textPaint16 == null) {
       synchronized (Paints.class) {
         if (textPaint16 == null)
@@ -1027,6 +1098,9 @@ public class Paints {
   }
 
   public static TextPaint getTextPaint15 () {
+    if (isLayoutThread()) {
+      return sizePaint(layoutPaint(LAYOUT_PAINT_TEXT_15, () -> newTextPaint(Fonts.getRobotoRegular())), 15f);
+    }
     if (textPaint15 == null) {
       synchronized (Paints.class) {
         if (textPaint15 == null)
@@ -1039,32 +1113,101 @@ public class Paints {
   // TextStyleProvider
 
   private static SparseArrayCompat<TextStyleProvider> robotoProvider;
-  private static TextStyleProvider titleStyleProvider, subtitleStyleProvider;
+  // Accessed from layout threads, see MessageLayoutPool
+  private static volatile TextStyleProvider titleStyleProvider, subtitleStyleProvider;
 
   public static TextStyleProvider robotoStyleProvider (float dp) {
     if (dp == 15) {
       if (titleStyleProvider == null) {
-        titleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(15f);
+        synchronized (Paints.class) {
+          if (titleStyleProvider == null) {
+            titleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(15f);
+          }
+        }
       }
       return titleStyleProvider;
     } else if (dp == 13) {
       if (subtitleStyleProvider == null) {
-        subtitleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(13f);
+        synchronized (Paints.class) {
+          if (subtitleStyleProvider == null) {
+            subtitleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(13f);
+          }
+        }
       }
       return subtitleStyleProvider;
     }
 
-    if (robotoProvider == null) {
-      robotoProvider = new SparseArrayCompat<>();
+    synchronized (Paints.class) {
+      if (robotoProvider == null) {
+        robotoProvider = new SparseArrayCompat<>();
+      }
+      int key = Float.floatToIntBits(dp);
+      int i = robotoProvider.indexOfKey(key);
+      TextStyleProvider provider;
+      if (i >= 0) {
+        provider = robotoProvider.valueAt(i);
+      } else {
+        robotoProvider.put(key, provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(dp));
+      }
+      return provider;
     }
-    int key = Float.floatToIntBits(dp);
-    int i = robotoProvider.indexOfKey(key);
-    TextStyleProvider provider;
-    if (i >= 0) {
-      provider = robotoProvider.valueAt(i);
-    } else {
-      robotoProvider.put(key, provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(dp));
+  }
+
+  // Layout threads
+
+  private static final int LAYOUT_PAINT_SMALL_TITLE = 0;
+  private static final int LAYOUT_PAINT_COMMAND = 1;
+  private static final int LAYOUT_PAINT_BOLD_15 = 2;
+  private static final int LAYOUT_PAINT_BOLD_15_FAKE = 3;
+  private static final int LAYOUT_PAINT_BOLD_14 = 4;
+  private static final int LAYOUT_PAINT_BOLD_14_FAKE = 5;
+  private static final int LAYOUT_PAINT_BOLD_13 = 6;
+  private static final int LAYOUT_PAINT_BOLD_13_FAKE = 7;
+  private static final int LAYOUT_PAINT_TITLE = 8;
+  private static final int LAYOUT_PAINT_TITLE_FAKE = 9;
+  private static final int LAYOUT_PAINT_TITLE_BIG = 10;
+  private static final int LAYOUT_PAINT_TITLE_BIG_FAKE = 11;
+  private static final int LAYOUT_PAINT_SUBTITLE = 12;
+  private static final int LAYOUT_PAINT_TEXT_16 = 13;
+  private static final int LAYOUT_PAINT_TEXT_15 = 14;
+  private static final int LAYOUT_PAINT_COUNT = 15;
+
+  private static final class LayoutPaints {
+    private final TextPaint[] paints = new TextPaint[LAYOUT_PAINT_COUNT];
+    private int version;
+  }
+
+  private static LocalVar<LayoutPaints> layoutPaints;
+  private static volatile int layoutPaintsVersion;
+
+  private static boolean isLayoutThread () {
+    return Looper.myLooper() != Looper.getMainLooper();
+  }
+
+  /**
+   * Shared paints above are created lazily and recolored by their callers, e.g. {@link #getBoldPaint15(boolean, int)}.
+   * Other threads, such as the ones of {@code MessageLayoutPool}, measure with their own copies, which are recreated after {@link #reset()}.
+   */
+  private static TextPaint layoutPaint (int id, Future<TextPaint> factory) {
+    if (layoutPaints == null) {
+      synchronized (Paints.class) {
+        if (layoutPaints == null)
+          layoutPaints = new LocalVar<>();
+      }
     }
-    return provider;
+    LayoutPaints local = layoutPaints.get();
+    if (local == null) {
+      layoutPaints.set(local = new LayoutPaints());
+    }
+    final int version = layoutPaintsVersion;
+    if (local.version != version) {
+      Arrays.fill(local.paints, null);
+      local.version = version;
+    }
+    TextPaint paint = local.paints[id];
+    if (paint == null) {
+      local.paints[id] = paint = factory.get();
+    }
+    return paint;
   }
 }
@@ -22,9 +22,11 @@ import androidx.annotation.IdRes;
 import androidx.annotation.StringRes;
 
 import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.R;
 import org.thunderdog.challegram.charts.Chart;
 import org.thunderdog.challegram.charts.MiniChart;
+import org.thunderdog.challegram.charts.data.ChartData;
 import org.thunderdog.challegram.charts.data.ChartDataUtil;
 import org.thunderdog.challegram.component.base.SettingView;
 import org.thunderdog.challegram.component.chat.MessagePreviewView;
@@ -247,6 +249,7 @@ public class ChatStatisticsController extends RecyclerViewController<ChatStatist
     if (messageViewport != null) {
       messageViewport.performDestroy();
     }
+    Log.v("[STATS] chat statistics closed, charts: %s", ChartData.getDownsampleStats());
   }
 
   @Override
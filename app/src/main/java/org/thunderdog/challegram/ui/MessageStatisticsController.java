@@ -19,9 +19,11 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.R;
 import org.thunderdog.challegram.charts.Chart;
 import org.thunderdog.challegram.charts.MiniChart;
+import org.thunderdog.challegram.charts.data.ChartData;
 import org.thunderdog.challegram.charts.data.ChartDataUtil;
 import org.thunderdog.challegram.component.base.SettingView;
 import org.thunderdog.challegram.component.chat.MessagePreviewView;
@@ -206,6 +208,7 @@ public class MessageStatisticsController extends RecyclerViewController<MessageS
     if (messageViewport != null) {
       messageViewport.performDestroy();
     }
+    Log.v("[STATS] message statistics closed, charts: %s", ChartData.getDownsampleStats());
   }
 
   @Override
@@ -24,6 +24,7 @@ import org.drinkmore.Tracer;
 import org.thunderdog.challegram.BuildConfig;
 import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.N;
+import org.thunderdog.challegram.core.StartupTrace;
 import org.thunderdog.challegram.telegram.TdlibManager;
 import org.thunderdog.challegram.telegram.TdlibNotificationUtils;
 import org.thunderdog.challegram.util.Crash;
@@ -63,9 +64,9 @@ public class AppState {
 
     long startStep = SystemClock.uptimeMillis();
 
-    N.init();
-    Settings.instance();
-    TdlibNotificationUtils.initialize();
+    StartupTrace.run("N.init", () -> N.init());
+    StartupTrace.run("Settings", () -> Settings.instance());
+    StartupTrace.run("TdlibNotificationUtils", () -> TdlibNotificationUtils.initialize());
 
     if (BuildConfig.DEBUG || BuildConfig.EXPERIMENTAL) {
       Thread.UncaughtExceptionHandler defaultUncaughtExceptionHandler = Thread.getDefaultUncaughtExceptionHandler();
@@ -100,7 +101,7 @@ public class AppState {
         Log.i("==== INITIALIZATION STARTED IN %dMS ===\nManufacturer: %s, Product: %s", SystemClock.uptimeMillis() - startStep, Build.MANUFACTURER, Build.PRODUCT);
         startStep = SystemClock.uptimeMillis();
       }
-      TdlibManager.instance();
+      StartupTrace.run("TdlibManager", () -> TdlibManager.instance());
       if (needMeasure) {
         Log.i("==== INITIALIZATION FINISHED IN %dms ===", SystemClock.uptimeMillis() - startStep);
       }
@@ -111,6 +112,7 @@ public class AppState {
     }
 
     isInitialized.set(true);
+    StartupTrace.markReady();
 
     // after
 
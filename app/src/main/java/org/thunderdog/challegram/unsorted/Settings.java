@@ -44,6 +44,7 @@ import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.config.Device;
 import org.thunderdog.challegram.core.Background;
 import org.thunderdog.challegram.core.Lang;
+import org.thunderdog.challegram.core.StartupTrace;
 import org.thunderdog.challegram.data.TD;
 import org.thunderdog.challegram.emoji.Emoji;
 import org.thunderdog.challegram.emoji.RecentEmoji;
@@ -561,7 +562,7 @@ public class Settings {
 
     private int getSettings () {
       if (_settings == null) {
-        _settings = pmc.getInt(settingsKey, UI.isTestLab() ? FLAG_TDLIB_OTHER_ENABLE_ANDROID_LOG : 0);
+        _settings = db.getInt(settingsKey, UI.isTestLab() ? FLAG_TDLIB_OTHER_ENABLE_ANDROID_LOG : 0);
       }
       return _settings;
     }
@@ -575,7 +576,7 @@ public class Settings {
       int newFlags = BitwiseUtils.setFlag(flags, flag, enabled);
       if (flags != newFlags) {
         _settings = newFlags;
-        pmc.putInt(settingsKey, newFlags);
+        db.putInt(settingsKey, newFlags);
         apply(false);
         return true;
       }
@@ -596,9 +597,9 @@ public class Settings {
 
     public void setMaxFileSize (long bytes) {
       if (bytes == DEFAULT_LOG_SIZE)
-        pmc.remove(maxSizeKey);
+        remove(maxSizeKey);
       else
-        pmc.putLong(maxSizeKey, bytes);
+        putLong(maxSizeKey, bytes);
       apply(false);
     }
 
@@ -696,7 +697,7 @@ public class Settings {
     }
 
     public void reset () {
-      pmc.edit();
+      // All writes below are typed, so they get committed in a single batch
       setVerbosity(null, 0);
       if (_modules != null) {
         for (Map.Entry<String, int[]> entry : _modules.entrySet()) {
@@ -704,7 +705,6 @@ public class Settings {
         }
       }
       setMaxFileSize(DEFAULT_LOG_SIZE);
-      pmc.apply();
     }
 
     private int queryLogVerbosityLevel (@Nullable String module) {
@@ -723,7 +723,7 @@ public class Settings {
       int globalVerbosityLevel = DEFAULT_LOG_GLOBAL_VERBOSITY_LEVEL;
       if (_modules == null)
         _modules = new HashMap<>();
-      for (final LevelDB.Entry entry : pmc.find(verbosityKey)) {
+      for (final LevelDB.Entry entry : db.find(verbosityKey)) {
         final String key = entry.key();
         int verbosityLevel = entry.asInt();
         if (verbosityKey.length() == key.length()) {
@@ -832,6 +832,7 @@ public class Settings {
       throw new DeviceStorageError("Unable to create working directory");
     }
     long ms = SystemClock.uptimeMillis();
+    StartupTrace.Span openSpan = StartupTrace.begin("Settings.open");
     pmc = new LevelDB(new File(pmcDir, "db").getPath(), true, new LevelDB.ErrorHandler() {
       @Override
       public boolean onFatalError (LevelDB levelDB, Throwable error) {
@@ -845,6 +846,9 @@ public class Settings {
         android.util.Log.e(Log.LOG_TAG, message, error);
       }
     });
+    openSpan.end();
+    cache = new SettingsCache(pmc);
+    db = new SettingsDatabase(pmc, cache);
     Log.load(pmc);
     int pmcVersion = 0;
     try {
@@ -856,11 +860,15 @@ public class Settings {
       Log.e("Downgrading database version: %d -> %d", pmcVersion, VERSION);
       pmc.putInt(KEY_VERSION, VERSION);
     }
-    for (int version = pmcVersion + 1; version <= VERSION; version++) {
-      SharedPreferences.Editor editor = pmc.edit();
-      upgradePmc(pmc, editor, version);
-      editor.putInt(KEY_VERSION, version);
-      editor.apply();
+    if (pmcVersion < VERSION) {
+      StartupTrace.Span upgradeSpan = StartupTrace.begin("Settings.upgrade");
+      for (int version = pmcVersion + 1; version <= VERSION; version++) {
+        SharedPreferences.Editor editor = pmc.edit();
+        upgradePmc(pmc, editor, version);
+        editor.putInt(KEY_VERSION, version);
+        editor.apply();
+      }
+      upgradeSpan.end();
     }
     /*if (BuildConfig.DEBUG) {
       int accountNum = TdlibManager.readAccountNum();
@@ -869,12 +877,14 @@ public class Settings {
         String key = key(TdlibSettingsManager.DEVICE_TDLIB_VERSION_KEY, accountId);
         pmc.remove(key);
       }
-      pmc.apply();
+      db.apply();
     }*/
     if (BuildConfig.DEBUG) {
       pmc.remove(KEY_TUTORIAL);
       pmc.removeByPrefix(KEY_TUTORIAL_PSA);
     }
+    // Upgrades above write to database directly
+    cache.invalidateAll();
     if (Config.TEST_NEW_FEATURES_PROMPTS) {
       forceRevokeAllFeaturePrompts();
     }
@@ -886,7 +896,7 @@ public class Settings {
   }
 
   public void forceRevokeAllFeaturePrompts () {
-    pmc
+    db
       .putLong(KEY_FEATURES, 0 /*no features were available*/)
       .remove(KEY_FEATURES_ADDED_NOTIFICATIONS)
       .remove(KEY_FEATURES_REMOVED_NOTIFICATIONS);
@@ -916,84 +926,94 @@ public class Settings {
 
   public void reset () {
     setTutorialFlags(0);
-    pmc.removeByPrefix(KEY_TUTORIAL_PSA);
+    db.removeByPrefix(KEY_TUTORIAL_PSA);
     resetOther();
   }
 
-  public LevelDB edit () {
-    return pmc.edit();
+  public SettingsDatabase edit () {
+    return db.edit();
   }
 
   public void remove (String key) {
-    pmc.remove(key);
+    cache.remove(key);
   }
 
   public void putLong (String key, long value) {
-    pmc.putLong(key, value);
+    cache.putLong(key, value);
   }
 
   public long getLong (String key, long defValue) {
-    return pmc.getLong(key, defValue);
+    return cache.getLong(key, defValue);
   }
 
   public long[] getLongArray (String key) {
-    return pmc.getLongArray(key);
+    return db.getLongArray(key);
   }
 
   public void putLongArray (String key, long[] value) {
-    pmc.putLongArray(key, value);
+    db.putLongArray(key, value);
   }
 
   public void putInt (String key, int value) {
-    pmc.putInt(key, value);
+    cache.putInt(key, value);
   }
 
   public int getInt (String key, int defValue) {
-    return pmc.getInt(key, defValue);
+    return cache.getInt(key, defValue);
   }
 
   public int[] getIntArray (String key) {
-    return pmc.getIntArray(key);
+    return db.getIntArray(key);
   }
   
   public void putIntArray (String key, int[] value) {
-    pmc.putIntArray(key, value);
+    db.putIntArray(key, value);
   }
 
   public void putFloat (String key, float value) {
-    pmc.putFloat(key, value).apply();
+    cache.putFloat(key, value);
+    // Unlike other values, floats were always applied immediately
+    cache.commit();
   }
 
   public void putBoolean (String key, boolean value) {
-    pmc.putBoolean(key, value);
+    cache.putBoolean(key, value);
   }
 
   public boolean getBoolean (String key, boolean defValue) {
-    return pmc.getBoolean(key, defValue);
+    return cache.getBoolean(key, defValue);
   }
 
   public void putVoid (String key) {
-    pmc.putVoid(key);
+    cache.putVoid(key);
   }
 
   public boolean containsKey (String key) {
-    return pmc.contains(key);
+    return cache.contains(key);
   }
 
   public void putString (String key, @NonNull String value) {
-    pmc.putString(key, value);
+    cache.putString(key, value);
   }
 
   public String getString (String key, String defValue) {
-    return pmc.getString(key, defValue);
+    return cache.getString(key, defValue);
   }
 
   public void removeByPrefix (String prefix, @Nullable SharedPreferences.Editor editor) {
-    pmc.removeByPrefix(prefix); // editor
+    db.removeByPrefix(prefix); // editor
   }
 
   public void removeByAnyPrefix (String[] prefixes, @Nullable SharedPreferences.Editor editor) {
-    pmc.removeByAnyPrefix(prefixes); // , editor
+    db.removeByAnyPrefix(prefixes); // , editor
+  }
+
+  /**
+   * Commits writes made through typed accessors, e.g. {@link #putInt(String, int)}, to the database.
+   */
+  public void commitPendingChanges () {
+    cache.commit();
+    Log.v("%s", cache);
   }
 
   private void resetOther () {
@@ -1120,7 +1140,7 @@ public class Settings {
   private void loadNotTranslatableLanguages () {
     if (_chatDoNotTranslateLanguages != null) return;
     _chatDoNotTranslateLanguages = new HashMap<>();
-    String[] result = pmc.getStringArray(KEY_CHAT_DO_NOT_TRANSLATE_LIST);
+    String[] result = db.getStringArray(KEY_CHAT_DO_NOT_TRANSLATE_LIST);
     if (result == null) return;
     for (String lang : result) {
       _chatDoNotTranslateLanguages.put(lang, true);
@@ -1128,7 +1148,7 @@ public class Settings {
   }
 
   private void saveNotTranslatableLanguages () {
-    pmc.putStringArray(KEY_CHAT_DO_NOT_TRANSLATE_LIST, getAllNotTranslatableLanguages());
+    db.putStringArray(KEY_CHAT_DO_NOT_TRANSLATE_LIST, getAllNotTranslatableLanguages());
   }
 
   public String[] getAllNotTranslatableLanguages () {
@@ -1171,14 +1191,14 @@ public class Settings {
 
   public int getChatDoNotTranslateMode () {
     if (_chatDoNotTranslateMode == null) {
-      _chatDoNotTranslateMode = pmc.getInt(KEY_CHAT_DO_NOT_TRANSLATE_MODE, DO_NOT_TRANSLATE_MODE_APP_LANG);
+      _chatDoNotTranslateMode = db.getInt(KEY_CHAT_DO_NOT_TRANSLATE_MODE, DO_NOT_TRANSLATE_MODE_APP_LANG);
     }
     return _chatDoNotTranslateMode;
   }
 
   public void setChatDoNotTranslateMode (int mode) {
     if (getChatDoNotTranslateMode() != mode) {
-      pmc.putInt(KEY_CHAT_DO_NOT_TRANSLATE_MODE, _chatDoNotTranslateMode = mode);
+      db.putInt(KEY_CHAT_DO_NOT_TRANSLATE_MODE, _chatDoNotTranslateMode = mode);
     }
   }
 
@@ -1189,19 +1209,19 @@ public class Settings {
 
   public int getChatTranslateMode () {
     if (_chatTranslateMode == null) {
-      _chatTranslateMode = pmc.getInt(KEY_CHAT_TRANSLATE_MODE, TRANSLATE_MODE_POPUP);
+      _chatTranslateMode = db.getInt(KEY_CHAT_TRANSLATE_MODE, TRANSLATE_MODE_POPUP);
     }
     return _chatTranslateMode;
   }
 
   public void setChatTranslateMode (int mode) {
     if (getChatTranslateMode() != mode) {
-      pmc.putInt(KEY_CHAT_TRANSLATE_MODE, _chatTranslateMode = mode);
+      db.putInt(KEY_CHAT_TRANSLATE_MODE, _chatTranslateMode = mode);
     }
   }
 
   public void setTranslateLanguageRecents (String[] recents) {
-    pmc.putStringArray(KEY_CHAT_TRANSLATE_RECENTS, recents);
+    db.putStringArray(KEY_CHAT_TRANSLATE_RECENTS, recents);
   }
 
   public void setTranslateLanguageRecents (List<String> recents) {
@@ -1214,7 +1234,7 @@ public class Settings {
   }
 
   public ArrayList<String> getTranslateLanguageRecents () {
-    String[] result = pmc.getStringArray(KEY_CHAT_TRANSLATE_RECENTS);
+    String[] result = db.getStringArray(KEY_CHAT_TRANSLATE_RECENTS);
     if (result != null) {
       return new ArrayList<>(Arrays.asList(result));
     }
@@ -1222,7 +1242,7 @@ public class Settings {
   }
 
   public void clearTranslateLanguageRecents () {
-    pmc.remove(KEY_CHAT_TRANSLATE_RECENTS);
+    db.remove(KEY_CHAT_TRANSLATE_RECENTS);
   }
 
   public static final int CHAT_MODE_2LINE = 1;
@@ -1239,7 +1259,7 @@ public class Settings {
   public int getChatListMode () {
     if (_chatListMode == null) {
       int defaultMode = CHAT_MODE_3LINE; // TODO determine based on display settings
-      _chatListMode = pmc.getInt(KEY_CHAT_LIST_MODE, defaultMode);
+      _chatListMode = db.getInt(KEY_CHAT_LIST_MODE, defaultMode);
     }
     return _chatListMode;
   }
@@ -1258,7 +1278,7 @@ public class Settings {
 
   public void setChatListMode (int mode) {
     if (getChatListMode() != mode) {
-      pmc.putInt(KEY_CHAT_LIST_MODE, _chatListMode = mode);
+      db.putInt(KEY_CHAT_LIST_MODE, _chatListMode = mode);
       if (chatListModeListeners != null) {
         for (ChatListModeChangeListener listener : chatListModeListeners) {
           listener.onChatListModeChanged(mode);
@@ -1287,9 +1307,9 @@ public class Settings {
   public void setChatFolderOptions (@ChatFolderOptions int options) {
     if (getChatFolderOptions() != options) {
       if (options == TdlibSettingsManager.DEFAULT_CHAT_FOLDER_OPTIONS) {
-        pmc.remove(KEY_CHAT_FOLDER_OPTIONS);
+        db.remove(KEY_CHAT_FOLDER_OPTIONS);
       } else {
-        pmc.putInt(KEY_CHAT_FOLDER_OPTIONS, options);
+        db.putInt(KEY_CHAT_FOLDER_OPTIONS, options);
       }
       _chatFolderOptions = options;
       for (ChatFolderSettingsListener listener : chatFolderSettingsListeners) {
@@ -1300,7 +1320,7 @@ public class Settings {
 
   public @ChatFolderOptions int getChatFolderOptions () {
     if (_chatFolderOptions == null) {
-      _chatFolderOptions = pmc.getInt(KEY_CHAT_FOLDER_OPTIONS, TdlibSettingsManager.DEFAULT_CHAT_FOLDER_OPTIONS);
+      _chatFolderOptions = db.getInt(KEY_CHAT_FOLDER_OPTIONS, TdlibSettingsManager.DEFAULT_CHAT_FOLDER_OPTIONS);
     }
     return _chatFolderOptions;
   }
@@ -1308,9 +1328,9 @@ public class Settings {
   public void setChatFolderStyle (@ChatFolderStyle int style) {
     if (getChatFolderStyle() != style) {
       if (style == TdlibSettingsManager.DEFAULT_CHAT_FOLDER_STYLE) {
-        pmc.remove(KEY_CHAT_FOLDER_STYLE);
+        db.remove(KEY_CHAT_FOLDER_STYLE);
       } else {
-        pmc.putInt(KEY_CHAT_FOLDER_STYLE, style);
+        db.putInt(KEY_CHAT_FOLDER_STYLE, style);
       }
       _chatFolderStyle = style;
       for (ChatFolderSettingsListener listener : chatFolderSettingsListeners) {
@@ -1321,7 +1341,7 @@ public class Settings {
 
   public @ChatFolderStyle int getChatFolderStyle () {
     if (_chatFolderStyle == null) {
-      _chatFolderStyle = pmc.getInt(KEY_CHAT_FOLDER_STYLE, TdlibSettingsManager.DEFAULT_CHAT_FOLDER_STYLE);
+      _chatFolderStyle = db.getInt(KEY_CHAT_FOLDER_STYLE, TdlibSettingsManager.DEFAULT_CHAT_FOLDER_STYLE);
     }
     return _chatFolderStyle;
   }
@@ -1334,7 +1354,7 @@ public class Settings {
 
   private long getNewSettings () {
     if (_newSettings == null)
-      _newSettings = pmc.getLong(KEY_OTHER_NEW, makeDefaultNewSettings());
+      _newSettings = db.getLong(KEY_OTHER_NEW, makeDefaultNewSettings());
     return _newSettings;
   }
 
@@ -1346,7 +1366,7 @@ public class Settings {
     long oldSettings = getNewSettings();
     if (oldSettings != newSettings) {
       this._newSettings = newSettings;
-      pmc.putLong(KEY_OTHER_NEW, newSettings);
+      db.putLong(KEY_OTHER_NEW, newSettings);
       if (newSettingsListeners != null) {
         for (SettingsChangeListener listener : newSettingsListeners) {
           listener.onSettingsChanged(newSettings, oldSettings);
@@ -1365,7 +1385,7 @@ public class Settings {
 
   private long getExperiments () {
     if (_experiments == null) {
-      _experiments = pmc.getLong(KEY_EXPERIMENTS, makeDefaultExperiments());
+      _experiments = db.getLong(KEY_EXPERIMENTS, makeDefaultExperiments());
     }
     return _experiments;
   }
@@ -1380,7 +1400,7 @@ public class Settings {
     long newExperiments = BitwiseUtils.setFlag(oldExperiments, key, enabled);
     if (oldExperiments != newExperiments) {
       this._experiments = newExperiments;
-      pmc.putLong(KEY_EXPERIMENTS, newExperiments);
+      db.putLong(KEY_EXPERIMENTS, newExperiments);
       return true;
     }
     return false;
@@ -1416,14 +1436,14 @@ public class Settings {
 
   private int getSettings () {
     if (_settings == null)
-      _settings = pmc.getInt(KEY_OTHER, makeDefaultSettings());
+      _settings = db.getInt(KEY_OTHER, makeDefaultSettings());
     return _settings;
   }
 
   private boolean setSettings (int newSettings) {
     if (getSettings() != newSettings) {
       this._settings = newSettings;
-      pmc.putInt(KEY_OTHER, newSettings);
+      db.putInt(KEY_OTHER, newSettings);
       return true;
     }
     return false;
@@ -1683,9 +1703,15 @@ public class Settings {
   }*/
 
   private final LevelDB pmc;
+  private final SettingsCache cache;
+  private final SettingsDatabase db;
 
-  public LevelDB pmc () {
-    return pmc;
+  /**
+   * Direct database access. Writes made through it drop cached values of written keys,
+   * see {@link SettingsDatabase}.
+   */
+  public SettingsDatabase pmc () {
+    return db;
   }
 
   private boolean ignoreFurtherAccountConfigUpgrades;
@@ -2296,7 +2322,7 @@ public class Settings {
     Integer pipX = null, pipY = null;
 
     if (mainItems != null && !mainItems.isEmpty()) {
-      editor = pmc.edit();
+      editor = db.edit();
       for (Map.Entry<String, ?> entry : mainItems.entrySet()) {
         String key = entry.getKey();
         Object value = entry.getValue();
@@ -2321,7 +2347,7 @@ public class Settings {
                   blob.ensureCapacity(8 + 8 + 4);
                 }
                 location.saveTo(blob);
-                pmc.putByteArray(key, blob.toByteArray());
+                db.putByteArray(key, blob.toByteArray());
               }
             }
             continue;
@@ -2329,7 +2355,7 @@ public class Settings {
             if (value instanceof String) {
               int[] array = StringUtils.parseIntArray((String) value, ",");
               if (array != null) {
-                pmc.putIntArray(key, array);
+                db.putIntArray(key, array);
               }
             }
             continue;
@@ -2349,7 +2375,7 @@ public class Settings {
                 if (value instanceof String) {
                   long[] aliasMessageIds = StringUtils.parseLongArray((String) value, ",");
                   if (aliasMessageIds != null && aliasMessageIds.length > 0) {
-                    pmc.putLongArray(key, aliasMessageIds);
+                    db.putLongArray(key, aliasMessageIds);
                   }
                 }
                 continue;
@@ -2375,7 +2401,7 @@ public class Settings {
                     blob.writeLong(messageId);
                     blob.writeVarint(flags);
                   }
-                  pmc.putByteArray(key, blob.toByteArray());
+                  db.putByteArray(key, blob.toByteArray());
                 }
               }
               continue;
@@ -2411,7 +2437,7 @@ public class Settings {
     File botsPrefs = U.sharedPreferencesFile(STORAGE_BOTS);
     if (botsPrefs != null) {
       bots = UI.getAppContext().getSharedPreferences(STORAGE_BOTS, Context.MODE_PRIVATE);
-      editor = movePreferences(bots, pmc, editor, null);
+      editor = movePreferences(bots, db, editor, null);
     }
 
     // Keyboard. Moving with prefix, e.g. "keyboard_size0"
@@ -2420,7 +2446,7 @@ public class Settings {
     File keyboardPrefs = U.sharedPreferencesFile(STORAGE_KEYBOARD);
     if (keyboardPrefs != null) {
       keyboard = UI.getAppContext().getSharedPreferences(STORAGE_KEYBOARD, Context.MODE_PRIVATE);
-      editor = movePreferences(keyboard, pmc, editor, "keyboard_");
+      editor = movePreferences(keyboard, db, editor, "keyboard_");
     }
 
     // Emoji
@@ -2429,7 +2455,7 @@ public class Settings {
     Map<String, ?> allEmoji = emoji.getAll();
     if (allEmoji != null && !allEmoji.isEmpty()) {
       if (editor == null) {
-        editor = pmc.edit();
+        editor = db.edit();
       }
 
       Map<String, RecentInfo> infos = null;
@@ -2492,19 +2518,19 @@ public class Settings {
         Object value = entry.getValue();
         try {
           if (value instanceof Integer) {
-            int newValue = pmc.tryGetInt(key);
+            int newValue = db.tryGetInt(key);
             Test.assertEquals((int) value, newValue);
           } else if (value instanceof Long) {
-            long newValue = pmc.tryGetLong(key);
+            long newValue = db.tryGetLong(key);
             Test.assertEquals((long) value, newValue);
           } else if (value instanceof Float) {
-            float newValue = pmc.tryGetFloat(key);
+            float newValue = db.tryGetFloat(key);
             Test.assertEquals((float) value, newValue);
           } else if (value instanceof Boolean) {
-            boolean newValue = pmc.tryGetBoolean(key);
+            boolean newValue = db.tryGetBoolean(key);
             Test.assertEquals((boolean) value, newValue);
           } else if (value instanceof String) {
-            String newValue = pmc.tryGetString(key);
+            String newValue = db.tryGetString(key);
             Test.assertEquals((String) value, newValue);
           } else {
             throw new UnsupportedOperationException("key = " + key + " value = " + value + " (" + (value != null ? value.getClass().getSimpleName() : "null"));
@@ -2627,7 +2653,7 @@ public class Settings {
     switch (source.getConstructor()) {
       case TdApi.ChatSourcePublicServiceAnnouncement.CONSTRUCTOR:
         String type = ((TdApi.ChatSourcePublicServiceAnnouncement) source).type;
-        return !pmc.contains(StringUtils.isEmpty(type) ? KEY_TUTORIAL_PSA : KEY_TUTORIAL_PSA + type);
+        return !db.contains(StringUtils.isEmpty(type) ? KEY_TUTORIAL_PSA : KEY_TUTORIAL_PSA + type);
       case TdApi.ChatSourceMtprotoProxy.CONSTRUCTOR:
         return needTutorial(TUTORIAL_PROXY_SPONSOR);
       default:
@@ -2640,7 +2666,7 @@ public class Settings {
     switch (source.getConstructor()) {
       case TdApi.ChatSourcePublicServiceAnnouncement.CONSTRUCTOR:
         String type = ((TdApi.ChatSourcePublicServiceAnnouncement) source).type;
-        pmc.putVoid(StringUtils.isEmpty(type) ? KEY_TUTORIAL_PSA : KEY_TUTORIAL_PSA + type);
+        db.putVoid(StringUtils.isEmpty(type) ? KEY_TUTORIAL_PSA : KEY_TUTORIAL_PSA + type);
         break;
       case TdApi.ChatSourceMtprotoProxy.CONSTRUCTOR:
         markTutorialAsComplete(TUTORIAL_PROXY_SPONSOR);
@@ -2664,7 +2690,7 @@ public class Settings {
 
   private long getTutorialFlags () {
     if (_tutorialFlags == null)
-      _tutorialFlags = pmc.getLong(KEY_TUTORIAL, 0);
+      _tutorialFlags = db.getLong(KEY_TUTORIAL, 0);
     return _tutorialFlags;
   }
 
@@ -2688,7 +2714,7 @@ public class Settings {
 
   public int getPreferredAudioPlaybackMode () {
     if (_preferredAudioPlaybackMode == null)
-      _preferredAudioPlaybackMode = pmc.getInt(KEY_PREFERRED_PLAYBACK_MODE, 0);
+      _preferredAudioPlaybackMode = db.getInt(KEY_PREFERRED_PLAYBACK_MODE, 0);
     return _preferredAudioPlaybackMode;
   }
 
@@ -2751,15 +2777,15 @@ public class Settings {
   private Boolean needRestrictContent;
 
   public boolean needRestrictContent () {
-    return needRestrictContent != null ? needRestrictContent : (needRestrictContent = pmc.getBoolean(KEY_RESTRICT_CONTENT, true));
+    return needRestrictContent != null ? needRestrictContent : (needRestrictContent = db.getBoolean(KEY_RESTRICT_CONTENT, true));
   }
 
   public void setRestrictContent (boolean restrict) {
     needRestrictContent = restrict;
     if (restrict)
-      pmc.remove(KEY_RESTRICT_CONTENT);
+      db.remove(KEY_RESTRICT_CONTENT);
     else
-      pmc.putBoolean(KEY_RESTRICT_CONTENT, false);
+      db.putBoolean(KEY_RESTRICT_CONTENT, false);
   }
 
   public boolean needReduceMotion () {
@@ -2804,7 +2830,7 @@ public class Settings {
 
   public int getStickerMode () {
     if (_stickerMode == null)
-      _stickerMode = pmc.getInt(KEY_STICKER_MODE, STICKER_MODE_ALL);
+      _stickerMode = db.getInt(KEY_STICKER_MODE, STICKER_MODE_ALL);
     return _stickerMode;
   }
 
@@ -2819,7 +2845,7 @@ public class Settings {
 
   public int getEmojiMode () {
     if (_emojiMode == null)
-      _emojiMode = pmc.getInt(KEY_EMOJI_MODE, STICKER_MODE_ALL);
+      _emojiMode = db.getInt(KEY_EMOJI_MODE, STICKER_MODE_ALL);
     return _emojiMode;
   }
 
@@ -2834,7 +2860,7 @@ public class Settings {
 
   public int getReactionAvatarsMode () {
     if (_reactionAvatarsMode == null)
-      _reactionAvatarsMode = pmc.getInt(KEY_REACTION_AVATARS_MODE, REACTION_AVATARS_MODE_SMART_FILTER);
+      _reactionAvatarsMode = db.getInt(KEY_REACTION_AVATARS_MODE, REACTION_AVATARS_MODE_SMART_FILTER);
     return _reactionAvatarsMode;
   }
 
@@ -2845,7 +2871,7 @@ public class Settings {
 
   public int getAutoUpdateMode () {
     if (_autoUpdateMode == null)
-      _autoUpdateMode = pmc.getInt(KEY_AUTO_UPDATE_MODE, AUTO_UPDATE_MODE_PROMPT);
+      _autoUpdateMode = db.getInt(KEY_AUTO_UPDATE_MODE, AUTO_UPDATE_MODE_PROMPT);
     return _autoUpdateMode;
   }
 
@@ -2860,7 +2886,7 @@ public class Settings {
 
   public int getBadgeFlags () {
     if (_badgeFlags == null)
-      _badgeFlags = pmc.getInt(KEY_BADGE_FLAGS, 0);
+      _badgeFlags = db.getInt(KEY_BADGE_FLAGS, 0);
     return _badgeFlags;
   }
 
@@ -2885,7 +2911,7 @@ public class Settings {
 
   private int getNotificationFlags () {
     if (_notificationFlags == null) {
-      int flags = pmc.getInt(KEY_NOTIFICATION_FLAGS, NOTIFICATION_FLAGS_DEFAULT);
+      int flags = db.getInt(KEY_NOTIFICATION_FLAGS, NOTIFICATION_FLAGS_DEFAULT);
       if (BitwiseUtils.hasFlag(flags, NOTIFICATION_FLAG_ONLY_ACTIVE_ACCOUNT) && BitwiseUtils.hasFlag(flags, NOTIFICATION_FLAG_ONLY_SELECTED_ACCOUNTS)) {
         flags = BitwiseUtils.setFlag(flags, NOTIFICATION_FLAG_ONLY_ACTIVE_ACCOUNT, false);
         flags = BitwiseUtils.setFlag(flags, NOTIFICATION_FLAG_ONLY_SELECTED_ACCOUNTS, false);
@@ -2938,7 +2964,7 @@ public class Settings {
 
   private int getIncognitoMode () {
     if (_incognitoMode == null)
-      _incognitoMode = pmc.getInt(KEY_INCOGNITO, INCOGNITO_CHAT_SECRET);
+      _incognitoMode = db.getInt(KEY_INCOGNITO, INCOGNITO_CHAT_SECRET);
     return _incognitoMode;
   }
 
@@ -3088,7 +3114,7 @@ public class Settings {
 
   public int getNightMode () {
     if (_nightMode == null) {
-      int nightMode = pmc.getInt(KEY_NIGHT_MODE, NIGHT_MODE_DEFAULT);
+      int nightMode = db.getInt(KEY_NIGHT_MODE, NIGHT_MODE_DEFAULT);
       if (nightMode == NIGHT_MODE_AUTO) {
         try {
           SensorManager sensorManager = (SensorManager) UI.getAppContext().getSystemService(Context.SENSOR_SERVICE);
@@ -3312,7 +3338,7 @@ public class Settings {
   @NonNull
   public VideoLimit getPreferredVideoLimit () {
     if (preferredVideoLimit == null) {
-      preferredVideoLimit = new VideoLimit(pmc.getIntArray(KEY_VIDEO_LIMIT));
+      preferredVideoLimit = new VideoLimit(db.getIntArray(KEY_VIDEO_LIMIT));
     }
     return preferredVideoLimit;
   }
@@ -3321,9 +3347,9 @@ public class Settings {
     int[] data = videoLimit != null ? videoLimit.toIntArray() : null;
     this.preferredVideoLimit = videoLimit;
     if (data != null) {
-      pmc.putIntArray(KEY_VIDEO_LIMIT, data);
+      db.putIntArray(KEY_VIDEO_LIMIT, data);
     } else {
-      pmc.remove(KEY_VIDEO_LIMIT);
+      db.remove(KEY_VIDEO_LIMIT);
     }
   }
 
@@ -3345,7 +3371,7 @@ public class Settings {
 
   public float getMaxNightLux () {
     if (_nightModeAutoLux == null)
-      _nightModeAutoLux = pmc.getFloat(KEY_MAX_NIGHT_LUX, MAX_NIGHT_LUX_DEFAULT);
+      _nightModeAutoLux = db.getFloat(KEY_MAX_NIGHT_LUX, MAX_NIGHT_LUX_DEFAULT);
     return _nightModeAutoLux;
   }
 
@@ -3434,7 +3460,7 @@ public class Settings {
 
   private long getNightModeSchedule () {
     if (_nightModeSchedule == null)
-      _nightModeSchedule = pmc.getLong(KEY_NIGHT_MODE_SCHEDULED_TIME, BitwiseUtils.mergeLong(BitwiseUtils.mergeTimeToInt(22, 0, 0), BitwiseUtils.mergeTimeToInt(7, 0, 0)));
+      _nightModeSchedule = db.getLong(KEY_NIGHT_MODE_SCHEDULED_TIME, BitwiseUtils.mergeLong(BitwiseUtils.mergeTimeToInt(22, 0, 0), BitwiseUtils.mergeTimeToInt(7, 0, 0)));
     return _nightModeSchedule;
   }
 
@@ -3474,7 +3500,7 @@ public class Settings {
   public static final int CAMERA_RATIO_FULL_SCREEN = 3;
 
   public int getCameraAspectRatioMode () {
-    return pmc.getInt(KEY_CAMERA_ASPECT_RATIO, CAMERA_RATIO_16_9);
+    return db.getInt(KEY_CAMERA_ASPECT_RATIO, CAMERA_RATIO_16_9);
   }
 
   public float getCameraAspectRatio () {
@@ -3494,9 +3520,9 @@ public class Settings {
 
   public void setCameraAspectRatioMode (int ratioMode) {
     if (ratioMode == CAMERA_RATIO_16_9) {
-      pmc.remove(KEY_CAMERA_ASPECT_RATIO);
+      db.remove(KEY_CAMERA_ASPECT_RATIO);
     } else {
-      pmc.putInt(KEY_CAMERA_ASPECT_RATIO, ratioMode);
+      db.putInt(KEY_CAMERA_ASPECT_RATIO, ratioMode);
     }
   }
 
@@ -3510,15 +3536,15 @@ public class Settings {
     if (!Config.CUSTOM_CAMERA_AVAILABLE) {
       return CAMERA_TYPE_SYSTEM;
     }
-    int type = pmc.getInt(KEY_CAMERA_TYPE, CAMERA_TYPE_DEFAULT);
+    int type = db.getInt(KEY_CAMERA_TYPE, CAMERA_TYPE_DEFAULT);
     return type != CAMERA_TYPE_X || Config.CAMERA_X_AVAILABLE ? type : CAMERA_TYPE_DEFAULT;
   }
 
   public void setCameraType (int type) {
     if (type == CAMERA_TYPE_DEFAULT) {
-      pmc.remove(KEY_CAMERA_TYPE);
+      db.remove(KEY_CAMERA_TYPE);
     } else {
-      pmc.putInt(KEY_CAMERA_TYPE, type);
+      db.putInt(KEY_CAMERA_TYPE, type);
     }
   }
 
@@ -3528,14 +3554,14 @@ public class Settings {
 
   public void setCameraVolumeControl (int type) {
     if (type == CAMERA_VOLUME_CONTROL_SHOOT) {
-      pmc.remove(KEY_CAMERA_VOLUME_CONTROL);
+      db.remove(KEY_CAMERA_VOLUME_CONTROL);
     } else {
-      pmc.putInt(KEY_CAMERA_VOLUME_CONTROL, type);
+      db.putInt(KEY_CAMERA_VOLUME_CONTROL, type);
     }
   }
 
   public int getCameraVolumeControl () {
-    return pmc.getInt(KEY_CAMERA_VOLUME_CONTROL, CAMERA_VOLUME_CONTROL_SHOOT);
+    return db.getInt(KEY_CAMERA_VOLUME_CONTROL, CAMERA_VOLUME_CONTROL_SHOOT);
   }
 
   // Font sizes
@@ -3548,7 +3574,7 @@ public class Settings {
 
   public float getChatFontSize () {
     if (_chatFontSize == null) {
-      float chatFontSize = pmc.getFloat(KEY_CHAT_FONT_SIZE, CHAT_FONT_SIZE_DEFAULT);
+      float chatFontSize = db.getFloat(KEY_CHAT_FONT_SIZE, CHAT_FONT_SIZE_DEFAULT);
       if (!isGoodChatFontSize(chatFontSize)) {
         chatFontSize = CHAT_FONT_SIZE_DEFAULT;
       }
@@ -3656,14 +3682,14 @@ public class Settings {
       instanceMode == Tdlib.Mode.SERVICE || instanceMode == Tdlib.Mode.DEBUG;
     String key = KEY_TDLIB_DEBUG_PREFIX + accountId;
     if (allowSpecialInstanceMode) {
-      pmc.putVoid(key);
+      db.putVoid(key);
     } else {
-      pmc.remove(key);
+      db.remove(key);
     }
   }
 
   public boolean allowSpecialTdlibInstanceMode (int accountId) {
-    return pmc.contains(KEY_TDLIB_DEBUG_PREFIX + accountId);
+    return db.contains(KEY_TDLIB_DEBUG_PREFIX + accountId);
   }
 
   // EmojiLayout
@@ -3722,11 +3748,11 @@ public class Settings {
   public int getMapProviderType (boolean cloud) {
     if (cloud) {
       if (_mapProviderTypeCloud == null)
-        _mapProviderTypeCloud = pmc.getInt(KEY_MAP_PROVIDER_TYPE_CLOUD, MAP_PROVIDER_DEFAULT_CLOUD);
+        _mapProviderTypeCloud = db.getInt(KEY_MAP_PROVIDER_TYPE_CLOUD, MAP_PROVIDER_DEFAULT_CLOUD);
       return _mapProviderTypeCloud;
     } else {
       if (_mapProviderType == null)
-        _mapProviderType = pmc.getInt(KEY_MAP_PROVIDER_TYPE, MAP_PROVIDER_UNSET);
+        _mapProviderType = db.getInt(KEY_MAP_PROVIDER_TYPE, MAP_PROVIDER_UNSET);
       return _mapProviderType;
     }
   }
@@ -3758,9 +3784,9 @@ public class Settings {
     deleteWallpaper(tdlib, editor, 0);
     deleteWallpaper(tdlib, editor, 1);
     String key = (accountId != 0 ? KEY_WALLPAPER_PREFIX + "_" + accountId : KEY_WALLPAPER_PREFIX) + "_other";
-    pmc.removeByPrefix(key);
+    db.removeByPrefix(key);
     key = (accountId != 0 ? KEY_WALLPAPER_PREFIX + "_" + accountId : KEY_WALLPAPER_PREFIX) + "_chat";
-    pmc.removeByPrefix(key);
+    db.removeByPrefix(key);
   }
 
   public void deleteWallpaper (Tdlib tdlib, SharedPreferences.Editor editor, int wallpaperIdentifier) {
@@ -3813,7 +3839,7 @@ public class Settings {
   }
 
   public @Nullable LastLocation getViewedLocation () {
-    return parseLocation(pmc.getByteArray(KEY_LAST_LOCATION));
+    return parseLocation(db.getByteArray(KEY_LAST_LOCATION));
   }
 
   @Deprecated
@@ -3845,7 +3871,7 @@ public class Settings {
     Blob.writeDouble(buffer, 0, latitude);
     Blob.writeDouble(buffer, 8, longitude);
     Blob.writeFloat(buffer, 8 + 8, zoom);
-    pmc.putByteArray(KEY_LAST_LOCATION, buffer);
+    db.putByteArray(KEY_LAST_LOCATION, buffer);
   }
 
   public void saveLastKnownLocation (double latitude, double longitude, float accuracy) {
@@ -3853,11 +3879,11 @@ public class Settings {
     Blob.writeDouble(buffer, 0, latitude);
     Blob.writeDouble(buffer, 8, longitude);
     Blob.writeFloat(buffer, 8 + 8, accuracy);
-    pmc.putByteArray(KEY_LAST_INLINE_LOCATION, buffer);
+    db.putByteArray(KEY_LAST_INLINE_LOCATION, buffer);
   }
 
   public @Nullable LastLocation getLastKnownLocation () {
-    return parseLocation(pmc.getByteArray(KEY_LAST_INLINE_LOCATION));
+    return parseLocation(db.getByteArray(KEY_LAST_INLINE_LOCATION));
   }
 
   // PiP
@@ -3956,11 +3982,11 @@ public class Settings {
       blob.writeString(entry.getKey());
       entry.getValue().saveTo(blob);
     }
-    pmc.putByteArray(storageKey, blob.toByteArray());
+    db.putByteArray(storageKey, blob.toByteArray());
   }
 
   private <T extends BlobEntry> void getBinaryMap (String storageKey, Map<String, T> out, Class<T> clazz) {
-    byte[] data = pmc.getByteArray(storageKey);
+    byte[] data = db.getByteArray(storageKey);
     if (data == null || data.length == 0) {
       return;
     }
@@ -3989,11 +4015,11 @@ public class Settings {
     for (BlobEntry entry : list) {
       entry.saveTo(blob);
     }
-    pmc.putByteArray(storageKey, blob.toByteArray());
+    db.putByteArray(storageKey, blob.toByteArray());
   }
 
   public @Nullable List<BlobEntry> getBinaryList (String storageKey, Class<? extends BlobEntry> clazz) {
-    byte[] data = pmc.getByteArray(storageKey);
+    byte[] data = db.getByteArray(storageKey);
     if (data == null) {
       return null;
     }
@@ -4023,11 +4049,11 @@ public class Settings {
     for (RecentEmoji recent : recents) {
       out[i++] = recent.emoji;
     }
-    pmc.putStringArray(KEY_EMOJI_RECENTS, out);
+    db.putStringArray(KEY_EMOJI_RECENTS, out);
   }
 
   public void clearEmojiRecents () {
-    pmc.edit().remove(KEY_EMOJI_COUNTERS).remove(KEY_EMOJI_RECENTS).apply();
+    db.edit().remove(KEY_EMOJI_COUNTERS).remove(KEY_EMOJI_RECENTS).apply();
   }
 
   public void getEmojiCounters (Map<String, RecentInfo> infos) {
@@ -4035,7 +4061,7 @@ public class Settings {
   }
 
   public void getEmojiRecents (Map<String, RecentInfo> infos, List<RecentEmoji> recents) {
-    String[] emojis = pmc.getStringArray(KEY_EMOJI_RECENTS);
+    String[] emojis = db.getStringArray(KEY_EMOJI_RECENTS);
     if (emojis != null && emojis.length > 0) {
       for (String emoji : emojis) {
         RecentInfo info = infos.get(emoji);
@@ -4091,7 +4117,7 @@ public class Settings {
   private static final String EMOJI_OTHER_COLORS_SEPARATOR = ",";
 
   public void getEmojiOtherColors (Map<String, String[]> otherColors) {
-    String[] array = pmc.getStringArray(KEY_EMOJI_OTHER_COLORS);
+    String[] array = db.getStringArray(KEY_EMOJI_OTHER_COLORS);
     if (array != null && array.length > 0) {
       String key = null;
       for (String value : array) {
@@ -4119,7 +4145,7 @@ public class Settings {
         result[i++] = entry.getKey();
         result[i++] = Strings.join(EMOJI_OTHER_COLORS_SEPARATOR, (Object[]) entry.getValue());
       }
-      pmc.putStringArray(KEY_EMOJI_OTHER_COLORS, result);
+      db.putStringArray(KEY_EMOJI_OTHER_COLORS, result);
     } else {
       editor.remove(KEY_EMOJI_OTHER_COLORS);
     }
@@ -4129,7 +4155,7 @@ public class Settings {
   }
 
   public void getEmojiColors (Map<String, String> colors) {
-    String[] array = pmc.getStringArray(KEY_EMOJI_COLORS);
+    String[] array = db.getStringArray(KEY_EMOJI_COLORS);
     if (array != null && array.length > 0) {
       String key = null;
       for (String value : array) {
@@ -4157,7 +4183,7 @@ public class Settings {
         result[i++] = entry.getKey();
         result[i++] = entry.getValue();
       }
-      pmc.putStringArray(KEY_EMOJI_COLORS, result);
+      db.putStringArray(KEY_EMOJI_COLORS, result);
     } else {
       editor.remove(KEY_EMOJI_COLORS);
     }
@@ -4290,7 +4316,7 @@ public class Settings {
   public SavedMessageId getScrollMessageId (int accountId, long chatId, long messageThreadId) {
     String prefix = key(KEY_SCROLL_CHAT_PREFIX + chatId, accountId);
     SavedMessageId.Builder b = null;
-    for (LevelDB.Entry entry : pmc.find(prefix)) {
+    for (LevelDB.Entry entry : db.find(prefix)) {
       long keyMessageThreadId = StringUtils.parseLong(entry.key().replaceAll("^.+_thread(\\d+)$", "$1"));
       if (messageThreadId != keyMessageThreadId) {
         continue;
@@ -4332,7 +4358,7 @@ public class Settings {
   public void updateScrollMessageId (int accountId, long chatId, long oldMessageId, long newMessageId) {
     String prefix = key(KEY_SCROLL_CHAT_PREFIX + chatId, accountId);
     SharedPreferences.Editor editor = null;
-    for (LevelDB.Entry entry : pmc.find(prefix)) {
+    for (LevelDB.Entry entry : db.find(prefix)) {
       String suffix = entry.key().substring(prefix.length()).replaceAll("_thread[\\d]+$", "");
       switch (suffix) {
         case KEY_SCROLL_CHAT_MESSAGE_ID: {
@@ -4449,14 +4475,14 @@ public class Settings {
    * Returns proxy identifier even when {@link #PROXY_FLAG_ENABLED} is not set.
    */
   public int getAvailableProxyId () {
-    return pmc.getInt(KEY_PROXY_CURRENT, PROXY_ID_NONE);
+    return db.getInt(KEY_PROXY_CURRENT, PROXY_ID_NONE);
   }
 
   /**
    * @return Number of available proxy configurations
    */
   public int getAvailableProxyCount () {
-    return (int) pmc.getSizeByPrefix(KEY_PROXY_PREFIX_CONFIG);
+    return (int) db.getSizeByPrefix(KEY_PROXY_PREFIX_CONFIG);
   }
 
   /**
@@ -4470,7 +4496,7 @@ public class Settings {
    * @return Current proxy flags.
    */
   public int getProxySettings () {
-    return pmc.getByte(KEY_PROXY_SETTINGS, (byte) 0);
+    return db.getByte(KEY_PROXY_SETTINGS, (byte) 0);
   }
 
   /**
@@ -4533,14 +4559,14 @@ public class Settings {
         proxyId = PROXY_ID_NONE;
         proxy = null;
       }
-      pmc.putByte(KEY_PROXY_SETTINGS, (byte) newSettings);
+      db.putByte(KEY_PROXY_SETTINGS, (byte) newSettings);
       if (proxy != null) {
         dispatchProxyConfiguration(proxyId, proxy.proxy, proxy.description, true, false);
       } else {
         dispatchProxyConfiguration(PROXY_ID_NONE, null, null, true, false);
       }
     } else {
-      pmc.putByte(KEY_PROXY_SETTINGS, (byte) newSettings);
+      db.putByte(KEY_PROXY_SETTINGS, (byte) newSettings);
     }
     return enabled;
   }
@@ -4551,7 +4577,7 @@ public class Settings {
    */
   public @Nullable Proxy getProxyConfig (int proxyId) {
     if (proxyId != PROXY_ID_NONE) {
-      Proxy proxy = readProxy(proxyId, pmc.getByteArray(KEY_PROXY_PREFIX_CONFIG + proxyId), null);
+      Proxy proxy = readProxy(proxyId, db.getByteArray(KEY_PROXY_PREFIX_CONFIG + proxyId), null);
       if (proxy == null) {
         Log.e("Configuration unavailable, proxyId:%d", proxyId);
       }
@@ -4770,7 +4796,7 @@ public class Settings {
   public int getExistingProxyId (@NonNull TdApi.InternalLinkTypeProxy proxy) {
     final byte[] data = serializeProxy(proxy);
     if (data != null) {
-      String existingKey = pmc.findByValue(KEY_PROXY_PREFIX_CONFIG, data);
+      String existingKey = db.findByValue(KEY_PROXY_PREFIX_CONFIG, data);
       if (existingKey != null) {
         return StringUtils.parseInt(existingKey.substring(KEY_PROXY_PREFIX_CONFIG.length()));
       }
@@ -4782,18 +4808,21 @@ public class Settings {
     if (proxyId <= Settings.PROXY_ID_UNKNOWN)
       throw new IllegalArgumentException(Integer.toString(proxyId));
     if (isPing) {
-      pmc.putLongArray(KEY_PROXY_PREFIX_LAST_PING + proxyId, new long[] {timestampMs, resultMs});
+      db.putLongArray(KEY_PROXY_PREFIX_LAST_PING + proxyId, new long[] {timestampMs, resultMs});
     } else {
       int connectedCount =
-        pmc.getInt(KEY_PROXY_PREFIX_CONNECTED_COUNT + proxyId, 0)
+        db.getInt(KEY_PROXY_PREFIX_CONNECTED_COUNT + proxyId, 0)
           + 1;
-      pmc.edit()
+      db.edit()
         .putLongArray(KEY_PROXY_PREFIX_LAST_CONNECTION + proxyId, new long[] {timestampMs, resultMs})
         .putInt(KEY_PROXY_PREFIX_CONNECTED_COUNT + proxyId, connectedCount)
         .apply();
     }
   }
 
+  private void invalidateProxySettings () {
+  }
+
   public int addOrUpdateProxy (@NonNull TdApi.InternalLinkTypeProxy proxy, @Nullable String proxyDescription, boolean setAsCurrent) {
     return addOrUpdateProxy(proxy, proxyDescription, setAsCurrent, PROXY_ID_NONE);
   }
@@ -4818,14 +4847,14 @@ public class Settings {
     int proxySettings = getProxySettings();
     boolean abort = false;
 
-    final LevelDB editor = pmc.edit();
+    final SettingsDatabase editor = db.edit();
     boolean isNewAdd = false;
 
     if (existingProxyId != PROXY_ID_NONE) {
       proxyId = existingProxyId;
       editor.putByteArray(KEY_PROXY_PREFIX_CONFIG + proxyId, data);
     } else {
-      String existingKey = pmc.findByValue(KEY_PROXY_PREFIX_CONFIG, data);
+      String existingKey = db.findByValue(KEY_PROXY_PREFIX_CONFIG, data);
       if (existingKey != null) {
         proxyId = StringUtils.parseInt(existingKey.substring(KEY_PROXY_PREFIX_CONFIG.length()));
         abort = availableProxyId == proxyId && (proxySettings & PROXY_FLAG_ENABLED) != 0;
@@ -4847,6 +4876,7 @@ public class Settings {
 
     if (abort) {
       editor.apply();
+      invalidateProxySettings();
       return proxyId;
     }
 
@@ -4867,6 +4897,7 @@ public class Settings {
     }
 
     editor.apply();
+    invalidateProxySettings();
 
     if (isNewAdd) {
       dispatchProxyAdded(new Proxy(proxyId, proxy, proxyDescription), setAsCurrent);
@@ -4896,21 +4927,21 @@ public class Settings {
       return false;
     }
 
-    pmc.edit();
-    pmc.remove(KEY_PROXY_PREFIX_CONFIG + proxyId);
-    pmc.removeByPrefix(KEY_PROXY_PREFIX_CONNECTION_TIME + proxyId);
-    pmc.apply();
+    db.edit();
+    db.remove(KEY_PROXY_PREFIX_CONFIG + proxyId);
+    db.removeByPrefix(KEY_PROXY_PREFIX_CONNECTION_TIME + proxyId);
+    db.apply();
 
     if (availableProxyId == proxyId) {
       int newProxyId = PROXY_ID_NONE;
-      String firstConfigKey = pmc.findFirst(KEY_PROXY_PREFIX_CONFIG);
+      String firstConfigKey = db.findFirst(KEY_PROXY_PREFIX_CONFIG);
       if (firstConfigKey != null) {
         int i = firstConfigKey.lastIndexOf('_');
         if (i != -1) {
           newProxyId = StringUtils.parseInt(firstConfigKey.substring(i + 1));
         }
       }
-      pmc.putInt(KEY_PROXY_CURRENT, newProxyId);
+      db.putInt(KEY_PROXY_CURRENT, newProxyId);
       if (newProxyId == PROXY_ID_NONE) {
         dispatchProxyAvailabilityChanged(false);
       }
@@ -4934,7 +4965,7 @@ public class Settings {
   @Deprecated
   public void traceProxyConnected (int proxyId, int accountId, int time) {
     if (proxyId >= PROXY_ID_NONE) {
-      pmc.putInt(KEY_PROXY_PREFIX_CONNECTION_TIME + proxyId + "_" + accountId, time);
+      db.putInt(KEY_PROXY_PREFIX_CONNECTION_TIME + proxyId + "_" + accountId, time);
     }
   }
 
@@ -4946,7 +4977,7 @@ public class Settings {
   public int getProxyConnectionTime (int proxyId, int accountId) {
     if (proxyId < PROXY_ID_NONE)
       throw new IllegalArgumentException(Integer.toString(proxyId));
-    return pmc.getInt(KEY_PROXY_PREFIX_CONNECTION_TIME + proxyId + "_" + accountId, 0);
+    return db.getInt(KEY_PROXY_PREFIX_CONNECTION_TIME + proxyId + "_" + accountId, 0);
   }
 
   public static class Proxy implements Comparable<Proxy> {
@@ -5093,9 +5124,9 @@ public class Settings {
    */
   public void setProxyOrder (@Nullable int[] proxyIds) {
     if (proxyIds != null) {
-      pmc.putIntArray(KEY_PROXY_ORDER, proxyIds);
+      db.putIntArray(KEY_PROXY_ORDER, proxyIds);
     } else {
-      pmc.remove(KEY_PROXY_ORDER);
+      db.remove(KEY_PROXY_ORDER);
     }
   }
 
@@ -5115,8 +5146,8 @@ public class Settings {
   private @NonNull List<Proxy> loadAvailableProxies () {
     List<Proxy> proxies = new ArrayList<>();
     Blob blob = null;
-    int[] order = pmc.getIntArray(KEY_PROXY_ORDER);
-    for (final LevelDB.Entry entry : pmc.find(KEY_PROXY_ITEM_PREFIX)) {
+    int[] order = db.getIntArray(KEY_PROXY_ORDER);
+    for (final LevelDB.Entry entry : db.find(KEY_PROXY_ITEM_PREFIX)) {
       final String key = entry.key();
       int i = key.lastIndexOf('_');
       if (i == -1) {
@@ -5291,24 +5322,24 @@ public class Settings {
   private static final String KEY_BRUT_FORCE_ERROR_PREFIX = "brut_force_errors";
 
   private void checkPendingPasscodeLocks () {
-    for (LevelDB.Entry entry : pmc.find(KEY_BRUT_FORCE_BLOCK_SECONDS)) {
+    for (LevelDB.Entry entry : db.find(KEY_BRUT_FORCE_BLOCK_SECONDS)) {
       startPasscodeBlockTimer(/*entry.asInt(),*/ entry.key().substring(KEY_BRUT_FORCE_BLOCK_SECONDS.length()));
     }
   }
 
   public void forgetPasscodeErrors (int mode, @Nullable String suffix) {
     String key = suffix != null ? KEY_BRUT_FORCE_ERROR_PREFIX + suffix : "global_" + KEY_BRUT_FORCE_ERROR_PREFIX;
-    pmc.removeByPrefix(key);
+    db.removeByPrefix(key);
   }
 
   @AnyThread
   public boolean isPasscodeBlocked (int mode, @Nullable String suffix) {
-    return pmc.contains(suffix != null ? KEY_BRUT_FORCE_BLOCK_SECONDS + suffix : KEY_BRUT_FORCE_BLOCK_SECONDS);
+    return db.contains(suffix != null ? KEY_BRUT_FORCE_BLOCK_SECONDS + suffix : KEY_BRUT_FORCE_BLOCK_SECONDS);
   }
 
   public int getPasscodeBlockSeconds (String suffix) {
     String key = suffix != null ? KEY_BRUT_FORCE_BLOCK_SECONDS + suffix : KEY_BRUT_FORCE_BLOCK_SECONDS;
-    return pmc.getInt(key, 0);
+    return db.getInt(key, 0);
   }
 
   private void blockPasscode (int mode, int level, @Nullable String suffix) {
@@ -5319,18 +5350,18 @@ public class Settings {
       seconds = Math.min((int) TimeUnit.MINUTES.toSeconds(5), 30 + 15 * (level - 1));
     }
     String key = suffix != null ? KEY_BRUT_FORCE_BLOCK_SECONDS + suffix : KEY_BRUT_FORCE_BLOCK_SECONDS;
-    pmc.putInt(key, seconds);
+    db.putInt(key, seconds);
     startPasscodeBlockTimer(suffix != null ? suffix : "");
   }
 
   private boolean tickPasscode (@Nullable String suffix) {
     String key = suffix != null ? KEY_BRUT_FORCE_BLOCK_SECONDS + suffix : KEY_BRUT_FORCE_BLOCK_SECONDS;
-    int seconds = pmc.getInt(key, 0);
+    int seconds = db.getInt(key, 0);
     if (--seconds > 0) {
-      pmc.putInt(key, seconds);
+      db.putInt(key, seconds);
       return true;
     } else {
-      pmc.remove(key);
+      db.remove(key);
       return false;
     }
   }
@@ -5407,14 +5438,14 @@ public class Settings {
     String key = suffix != null ? KEY_BRUT_FORCE_ERROR_PREFIX + suffix : "global_" + KEY_BRUT_FORCE_ERROR_PREFIX;
     int num = 0;
     String errorHash = error != null ? Passcode.getPasscodeHash(error) : null;
-    for (LevelDB.Entry entry : pmc.find(key)) {
+    for (LevelDB.Entry entry : db.find(key)) {
       if (errorHash != null && StringUtils.equalsOrBothEmpty(errorHash, entry.asString())) {
         entry.release();
         return;
       }
       num++;
     }
-    pmc.putString(key + "_" + num, error != null ? Passcode.getPasscodeHash(error) : "");
+    db.putString(key + "_" + num, error != null ? Passcode.getPasscodeHash(error) : "");
     num++;
     if ((num % maximumErrorCount) == 0) {
       blockPasscode(mode, num / maximumErrorCount, suffix);
@@ -5451,11 +5482,11 @@ public class Settings {
 
   public Language getLanguage () {
     if (language == null)
-      setLanguageImpl(readLanguage(pmc, KEY_LANGUAGE_CURRENT, true));
+      StartupTrace.run("Settings.language", () -> setLanguageImpl(readLanguage(db, KEY_LANGUAGE_CURRENT, true)));
     return language;
   }
 
-  public static TdApi.LanguagePackInfo readLanguage (LevelDB pmc, String saveKey, boolean needDefault) {
+  public static TdApi.LanguagePackInfo readLanguage (SettingsDatabase pmc, String saveKey, boolean needDefault) {
     String languagePackId = null;
     String pluralCode = null;
     String baseLanguagePackId = null;
@@ -5490,7 +5521,7 @@ public class Settings {
     return needDefault ? Lang.getBuiltinLanguage() : null;
   }
 
-  public static void saveLanguage (LevelDB pmc, String saveKey, @Nullable TdApi.LanguagePackInfo languagePackInfo) {
+  public static void saveLanguage (SettingsDatabase pmc, String saveKey, @Nullable TdApi.LanguagePackInfo languagePackInfo) {
     if (languagePackInfo == null || Lang.isBuiltinLanguage(languagePackInfo.id)) {
       SharedPreferences.Editor editor = pmc.edit();
       editor
@@ -5523,7 +5554,7 @@ public class Settings {
   }
 
   public void setLanguage (@NonNull TdApi.LanguagePackInfo languagePackInfo) {
-    saveLanguage(pmc, KEY_LANGUAGE_CURRENT, languagePackInfo);
+    saveLanguage(db, KEY_LANGUAGE_CURRENT, languagePackInfo);
     setLanguageImpl(languagePackInfo);
   }
 
@@ -5533,9 +5564,9 @@ public class Settings {
 
   public void setRecommendedLanguagePackId (String languagePackId) {
     if (StringUtils.isEmpty(languagePackId))
-      pmc.remove(KEY_SUGGESTED_LANGUAGE_CODE);
+      db.remove(KEY_SUGGESTED_LANGUAGE_CODE);
     else
-      pmc.putString(KEY_SUGGESTED_LANGUAGE_CODE, languagePackId);
+      db.putString(KEY_SUGGESTED_LANGUAGE_CODE, languagePackId);
   }
 
   public TdApi.LanguagePackInfo suggestedLanguagePackInfo (String suggestedLanguagePackId, Tdlib tdlib) {
@@ -5615,34 +5646,34 @@ public class Settings {
         b.append(value.name).append(":").append(U.formatFloat(value.floatValue, true));
       }
       installationId = b.toString();
-      int existingCustomThemeId = pmc.getInt(installationId, 0);
+      int existingCustomThemeId = db.getInt(installationId, 0);
       if (hasCustomTheme(existingCustomThemeId)) {
         theme.theme.setId(ThemeManager.serializeCustomThemeId(existingCustomThemeId));
 
         // pmc.putString(KEY_THEME_NAME + existingCustomThemeId, name); // Replace old theme name?
         return existingCustomThemeId;
       } else if (existingCustomThemeId > 0) {
-        pmc.remove(installationId);
+        db.remove(installationId);
       }
     }
 
-    pmc.edit();
+    db.edit();
     putInt(KEY_THEMES_CREATED_COUNT, newThemeId);
     putString(KEY_THEME_NAME + newThemeId, name);
     boolean hasParentTheme = false;
     if (inheritFromCustomThemeId > 0) {
       String prefix = KEY_THEME_FULL + inheritFromCustomThemeId + "_";
-      for (LevelDB.Entry entry : pmc.find(prefix)) {
+      for (LevelDB.Entry entry : db.find(prefix)) {
         try {
           String key = entry.key();
           String newKey = KEY_THEME_FULL + newThemeId + key.substring(prefix.length() - 1);
           char type = key.charAt(prefix.length());
           switch (type) {
             case 'p':
-              pmc.putFloat(newKey, entry.asFloat());
+              db.putFloat(newKey, entry.asFloat());
               break;
             case 'c':
-              pmc.putInt(newKey, entry.asInt());
+              db.putInt(newKey, entry.asInt());
               break;
             default:
               Log.e("Unknown theme key: %s", key);
@@ -5655,14 +5686,14 @@ public class Settings {
       int flags = getCustomThemeFlags(inheritFromCustomThemeId);
       if ((flags & THEME_FLAG_INSTALLED) != 0) {
         flags |= THEME_FLAG_COPY;
-        pmc.putByte(KEY_THEME_FLAGS + newThemeId, (byte) flags);
-        String author = pmc.getString(KEY_THEME_AUTHOR + inheritFromCustomThemeId, null);
+        db.putByte(KEY_THEME_FLAGS + newThemeId, (byte) flags);
+        String author = db.getString(KEY_THEME_AUTHOR + inheritFromCustomThemeId, null);
         if (!StringUtils.isEmpty(author)) {
-          pmc.putString(KEY_THEME_AUTHOR + newThemeId, author);
+          db.putString(KEY_THEME_AUTHOR + newThemeId, author);
         }
-        String wallpaper = pmc.getString(KEY_THEME_WALLPAPER + inheritFromCustomThemeId, null);
+        String wallpaper = db.getString(KEY_THEME_WALLPAPER + inheritFromCustomThemeId, null);
         if (!StringUtils.isEmpty(wallpaper)) {
-          pmc.putString(KEY_THEME_WALLPAPER + newThemeId, wallpaper);
+          db.putString(KEY_THEME_WALLPAPER + newThemeId, wallpaper);
         }
       }
     } else if (theme != null) {
@@ -5675,20 +5706,20 @@ public class Settings {
           hasParentTheme = true;
       }
       if (!StringUtils.isEmpty(theme.author)) {
-        pmc.putString(KEY_THEME_AUTHOR + newThemeId, theme.author);
+        db.putString(KEY_THEME_AUTHOR + newThemeId, theme.author);
       }
       if (!StringUtils.isEmpty(theme.wallpaper)) {
-        pmc.putString(KEY_THEME_WALLPAPER + newThemeId, theme.wallpaper);
+        db.putString(KEY_THEME_WALLPAPER + newThemeId, theme.wallpaper);
       }
-      pmc.putByte(KEY_THEME_FLAGS + newThemeId, (byte) THEME_FLAG_INSTALLED);
+      db.putByte(KEY_THEME_FLAGS + newThemeId, (byte) THEME_FLAG_INSTALLED);
       if (!StringUtils.isEmpty(installationId)) {
-        pmc.putInt(installationId, newThemeId);
+        db.putInt(installationId, newThemeId);
       }
     }
     if (!hasParentTheme) {
       putFloat(themePropertyKey(newThemeId, PropertyId.PARENT_THEME), parentThemeId);
     }
-    pmc.apply();
+    db.apply();
     return newThemeId;
   }
 
@@ -5704,7 +5735,7 @@ public class Settings {
   public void removeCustomTheme (int customThemeId) {
     List<String> installationIds = null;
     if ((getCustomThemeFlags(customThemeId) & THEME_FLAG_INSTALLED) != 0) {
-      for (LevelDB.Entry entry : pmc.find("theme_installation_")) {
+      for (LevelDB.Entry entry : db.find("theme_installation_")) {
         if (entry.asInt() == customThemeId) {
           if (installationIds == null)
             installationIds = new ArrayList<>();
@@ -5712,25 +5743,25 @@ public class Settings {
         }
       }
     }
-    pmc.edit();
-    pmc.remove(KEY_THEME_NAME + customThemeId);
-    pmc.remove(KEY_THEME_AUTHOR + customThemeId);
-    pmc.remove(KEY_THEME_WALLPAPER + customThemeId);
-    pmc.remove(KEY_THEME_FLAGS + customThemeId);
-    pmc.removeByAnyPrefix(
+    db.edit();
+    db.remove(KEY_THEME_NAME + customThemeId);
+    db.remove(KEY_THEME_AUTHOR + customThemeId);
+    db.remove(KEY_THEME_WALLPAPER + customThemeId);
+    db.remove(KEY_THEME_FLAGS + customThemeId);
+    db.removeByAnyPrefix(
       KEY_THEME_FULL + customThemeId + "_",
       KEY_THEME_HISTORY + customThemeId + "_"
     );
     if (installationIds != null) {
       for (String installationId : installationIds) {
-        pmc.remove(installationId);
+        db.remove(installationId);
       }
     }
-    pmc.apply();
+    db.apply();
   }
 
   public float getThemeProperty (int customThemeId, @PropertyId int propertyId, float defValue) {
-    return pmc.getFloat(themePropertyKey(customThemeId, propertyId), defValue);
+    return db.getFloat(themePropertyKey(customThemeId, propertyId), defValue);
   }
 
   private ThemeInfo processThemeEntry (LevelDB.Entry entry, @Nullable ThemeInfo theme) {
@@ -5804,7 +5835,7 @@ public class Settings {
   }
 
   public boolean hasCustomTheme (int customThemeId) {
-    return customThemeId > 0 && pmc.contains(themePropertyKey(customThemeId, PropertyId.PARENT_THEME));
+    return customThemeId > 0 && db.contains(themePropertyKey(customThemeId, PropertyId.PARENT_THEME));
   }
 
   public static class ThemeExportInfo {
@@ -5849,7 +5880,7 @@ public class Settings {
     int startIndex = prefix.length(), entryCount = 0;
     Map<String, Integer> colorsMap = ThemeColors.getMap();
     Map<String, Integer> propsMap = ThemeProperties.getMap();
-    for (final LevelDB.Entry entry : pmc.find(prefix)) {
+    for (final LevelDB.Entry entry : db.find(prefix)) {
       try {
         processThemeEntry(entry, startIndex, theme, colorsMap, propsMap);
         entryCount++;
@@ -5880,7 +5911,7 @@ public class Settings {
       String prefix = KEY_THEME_FULL + _customThemeId + "_";
       theme = new ThemeExportInfo(getCustomThemeName(_customThemeId), getCustomThemeWallpaper(_customThemeId));
       int startIndex = prefix.length();
-      for (final LevelDB.Entry entry : pmc.find(prefix)) {
+      for (final LevelDB.Entry entry : db.find(prefix)) {
         try {
           processThemeEntry(entry, startIndex, theme, colors, properties);
         } catch (Throwable t) {
@@ -5929,7 +5960,7 @@ public class Settings {
   public @NonNull List<ThemeInfo> getCustomThemes () {
     List<ThemeInfo> themes = new ArrayList<>();
     ThemeInfo theme = null;
-    for (final LevelDB.Entry entry : pmc.find(KEY_THEME_NAME)) {
+    for (final LevelDB.Entry entry : db.find(KEY_THEME_NAME)) {
       try {
         ThemeInfo currentTheme = processThemeEntry(entry, theme);
         if (theme != currentTheme) {
@@ -5944,21 +5975,21 @@ public class Settings {
 
   public void setCustomThemeColor (int customThemeId, @ColorId int colorId, @Nullable Integer newColor) {
     if (newColor == null)
-      pmc.remove(themeColorKey(customThemeId, colorId));
+      db.remove(themeColorKey(customThemeId, colorId));
     else
-      pmc.putInt(themeColorKey(customThemeId, colorId), newColor);
+      db.putInt(themeColorKey(customThemeId, colorId), newColor);
   }
 
   public void setCustomThemeProperty (int customThemeId, @PropertyId int propertyId, @Nullable Float newValue) {
     if (newValue == null)
-      pmc.remove(themePropertyKey(customThemeId, propertyId));
+      db.remove(themePropertyKey(customThemeId, propertyId));
     else
-      pmc.putFloat(themePropertyKey(customThemeId, propertyId), newValue);
+      db.putFloat(themePropertyKey(customThemeId, propertyId), newValue);
   }
 
   public int getCustomThemeColor (int customThemeId, @ColorId int colorId) {
     try {
-      return pmc.tryGetInt(themeColorKey(customThemeId, colorId));
+      return db.tryGetInt(themeColorKey(customThemeId, colorId));
     } catch (FileNotFoundException e) {
       return ThemeSet.getColor((int) getCustomThemeProperty(customThemeId, PropertyId.PARENT_THEME), colorId);
     }
@@ -5966,7 +5997,7 @@ public class Settings {
 
   public float getCustomThemeProperty (int customThemeId, @PropertyId int propertyId) {
     try {
-      return pmc.tryGetFloat(themePropertyKey(customThemeId, propertyId));
+      return db.tryGetFloat(themePropertyKey(customThemeId, propertyId));
     } catch (FileNotFoundException e) {
       if (propertyId == PropertyId.PARENT_THEME)
         return ThemeId.BLUE;
@@ -5975,14 +6006,14 @@ public class Settings {
   }
 
   public void setCustomThemeName (int customThemeId, String name) {
-    pmc.putString(KEY_THEME_NAME + customThemeId, name);
+    db.putString(KEY_THEME_NAME + customThemeId, name);
   }
 
   public void setCustomThemeWallpaper (int customThemeId, String name) {
     if (StringUtils.isEmpty(name)) {
-      pmc.remove(KEY_THEME_WALLPAPER + customThemeId);
+      db.remove(KEY_THEME_WALLPAPER + customThemeId);
     } else {
-      pmc.putString(KEY_THEME_WALLPAPER + customThemeId, name);
+      db.putString(KEY_THEME_WALLPAPER + customThemeId, name);
     }
   }
 
@@ -5994,7 +6025,7 @@ public class Settings {
 
   public int getColorFormat () {
     if (colorFormat == -1) {
-      colorFormat = pmc.getByte(KEY_COLOR_FORMAT, (byte) COLOR_FORMAT_HEX);
+      colorFormat = db.getByte(KEY_COLOR_FORMAT, (byte) COLOR_FORMAT_HEX);
       if (colorFormat < COLOR_FORMAT_HEX || colorFormat > COLOR_FORMAT_HSL)
         colorFormat = COLOR_FORMAT_HEX;
     }
@@ -6004,9 +6035,9 @@ public class Settings {
   public boolean setColorFormat (int colorFormat) {
     if (getColorFormat() != colorFormat) {
       if (colorFormat == COLOR_FORMAT_HEX)
-        pmc.remove(KEY_COLOR_FORMAT);
+        db.remove(KEY_COLOR_FORMAT);
       else
-        pmc.putByte(KEY_COLOR_FORMAT, (byte) colorFormat);
+        db.putByte(KEY_COLOR_FORMAT, (byte) colorFormat);
       this.colorFormat = colorFormat;
       return true;
     }
@@ -6014,19 +6045,19 @@ public class Settings {
   }
 
   public int[] getColorHistory (int customThemeId, int colorId) {
-    return pmc.getIntArray(themeColorHistoryKey(customThemeId, colorId));
+    return db.getIntArray(themeColorHistoryKey(customThemeId, colorId));
   }
 
   public boolean hasColorHistory (int customThemeId, int colorId) {
-    return pmc.contains(themeColorHistoryKey(customThemeId, colorId));
+    return db.contains(themeColorHistoryKey(customThemeId, colorId));
   }
 
   public void setColorHistory (int customThemeId, int colorId, int[] newHistory) {
     String key = themeColorHistoryKey(customThemeId, colorId);
     if (newHistory == null || newHistory.length == 0) {
-      pmc.remove(key);
+      db.remove(key);
     } else {
-      pmc.putIntArray(key, newHistory);
+      db.putIntArray(key, newHistory);
     }
   }
 
@@ -6034,7 +6065,7 @@ public class Settings {
   public static final int THEME_FLAG_COPY = 1 << 1;
 
   public int getCustomThemeFlags (int customThemeId) {
-    return pmc.getByte(KEY_THEME_FLAGS + customThemeId, (byte) 0);
+    return db.getByte(KEY_THEME_FLAGS + customThemeId, (byte) 0);
   }
 
   public boolean hasThemeOwnership (int customThemeId) {
@@ -6043,15 +6074,15 @@ public class Settings {
   }
 
   public String getThemeAuthor (int customThemeId) {
-    return pmc.getString(KEY_THEME_AUTHOR + customThemeId, null);
+    return db.getString(KEY_THEME_AUTHOR + customThemeId, null);
   }
 
   public String getCustomThemeName (int customThemeId) {
-    return pmc.getString(KEY_THEME_NAME + customThemeId, null);
+    return db.getString(KEY_THEME_NAME + customThemeId, null);
   }
 
   public String getCustomThemeWallpaper (int customThemeId) {
-    return pmc.getString(KEY_THEME_WALLPAPER + customThemeId, null);
+    return db.getString(KEY_THEME_WALLPAPER + customThemeId, null);
   }
 
   public boolean canEditAuthor (int customThemeId) {
@@ -6142,14 +6173,14 @@ public class Settings {
   private static final int UTILITY_FEATURE_QR_REGION_DEBUG = 1 << 8;
 
   private int getUtilityFeatures () {
-    return pmc.getInt(KEY_UTILITY_FEATURES, 0);
+    return db.getInt(KEY_UTILITY_FEATURES, 0);
   }
 
   private void setUtilityFeatures (int features) {
     if (features == 0)
-      pmc.remove(KEY_UTILITY_FEATURES);
+      db.remove(KEY_UTILITY_FEATURES);
     else
-      pmc.putInt(KEY_UTILITY_FEATURES, features);
+      db.putInt(KEY_UTILITY_FEATURES, features);
   }
 
   private void toggleUtilityFeature (int feature, boolean enabled) {
@@ -6229,7 +6260,7 @@ public class Settings {
   }*/
 
   public boolean isEmulator () {
-    return pmc.getBoolean(KEY_IS_EMULATOR, false);
+    return db.getBoolean(KEY_IS_EMULATOR, false);
   }
 
   public static class EmulatorDetectionResult {
@@ -6288,7 +6319,7 @@ public class Settings {
 
   @Nullable
   public EmulatorDetectionResult getLastEmulatorDetectionResult () {
-    long[] emulatorDetectionResult = pmc.getLongArray(KEY_EMULATOR_DETECTION_RESULT);
+    long[] emulatorDetectionResult = db.getLongArray(KEY_EMULATOR_DETECTION_RESULT);
     if (emulatorDetectionResult == null) {
       return null;
     }
@@ -6304,13 +6335,13 @@ public class Settings {
       emulatorCheckResult
     );
     long[] data = result.toLongArray();
-    pmc.putLongArray(KEY_EMULATOR_DETECTION_RESULT, data);
+    db.putLongArray(KEY_EMULATOR_DETECTION_RESULT, data);
     boolean wasEmulator = isEmulator();
     if (wasEmulator != result.isEmulatorDetected()) {
       if (result.isEmulatorDetected()) {
         putBoolean(KEY_IS_EMULATOR, true);
       } else {
-        pmc.remove(KEY_IS_EMULATOR);
+        db.remove(KEY_IS_EMULATOR);
       }
     }
     return result;
@@ -6325,14 +6356,14 @@ public class Settings {
       while (tokens.size() > 20) {
         tokens.remove(0);
       }
-      pmc.putStringArray(KEY_TDLIB_AUTHENTICATION_TOKENS, tokens.toArray(new String[0]));
+      db.putStringArray(KEY_TDLIB_AUTHENTICATION_TOKENS, tokens.toArray(new String[0]));
     }
   }
 
   public List<String> getAuthenticationTokensList () {
     if (authenticationTokens == null) {
       authenticationTokens = new ArrayList<>();
-      String[] tokens = pmc.getStringArray(KEY_TDLIB_AUTHENTICATION_TOKENS);
+      String[] tokens = db.getStringArray(KEY_TDLIB_AUTHENTICATION_TOKENS);
       if (tokens != null) {
         Collections.addAll(authenticationTokens, tokens);
       }
@@ -6347,7 +6378,7 @@ public class Settings {
   // Tdlib crash
 
   private long getLastCrashId () {
-    return pmc.getLong(KEY_TDLIB_CRASH_PREFIX, 0) - 1;
+    return db.getLong(KEY_TDLIB_CRASH_PREFIX, 0) - 1;
   }
 
   public Crash findRecoveryCrash () {
@@ -6365,7 +6396,7 @@ public class Settings {
   }
 
   public void storeCrash (Crash.Builder crashBuilder) {
-    final long crashId = pmc.getLong(KEY_TDLIB_CRASH_PREFIX, 0);
+    final long crashId = db.getLong(KEY_TDLIB_CRASH_PREFIX, 0);
     final Crash crash = crashBuilder
       .id(crashId)
       .uptime(AppState.uptime())
@@ -6374,19 +6405,19 @@ public class Settings {
 
     final String keyPrefix = makeCrashPrefix(crashId);
 
-    pmc.edit();
+    db.edit();
     // increment crashId
-    pmc.putLong(KEY_TDLIB_CRASH_PREFIX, crashId + 1);
+    db.putLong(KEY_TDLIB_CRASH_PREFIX, crashId + 1);
     // save crash
-    crash.saveTo(pmc, keyPrefix);
+    crash.saveTo(db, keyPrefix);
     // apply & flush
-    pmc.apply();
-    pmc.flush();
+    db.apply();
+    db.flush();
   }
 
   public boolean setCrashFlag (Crash info, int flag, boolean enabled) {
     if (info.setFlag(flag, enabled)) {
-      info.saveFlags(pmc, makeCrashPrefix(info.id));
+      info.saveFlags(db, makeCrashPrefix(info.id));
       return true;
     }
     return false;
@@ -6414,8 +6445,8 @@ public class Settings {
 
     for (long crashId = lastCrashId; crashId >= 0; crashId--) {
       final String keyPrefix = makeCrashPrefix(crashId);
-      @Crash.Flags int flags = Crash.restoreFlags(pmc, keyPrefix);
-      final long crashedInstallationId = Crash.restoreInstallationId(pmc, keyPrefix);
+      @Crash.Flags int flags = Crash.restoreFlags(db, keyPrefix);
+      final long crashedInstallationId = Crash.restoreInstallationId(db, keyPrefix);
       if (crashedInstallationId != currentInstallationId) {
         if (crashedBuildInfo == null || crashedInstallationId != crashedBuildInfo.getInstallationId()) {
           crashedBuildInfo = getBuildInformation(crashedInstallationId);
@@ -6456,12 +6487,12 @@ public class Settings {
       return null;
     final String keyPrefix = makeCrashPrefix(crashId);
     if (forApplicationStart) {
-      @Crash.Flags int flags = Crash.restoreFlags(pmc, keyPrefix);
+      @Crash.Flags int flags = Crash.restoreFlags(db, keyPrefix);
       if (BitwiseUtils.hasFlag(flags, Crash.Flags.RESOLVED)) {
         // Do not attempt to read any other fields, if user pressed "Launch App"
         return null;
       }
-      final long crashedInstallationId = Crash.restoreInstallationId(pmc, keyPrefix);
+      final long crashedInstallationId = Crash.restoreInstallationId(db, keyPrefix);
       final AppBuildInfo currentBuildInformation = getCurrentBuildInformation();
       if (crashedInstallationId != 0 && currentBuildInformation.getInstallationId() > crashedInstallationId) {
         // User has installed a newer version. Ignore crashes from previous APKs
@@ -6470,7 +6501,7 @@ public class Settings {
     }
     Crash.Builder builder = new Crash.Builder().id(crashId);
     boolean nonEmpty = false;
-    for (LevelDB.Entry entry : pmc.find(keyPrefix)) {
+    for (LevelDB.Entry entry : db.find(keyPrefix)) {
       if (builder.restoreField(entry, keyPrefix, this::getBuildInformation)) {
         nonEmpty = true;
       }
@@ -6517,13 +6548,13 @@ public class Settings {
 
   public void setDeviceToken (TdApi.DeviceToken token) {
     if (token == null) {
-      pmc.edit()
+      db.edit()
         .remove(KEY_PUSH_DEVICE_TOKEN_TYPE)
         .remove(KEY_PUSH_DEVICE_TOKEN_OR_ENDPOINT)
         .apply();
     } else if (!Td.equalsTo(token, getDeviceToken())) {
       resetTokenPushMessageCount();
-      SharedPreferences.Editor editor = pmc.edit();
+      SharedPreferences.Editor editor = db.edit();
       Settings.storeDeviceToken(token, editor,
         KEY_PUSH_DEVICE_TOKEN_TYPE,
         KEY_PUSH_DEVICE_TOKEN_OR_ENDPOINT
@@ -6549,8 +6580,8 @@ public class Settings {
 
   @Nullable
   public TdApi.DeviceToken getDeviceToken () {
-    @DeviceTokenType int tokenType = pmc.getInt(KEY_PUSH_DEVICE_TOKEN_TYPE, DeviceTokenType.FIREBASE_CLOUD_MESSAGING);
-    String tokenOrEndpoint = pmc.getString(KEY_PUSH_DEVICE_TOKEN_OR_ENDPOINT, null);
+    @DeviceTokenType int tokenType = db.getInt(KEY_PUSH_DEVICE_TOKEN_TYPE, DeviceTokenType.FIREBASE_CLOUD_MESSAGING);
+    String tokenOrEndpoint = db.getString(KEY_PUSH_DEVICE_TOKEN_OR_ENDPOINT, null);
     return newDeviceToken(tokenType, tokenOrEndpoint);
   }
 
@@ -6560,7 +6591,7 @@ public class Settings {
 
   public String crashDeviceId () {
     if (crashDeviceId == null) {
-      crashDeviceId = pmc.getString(KEY_CRASH_DEVICE_ID, null);
+      crashDeviceId = db.getString(KEY_CRASH_DEVICE_ID, null);
     }
     if (StringUtils.isEmpty(crashDeviceId)) {
       crashDeviceId = U.sha256(
@@ -6568,7 +6599,7 @@ public class Settings {
           StringUtils.random("abcdefABCDEF0123456789", 16) + "\n" +
           (long) ((double) Long.MAX_VALUE * Math.random())
       );
-      pmc.putString(KEY_CRASH_DEVICE_ID, crashDeviceId);
+      db.putString(KEY_CRASH_DEVICE_ID, crashDeviceId);
     }
     return crashDeviceId;
   }
@@ -6721,7 +6752,7 @@ public class Settings {
   public EmojiPack getEmojiPack () {
     if (emojiPack == null) {
       EmojiPack pack = null;
-      for (LevelDB.Entry entry : pmc.find(KEY_EMOJI_PACK)) {
+      for (LevelDB.Entry entry : db.find(KEY_EMOJI_PACK)) {
         if (entry.key().length() == KEY_EMOJI_PACK.length()) {
           pack = new EmojiPack(entry.asString());
         } else {
@@ -6764,9 +6795,9 @@ public class Settings {
     this.emojiPack = emojiPack;
     this.outdatedEmojiPack = null;
     if (emojiPack.identifier.equals(BuildConfig.EMOJI_BUILTIN_ID)) {
-      pmc.removeByPrefix(KEY_EMOJI_PACK);
+      db.removeByPrefix(KEY_EMOJI_PACK);
     } else {
-      pmc.edit()
+      db.edit()
         .putString(KEY_EMOJI_PACK, emojiPack.identifier)
         .putString(KEY_EMOJI_PACK + "_name", emojiPack.displayName)
         .putInt(KEY_EMOJI_PACK + "_date", emojiPack.date)
@@ -6778,7 +6809,7 @@ public class Settings {
   public int getEmojiPackInstallState (CloudSetting setting, boolean fast) {
     if (BuildConfig.EMOJI_BUILTIN_ID.equals(setting.identifier))
       return CloudSetting.STATE_INSTALLED;
-    int installedVersion = pmc.getInt(KEY_EMOJI_INSTALLED_PREFIX + setting.identifier, 0);
+    int installedVersion = db.getInt(KEY_EMOJI_INSTALLED_PREFIX + setting.identifier, 0);
     boolean hasFile = installedVersion > 0 && (fast || new File(Emoji.getEmojiPackDirectory(), setting.identifier).exists());
     return hasFile ? (installedVersion == setting.date ? CloudSetting.STATE_INSTALLED : CloudSetting.STATE_UPDATE_NEEDED) : CloudSetting.STATE_NOT_INSTALLED;
   }
@@ -6786,13 +6817,13 @@ public class Settings {
   private String[] quickReactions;
 
   public void setQuickReactions (String reactions[]) {
-    pmc.putStringArray(KEY_QUICK_REACTIONS, reactions);
+    db.putStringArray(KEY_QUICK_REACTIONS, reactions);
     quickReactions = reactions;
   }
 
   public String[] getQuickReactions (Tdlib tdlib) {
     if (quickReactions == null) {
-      quickReactions = pmc.getStringArray(KEY_QUICK_REACTIONS);
+      quickReactions = db.getStringArray(KEY_QUICK_REACTIONS);
       if (quickReactions == null) {
         quickReactions = new String[] {
           tdlib.defaultEmojiReaction()
@@ -6803,11 +6834,11 @@ public class Settings {
   }
 
   public void setBigReactionsInChannels (boolean inChannels) {
-    pmc.putBoolean(KEY_BIG_REACTIONS_IN_CHANNELS, inChannels);
+    db.putBoolean(KEY_BIG_REACTIONS_IN_CHANNELS, inChannels);
   }
 
   public void setBigReactionsInChats (boolean inChats) {
-    pmc.putBoolean(KEY_BIG_REACTIONS_IN_CHATS, inChats);
+    db.putBoolean(KEY_BIG_REACTIONS_IN_CHATS, inChats);
   }
 
   public boolean getBigReactionsInChannels () {
@@ -6819,12 +6850,12 @@ public class Settings {
   }
 
   public void markEmojiPackInstalled (EmojiPack emojiPack) {
-    pmc.putInt(KEY_EMOJI_INSTALLED_PREFIX + emojiPack.identifier, emojiPack.date);
+    db.putInt(KEY_EMOJI_INSTALLED_PREFIX + emojiPack.identifier, emojiPack.date);
   }
 
   public void uninstallEmojiPacks (String exceptIdentifier) {
     SharedPreferences.Editor editor = null;
-    for (LevelDB.Entry entry : pmc.find(KEY_EMOJI_INSTALLED_PREFIX)) {
+    for (LevelDB.Entry entry : db.find(KEY_EMOJI_INSTALLED_PREFIX)) {
       if (exceptIdentifier != null && entry.key().substring(KEY_EMOJI_INSTALLED_PREFIX.length()).equals(exceptIdentifier))
         continue;
       if (editor == null)
@@ -6922,7 +6953,7 @@ public class Settings {
   }
 
   public long getKnownSize (String path, long length, long lastModified) throws FileNotFoundException {
-    long[] data = pmc.getLongArray(KEY_KNOWN_SIZE + path);
+    long[] data = db.getLongArray(KEY_KNOWN_SIZE + path);
     if (data == null || data.length < 3 || data[0] != length || data[1] != lastModified) {
       throw new FileNotFoundException();
     }
@@ -6930,15 +6961,15 @@ public class Settings {
   }
 
   public void forgetKnownSize (String path) {
-    pmc.remove(KEY_KNOWN_SIZE + path);
+    db.remove(KEY_KNOWN_SIZE + path);
   }
 
   public void putKnownSize (String path, long length, long lastModified, int width, int height) {
-    pmc.putLongArray(KEY_KNOWN_SIZE + path, new long[] {length, lastModified, BitwiseUtils.mergeLong(width, height)});
+    db.putLongArray(KEY_KNOWN_SIZE + path, new long[] {length, lastModified, BitwiseUtils.mergeLong(width, height)});
   }
 
   private long nextInstallationId () {
-    return pmc.getLong(KEY_APP_INSTALLATION_ID, 0) + 1;
+    return db.getLong(KEY_APP_INSTALLATION_ID, 0) + 1;
   }
 
   private AppBuildInfo currentBuildInformation;
@@ -6950,22 +6981,22 @@ public class Settings {
     if (currentBuildInformation != null) {
       return currentBuildInformation.getInstallationId();
     }
-    return pmc.getLong(KEY_APP_INSTALLATION_ID, 0);
+    return db.getLong(KEY_APP_INSTALLATION_ID, 0);
   }
 
   private void trackInstalledApkVersion () {
-    final long knownCommitDate = pmc.getLong(KEY_APP_COMMIT_DATE, 0);
+    final long knownCommitDate = db.getLong(KEY_APP_COMMIT_DATE, 0);
     if (AppBuildInfo.maxBuiltInCommitDate() <= knownCommitDate) {
       // Track only updates with more recent commits.
       return;
     }
     final long installationId = nextInstallationId();
     AppBuildInfo buildInfo = new AppBuildInfo(installationId);
-    pmc.edit()
+    db.edit()
       .putLong(KEY_APP_INSTALLATION_ID, installationId)
       .putLong(KEY_APP_COMMIT_DATE, buildInfo.maxCommitDate());
-    buildInfo.saveTo(pmc, KEY_APP_INSTALLATION_PREFIX + installationId);
-    pmc.apply();
+    buildInfo.saveTo(db, KEY_APP_INSTALLATION_PREFIX + installationId);
+    db.apply();
     this.currentBuildInformation = buildInfo;
     resetAppVersionPushMessageCount();
   }
@@ -6975,11 +7006,11 @@ public class Settings {
     long previouslyAvailableFeatures;
     boolean saveFeatures = false;
     try {
-      previouslyAvailableFeatures = pmc.tryGetLong(KEY_FEATURES);
+      previouslyAvailableFeatures = db.tryGetLong(KEY_FEATURES);
     } catch (FileNotFoundException e) {
       long previousInstallationId = currentBuildInformation != null ? currentBuildInformation.getInstallationId() - 1 : -1;
       int previouslyInstalledVersionCode = previousInstallationId != -1 ?
-        AppBuildInfo.restoreVersionCode(pmc, KEY_APP_INSTALLATION_PREFIX + previousInstallationId) : 0;
+        AppBuildInfo.restoreVersionCode(db, KEY_APP_INSTALLATION_PREFIX + previousInstallationId) : 0;
       previouslyAvailableFeatures = FeatureAvailability.recoverAvailableFeaturesForAppVersionCode(previouslyInstalledVersionCode);
       saveFeatures = true;
     }
@@ -6987,8 +7018,8 @@ public class Settings {
       final long recentlyAddedFeatures = currentlyAvailableFeatures & (~previouslyAvailableFeatures);
       final long recentlyRemovedFeatures = previouslyAvailableFeatures & (~currentlyAvailableFeatures);
 
-      long addedFeaturesNotifications = pmc.getLong(KEY_FEATURES_ADDED_NOTIFICATIONS, 0);
-      long removedFeaturesNotifications = pmc.getLong(KEY_FEATURES_REMOVED_NOTIFICATIONS, 0);
+      long addedFeaturesNotifications = db.getLong(KEY_FEATURES_ADDED_NOTIFICATIONS, 0);
+      long removedFeaturesNotifications = db.getLong(KEY_FEATURES_REMOVED_NOTIFICATIONS, 0);
 
       addedFeaturesNotifications &= ~recentlyRemovedFeatures;
       addedFeaturesNotifications |= recentlyAddedFeatures;
@@ -6996,7 +7027,7 @@ public class Settings {
       removedFeaturesNotifications &= ~recentlyAddedFeatures;
       removedFeaturesNotifications |= recentlyRemovedFeatures;
 
-      pmc.edit()
+      db.edit()
         .putLong(KEY_FEATURES_ADDED_NOTIFICATIONS, addedFeaturesNotifications)
         .putLong(KEY_FEATURES_REMOVED_NOTIFICATIONS, removedFeaturesNotifications)
         .apply();
@@ -7007,7 +7038,7 @@ public class Settings {
       saveFeatures = true;
     }
     if (saveFeatures) {
-      pmc.putLong(KEY_FEATURES, currentlyAvailableFeatures);
+      db.putLong(KEY_FEATURES, currentlyAvailableFeatures);
     }
   }
 
@@ -7034,14 +7065,14 @@ public class Settings {
 
   public long getAddedFeaturesNotifications () {
     if (_addedFeaturesNotifications == null) {
-      _addedFeaturesNotifications = pmc.getLong(KEY_FEATURES_ADDED_NOTIFICATIONS, 0);
+      _addedFeaturesNotifications = db.getLong(KEY_FEATURES_ADDED_NOTIFICATIONS, 0);
     }
     return _addedFeaturesNotifications;
   }
 
   public long getRemovedFeaturesNotifications () {
     if (_removedFeaturesNotifications == null) {
-      _removedFeaturesNotifications = pmc.getLong(KEY_FEATURES_REMOVED_NOTIFICATIONS, 0);
+      _removedFeaturesNotifications = db.getLong(KEY_FEATURES_REMOVED_NOTIFICATIONS, 0);
     }
     return _removedFeaturesNotifications;
   }
@@ -7054,7 +7085,7 @@ public class Settings {
     if (wasAdded || wasRemoved) {
       addedFeaturesNotifications &= ~feature;
       removedFeaturesNotifications &= ~feature;
-      pmc.edit()
+      db.edit()
         .putLong(KEY_FEATURES_ADDED_NOTIFICATIONS, addedFeaturesNotifications)
         .putLong(KEY_FEATURES_REMOVED_NOTIFICATIONS, removedFeaturesNotifications)
         .apply();
@@ -7079,15 +7110,15 @@ public class Settings {
 
   public AppBuildInfo getCurrentBuildInformation () {
     if (currentBuildInformation == null) {
-      long installationId = pmc.getLong(KEY_APP_INSTALLATION_ID, 0);
-      this.currentBuildInformation = AppBuildInfo.restoreFrom(pmc, installationId, KEY_APP_INSTALLATION_PREFIX + installationId);
+      long installationId = db.getLong(KEY_APP_INSTALLATION_ID, 0);
+      this.currentBuildInformation = AppBuildInfo.restoreFrom(db, installationId, KEY_APP_INSTALLATION_PREFIX + installationId);
     }
     return this.currentBuildInformation;
   }
 
   @Nullable
   public AppBuildInfo getBuildInformation (long installationId) {
-    return installationId > 0 ? AppBuildInfo.restoreFrom(pmc, installationId, KEY_APP_INSTALLATION_PREFIX + installationId) : null;
+    return installationId > 0 ? AppBuildInfo.restoreFrom(db, installationId, KEY_APP_INSTALLATION_PREFIX + installationId) : null;
   }
 
   @Nullable
@@ -7105,27 +7136,27 @@ public class Settings {
   }
 
   public long getReceivedPushMessageCountTotal () {
-    return pmc.getLong(KEY_PUSH_STATS_TOTAL_COUNT, 0);
+    return db.getLong(KEY_PUSH_STATS_TOTAL_COUNT, 0);
   }
 
   public long getReceivedPushMessageCountByAppVersion () {
-    return pmc.getLong(KEY_PUSH_STATS_CURRENT_APP_VERSION_COUNT, 0);
+    return db.getLong(KEY_PUSH_STATS_CURRENT_APP_VERSION_COUNT, 0);
   }
 
   public long getReceivedPushMessageCountByToken () {
-    return pmc.getLong(KEY_PUSH_STATS_CURRENT_TOKEN_COUNT, 0);
+    return db.getLong(KEY_PUSH_STATS_CURRENT_TOKEN_COUNT, 0);
   }
 
   public long getLastReceivedPushMessageSentTime () {
-    return pmc.getLong(KEY_PUSH_LAST_SENT_TIME, 0);
+    return db.getLong(KEY_PUSH_LAST_SENT_TIME, 0);
   }
 
   public long getLastReceivedPushMessageReceivedTime () {
-    return pmc.getLong(KEY_PUSH_LAST_RECEIVED_TIME, 0);
+    return db.getLong(KEY_PUSH_LAST_RECEIVED_TIME, 0);
   }
 
   public int getLastReceivedPushMessageTtl () {
-    return pmc.getInt(KEY_PUSH_LAST_TTL, 0);
+    return db.getInt(KEY_PUSH_LAST_TTL, 0);
   }
 
   public interface PushStatsListener {
@@ -7146,7 +7177,7 @@ public class Settings {
     final long totalReceivedCount = getReceivedPushMessageCountTotal() + 1;
     final long currentVersionReceivedCount = getReceivedPushMessageCountByAppVersion() + 1;
     final long currentTokenReceivedCount = getReceivedPushMessageCountByToken() + 1;
-    pmc.edit()
+    db.edit()
       .putLong(KEY_PUSH_STATS_TOTAL_COUNT, totalReceivedCount)
       .putLong(KEY_PUSH_STATS_CURRENT_APP_VERSION_COUNT, currentVersionReceivedCount)
       .putLong(KEY_PUSH_STATS_CURRENT_TOKEN_COUNT, currentTokenReceivedCount)
@@ -7160,21 +7191,21 @@ public class Settings {
   }
 
   public void resetAppVersionPushMessageCount () {
-    pmc.remove(KEY_PUSH_STATS_CURRENT_APP_VERSION_COUNT);
+    db.remove(KEY_PUSH_STATS_CURRENT_APP_VERSION_COUNT);
   }
 
   public void resetTokenPushMessageCount () {
-    pmc.remove(KEY_PUSH_STATS_CURRENT_TOKEN_COUNT);
+    db.remove(KEY_PUSH_STATS_CURRENT_TOKEN_COUNT);
   }
 
   public void setReportedPushServiceError (@Nullable String error) {
     if (!StringUtils.isEmpty(error)) {
-      pmc.edit()
+      db.edit()
         .putString(KEY_PUSH_REPORTED_ERROR, error)
         .putLong(KEY_PUSH_REPORTED_ERROR_DATE, System.currentTimeMillis())
         .apply();
     } else {
-      pmc.edit()
+      db.edit()
         .remove(KEY_PUSH_REPORTED_ERROR)
         .remove(KEY_PUSH_REPORTED_ERROR_DATE)
         .apply();
@@ -7183,19 +7214,19 @@ public class Settings {
 
   @Nullable
   public String getReportedPushServiceError () {
-    return pmc.getString(KEY_PUSH_REPORTED_ERROR, null);
+    return db.getString(KEY_PUSH_REPORTED_ERROR, null);
   }
 
   public long getReportedPushServiceErrorDate () {
-    return pmc.getLong(KEY_PUSH_REPORTED_ERROR_DATE, 0);
+    return db.getLong(KEY_PUSH_REPORTED_ERROR_DATE, 0);
   }
 
   public String getDefaultLanguageForTranslateDraft () {
-    return pmc.getString(KEY_DEFAULT_LANGUAGE_FOR_TRANSLATE_DRAFT, "en");
+    return db.getString(KEY_DEFAULT_LANGUAGE_FOR_TRANSLATE_DRAFT, "en");
   }
 
   public void setDefaultLanguageForTranslateDraft (String language) {
-    pmc.putString(KEY_DEFAULT_LANGUAGE_FOR_TRANSLATE_DRAFT, language);
+    db.putString(KEY_DEFAULT_LANGUAGE_FOR_TRANSLATE_DRAFT, language);
   }
 
   public boolean chatFoldersEnabled () {
@@ -7210,12 +7241,12 @@ public class Settings {
   private Integer _playbackSpeed;
 
   public void setPlaybackSpeed (int speed) {
-    pmc.putInt(KEY_PLAYBACK_SPEED, _playbackSpeed = speed);
+    db.putInt(KEY_PLAYBACK_SPEED, _playbackSpeed = speed);
   }
 
   public int getPlaybackSpeed () {
     if (_playbackSpeed == null) {
-      _playbackSpeed = pmc.getInt(KEY_PLAYBACK_SPEED, 100);
+      _playbackSpeed = db.getInt(KEY_PLAYBACK_SPEED, 100);
     }
     return _playbackSpeed;
   }
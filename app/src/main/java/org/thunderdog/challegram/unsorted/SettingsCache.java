@@ -0,0 +1,402 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.unsorted;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.core.Background;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.vkryl.leveldb.LevelDB;
+
+/**
+ * Typed read cache and write batching in front of {@link LevelDB}.
+ *
+ * Decoded scalar values (and absence of a value) are cached per key.
+ * Writes update the cache immediately and are committed to the database
+ * in a single batch shortly after, or earlier on {@link #commit()}.
+ *
+ * Cached keys are kept in a sorted index, so prefix removals only invalidate affected entries.
+ * Arrays are not cached, as callers are free to modify returned instances.
+ * Reads never commit: a pending value written with a different type is converted in memory.
+ *
+ * Direct database writes go through {@link SettingsDatabase}, which invalidates written keys.
+ *
+ * Every write and invalidation bumps the generation counter. Values read from the database are cached
+ * only when generation hasn't changed since the read started, so a value that was overwritten
+ * by a concurrent write never gets into the cache.
+ */
+public final class SettingsCache {
+  private static final int COMMIT_DELAY_MS = 250;
+  private static final int MAX_CACHED_KEYS = 4096;
+
+  private static final Object ABSENT = new Object();
+  private static final Object REMOVED = new Object();
+  private static final Object VOID = new Object();
+
+  private final LevelDB pmc;
+
+  private final TreeMap<String, Object> values = new TreeMap<>();
+  private final LinkedHashMap<String, Object> pendingWrites = new LinkedHashMap<>();
+  private long generation;
+  private boolean commitScheduled;
+  private final Object commitLock = new Object();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong writeCount = new AtomicLong();
+  private final AtomicLong commitCount = new AtomicLong();
+
+  public SettingsCache (LevelDB pmc) {
+    this.pmc = pmc;
+  }
+
+  // Reads
+
+  @Nullable
+  private synchronized Object find (String key) {
+    return values.get(key);
+  }
+
+  private synchronized long generation () {
+    return generation;
+  }
+
+  private synchronized void cache (String key, Object value, long readGeneration) {
+    if (generation != readGeneration) {
+      // Something was written or invalidated while the value was being read
+      return;
+    }
+    if (values.size() >= MAX_CACHED_KEYS) {
+      trim();
+    }
+    values.put(key, value);
+  }
+
+  private void trim () {
+    final int size = values.size();
+    Iterator<Map.Entry<String, Object>> it = values.entrySet().iterator();
+    while (it.hasNext()) {
+      if (!pendingWrites.containsKey(it.next().getKey())) {
+        it.remove();
+      }
+    }
+    Log.i("Trimmed settings cache: %d -> %d keys, %s", size, values.size(), this);
+  }
+
+  /**
+   * @return cached value of the requested type, {@link #ABSENT} or {@code null}, if database has to be queried.
+   * Committed values written with {@link #putVoid} or with a different type are decoded by the database.
+   */
+  @Nullable
+  private synchronized Object lookup (String key, Class<?> type) {
+    Object value = values.get(key);
+    if (value == ABSENT || (value != null && type.isInstance(value))) {
+      hitCount.incrementAndGet();
+      return value;
+    }
+    if (value != null && pendingWrites.containsKey(key)) {
+      // Value of a different type is not in the database yet
+      hitCount.incrementAndGet();
+      return convert(value, type);
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Numbers are cast to the requested type, everything else reads as absent, same as a void value.
+   */
+  private static Object convert (Object value, Class<?> type) {
+    if (value instanceof Number) {
+      Number number = (Number) value;
+      if (type == Integer.class) {
+        return number.intValue();
+      } else if (type == Long.class) {
+        return number.longValue();
+      } else if (type == Float.class) {
+        return number.floatValue();
+      }
+    }
+    return ABSENT;
+  }
+
+  public int getInt (String key, int defValue) {
+    Object value = lookup(key, Integer.class);
+    if (value != null) {
+      return value != ABSENT ? (Integer) value : defValue;
+    }
+    final long readGeneration = generation();
+    int result = pmc.getInt(key, defValue);
+    if (result == defValue && !pmc.contains(key)) {
+      cache(key, ABSENT, readGeneration);
+      return defValue;
+    }
+    cache(key, result, readGeneration);
+    return result;
+  }
+
+  public long getLong (String key, long defValue) {
+    Object value = lookup(key, Long.class);
+    if (value != null) {
+      return value != ABSENT ? (Long) value : defValue;
+    }
+    final long readGeneration = generation();
+    long result = pmc.getLong(key, defValue);
+    if (result == defValue && !pmc.contains(key)) {
+      cache(key, ABSENT, readGeneration);
+      return defValue;
+    }
+    cache(key, result, readGeneration);
+    return result;
+  }
+
+  public boolean getBoolean (String key, boolean defValue) {
+    Object value = lookup(key, Boolean.class);
+    if (value != null) {
+      return value != ABSENT ? (Boolean) value : defValue;
+    }
+    final long readGeneration = generation();
+    boolean result = pmc.getBoolean(key, defValue);
+    if (result == defValue && !pmc.contains(key)) {
+      cache(key, ABSENT, readGeneration);
+      return defValue;
+    }
+    cache(key, result, readGeneration);
+    return result;
+  }
+
+  public float getFloat (String key, float defValue) {
+    Object value = lookup(key, Float.class);
+    if (value != null) {
+      return value != ABSENT ? (Float) value : defValue;
+    }
+    final long readGeneration = generation();
+    float result = pmc.getFloat(key, defValue);
+    if (result == defValue && !pmc.contains(key)) {
+      cache(key, ABSENT, readGeneration);
+      return defValue;
+    }
+    cache(key, result, readGeneration);
+    return result;
+  }
+
+  public String getString (String key, String defValue) {
+    Object value = lookup(key, String.class);
+    if (value != null) {
+      return value != ABSENT ? (String) value : defValue;
+    }
+    final long readGeneration = generation();
+    String result = pmc.getString(key, null);
+    cache(key, result != null ? result : ABSENT, readGeneration);
+    return result != null ? result : defValue;
+  }
+
+  public boolean contains (String key) {
+    Object value = find(key);
+    if (value != null) {
+      // Includes pending putVoid, which database doesn't know about yet
+      hitCount.incrementAndGet();
+      return value != ABSENT;
+    }
+    missCount.incrementAndGet();
+    return pmc.contains(key);
+  }
+
+  // Writes
+
+  private synchronized void write (String key, Object value) {
+    writeCount.incrementAndGet();
+    generation++;
+    if (value == REMOVED) {
+      values.put(key, ABSENT);
+    } else {
+      values.put(key, value);
+    }
+    pendingWrites.remove(key);
+    pendingWrites.put(key, value);
+    if (!commitScheduled) {
+      commitScheduled = true;
+      Background.instance().post(this::commit, COMMIT_DELAY_MS);
+    }
+  }
+
+  public void putInt (String key, int value) {
+    write(key, value);
+  }
+
+  public void putLong (String key, long value) {
+    write(key, value);
+  }
+
+  public void putBoolean (String key, boolean value) {
+    write(key, value);
+  }
+
+  public void putFloat (String key, float value) {
+    write(key, value);
+  }
+
+  public void putString (String key, @NonNull String value) {
+    write(key, value);
+  }
+
+  public void putVoid (String key) {
+    write(key, VOID);
+  }
+
+  public void remove (String key) {
+    write(key, REMOVED);
+  }
+
+  /**
+   * Called by {@link SettingsDatabase} once a value written directly to the database is visible.
+   */
+  synchronized void invalidate (String key) {
+    generation++;
+    if (!pendingWrites.containsKey(key)) {
+      values.remove(key);
+    }
+  }
+
+  /**
+   * Same as {@link #invalidate(String)}, but for all keys starting with {@code prefix}.
+   */
+  synchronized void invalidateByPrefix (String prefix) {
+    generation++;
+    if (pendingWrites.isEmpty()) {
+      values.subMap(prefix, prefix + Character.MAX_VALUE).clear();
+    } else {
+      Iterator<String> it = values.subMap(prefix, prefix + Character.MAX_VALUE).keySet().iterator();
+      while (it.hasNext()) {
+        if (!pendingWrites.containsKey(it.next())) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  synchronized void invalidateAll () {
+    generation++;
+    if (pendingWrites.isEmpty()) {
+      values.clear();
+    } else {
+      trim();
+    }
+  }
+
+  public synchronized boolean hasPendingWrites () {
+    return !pendingWrites.isEmpty();
+  }
+
+  /**
+   * Same as {@link #commit()}, but avoids taking commit lock when there is nothing to commit.
+   */
+  @AnyThread
+  public void commitIfNeeded () {
+    if (hasPendingWrites()) {
+      commit();
+    }
+  }
+
+  /**
+   * Commits all pending writes to the database in a single batch.
+   */
+  @AnyThread
+  public void commit () {
+    synchronized (commitLock) {
+      final ArrayList<Map.Entry<String, Object>> writes;
+      synchronized (this) {
+        commitScheduled = false;
+        if (pendingWrites.isEmpty()) {
+          return;
+        }
+        writes = new ArrayList<>(pendingWrites.entrySet());
+      }
+      pmc.edit();
+      for (Map.Entry<String, Object> write : writes) {
+        final String key = write.getKey();
+        final Object value = write.getValue();
+        if (value == REMOVED) {
+          pmc.remove(key);
+        } else if (value == VOID) {
+          pmc.putVoid(key);
+        } else if (value instanceof Integer) {
+          pmc.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+          pmc.putLong(key, (Long) value);
+        } else if (value instanceof Boolean) {
+          pmc.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Float) {
+          pmc.putFloat(key, (Float) value);
+        } else {
+          // Only putString is left
+          pmc.putString(key, (String) value);
+        }
+      }
+      pmc.apply();
+      commitCount.incrementAndGet();
+      synchronized (this) {
+        for (Map.Entry<String, Object> write : writes) {
+          // Keep writes that were made during the commit
+          if (pendingWrites.get(write.getKey()) == write.getValue()) {
+            pendingWrites.remove(write.getKey());
+          }
+        }
+      }
+    }
+  }
+
+  // Stats
+
+  public long getHitCount () {
+    return hitCount.get();
+  }
+
+  public long getMissCount () {
+    return missCount.get();
+  }
+
+  public long getWriteCount () {
+    return writeCount.get();
+  }
+
+  public long getCommitCount () {
+    return commitCount.get();
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    final int size;
+    synchronized (this) {
+      size = values.size();
+    }
+    return "SettingsCache { keys = " + size +
+      ", hits = " + getHitCount() +
+      ", misses = " + getMissCount() +
+      ", writes = " + getWriteCount() +
+      ", commits = " + getCommitCount() + " }";
+  }
+}
@@ -0,0 +1,406 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.unsorted;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+import me.vkryl.leveldb.LevelDB;
+
+/**
+ * Direct access to the settings database that keeps {@link SettingsCache} coherent.
+ *
+ * Every access commits pending typed writes first, so raw writes can't be overwritten by older typed ones.
+ * Every write drops cached value of the written key once it's visible in the database:
+ * immediately, or on {@link #apply()} when made inside {@link #edit()} batch.
+ */
+public final class SettingsDatabase implements SharedPreferences, SharedPreferences.Editor {
+  private static final class Batch {
+    private int depth;
+    private boolean cleared;
+    private final ArrayList<String> keys = new ArrayList<>();
+    private final ArrayList<String> prefixes = new ArrayList<>();
+  }
+
+  private final LevelDB db;
+  private final SettingsCache cache;
+  private final ThreadLocal<Batch> batch = new ThreadLocal<Batch>() {
+    @Override
+    protected Batch initialValue () {
+      return new Batch();
+    }
+  };
+
+  SettingsDatabase (LevelDB db, SettingsCache cache) {
+    this.db = db;
+    this.cache = cache;
+  }
+
+  private LevelDB db () {
+    if (batch.get().depth == 0) {
+      // Inside a batch pending typed writes are committed by the batch owner,
+      // before it started, to avoid waiting for commit lock while holding database lock
+      cache.commitIfNeeded();
+    }
+    return db;
+  }
+
+  private void onWrite (String key) {
+    Batch batch = this.batch.get();
+    if (batch.depth > 0) {
+      batch.keys.add(key);
+    } else {
+      cache.invalidate(key);
+    }
+  }
+
+  private void onPrefixWrite (String prefix) {
+    Batch batch = this.batch.get();
+    if (batch.depth > 0) {
+      batch.prefixes.add(prefix);
+    } else {
+      cache.invalidateByPrefix(prefix);
+    }
+  }
+
+  private void onBatchApplied () {
+    Batch batch = this.batch.get();
+    if (batch.cleared) {
+      cache.invalidateAll();
+    } else {
+      for (String key : batch.keys) {
+        cache.invalidate(key);
+      }
+      for (String prefix : batch.prefixes) {
+        cache.invalidateByPrefix(prefix);
+      }
+    }
+    batch.cleared = false;
+    batch.keys.clear();
+    batch.prefixes.clear();
+    if (batch.depth > 0) {
+      batch.depth--;
+    }
+  }
+
+  // Batches
+
+  @Override
+  public SettingsDatabase edit () {
+    db().edit();
+    batch.get().depth++;
+    return this;
+  }
+
+  @Override
+  public void apply () {
+    db.apply();
+    onBatchApplied();
+  }
+
+  @Override
+  public boolean commit () {
+    boolean result = db.commit();
+    onBatchApplied();
+    return result;
+  }
+
+  // Writes
+
+  @Override
+  public SettingsDatabase clear () {
+    db().clear();
+    Batch batch = this.batch.get();
+    if (batch.depth > 0) {
+      batch.cleared = true;
+    } else {
+      cache.invalidateAll();
+    }
+    return this;
+  }
+
+  @Override
+  public SettingsDatabase remove (String key) {
+    db().remove(key);
+    onWrite(key);
+    return this;
+  }
+
+  public void removeByPrefix (String prefix) {
+    db().removeByPrefix(prefix);
+    onPrefixWrite(prefix);
+  }
+
+  public void removeByAnyPrefix (String... prefixes) {
+    db().removeByAnyPrefix(prefixes);
+    for (String prefix : prefixes) {
+      onPrefixWrite(prefix);
+    }
+  }
+
+  public SettingsDatabase putVoid (String key) {
+    db().putVoid(key);
+    onWrite(key);
+    return this;
+  }
+
+  @Override
+  public SettingsDatabase putBoolean (String key, boolean value) {
+    db().putBoolean(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  public SettingsDatabase putByte (String key, byte value) {
+    db().putByte(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  @Override
+  public SettingsDatabase putInt (String key, int value) {
+    db().putInt(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  @Override
+  public SettingsDatabase putLong (String key, long value) {
+    db().putLong(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  @Override
+  public SettingsDatabase putFloat (String key, float value) {
+    db().putFloat(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  public SettingsDatabase putDouble (String key, double value) {
+    db().putDouble(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  @Override
+  public SettingsDatabase putString (String key, @Nullable String value) {
+    db().putString(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  @Override
+  public SettingsDatabase putStringSet (String key, @Nullable Set<String> values) {
+    db().putStringSet(key, values);
+    onWrite(key);
+    return this;
+  }
+
+  public SettingsDatabase putIntArray (String key, int[] value) {
+    db().putIntArray(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  public SettingsDatabase putLongArray (String key, long[] value) {
+    db().putLongArray(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  public SettingsDatabase putFloatArray (String key, float[] value) {
+    db().putFloatArray(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  public SettingsDatabase putDoubleArray (String key, double[] value) {
+    db().putDoubleArray(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  public SettingsDatabase putByteArray (String key, byte[] value) {
+    db().putByteArray(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  public SettingsDatabase putStringArray (String key, String[] value) {
+    db().putStringArray(key, value);
+    onWrite(key);
+    return this;
+  }
+
+  // Reads
+
+  @Override
+  public boolean contains (String key) {
+    return db().contains(key);
+  }
+
+  @Override
+  public Map<String, ?> getAll () {
+    return db().getAll();
+  }
+
+  @Override
+  public boolean getBoolean (String key, boolean defValue) {
+    return db().getBoolean(key, defValue);
+  }
+
+  public byte getByte (String key, byte defValue) {
+    return db().getByte(key, defValue);
+  }
+
+  @Override
+  public int getInt (String key, int defValue) {
+    return db().getInt(key, defValue);
+  }
+
+  @Override
+  public long getLong (String key, long defValue) {
+    return db().getLong(key, defValue);
+  }
+
+  @Override
+  public float getFloat (String key, float defValue) {
+    return db().getFloat(key, defValue);
+  }
+
+  @Nullable
+  @Override
+  public String getString (String key, @Nullable String defValue) {
+    return db().getString(key, defValue);
+  }
+
+  @Nullable
+  @Override
+  public Set<String> getStringSet (String key, @Nullable Set<String> defValues) {
+    return db().getStringSet(key, defValues);
+  }
+
+  @Nullable
+  public int[] getIntArray (String key) {
+    return db().getIntArray(key);
+  }
+
+  @Nullable
+  public long[] getLongArray (String key) {
+    return db().getLongArray(key);
+  }
+
+  @Nullable
+  public float[] getFloatArray (String key) {
+    return db().getFloatArray(key);
+  }
+
+  @Nullable
+  public double[] getDoubleArray (String key) {
+    return db().getDoubleArray(key);
+  }
+
+  @Nullable
+  public byte[] getByteArray (String key) {
+    return db().getByteArray(key);
+  }
+
+  @Nullable
+  public String[] getStringArray (String key) {
+    return db().getStringArray(key);
+  }
+
+  public boolean tryGetBoolean (String key) throws FileNotFoundException {
+    return db().tryGetBoolean(key);
+  }
+
+  public byte tryGetByte (String key) throws FileNotFoundException {
+    return db().tryGetByte(key);
+  }
+
+  public int tryGetInt (String key) throws FileNotFoundException {
+    return db().tryGetInt(key);
+  }
+
+  public long tryGetLong (String key) throws FileNotFoundException {
+    return db().tryGetLong(key);
+  }
+
+  public float tryGetFloat (String key) throws FileNotFoundException {
+    return db().tryGetFloat(key);
+  }
+
+  public double tryGetDouble (String key) throws FileNotFoundException {
+    return db().tryGetDouble(key);
+  }
+
+  public String tryGetString (String key) throws FileNotFoundException {
+    return db().tryGetString(key);
+  }
+
+  public Iterable<LevelDB.Entry> find (String keyPrefix) {
+    return db().find(keyPrefix);
+  }
+
+  @Nullable
+  public String findFirst (String keyPrefix) {
+    return db().findFirst(keyPrefix);
+  }
+
+  @Nullable
+  public String findByValue (String keyPrefix, byte[] value) {
+    return db().findByValue(keyPrefix, value);
+  }
+
+  public byte[][] findAll (String keyPrefix) {
+    return db().findAll(keyPrefix);
+  }
+
+  public long getSizeByPrefix (String keyPrefix) {
+    return db().getSizeByPrefix(keyPrefix);
+  }
+
+  // Database
+
+  public long length () {
+    return db.length();
+  }
+
+  public String getProperty (String propertyName) {
+    return db.getProperty(propertyName);
+  }
+
+  public void flush () {
+    db().flush();
+  }
+
+  @Override
+  public void registerOnSharedPreferenceChangeListener (OnSharedPreferenceChangeListener listener) {
+    db.registerOnSharedPreferenceChangeListener(listener);
+  }
+
+  @Override
+  public void unregisterOnSharedPreferenceChangeListener (OnSharedPreferenceChangeListener listener) {
+    db.unregisterOnSharedPreferenceChangeListener(listener);
+  }
+}
@@ -13,8 +13,8 @@
 package org.thunderdog.challegram.util
 
 import me.vkryl.core.limit
-import me.vkryl.leveldb.LevelDB
 import org.thunderdog.challegram.BuildConfig
+import org.thunderdog.challegram.unsorted.SettingsDatabase
 import tgx.td.tdlibCommitHashFull
 import tgx.td.tdlibVersion
 import kotlin.math.max
@@ -46,7 +46,7 @@ data class AppBuildInfo(
     builtinPullRequests()
   )
 
-  fun saveTo (editor: LevelDB, keyPrefix: String) {
+  fun saveTo (editor: SettingsDatabase, keyPrefix: String) {
     editor
       .putInt("${keyPrefix}_code", versionCode)
       .putString("${keyPrefix}_name", versionName)
@@ -138,11 +138,11 @@ data class AppBuildInfo(
   }
   
   companion object {
-    @JvmStatic fun restoreVersionCode (pmc: LevelDB, keyPrefix: String): Int {
+    @JvmStatic fun restoreVersionCode (pmc: SettingsDatabase, keyPrefix: String): Int {
       return pmc.getInt("${keyPrefix}_code", 0)
     }
 
-    @JvmStatic fun restoreFrom (pmc: LevelDB, installationId: Long, keyPrefix: String): AppBuildInfo {
+    @JvmStatic fun restoreFrom (pmc: SettingsDatabase, installationId: Long, keyPrefix: String): AppBuildInfo {
       val prIds = pmc.getLongArray("${keyPrefix}_prs") ?: longArrayOf()
       val pullRequests = if (prIds.isNotEmpty()) {
         prIds.map { pullRequestId ->
@@ -201,7 +201,7 @@ data class PullRequest (
   val commitDate: Long,
   val commitAuthor: String
 ) {
-  fun saveTo (editor: LevelDB, keyPrefix: String) {
+  fun saveTo (editor: SettingsDatabase, keyPrefix: String) {
     editor
       .putLong("${keyPrefix}_id", id)
       .putString("${keyPrefix}_commit", commit)
@@ -212,7 +212,7 @@ data class PullRequest (
   }
   
   companion object {
-    fun restoreFrom (pmc: LevelDB, keyPrefix: String): PullRequest {
+    fun restoreFrom (pmc: SettingsDatabase, keyPrefix: String): PullRequest {
       return PullRequest(
         pmc.getLong("${keyPrefix}_id", 0),
         pmc.getString("${keyPrefix}_commit", "")!!,
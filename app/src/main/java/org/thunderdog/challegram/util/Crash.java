@@ -28,6 +28,7 @@ import org.thunderdog.challegram.telegram.TdlibAccount;
 import org.thunderdog.challegram.telegram.TdlibManager;
 import org.thunderdog.challegram.tool.UI;
 import org.thunderdog.challegram.unsorted.AppState;
+import org.thunderdog.challegram.unsorted.SettingsDatabase;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -258,7 +259,7 @@ public class Crash {
     return result;
   }
 
-  public void saveTo (LevelDB pmc, String keyPrefix) {
+  public void saveTo (SettingsDatabase pmc, String keyPrefix) {
     pmc.putInt(keyPrefix + CacheKey.APP_VERSION_CODE, appVersionCode);
     pmc.putInt(keyPrefix + CacheKey.SDK_VERSION, sdkVersion);
     if (appBuildInfo != null) {
@@ -276,15 +277,15 @@ public class Crash {
     }
   }
 
-  public void saveFlags (LevelDB pmc, String prefix) {
+  public void saveFlags (SettingsDatabase pmc, String prefix) {
     pmc.putInt(prefix + CacheKey.FLAGS, flags);
   }
 
-  public static int restoreFlags (LevelDB pmc, String keyPrefix) {
+  public static int restoreFlags (SettingsDatabase pmc, String keyPrefix) {
     return pmc.getInt(keyPrefix + CacheKey.FLAGS, 0);
   }
 
-  public static long restoreInstallationId (LevelDB pmc, String keyPrefix) {
+  public static long restoreInstallationId (SettingsDatabase pmc, String keyPrefix) {
     return pmc.getLong(keyPrefix + CacheKey.INSTALLATION_ID, 0);
   }
 
@@ -21,26 +21,31 @@ import android.util.SparseIntArray;
 import androidx.annotation.RawRes;
 
 import org.thunderdog.challegram.core.BaseThread;
+import org.thunderdog.challegram.core.LazyInit;
 import org.thunderdog.challegram.tool.UI;
 
 public class SoundPoolMap {
   private final SparseIntArray sounds;
   private SoundPool soundPool;
 
-  private final BaseThread pool;
+  private final LazyInit<BaseThread> pool = new LazyInit<>("SoundPoolMap", () -> new BaseThread("SoundPoolMap"));
 
   private final int stream;
 
   public SoundPoolMap (int stream) {
     this.stream = stream;
     sounds = new SparseIntArray(8);
-    pool = new BaseThread("SoundPoolMap");
   }
 
+  /**
+   * Loads sounds in advance on the sound thread, so that caller does not wait for {@link SoundPool} creation.
+   */
   public void prepare (@RawRes int... resources) {
-    for (int res : resources) {
-      get(res);
-    }
+    pool.get().post(() -> {
+      for (int res : resources) {
+        get(res);
+      }
+    }, 0);
   }
 
   @SuppressWarnings("deprecation")
@@ -86,7 +91,7 @@ public class SoundPoolMap {
   }
 
   public void playUnique (final @RawRes int res, final float leftVolume, final float rightVolume, final int priority, final int loop, final float rate) {
-    pool.post(() -> {
+    pool.get().post(() -> {
       if (lastStreamID == 0 || lastStreamResID != res || lastStreamLoop != loop) {
         if (lastStreamID != 0 && lastStreamLoop != 0) {
           stop(lastStreamID);
@@ -97,7 +102,7 @@ public class SoundPoolMap {
   }
 
   public void stopLastSound () {
-    pool.post(() -> {
+    pool.get().post(() -> {
       if (lastStreamID != 0 && lastStreamLoop != 0) {
         stop(lastStreamID);
         lastStreamID = 0;
@@ -110,6 +115,10 @@ public class SoundPoolMap {
   }
 
   public void release () {
+    BaseThread pool = this.pool.peek();
+    if (pool == null) {
+      return;
+    }
     pool.post(() -> {
       if (soundPool != null) {
         sounds.clear();
@@ -276,6 +276,11 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
   private int currentX, currentY;
   private int currentWidth;
 
+  private boolean isParagraphBreak, isSoftBreak;
+  private boolean isWidthDependent;
+  private int softBreakLineWidth;
+  private float layoutTextSize;
+
   private TextPart lastPart;
   private int maxPartHeight;
 
@@ -344,7 +349,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
     this.defaultTextColorSet = textColorSet;
     this.entities = entities;
     this.suffix = suffix;
-    this.suffixWidth = !StringUtils.isEmpty(suffix) ? (int) U.measureText(this.suffix, getTextPaint(null)) : 0;
+    this.suffixWidth = !StringUtils.isEmpty(suffix) ? (int) TextMeasureCache.measureText(this.suffix, getTextPaint(null)) : 0;
     set(maxWidth, in);
   }
 
@@ -780,6 +785,8 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
     clearMedia();
     maxPartHeight = currentWidth = currentX = currentY = paragraphCount = 0;
     lastPart = null;
+    isWidthDependent = false;
+    softBreakLineWidth = Integer.MAX_VALUE;
     textFlags &= ~(
       FLAG_FULL_RTL |
       FLAG_ELLIPSIZED |
@@ -871,10 +878,30 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
 
   public void changeMaxWidth (int maxWidth, boolean force) {
     if (this.maxWidth != maxWidth || force) {
-      set(maxWidth, originalText, entities);
+      if (!force && canReuseLayout(maxWidth)) {
+        this.maxWidth = maxWidth;
+      } else {
+        set(maxWidth, originalText, entities);
+      }
     }
   }
 
+  /**
+   * Checks whether current parts would be laid out exactly the same way for the new width,
+   * i.e. every line still fits, and every soft line break is still needed: the part that started the next line doesn't fit
+   * into the previous one. In this case there is no need to tokenize and measure the text again.
+   */
+  private boolean canReuseLayout (int maxWidth) {
+    return maxWidth > 0 && this.maxWidth > 0 && parts != null && originalText != null &&
+      !isWidthDependent &&
+      !BitwiseUtils.hasFlag(textFlags, FLAG_ELLIPSIZED) &&
+      lineWidthProvider == null && lineMarginProvider == null &&
+      quotes.isEmpty() &&
+      layoutTextSize == textStyleProvider.getTextSize() &&
+      currentWidth + suffixWidth <= maxWidth &&
+      maxWidth - suffixWidth < softBreakLineWidth;
+  }
+
   public void set (int maxWidth, String in, TextEntity[] entities) {
     if (in == null)
       throw new IllegalArgumentException();
@@ -904,6 +931,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
       throw new IllegalStateException();
 
     reset();
+    layoutTextSize = textStyleProvider.getTextSize();
 
     if ((textFlags & FLAG_ALL_BOLD) != 0 && Text.needFakeBold(in, 0, in.length())) {
       textFlags |= FLAG_FAKE_BOLD;
@@ -959,11 +987,16 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
               if (currentX > 0 && !out.isEmpty()) {
                 currentX += makeSpaceSize(getTextPaint(null));
                 if (currentX > getLineMaxWidth(out.get(out.size() - 1).getLineIndex(), currentY)) {
-                  newLineOrEllipsis(out, in);
+                  newSoftLineOrEllipsis(out, in, 0, 0, null, currentX);
                 }
               }
             } else {
-              newLineOrEllipsis(out, in);
+              isParagraphBreak = true;
+              try {
+                newLineOrEllipsis(out, in);
+              } finally {
+                isParagraphBreak = false;
+              }
             }
           }
           prevIsNewLine = true;
@@ -1236,10 +1269,11 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
     int maxWidth = getLineMaxWidth(getLineCount(), currentY);
 
     if (currentX > 0 && currentX + iconWidth > maxWidth) {
-      newLineOrEllipsis(out, in);
+      newSoftLineOrEllipsis(out, in, 0, 0, null, currentX + iconWidth);
       maxWidth = getLineMaxWidth(getLineCount(), currentY);
     }
     if (iconWidth > maxWidth) {
+      isWidthDependent = true;
       iconHeight *= (float) maxWidth / (float) iconWidth;
       iconWidth = maxWidth;
     }
@@ -1267,7 +1301,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
 
     final int maxWidth = getLineMaxWidth(getLineCount(), currentY);
     if (currentX + emojiSize > maxWidth) {
-      newLineOrEllipsis(out, in);
+      newSoftLineOrEllipsis(out, in, 0, 0, null, currentX + emojiSize);
     }
 
     final int quoteFlags = quoteCheckAndMakeNewLines(in, start, end, out, entity);
@@ -1604,7 +1638,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
       } else if (isChild) {
         fullWidth = childWidth[0];
       } else {
-        fullWidth = BiDiUtils.measureTextRun(bidiEntity, in, start, end, paint);
+        fullWidth = TextMeasureCache.measureTextRun(bidiEntity, in, start, end, paint);
       }
     }
     futureWidth = fullWidth;
@@ -1621,6 +1655,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
     final int maxWidth = getLineMaxWidth(getLineCount(), this.currentY);
 
     if (width > maxWidth) {
+      isWidthDependent = true;
       int currentEnd;
 
       float availWidth = maxWidth - currentX;
@@ -1662,7 +1697,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
         } else if (newEnd - currentEnd == 1 && lastCodePointWidth != -1 && lastCodePoint == codePoint) {
           charWidth = lastCodePointWidth;
         } else {
-          charWidth = BiDiUtils.measureTextRun(bidiEntity, in, currentEnd, newEnd, paint); //    U.measureText(in, currentEnd, newEnd, paint);
+          charWidth = TextMeasureCache.measureTextRun(bidiEntity, in, currentEnd, newEnd, paint); //    U.measureText(in, currentEnd, newEnd, paint);
           if (newEnd - currentEnd == 1) {
             lastCodePoint = codePoint;
             lastCodePointWidth = charWidth;
@@ -1706,11 +1741,15 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
 
     float forcedWidth = -1;
 
-    if (currentX + width > maxWidth || (currentX > 0 && ((entity != null && entity.isFullWidth() && lastPart != null && !lastPart.isSameEntity(entity)) || (lastPart != null && lastPart.getEntity() != null && lastPart.getEntity().isFullWidth() && !lastPart.isSameEntity(entity))) )) {
+    final boolean isFullWidthBreak = currentX > 0 && ((entity != null && entity.isFullWidth() && lastPart != null && !lastPart.isSameEntity(entity)) || (lastPart != null && lastPart.getEntity() != null && lastPart.getEntity().isFullWidth() && !lastPart.isSameEntity(entity)));
+    if (currentX + width > maxWidth || isFullWidthBreak) {
       boolean movedLastLine = false;
 
       float firstCodePointWidth;
-      if ((textFlags & FLAG_BOUNDS_NOT_STRICT) != 0 && in.codePointCount(start, end) == 2 && currentX + (firstCodePointWidth = U.measureText(in, start, start + 1, paint)) <= maxWidth) {
+      if ((textFlags & FLAG_BOUNDS_NOT_STRICT) != 0 && in.codePointCount(start, end) == 2) {
+        isWidthDependent = true;
+      }
+      if ((textFlags & FLAG_BOUNDS_NOT_STRICT) != 0 && in.codePointCount(start, end) == 2 && currentX + (firstCodePointWidth = TextMeasureCache.measureText(in, start, start + 1, paint)) <= maxWidth) {
         int firstCodePoint = in.codePointAt(start);
         int secondCodePoint = in.codePointAt(start + Character.charCount(firstCodePoint));
 
@@ -1722,12 +1761,15 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
       if (forcedWidth == -1) {
         if (lastPart != null) {
           // This is needed for cases like "<b>photos</b>, <b>videos</b>." to not put line-break before comma.
-          if (lastPart.getX() != 0 && !lastPart.isSameEntity(entity) && (currentX - lastPart.getX() + width <= maxWidth) && isSplitterCodePoint(in.codePointAt(start), false) && !isSplitterCodePoint(in.codePointAt(lastPart.getEnd() - 1), true) && !hasSpaceSeparators(in, lastPart.getStart(), lastPart.getEnd())) {
-            movedLastLine = moveToNextLine(lastPart);
+          if (lastPart.getX() != 0 && !lastPart.isSameEntity(entity) && isSplitterCodePoint(in.codePointAt(start), false) && !isSplitterCodePoint(in.codePointAt(lastPart.getEnd() - 1), true) && !hasSpaceSeparators(in, lastPart.getStart(), lastPart.getEnd())) {
+            isWidthDependent = true;
+            if (currentX - lastPart.getX() + width <= maxWidth) {
+              movedLastLine = moveToNextLine(lastPart);
+            }
           }
         }
         if (!movedLastLine) {
-          newLineOrEllipsis(out, in, start, end, entity);
+          newSoftLineOrEllipsis(out, in, start, end, entity, isFullWidthBreak ? Integer.MAX_VALUE : currentX + width);
         }
       }
     }
@@ -1827,7 +1869,24 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
     return Math.max(maxPartHeight, getLineHeight());
   }
 
+  /**
+   * Line break, which wouldn't happen if the current line could be {@code requiredLineWidth} wide.
+   * Unlike other breaks, it doesn't prevent reusing the layout for other widths, see {@link #canReuseLayout(int)}.
+   */
+  private void newSoftLineOrEllipsis (List<TextPart> out, @NonNull String in, final int start, final int end, TextEntity entity, float requiredLineWidth) {
+    softBreakLineWidth = Math.min(softBreakLineWidth, (int) Math.ceil(requiredLineWidth));
+    isSoftBreak = true;
+    try {
+      newLineOrEllipsis(out, in, start, end, entity);
+    } finally {
+      isSoftBreak = false;
+    }
+  }
+
   private void newLineOrEllipsis (List<TextPart> out, @NonNull String in, final int start, final int end, TextEntity entity) {
+    if (!isParagraphBreak && !isSoftBreak) {
+      isWidthDependent = true;
+    }
     int lineHeight = getCurrentLineHeight();
     int prevMaxPartHeight = maxPartHeight;
     addLine(currentX, lineHeight);
@@ -1864,7 +1923,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
         }
       }
 
-      float ellipsisWidth = BiDiUtils.measureTextRun(bidiEntity, ellipsis, getTextPaint(entity));
+      float ellipsisWidth = TextMeasureCache.measureTextRun(bidiEntity, ellipsis, getTextPaint(entity));
       if (!BiDiUtils.isValid(bidiEntity)) {
         bidiEntity = lastPart.getBidiEntity();
       }
@@ -1880,7 +1939,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
           lineIndex++;
         }
 
-        final float defaultEllipsisWidth = U.measureText(defaultEllipsis, getTextPaint(entity));
+        final float defaultEllipsisWidth = TextMeasureCache.measureText(defaultEllipsis, getTextPaint(entity));
         if (hasEllipsizedPart && !StringUtils.equalsOrBothEmpty(ellipsis, defaultEllipsis) && ellipsis.length() > defaultEllipsis.length()) {
           TextPart ellipsisPart = new TextPart(this, ellipsis, 0, ellipsis.length() - defaultEllipsis.length(), lineIndex, paragraphIndex);
           ellipsisPart.setXY(currentX, currentY);
@@ -1904,7 +1963,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
         // Hard path: find enough place for ellipsis and place it there
         final int requiredLineIndex = lastPart.getLineIndex();
         final int minEnd = lastPart.getEnd();
-        final float defaultEllipsisWidth = U.measureText(defaultEllipsis, getTextPaint(null));
+        final float defaultEllipsisWidth = TextMeasureCache.measureText(defaultEllipsis, getTextPaint(null));
 
         boolean done = false;
         do {
@@ -1919,7 +1978,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
               ellipsis = defaultEllipsis;
               changedEllipsis = true;
             }
-            ellipsisWidth = changedEllipsis || !lastPart.isSameEntity(entity) ? U.measureText(ellipsis, getTextPaint(lastPart.getEntity())) : ellipsisWidth;
+            ellipsisWidth = changedEllipsis || !lastPart.isSameEntity(entity) ? TextMeasureCache.measureText(ellipsis, getTextPaint(lastPart.getEntity())) : ellipsisWidth;
 
             TextPart ellipsisPart = new TextPart(this, ellipsis, 0, ellipsis.length(), lastPart.getLineIndex(), lastPart.getParagraphIndex());
             ellipsisPart.setXY(currentX, currentY);
@@ -1945,7 +2004,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
                 ellipsis += defaultEllipsis;
               }
               ellipsisWidth = BiDiUtils.measureTextRun(lastPart.getBidiEntity(), ellipsis, paint);
-              final float defaultEllipsisWidth2 = U.measureText(defaultEllipsis, paint);
+              final float defaultEllipsisWidth2 = TextMeasureCache.measureText(defaultEllipsis, paint);
               if (currentX + ellipsisWidth <= lineMaxWidth) {
                 lastPart.setLine(ellipsis, 0, ellipsis.length() - defaultEllipsis.length());
                 lastPart.setWidth(ellipsisWidth - defaultEllipsisWidth2);
@@ -2219,7 +2278,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterTextPart, List
 
   private float makeSpaceSize (Paint paint) {
     if (lastSpaceSize == 0f || lastSpacePaint != paint) {
-      lastSpaceSize = U.measureText(" ", paint);
+      lastSpaceSize = TextMeasureCache.measureText(" ", paint);
       lastSpacePaint = paint;
     }
     return lastSpaceSize;
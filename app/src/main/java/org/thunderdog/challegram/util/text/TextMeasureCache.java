@@ -0,0 +1,294 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.util.text;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.U;
+import org.thunderdog.challegram.util.text.bidi.BiDiEntity;
+import org.thunderdog.challegram.util.text.bidi.BiDiUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shared cache of measured text run widths, keyed by paint configuration and run characters.
+ *
+ * Most of the {@link Text} layout time is spent measuring the same words, spaces and ellipsis
+ * over and over: in every message, and again on each width or orientation change.
+ * Only short runs that start and end on word boundaries are cached, so that their width
+ * doesn't depend on the surrounding text (kerning, ligatures and joining scripts).
+ *
+ * Cache is split into {@link #STRIPE_COUNT} independently locked LRU maps, as layouts are built on multiple threads.
+ */
+public final class TextMeasureCache {
+  private static final int STRIPE_COUNT = 8;
+  private static final int MAX_ENTRIES_PER_STRIPE = 384;
+  private static final int MAX_RUN_LENGTH = 32;
+
+  private static final class RunKey {
+    Typeface typeface;
+    float textSize, textScaleX, textSkewX, letterSpacing;
+    int paintFlags;
+    @Nullable String fontFeatureSettings;
+    int direction;
+
+    CharSequence text;
+    int start, end;
+    int hashCode;
+
+    RunKey set (@NonNull Paint p, int direction, CharSequence text, int start, int end) {
+      this.typeface = p.getTypeface();
+      this.textSize = p.getTextSize();
+      this.textScaleX = p.getTextScaleX();
+      this.textSkewX = p.getTextSkewX();
+      this.paintFlags = p.getFlags();
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+        this.letterSpacing = p.getLetterSpacing();
+        this.fontFeatureSettings = p.getFontFeatureSettings();
+      }
+      this.direction = direction;
+      this.text = text;
+      this.start = start;
+      this.end = end;
+
+      int result = typeface != null ? typeface.hashCode() : 0;
+      result = 31 * result + Float.floatToIntBits(textSize);
+      result = 31 * result + Float.floatToIntBits(textScaleX);
+      result = 31 * result + Float.floatToIntBits(textSkewX);
+      result = 31 * result + Float.floatToIntBits(letterSpacing);
+      result = 31 * result + paintFlags;
+      result = 31 * result + direction;
+      for (int i = start; i < end; i++) {
+        result = 31 * result + text.charAt(i);
+      }
+      this.hashCode = result;
+      return this;
+    }
+
+    RunKey copy () {
+      RunKey key = new RunKey();
+      key.typeface = typeface;
+      key.textSize = textSize;
+      key.textScaleX = textScaleX;
+      key.textSkewX = textSkewX;
+      key.letterSpacing = letterSpacing;
+      key.paintFlags = paintFlags;
+      key.fontFeatureSettings = fontFeatureSettings;
+      key.direction = direction;
+      key.text = text.subSequence(start, end).toString();
+      key.start = 0;
+      key.end = end - start;
+      key.hashCode = hashCode;
+      return key;
+    }
+
+    @Override
+    public boolean equals (Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof RunKey))
+        return false;
+      RunKey other = (RunKey) obj;
+      if (hashCode != other.hashCode ||
+        typeface != other.typeface ||
+        textSize != other.textSize ||
+        textScaleX != other.textScaleX ||
+        textSkewX != other.textSkewX ||
+        letterSpacing != other.letterSpacing ||
+        paintFlags != other.paintFlags ||
+        direction != other.direction ||
+        end - start != other.end - other.start ||
+        !(fontFeatureSettings != null ? fontFeatureSettings.equals(other.fontFeatureSettings) : other.fontFeatureSettings == null)) {
+        return false;
+      }
+      for (int i = 0; i < end - start; i++) {
+        if (text.charAt(start + i) != other.text.charAt(other.start + i))
+          return false;
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode () {
+      return hashCode;
+    }
+  }
+
+  private static final class Stripe extends LinkedHashMap<RunKey, Float> {
+    long hitCount, missCount, evictionCount;
+
+    Stripe () {
+      super(MAX_ENTRIES_PER_STRIPE, .75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry (Map.Entry<RunKey, Float> eldest) {
+      if (size() > MAX_ENTRIES_PER_STRIPE) {
+        evictionCount++;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private static final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+  private static final ThreadLocal<RunKey> lookupKey = new ThreadLocal<>();
+
+  static {
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  private TextMeasureCache () { }
+
+  /**
+   * Cached version of {@link BiDiUtils#measureTextRun(int, CharSequence, int, int, Paint)}.
+   */
+  @AnyThread
+  public static float measureTextRun (@BiDiEntity int bidiEntity, @NonNull CharSequence in, int start, int end, @NonNull Paint p) {
+    final int direction = BiDiUtils.isValid(bidiEntity) ? (BiDiUtils.isRtl(bidiEntity) ? 2 : 1) : 0;
+    if (!isCacheable(in, start, end)) {
+      return BiDiUtils.measureTextRun(bidiEntity, in, start, end, p);
+    }
+    RunKey key = obtainKey().set(p, direction, in, start, end);
+    Stripe stripe = stripes[stripeIndex(key.hashCode)];
+    synchronized (stripe) {
+      Float width = stripe.get(key);
+      if (width != null) {
+        stripe.hitCount++;
+        key.text = null;
+        return width;
+      }
+      stripe.missCount++;
+    }
+    final float width = BiDiUtils.measureTextRun(bidiEntity, in, start, end, p);
+    RunKey storedKey = key.copy();
+    key.text = null;
+    synchronized (stripe) {
+      stripe.put(storedKey, width);
+    }
+    return width;
+  }
+
+  @AnyThread
+  public static float measureTextRun (@BiDiEntity int bidiEntity, @Nullable CharSequence in, @NonNull Paint p) {
+    return in == null || in.length() == 0 ? 0 : measureTextRun(bidiEntity, in, 0, in.length(), p);
+  }
+
+  /**
+   * Cached version of {@link U#measureText(CharSequence, int, int, Paint)}.
+   */
+  @AnyThread
+  public static float measureText (@NonNull CharSequence in, int start, int end, @NonNull Paint p) {
+    return measureTextRun(0, in, start, end, p);
+  }
+
+  @AnyThread
+  public static float measureText (@Nullable CharSequence in, @NonNull Paint p) {
+    return in == null || in.length() == 0 ? 0 : measureText(in, 0, in.length(), p);
+  }
+
+  private static boolean isCacheable (CharSequence in, int start, int end) {
+    final int length = end - start;
+    if (length <= 0 || length > MAX_RUN_LENGTH) {
+      return false;
+    }
+    return (start == 0 || !isJoinable(in.charAt(start - 1))) &&
+      (end == in.length() || !isJoinable(in.charAt(end)));
+  }
+
+  private static boolean isJoinable (char c) {
+    return Character.isLetterOrDigit(c) || Character.isSurrogate(c) || Character.getType(c) == Character.NON_SPACING_MARK;
+  }
+
+  private static RunKey obtainKey () {
+    RunKey key = lookupKey.get();
+    if (key == null) {
+      key = new RunKey();
+      lookupKey.set(key);
+    }
+    return key;
+  }
+
+  private static int stripeIndex (int hashCode) {
+    return (hashCode ^ (hashCode >>> 16)) & (STRIPE_COUNT - 1);
+  }
+
+  @AnyThread
+  public static void clear () {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
+  }
+
+  /**
+   * Counters of all cache stripes, e.g. to check the hit rate for a given set of texts.
+   */
+  public static final class Stats {
+    public final long hitCount, missCount, evictionCount;
+    public final int size;
+
+    private Stats (long hitCount, long missCount, long evictionCount, int size) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.size = size;
+    }
+
+    /**
+     * @return Share of cacheable runs found in cache. Long runs and runs within words are never looked up.
+     */
+    public float getHitRate () {
+      final long total = hitCount + missCount;
+      return total > 0 ? (float) hitCount / (float) total : 0f;
+    }
+
+    @Override
+    @NonNull
+    public String toString () {
+      return "TextMeasureCache { size = " + size + "/" + (STRIPE_COUNT * MAX_ENTRIES_PER_STRIPE) +
+        ", hits = " + hitCount +
+        ", misses = " + missCount +
+        ", evicted = " + evictionCount +
+        ", hitRate = " + (int) (getHitRate() * 100f) + "% }";
+    }
+  }
+
+  @NonNull
+  @AnyThread
+  public static Stats getStats () {
+    long hitCount = 0, missCount = 0, evictionCount = 0;
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        hitCount += stripe.hitCount;
+        missCount += stripe.missCount;
+        evictionCount += stripe.evictionCount;
+        size += stripe.size();
+      }
+    }
+    return new Stats(hitCount, missCount, evictionCount, size);
+  }
+}
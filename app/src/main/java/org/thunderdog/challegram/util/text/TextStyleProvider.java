@@ -14,19 +14,23 @@
  */
 package org.thunderdog.challegram.util.text;
 
+import android.os.Looper;
 import android.text.TextPaint;
 
 import org.thunderdog.challegram.tool.Fonts;
 import org.thunderdog.challegram.tool.Screen;
 import org.thunderdog.challegram.unsorted.Settings;
 
+import me.vkryl.core.util.LocalVar;
+
 public class TextStyleProvider implements Settings.FontSizeChangeListener {
   private final TextPaint regularPaint;
 
   private float textSize;
   private boolean allowSp;
 
-  public Fonts.TextPaintStorage storage;
+  private final Fonts.TextPaintStorage storage;
+  private LocalVar<Fonts.TextPaintStorage> localStorage;
 
   public TextStyleProvider (TextPaint regularPaint) {
     this.regularPaint = regularPaint;
@@ -87,7 +91,21 @@ public class TextStyleProvider implements Settings.FontSizeChangeListener {
   }
 
   public Fonts.TextPaintStorage getTextPaintStorage () {
-    return storage;
+    if (storage == null || Looper.myLooper() == Looper.getMainLooper()) {
+      return storage;
+    }
+    // preparePaint changes text size, so layout threads must not share paints with the UI thread
+    synchronized (this) {
+      if (localStorage == null) {
+        localStorage = new LocalVar<>();
+      }
+      Fonts.TextPaintStorage threadStorage = localStorage.get();
+      if (threadStorage == null) {
+        threadStorage = storage.copy();
+        localStorage.set(threadStorage);
+      }
+      return threadStorage;
+    }
   }
 
   public final TextPaint preparePaint (TextPaint paint) {
@@ -113,34 +131,34 @@ public class TextStyleProvider implements Settings.FontSizeChangeListener {
   }
 
   public TextPaint getTextPaint () {
-    return preparePaint(storage != null ? storage.getRegularPaint() : this.regularPaint);
+    return preparePaint(storage != null ? getTextPaintStorage().getRegularPaint() : this.regularPaint);
   }
 
   public TextPaint getMonospacePaint () {
-    return preparePaint(storage != null ? storage.getMonospaceStorage().getRegularPaint() : regularPaint);
+    return preparePaint(storage != null ? getTextPaintStorage().getMonospaceStorage().getRegularPaint() : regularPaint);
   }
 
   public TextPaint getUnderlinePaint () {
-    return preparePaint(storage != null ? storage.getUnderlineStorage().getRegularPaint() : regularPaint);
+    return preparePaint(storage != null ? getTextPaintStorage().getUnderlineStorage().getRegularPaint() : regularPaint);
   }
 
   public TextPaint getStrikethroughPaint () {
-    return preparePaint(storage != null ? storage.getStrikeThroughStorage().getRegularPaint() : regularPaint);
+    return preparePaint(storage != null ? getTextPaintStorage().getStrikeThroughStorage().getRegularPaint() : regularPaint);
   }
 
   public TextPaint getBoldPaint () {
-    return preparePaint(storage != null ? storage.getBoldPaint() : regularPaint);
+    return preparePaint(storage != null ? getTextPaintStorage().getBoldPaint() : regularPaint);
   }
 
   public TextPaint getFakeBoldPaint () {
-    return preparePaint(storage != null ? storage.getFakeBoldPaint() : regularPaint);
+    return preparePaint(storage != null ? getTextPaintStorage().getFakeBoldPaint() : regularPaint);
   }
 
   public TextPaint getItalicPaint () {
-    return preparePaint(storage != null ? storage.getItalicPaint() : regularPaint);
+    return preparePaint(storage != null ? getTextPaintStorage().getItalicPaint() : regularPaint);
   }
 
   public TextPaint getBoldItalicPaint () {
-    return preparePaint(storage != null ? storage.getBoldItalicPaint() : regularPaint);
+    return preparePaint(storage != null ? getTextPaintStorage().getBoldItalicPaint() : regularPaint);
   }
 }
@@ -155,9 +155,41 @@ public class TextWrapper implements ListAnimator.Measurable, Destroyable, Text.T
 
   public Text prepare (int maxWidth) {
     this.isPortrait = UI.isPortrait();
+    this.isReleased = false;
     return get(maxWidth);
   }
 
+  // Layout release
+
+  private boolean isReleased;
+  private int releasedWidth, releasedHeight, releasedLastLineWidth, releasedLineCount, releasedLineHeight, releasedLineCenterY;
+  private boolean releasedLastLineIsRtl;
+
+  /**
+   * Destroys built layouts to save memory, e.g. while the message is far from the viewport.
+   * Until layout is built again by {@link #prepare(int)}, wrapper keeps reporting sizes of the released layout,
+   * but draws nothing.
+   */
+  public void releaseLayout () {
+    final Text text = getCurrent();
+    if (text == null) {
+      return;
+    }
+    releasedWidth = text.getWidth();
+    releasedHeight = text.getHeight();
+    releasedLastLineWidth = text.getLastLineWidth();
+    releasedLastLineIsRtl = text.getLastLineIsRtl();
+    releasedLineCount = text.getLineCount();
+    releasedLineHeight = text.getLineHeight();
+    releasedLineCenterY = text.getLineCenterY();
+    isReleased = true;
+    destroyTexts();
+  }
+
+  public boolean isLayoutReleased () {
+    return isReleased;
+  }
+
   public @Nullable Text getCurrent () {
     Text text = texts[isPortrait ? PORTRAIT_INDEX : LANDSCAPE_INDEX];
     if (text == null) {
@@ -283,12 +315,12 @@ public class TextWrapper implements ListAnimator.Measurable, Destroyable, Text.T
   @Override
   public int getWidth () {
     final Text text = getCurrent();
-    return text == null ? 0 : text.getWidth();
+    return text == null ? (isReleased ? releasedWidth : 0) : text.getWidth();
   }
 
   public int getLastLineWidth () {
     final Text text = getCurrent();
-    return text == null ? -1 : text.getLastLineWidth();
+    return text == null ? (isReleased ? releasedLastLineWidth : -1) : text.getLastLineWidth();
   }
 
   public int getLineWidth (int lineIndex) {
@@ -298,28 +330,28 @@ public class TextWrapper implements ListAnimator.Measurable, Destroyable, Text.T
 
   public boolean getLastLineIsRtl () {
     final Text text = getCurrent();
-    return text != null && text.getLastLineIsRtl();
+    return text != null ? text.getLastLineIsRtl() : isReleased && releasedLastLineIsRtl;
   }
 
   @Override
   public int getHeight () {
     final Text text = getCurrent();
-    return text == null ? 0 : text.getHeight();
+    return text == null ? (isReleased ? releasedHeight : 0) : text.getHeight();
   }
 
   public int getLineCenterY () {
     final Text text = getCurrent();
-    return text == null ? 0 : text.getLineCenterY();
+    return text == null ? (isReleased ? releasedLineCenterY : 0) : text.getLineCenterY();
   }
 
   public int getLineHeight () {
     final Text text = getCurrent();
-    return text == null ? 0 : text.getLineHeight();
+    return text == null ? (isReleased ? releasedLineHeight : 0) : text.getLineHeight();
   }
 
   public int getLineCount () {
     final Text text = getCurrent();
-    return text == null ? 0 : text.getLineCount();
+    return text == null ? (isReleased ? releasedLineCount : 0) : text.getLineCount();
   }
 
   public String getText () {
@@ -417,6 +449,11 @@ public class TextWrapper implements ListAnimator.Measurable, Destroyable, Text.T
 
   @Override
   public void performDestroy () {
+    isReleased = false;
+    destroyTexts();
+  }
+
+  private void destroyTexts () {
     for (int i = 0; i < texts.length; i++) {
       Text text = texts[i];
       if (text != null) {
@@ -27,11 +27,15 @@ import androidx.recyclerview.widget.RecyclerView;
 import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.component.dialogs.ChatView;
 import org.thunderdog.challegram.component.dialogs.ChatsAdapter;
+import org.thunderdog.challegram.data.TGChat;
 import org.thunderdog.challegram.helper.LiveLocationHelper;
 import org.thunderdog.challegram.tool.Screen;
 import org.thunderdog.challegram.ui.ChatsController;
 
+import java.util.Arrays;
+
 import me.vkryl.android.util.ClickHelper;
+import me.vkryl.core.collection.LongSet;
 
 public class ChatsRecyclerView extends CustomRecyclerView implements ClickHelper.Delegate {
   private static final int PRELOAD_SIZE = 15;
@@ -123,6 +127,66 @@ public class ChatsRecyclerView extends CustomRecyclerView implements ClickHelper
     return adapter;
   }
 
+  // Changes of chats without bound views are collected by chat id and dispatched once per frame,
+  // as a few range notifications instead of one notifyItemChanged per update
+
+  private final LongSet changedChatIds = new LongSet();
+  private boolean isChangedChatsDispatchScheduled;
+  private final Runnable dispatchChangedChats = this::dispatchChangedChats;
+
+  @Override
+  public void invalidateViewAt (int adapterIndex) {
+    View view = manager.findViewByPosition(adapterIndex);
+    if (view != null) {
+      view.invalidate();
+      return;
+    }
+    TGChat chat = adapter.getChatByItemPosition(adapterIndex);
+    long chatId = chat != null ? chat.getChatId() : 0;
+    if (chatId == 0) {
+      adapter.notifyItemChanged(adapterIndex);
+      return;
+    }
+    changedChatIds.add(chatId);
+    if (!isChangedChatsDispatchScheduled) {
+      isChangedChatsDispatchScheduled = true;
+      postOnAnimation(dispatchChangedChats);
+    }
+  }
+
+  private void dispatchChangedChats () {
+    isChangedChatsDispatchScheduled = false;
+    if (changedChatIds.isEmpty()) {
+      return;
+    }
+    long[] chatIds = changedChatIds.toArray();
+    changedChatIds.clear();
+    int[] positions = new int[chatIds.length];
+    int positionCount = 0;
+    for (long chatId : chatIds) {
+      int position = adapter.findChatItemPosition(chatId);
+      if (position != -1) {
+        positions[positionCount++] = position;
+      }
+    }
+    Arrays.sort(positions, 0, positionCount);
+    int rangeStart = -1, rangeEnd = -1;
+    for (int i = 0; i < positionCount; i++) {
+      int position = positions[i];
+      if (position == rangeEnd + 1 && rangeStart != -1) {
+        rangeEnd = position;
+        continue;
+      }
+      if (rangeStart != -1) {
+        adapter.notifyItemRangeChanged(rangeStart, rangeEnd - rangeStart + 1);
+      }
+      rangeStart = rangeEnd = position;
+    }
+    if (rangeStart != -1) {
+      adapter.notifyItemRangeChanged(rangeStart, rangeEnd - rangeStart + 1);
+    }
+  }
+
   public void setTotalRes (int totalRes) {
     this.adapter.setTotalRes(totalRes);
   }
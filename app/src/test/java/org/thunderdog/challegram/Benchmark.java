@@ -0,0 +1,28 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram;
+
+import org.junit.Assume;
+
+/**
+ * Timing tests are slow and depend on the machine, so they only run with {@code ./gradlew test -Pbenchmark}.
+ */
+public final class Benchmark {
+  private Benchmark () { }
+
+  public static void assumeEnabled () {
+    Assume.assumeTrue("Benchmarks are disabled, run with -Pbenchmark", Boolean.getBoolean("tgx.benchmark"));
+  }
+}
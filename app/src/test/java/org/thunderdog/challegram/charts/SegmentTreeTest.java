@@ -0,0 +1,122 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.charts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.thunderdog.challegram.Benchmark;
+
+import java.util.Random;
+
+/**
+ * Compares range queries of {@link SegmentTree} with a linear scan, on series as long as statistics charts get.
+ */
+public class SegmentTreeTest {
+  private static final int QUERY_COUNT = 2000;
+
+  // Daily values with weekly seasonality and spikes, like member or view counts
+  private static int[] newSeries (int length, long seed) {
+    Random random = new Random(seed);
+    int[] y = new int[length];
+    int value = 10_000;
+    for (int i = 0; i < length; i++) {
+      value = Math.max(0, value + random.nextInt(201) - 100);
+      y[i] = value + (i % 7 < 2 ? 500 : 0) + (random.nextInt(100) == 0 ? random.nextInt(50_000) : 0);
+    }
+    return y;
+  }
+
+  private static int linearMax (int[] y, int from, int to) {
+    int result = Integer.MIN_VALUE;
+    for (int i = Math.max(0, from); i <= Math.min(y.length - 1, to); i++) {
+      result = Math.max(result, y[i]);
+    }
+    return result;
+  }
+
+  private static int linearMin (int[] y, int from, int to) {
+    int result = Integer.MAX_VALUE;
+    for (int i = Math.max(0, from); i <= Math.min(y.length - 1, to); i++) {
+      result = Math.min(result, y[i]);
+    }
+    return result;
+  }
+
+  @Test
+  public void testQueriesMatchLinearScan () {
+    for (int length : new int[] {1, 2, 29, 30, 31, 64, 1000, 10_007}) {
+      int[] y = newSeries(length, length);
+      // Negative values as well, as lines of some charts go below zero
+      for (int i = 0; i < length; i += 3) {
+        y[i] = -y[i];
+      }
+      SegmentTree tree = new SegmentTree(y);
+      Random random = new Random(length);
+      for (int i = 0; i < QUERY_COUNT; i++) {
+        int from = random.nextInt(length);
+        int to = from + random.nextInt(length - from);
+        assertEquals(length + ": " + from + ".." + to, linearMax(y, from, to), tree.rMaxQ(from, to));
+        assertEquals(length + ": " + from + ".." + to, linearMin(y, from, to), tree.rMinQ(from, to));
+      }
+      // Charts query a bit outside of the series while scrolling
+      assertEquals(linearMax(y, 0, length - 1), tree.rMaxQ(-5, length + 5));
+      assertEquals(linearMin(y, 0, length - 1), tree.rMinQ(-5, length + 5));
+      assertEquals(y[length - 1], tree.rMaxQ(length - 1, length - 1));
+      assertEquals(y[0], tree.rMinQ(0, 0));
+    }
+  }
+
+  @Test
+  public void testQueryBenchmark () {
+    Benchmark.assumeEnabled();
+    for (int length : new int[] {10_000, 50_000, 100_000}) {
+      int[] y = newSeries(length, length);
+      SegmentTree tree = new SegmentTree(y);
+
+      // Visible range while zooming: from the whole series down to a few hundred points
+      Random random = new Random(length);
+      int[] from = new int[QUERY_COUNT], to = new int[QUERY_COUNT];
+      for (int i = 0; i < QUERY_COUNT; i++) {
+        int rangeLength = Math.max(300, (int) (length * random.nextDouble()));
+        from[i] = random.nextInt(length - rangeLength + 1);
+        to[i] = from[i] + rangeLength - 1;
+      }
+
+      // Warm up both paths
+      for (int i = 0; i < QUERY_COUNT / 10; i++) {
+        assertEquals(linearMax(y, from[i], to[i]), tree.rMaxQ(from[i], to[i]));
+      }
+
+      long linearNanos = System.nanoTime();
+      long linearSum = 0;
+      for (int i = 0; i < QUERY_COUNT; i++) {
+        linearSum += linearMax(y, from[i], to[i]) - (long) linearMin(y, from[i], to[i]);
+      }
+      linearNanos = System.nanoTime() - linearNanos;
+
+      long treeNanos = System.nanoTime();
+      long treeSum = 0;
+      for (int i = 0; i < QUERY_COUNT; i++) {
+        treeSum += tree.rMaxQ(from[i], to[i]) - (long) tree.rMinQ(from[i], to[i]);
+      }
+      treeNanos = System.nanoTime() - treeNanos;
+
+      assertEquals(linearSum, treeSum);
+      assertTrue(length + " points, tree: " + treeNanos + "ns, linear scan: " + linearNanos + "ns", treeNanos < linearNanos);
+    }
+  }
+}
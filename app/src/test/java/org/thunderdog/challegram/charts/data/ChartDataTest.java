@@ -0,0 +1,193 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.charts.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.thunderdog.challegram.Benchmark;
+
+import java.util.Random;
+
+/**
+ * Checks min/max downsampling of {@link ChartData.Line} on 10k–100k point series,
+ * and compares drawing the downsampled points with drawing every point of the visible range.
+ */
+public class ChartDataTest {
+  private static final float CHART_WIDTH = 1080f;
+  private static final int[] SERIES_LENGTHS = {10_000, 50_000, 100_000};
+
+  private static volatile float sink;
+
+  // Hourly values with daily seasonality, spikes, and missing values
+  private static ChartData.Line newLine (int length, long seed) {
+    Random random = new Random(seed);
+    ChartData.Line line = new ChartData().new Line();
+    line.y = new int[length];
+    int value = 10_000;
+    for (int i = 0; i < length; i++) {
+      value = Math.max(0, value + random.nextInt(201) - 100);
+      line.y[i] = value + (i % 24 < 8 ? 0 : 700) + (random.nextInt(100) == 0 ? random.nextInt(50_000) : 0);
+      if (random.nextInt(500) == 0) {
+        line.y[i] = -1;
+      }
+    }
+    return line;
+  }
+
+  @Test
+  public void testDownsampleLevel () {
+    assertEquals(0, ChartData.getDownsampleLevel(1000, 0f));
+    assertEquals(0, ChartData.getDownsampleLevel(1000, CHART_WIDTH));
+    assertEquals(0, ChartData.getDownsampleLevel(4000, CHART_WIDTH));
+    assertEquals(2, ChartData.getDownsampleLevel(5000, CHART_WIDTH));
+    assertEquals(3, ChartData.getDownsampleLevel(10_000, CHART_WIDTH));
+    assertEquals(6, ChartData.getDownsampleLevel(100_000, CHART_WIDTH));
+    assertEquals(20, ChartData.getDownsampleLevel(Integer.MAX_VALUE, 1f));
+  }
+
+  @Test
+  public void testDownsampleKeepsPeaks () {
+    for (int length : SERIES_LENGTHS) {
+      ChartData.Line line = newLine(length, length);
+      int[] y = line.y;
+      assertNull(line.getDownsampledIndexes(0));
+      for (int level = 2; level <= 20; level++) {
+        int[] indexes = line.getDownsampledIndexes(level);
+        assertSame(indexes, line.getDownsampledIndexes(level));
+
+        int bucketSize = 1 << level;
+        assertTrue(indexes.length <= ((length + bucketSize - 1) / bucketSize) * 2);
+        for (int r = 0; r < indexes.length; r++) {
+          assertTrue(y[indexes[r]] >= 0);
+          assertTrue(r == 0 || indexes[r - 1] < indexes[r]);
+        }
+        // Every bucket keeps its lowest and highest values, so peaks are drawn at any zoom
+        int r = 0;
+        for (int bucketStart = 0; bucketStart < length; bucketStart += bucketSize) {
+          int bucketEnd = Math.min(length, bucketStart + bucketSize);
+          int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+          for (int i = bucketStart; i < bucketEnd; i++) {
+            if (y[i] >= 0) {
+              min = Math.min(min, y[i]);
+              max = Math.max(max, y[i]);
+            }
+          }
+          int keptMin = Integer.MAX_VALUE, keptMax = Integer.MIN_VALUE;
+          for (; r < indexes.length && indexes[r] < bucketEnd; r++) {
+            keptMin = Math.min(keptMin, y[indexes[r]]);
+            keptMax = Math.max(keptMax, y[indexes[r]]);
+          }
+          assertEquals(length + ", level " + level + ", bucket " + bucketStart, min, keptMin);
+          assertEquals(length + ", level " + level + ", bucket " + bucketStart, max, keptMax);
+        }
+        assertEquals(indexes.length, r);
+      }
+    }
+  }
+
+  @Test
+  public void testDownsampledRange () {
+    ChartData.Line line = newLine(SERIES_LENGTHS[0], 1);
+    Random random = new Random(1);
+    for (int level = 2; level <= 8; level++) {
+      int[] indexes = line.getDownsampledIndexes(level);
+      for (int i = 0; i < 1000; i++) {
+        int index = random.nextInt(line.y.length);
+        int start = ChartData.findDownsampledStart(indexes, index);
+        int end = ChartData.findDownsampledEnd(indexes, index);
+        // Line enters the range from the last point before it, and leaves it through the first point after it
+        assertTrue(start == 0 || indexes[start] <= index);
+        assertTrue(start == indexes.length - 1 || indexes[start + 1] > index);
+        assertTrue(end == indexes.length - 1 || indexes[end] >= index);
+        assertTrue(end == 0 || indexes[end - 1] < index);
+      }
+    }
+  }
+
+  // Point math of LinearChartView.drawChart, without the canvas
+  private static float drawPoints (int[] y, int[] indexes, int rangeStart, int rangeEnd) {
+    float sum = 0;
+    for (int r = rangeStart; r <= rangeEnd; r++) {
+      int i = indexes != null ? indexes[r] : r;
+      if (y[i] < 0) continue;
+      float xPoint = i * CHART_WIDTH / y.length;
+      float yPoint = 1000f - (y[i] / 100_000f) * 1000f;
+      sum += xPoint + yPoint;
+    }
+    return sum;
+  }
+
+  @Test
+  public void testDrawnPointCount () {
+    final int frameCount = 200;
+    for (int length : SERIES_LENGTHS) {
+      ChartData.Line line = newLine(length, length);
+      ChartData.DownsampleStats stats = new ChartData.DownsampleStats();
+      for (int frame = 0; frame < frameCount; frame++) {
+        // Pinch from the whole series to a tenth of it
+        int rangeLength = (int) (length * (1f - 0.9f * frame / frameCount));
+        int localStart = (length - rangeLength) / 2;
+        int localEnd = localStart + rangeLength - 1;
+
+        int level = ChartData.getDownsampleLevel(rangeLength, CHART_WIDTH);
+        int[] indexes = line.getDownsampledIndexes(level);
+        int rangeStart = indexes != null ? ChartData.findDownsampledStart(indexes, localStart) : localStart;
+        int rangeEnd = indexes != null ? ChartData.findDownsampledEnd(indexes, localEnd) : localEnd;
+        stats.onLineDrawn(localEnd - localStart + 1, rangeEnd - rangeStart + 1);
+        if (indexes != null) {
+          // At least 4 points per pixel, reduced to at most 2 per bucket, plus points entering and leaving the range
+          assertTrue(rangeLength + " points, level " + level, rangeEnd - rangeStart + 1 <= rangeLength / 2 + 4);
+        }
+      }
+      if (length / 10 >= 4 * CHART_WIDTH) {
+        // Every frame is downsampled
+        assertTrue(length + " points, " + stats, stats.getReductionRate() >= 0.5f);
+      }
+    }
+  }
+
+  @Test
+  public void testDrawBenchmark () {
+    Benchmark.assumeEnabled();
+    final int frameCount = 200;
+    for (int length : SERIES_LENGTHS) {
+      ChartData.Line line = newLine(length, length);
+      long fullNanos = 0, downsampledNanos = 0;
+      for (int frame = 0; frame < frameCount; frame++) {
+        int rangeLength = (int) (length * (1f - 0.9f * frame / frameCount));
+        int localStart = (length - rangeLength) / 2;
+        int localEnd = localStart + rangeLength - 1;
+
+        long startTime = System.nanoTime();
+        sink = drawPoints(line.y, null, localStart, localEnd);
+        fullNanos += System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        int[] indexes = line.getDownsampledIndexes(ChartData.getDownsampleLevel(rangeLength, CHART_WIDTH));
+        int rangeStart = indexes != null ? ChartData.findDownsampledStart(indexes, localStart) : localStart;
+        int rangeEnd = indexes != null ? ChartData.findDownsampledEnd(indexes, localEnd) : localEnd;
+        sink = drawPoints(line.y, indexes, rangeStart, rangeEnd);
+        downsampledNanos += System.nanoTime() - startTime;
+      }
+      if (length / 10 >= 4 * CHART_WIDTH) {
+        assertTrue(length + " points, downsampled: " + downsampledNanos + "ns, all points: " + fullNanos + "ns", downsampledNanos < fullNanos);
+      }
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.component.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+import org.thunderdog.challegram.Benchmark;
+import org.thunderdog.challegram.data.TGMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link MessageContainerIndex} with the linear search it replaced in {@link MessagesAdapter},
+ * on chats with tens of thousands of loaded messages, albums, sponsored and local messages.
+ */
+public class MessageContainerIndexTest {
+  private static final int LOOKUP_COUNT = 200;
+
+  // Server message ids, as TDLib assigns them
+  private static long messageId (long serverId) {
+    return serverId << 20;
+  }
+
+  /**
+   * @param ids Ids of messages within the container, ascending
+   */
+  private static TGMessage newMessage (boolean isSponsored, long... ids) {
+    return mock(TGMessage.class, invocation -> {
+      switch (invocation.getMethod().getName()) {
+        case "getSmallestId":
+          return ids[0];
+        case "getBiggestId":
+          return ids[ids.length - 1];
+        case "isSponsoredMessage":
+          return isSponsored;
+        case "isDescendantOrSelf":
+          if (invocation.getArguments().length == 1) {
+            return Arrays.binarySearch(ids, (long) invocation.getArgument(0)) >= 0;
+          }
+          break;
+      }
+      return RETURNS_DEFAULTS.answer(invocation);
+    });
+  }
+
+  /**
+   * Messages from {@code fromServerId} down to {@code toServerId}, newest first.
+   * Every 7th item is an album of 3 messages.
+   */
+  private static List<TGMessage> newHistory (long fromServerId, long toServerId) {
+    List<TGMessage> items = new ArrayList<>();
+    long serverId = fromServerId;
+    while (serverId >= toServerId) {
+      if (serverId % 7 == 0 && serverId - 2 >= toServerId) {
+        items.add(newMessage(false, messageId(serverId - 2), messageId(serverId - 1), messageId(serverId)));
+        serverId -= 3;
+      } else {
+        items.add(newMessage(false, messageId(serverId)));
+        serverId--;
+      }
+    }
+    return items;
+  }
+
+  private static int linearIndexOf (List<TGMessage> items, long messageId) {
+    int i = 0;
+    for (TGMessage item : items) {
+      if (item.isDescendantOrSelf(messageId)) {
+        return i;
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  private static void checkAllLookups (MessageContainerIndex index, List<TGMessage> items, long fromServerId, long toServerId) {
+    for (long serverId = fromServerId; serverId >= toServerId; serverId--) {
+      long messageId = messageId(serverId);
+      assertEquals("Message " + serverId, linearIndexOf(items, messageId), index.indexOf(items, messageId));
+    }
+  }
+
+  @Test
+  public void testLookupMatchesLinearSearch () {
+    final int messageCount = 20_000;
+    List<TGMessage> items = newHistory(messageCount, 1);
+    // Sponsored message at the bottom, and local messages that were sent, but not moved yet
+    items.add(0, newMessage(true, messageId(messageCount + 1)));
+    items.add(100, newMessage(false, -5));
+    items.add(200, newMessage(false, messageId(messageCount + 2)));
+
+    MessageContainerIndex index = new MessageContainerIndex();
+    checkAllLookups(index, items, messageCount + 10, -10);
+    assertEquals(-1, index.indexOf(items, -6));
+    assertEquals(100, index.indexOf(items, -5));
+    assertTrue(index.toString(), index.toString().contains("rebuilds = 1,"));
+    assertTrue(index.toString(), index.toString().contains("fallbacks = 0 "));
+  }
+
+  @Test
+  public void testIncrementalLoading () {
+    // Chat opened in the middle, then history is loaded page by page in both directions
+    final long middleServerId = 10_000;
+    final int pageSize = 50, pageCount = 150;
+    List<TGMessage> items = newHistory(middleServerId, middleServerId - pageSize + 1);
+    MessageContainerIndex index = new MessageContainerIndex();
+    assertEquals(0, index.indexOf(items, messageId(middleServerId)));
+
+    long newestServerId = middleServerId, oldestServerId = middleServerId - pageSize + 1;
+    for (int page = 0; page < pageCount; page++) {
+      List<TGMessage> older = newHistory(oldestServerId - 1, oldestServerId - pageSize);
+      items.addAll(older);
+      index.onItemsAddedToTop(items, older.size());
+      oldestServerId -= pageSize;
+
+      List<TGMessage> newer = newHistory(newestServerId + pageSize, newestServerId + 1);
+      items.addAll(0, newer);
+      index.onItemsAddedToBottom(items, newer.size());
+      newestServerId += pageSize;
+
+      long serverId = page % 2 == 0 ? oldestServerId : newestServerId;
+      assertEquals(linearIndexOf(items, messageId(serverId)), index.indexOf(items, messageId(serverId)));
+    }
+    assertTrue(items.size() > 10_000);
+    checkAllLookups(index, items, newestServerId, oldestServerId);
+    // Pages are indexed as they come, without rebuilding the whole index
+    assertTrue(index.toString(), index.toString().contains("rebuilds = 1,"));
+
+    // Message sent to the bottom after a newer message arrived breaks the order, and is found anyway
+    items.add(0, newMessage(false, messageId(newestServerId + 2)));
+    index.onItemsAddedToBottom(items, 1);
+    items.add(0, newMessage(false, messageId(newestServerId + 1)));
+    index.onItemsAddedToBottom(items, 1);
+    checkAllLookups(index, items, newestServerId + 2, newestServerId - 10);
+    assertTrue(index.toString(), index.toString().contains("rebuilds = 2,"));
+  }
+
+  @Test
+  public void testLookupBenchmark () {
+    Benchmark.assumeEnabled();
+    for (int messageCount : new int[] {10_000, 50_000}) {
+      List<TGMessage> items = newHistory(messageCount, 1);
+      MessageContainerIndex index = new MessageContainerIndex();
+      long[] messageIds = new long[LOOKUP_COUNT];
+      Random random = new Random(messageCount);
+      for (int i = 0; i < LOOKUP_COUNT; i++) {
+        messageIds[i] = messageId(1 + random.nextInt(messageCount));
+      }
+
+      // Warm up both paths, including the first rebuild
+      for (int i = 0; i < LOOKUP_COUNT / 10; i++) {
+        assertEquals(linearIndexOf(items, messageIds[i]), index.indexOf(items, messageIds[i]));
+      }
+
+      long linearNanos = System.nanoTime();
+      long linearSum = 0;
+      for (long messageId : messageIds) {
+        linearSum += linearIndexOf(items, messageId);
+      }
+      linearNanos = System.nanoTime() - linearNanos;
+
+      long indexNanos = System.nanoTime();
+      long indexSum = 0;
+      for (long messageId : messageIds) {
+        indexSum += index.indexOf(items, messageId);
+      }
+      indexNanos = System.nanoTime() - indexNanos;
+
+      assertEquals(linearSum, indexSum);
+      assertTrue(messageCount + " messages, index: " + indexNanos + "ns, linear search: " + linearNanos + "ns, " + index, indexNanos < linearNanos);
+    }
+  }
+}
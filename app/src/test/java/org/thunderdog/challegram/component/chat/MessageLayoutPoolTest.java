@@ -0,0 +1,141 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.component.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+import org.thunderdog.challegram.Benchmark;
+import org.thunderdog.challegram.data.TGMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lays out chunks of messages with synthetic layout cost, comparing {@link MessageLayoutPool} with the serial loop it replaced.
+ */
+public class MessageLayoutPoolTest {
+  // Chunk sizes of MessagesLoader: initial chunk, following chunks, and search results
+  private static final int[] CHUNK_SIZES = {15, 50, 100};
+  private static final int ROUND_COUNT = 20;
+  // Roughly the cost of a text message layout on a mid-range device
+  private static final long LAYOUT_NANOS = TimeUnit.MICROSECONDS.toNanos(150);
+
+  private static volatile long sink;
+
+  private static void simulateLayout () {
+    final long endTime = System.nanoTime() + LAYOUT_NANOS;
+    long value = 0;
+    while (System.nanoTime() < endTime) {
+      value = value * 31 + 17;
+    }
+    sink = value;
+  }
+
+  private static List<TGMessage> newChunk (int count, AtomicInteger[] layoutCounts, boolean simulateCost) {
+    List<TGMessage> items = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      TGMessage msg = mock(TGMessage.class);
+      final AtomicInteger layoutCount = layoutCounts[i] = new AtomicInteger();
+      doAnswer(invocation -> {
+        if (simulateCost) {
+          simulateLayout();
+        }
+        layoutCount.incrementAndGet();
+        return null;
+      }).when(msg).prepareLayout();
+      items.add(msg);
+    }
+    return items;
+  }
+
+  @Test
+  public void testEveryItemLaidOutOnce () {
+    final MessageLayoutPool pool = MessageLayoutPool.instance();
+    for (int count : new int[] {0, 1, 7, 8, 9, 15, 50, 100, 500}) {
+      AtomicInteger[] layoutCounts = new AtomicInteger[count];
+      List<TGMessage> items = newChunk(count, layoutCounts, false);
+      // Chunks smaller than two workers' share stay on the calling thread
+      assertEquals("Chunk of " + count, count >= 8, pool.prepareLayout(items));
+      for (int i = 0; i < count; i++) {
+        assertEquals("Item " + i + " of " + count, 1, layoutCounts[i].get());
+      }
+    }
+  }
+
+  @Test
+  public void testLayoutErrorIsRethrown () {
+    final MessageLayoutPool pool = MessageLayoutPool.instance();
+    final int count = 50;
+    for (int failingIndex : new int[] {0, count / 2, count - 1}) {
+      AtomicInteger[] layoutCounts = new AtomicInteger[count];
+      List<TGMessage> items = newChunk(count, layoutCounts, false);
+      final IllegalStateException error = new IllegalStateException();
+      doAnswer(invocation -> {
+        throw error;
+      }).when(items.get(failingIndex)).prepareLayout();
+      try {
+        pool.prepareLayout(items);
+        fail();
+      } catch (IllegalStateException e) {
+        assertSame(error, e);
+      }
+    }
+    // Pool stays usable after a failed chunk
+    AtomicInteger[] layoutCounts = new AtomicInteger[count];
+    pool.prepareLayout(newChunk(count, layoutCounts, false));
+    for (AtomicInteger layoutCount : layoutCounts) {
+      assertEquals(1, layoutCount.get());
+    }
+  }
+
+  @Test
+  public void testLayoutBenchmark () {
+    Benchmark.assumeEnabled();
+    final MessageLayoutPool pool = MessageLayoutPool.instance();
+    for (int count : CHUNK_SIZES) {
+      AtomicInteger[] layoutCounts = new AtomicInteger[count];
+      List<TGMessage> items = newChunk(count, layoutCounts, true);
+      // Warm up, so that worker threads are already started
+      pool.prepareLayout(items);
+      for (TGMessage item : items) {
+        item.prepareLayout();
+      }
+
+      final MessageLayoutPool.Stats serialStats = new MessageLayoutPool.Stats(), poolStats = new MessageLayoutPool.Stats();
+      for (int round = 0; round < ROUND_COUNT; round++) {
+        long startTime = System.nanoTime();
+        for (TGMessage item : items) {
+          item.prepareLayout();
+        }
+        serialStats.onChunkProcessed(count, 0, System.nanoTime() - startTime, false);
+
+        startTime = System.nanoTime();
+        boolean isParallel = pool.prepareLayout(items);
+        poolStats.onChunkProcessed(count, 0, System.nanoTime() - startTime, isParallel);
+      }
+      for (AtomicInteger layoutCount : layoutCounts) {
+        assertEquals(2 + ROUND_COUNT * 2, layoutCount.get());
+      }
+      assertEquals("Serial: " + serialStats + ", pool: " + poolStats, ROUND_COUNT, poolStats.getChunkCount());
+    }
+  }
+}
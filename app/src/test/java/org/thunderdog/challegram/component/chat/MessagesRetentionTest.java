@@ -0,0 +1,91 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.component.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+
+/**
+ * Checks which messages {@link MessagesRetention} unloads or releases layouts of, around exact limits,
+ * visible range at both ends of the list, and {@link RecyclerView#NO_POSITION}.
+ */
+public class MessagesRetentionTest {
+  private static final int MAX = MessagesRetention.MAX_MESSAGE_COUNT;
+  private static final int DISTANCE = MessagesRetention.RETAINED_DISTANCE;
+  private static final int MIN_RELEASE = MessagesRetention.MIN_LAYOUT_RELEASE_COUNT;
+  private static final int RELEASE_DISTANCE = MessagesRetention.LAYOUT_RETAINED_DISTANCE;
+
+  private final MessagesRetention retention = new MessagesRetention();
+
+  @Test
+  public void testTopTrimIndex () {
+    // Exactly at the limit nothing is unloaded
+    assertEquals(-1, retention.getTopTrimIndex(MAX, 0));
+    assertEquals(DISTANCE + 1, retention.getTopTrimIndex(MAX + 1, 0));
+    assertEquals(-1, retention.getTopTrimIndex(MAX + 1, RecyclerView.NO_POSITION));
+
+    // Visible range at the oldest loaded message
+    assertEquals(-1, retention.getTopTrimIndex(MAX + 1, MAX));
+    assertEquals(-1, retention.getTopTrimIndex(MAX + 1, MAX - DISTANCE));
+    assertEquals(MAX, retention.getTopTrimIndex(MAX + 1, MAX - DISTANCE - 1));
+  }
+
+  @Test
+  public void testBottomTrimCount () {
+    assertEquals(0, retention.getBottomTrimCount(MAX, MAX - 1));
+    assertEquals(MAX - DISTANCE, retention.getBottomTrimCount(MAX + 1, MAX));
+    assertEquals(0, retention.getBottomTrimCount(MAX + 1, RecyclerView.NO_POSITION));
+
+    // Visible range at the newest loaded message
+    assertEquals(0, retention.getBottomTrimCount(MAX + 1, 0));
+    assertEquals(0, retention.getBottomTrimCount(MAX + 1, DISTANCE));
+    assertEquals(1, retention.getBottomTrimCount(MAX + 1, DISTANCE + 1));
+  }
+
+  @Test
+  public void testNeedReleaseLayout () {
+    // Exactly at the limit nothing is released
+    for (int position = 0; position < MIN_RELEASE; position++) {
+      assertFalse(retention.needReleaseLayout(MIN_RELEASE, position, 0, 0));
+    }
+
+    final int count = MIN_RELEASE + 1;
+
+    // Visible range at the newest message
+    assertFalse(retention.needReleaseLayout(count, 0, 0, 9));
+    assertFalse(retention.needReleaseLayout(count, 9 + RELEASE_DISTANCE, 0, 9));
+    assertTrue(retention.needReleaseLayout(count, 9 + RELEASE_DISTANCE + 1, 0, 9));
+    assertTrue(retention.needReleaseLayout(count, count - 1, 0, 9));
+
+    // Visible range at the oldest message
+    final int first = count - 10, last = count - 1;
+    assertFalse(retention.needReleaseLayout(count, last, first, last));
+    assertFalse(retention.needReleaseLayout(count, first - RELEASE_DISTANCE, first, last));
+    assertTrue(retention.needReleaseLayout(count, first - RELEASE_DISTANCE - 1, first, last));
+    assertTrue(retention.needReleaseLayout(count, 0, first, last));
+
+    // Unknown visible range
+    for (int position = 0; position < count; position++) {
+      assertFalse(retention.needReleaseLayout(count, position, RecyclerView.NO_POSITION, RecyclerView.NO_POSITION));
+      assertFalse(retention.needReleaseLayout(count, position, 0, RecyclerView.NO_POSITION));
+      assertFalse(retention.needReleaseLayout(count, position, RecyclerView.NO_POSITION, 0));
+    }
+  }
+}
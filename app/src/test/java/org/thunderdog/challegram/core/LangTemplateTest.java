@@ -0,0 +1,115 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+
+/**
+ * Checks plain {@link LangTemplate#format(Locale, Object[])} against {@link String#format(Locale, String, Object...)}.
+ */
+public class LangTemplateTest {
+  @After
+  public void tearDown () {
+    LangTemplate.clear();
+  }
+
+  private static void assertSameAsStringFormat (Locale locale, String format, Object... args) {
+    assertEquals(format, String.format(locale, format, args), LangTemplate.obtain(format).format(locale, args));
+  }
+
+  private static void assertFallback (Locale locale, String format, Object... args) {
+    assertNull(format, LangTemplate.obtain(format).format(locale, args));
+  }
+
+  @Test
+  public void testSequentialArguments () {
+    assertSameAsStringFormat(Locale.US, "No arguments, 100%% literal");
+    assertSameAsStringFormat(Locale.US, "%s sent %d photos", "Alice", 3);
+    assertSameAsStringFormat(Locale.US, "%s%s%d", "", null, -42L);
+    assertSameAsStringFormat(Locale.US, "%d%%", Integer.MIN_VALUE);
+    assertSameAsStringFormat(Locale.US, "%s", "%1$s is not parsed again");
+    // Extra arguments are ignored
+    assertSameAsStringFormat(Locale.US, "%s joined", "Bob", "unused", 1);
+  }
+
+  @Test
+  public void testPositionalArguments () {
+    assertSameAsStringFormat(Locale.US, "%1$s added %2$s", "Alice", "Bob");
+    assertSameAsStringFormat(Locale.US, "%2$s was added by %1$s", "Alice", "Bob");
+    assertSameAsStringFormat(Locale.US, "%2$d:%3$02d of %1$s", "video", 5, 7);
+    assertSameAsStringFormat(Locale.US, "%1$02d:%2$02d", 123, 0L);
+    assertSameAsStringFormat(Locale.US, "%10$s", 1, 2, 3, 4, 5, 6, 7, 8, 9, "tenth");
+    // Arguments without index continue from the first one, whatever indexes were used before
+    assertSameAsStringFormat(Locale.US, "%2$s %s %s", "a", "b");
+  }
+
+  @Test
+  public void testRepeatedArguments () {
+    assertSameAsStringFormat(Locale.US, "%1$s, %1$s and %2$s", "Alice", "Bob");
+    assertSameAsStringFormat(Locale.US, "%1$d %1$03d %1$s", 7);
+    assertSameAsStringFormat(Locale.US, "%2$s%1$s%2$s", "-", "=");
+  }
+
+  @Test
+  public void testMissingArguments () {
+    for (String format : new String[] {"%s and %s", "%1$s and %2$s", "%3$d", "%2$s %s %s"}) {
+      Object[] args = {"Alice"};
+      assertFallback(Locale.US, format, args);
+      assertThrows(format, MissingFormatArgumentException.class, () -> String.format(Locale.US, format, args));
+    }
+    assertFallback(Locale.US, "%s", (Object[]) null);
+  }
+
+  @Test
+  public void testFallbackCases () {
+    Formattable formattable = (Formatter formatter, int flags, int width, int precision) -> formatter.format("custom");
+    // Output that differs from String.valueOf or needs Formatter rules
+    assertFallback(Locale.US, "%f", 1.5f);
+    assertFallback(Locale.US, "%1$s %2$f", "a", 1.5);
+    assertFallback(Locale.US, "%s", formattable);
+    assertFallback(Locale.US, "%1$05d", -12);
+    assertFallback(Locale.US, "%1$05s", "a");
+    assertFallback(Locale.US, "%d", 1.5);
+    assertFallback(Locale.US, "%d", "1");
+    // Digits other than ASCII
+    assertFallback(Locale.forLanguageTag("ar-EG"), "%d", 1);
+    assertSameAsStringFormat(Locale.forLanguageTag("ar-EG"), "%s", "ok");
+    // Invalid format
+    assertFallback(Locale.US, "100%");
+    assertFallback(Locale.US, "%x", 1);
+    assertFallback(Locale.US, "%1s", "a");
+    assertFallback(Locale.US, "%1$x", 1);
+  }
+
+  @Test
+  public void testObtainCachesTemplates () {
+    LangTemplate template = LangTemplate.obtain("%1$s");
+    assertSame(template, LangTemplate.obtain("%1$s"));
+    LangTemplate.clear();
+    assertNotSame(template, LangTemplate.obtain("%1$s"));
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.emoji;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.thunderdog.challegram.tool.EmojiCode;
+import org.thunderdog.challegram.tool.EmojiData;
+import org.thunderdog.challegram.unsorted.Settings;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that {@link EmojiTrie} answers exactly what the string maps answered before it:
+ * exact lookup in the map of {@link EmojiCode#DATA} sequences, then legacy alias, then retries without ZWJ and VS16,
+ * and that {@link Emoji#replaceEmoji(CharSequence, int, int, Emoji.CountLimiter, Emoji.Callback)} finds the same emoji with both.
+ */
+public class EmojiTrieTest {
+  private final Map<String, EmojiInfo> infos = Emoji.newEmojiInfos();
+  private final Map<String, String> aliases = EmojiData.instance().getEmojiAliases();
+  private final EmojiTrie trie = new EmojiTrie(infos, aliases);
+
+  // Previous Emoji.getEmojiInfo, before the trie
+  private EmojiInfo getEmojiInfo (String code, boolean allowRetry) {
+    if (code.isEmpty()) {
+      return null;
+    }
+    EmojiInfo info = infos.get(code);
+    if (info == null) {
+      String newCode = aliases.get(code);
+      if (newCode != null) {
+        code = newCode;
+        info = infos.get(code);
+      }
+    }
+    if (info == null && allowRetry) {
+      char lastChar = code.charAt(code.length() - 1);
+      if (lastChar == '\u200D' || lastChar == '\uFE0F') {
+        return getEmojiInfo(code.substring(0, code.length() - 1), true);
+      }
+      if (code.length() == 3 && code.charAt(1) == '\uFE0F') {
+        return getEmojiInfo(Character.toString(code.charAt(0)) + code.charAt(2), true);
+      }
+    }
+    return info;
+  }
+
+  // Previous component fallback of Emoji.replaceEmoji: shortens the component until it is known
+  private int findLongestPrefix (String code, int start, int end) {
+    for (int length = end - start; length > 0; length--) {
+      if (getEmojiInfo(code.substring(start, start + length), false) != null) {
+        return length;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Lookups that {@link Emoji#replaceEmoji(CharSequence, int, int, Emoji.CountLimiter, Emoji.Callback)} made before the trie.
+   */
+  private final class MapLookup extends EmojiTrie {
+    MapLookup () {
+      super(infos, aliases);
+    }
+
+    @Override
+    public EmojiInfo find (CharSequence cs, int start, int end) {
+      return getEmojiInfo(cs.subSequence(start, end).toString(), false);
+    }
+
+    @Override
+    public int findLongestPrefix (CharSequence cs, int start, int end) {
+      return EmojiTrieTest.this.findLongestPrefix(cs.toString(), start, end);
+    }
+  }
+
+  private Set<String> allSequences () {
+    Set<String> sequences = new LinkedHashSet<>();
+    for (String[] section : EmojiCode.DATA) {
+      for (String emoji : section) {
+        sequences.add(emoji);
+      }
+    }
+    for (Map.Entry<String, String> alias : aliases.entrySet()) {
+      sequences.add(alias.getKey());
+      sequences.add(alias.getValue());
+    }
+    return sequences;
+  }
+
+  private static List<String> variantsOf (String emoji) {
+    List<String> variants = new ArrayList<>();
+    variants.add(emoji);
+    variants.add(emoji + '\uFE0F');
+    variants.add(emoji + '\u200D');
+    variants.add(emoji + "\uFE0F\u200D");
+    variants.add(emoji.replace("\uFE0F", ""));
+    if (emoji.length() == 2) {
+      variants.add(Character.toString(emoji.charAt(0)) + '\uFE0F' + emoji.charAt(1));
+    }
+    return variants;
+  }
+
+  @Test
+  public void testAllSequencesAreKnown () {
+    int count = 0;
+    for (String[] section : EmojiCode.DATA) {
+      for (String emoji : section) {
+        assertSame(emoji, infos.get(emoji), trie.find(emoji, 0, emoji.length()));
+        count++;
+      }
+    }
+    assertEquals(EmojiData.getTotalDataCount(), count);
+  }
+
+  @Test
+  public void testExactLookupMatchesMaps () {
+    for (String sequence : allSequences()) {
+      for (String code : variantsOf(sequence)) {
+        assertSame(code, getEmojiInfo(code, false), trie.resolve(code, false));
+      }
+    }
+  }
+
+  @Test
+  public void testRetryMatchesMaps () {
+    for (String sequence : allSequences()) {
+      for (String code : variantsOf(sequence)) {
+        assertSame(code, getEmojiInfo(code, true), trie.resolve(code, true));
+      }
+    }
+  }
+
+  @Test
+  public void testFindWithinText () {
+    for (String sequence : allSequences()) {
+      String text = "a" + sequence + "b";
+      assertSame(sequence, getEmojiInfo(sequence, false), trie.find(text, 1, 1 + sequence.length()));
+    }
+  }
+
+  @Test
+  public void testLongestPrefixMatchesMaps () {
+    List<String> sequences = new ArrayList<>(allSequences());
+    for (int i = 0; i < sequences.size(); i++) {
+      // Sequence followed by the next one and by joiners, the way components of unknown ZWJ sequences look
+      String next = sequences.get((i + 1) % sequences.size());
+      String[] codes = {
+        sequences.get(i),
+        sequences.get(i) + next,
+        sequences.get(i) + '\u200D' + next,
+        sequences.get(i) + "\uFE0F\u200D" + next
+      };
+      for (String code : codes) {
+        for (int start = 0; start < code.length(); start++) {
+          int expectedLength = findLongestPrefix(code, start, code.length());
+          int length = trie.findLongestPrefix(code, start, code.length());
+          assertEquals(code + " at " + start, expectedLength, length);
+          if (length > 0) {
+            assertSame(code + " at " + start, getEmojiInfo(code.substring(start, start + length), false), trie.find(code, start, start + length));
+          }
+        }
+      }
+    }
+  }
+
+  private static final String[] WORDS = {"ok", "lol", "привет", "thanks", "see you", "12", "#tag", "(c)", "a.m."};
+  private static final String[] SKIN_TONES = {"\uD83C\uDFFB", "\uD83C\uDFFC", "\uD83C\uDFFD", "\uD83C\uDFFE", "\uD83C\uDFFF"};
+
+  /**
+   * Chat messages made of words and real emoji, in the forms keyboards and other clients send them:
+   * with or without VS16, with skin tones, next to each other, joined into sequences that don't exist, keycaps and flags.
+   */
+  private List<String> newCorpus (int messageCount, long seed) {
+    Random random = new Random(seed);
+    List<String> sequences = new ArrayList<>(allSequences());
+    List<String> corpus = new ArrayList<>(messageCount);
+    for (int i = 0; i < messageCount; i++) {
+      StringBuilder b = new StringBuilder();
+      int tokenCount = 1 + random.nextInt(12);
+      for (int j = 0; j < tokenCount; j++) {
+        String emoji = sequences.get(random.nextInt(sequences.size()));
+        switch (random.nextInt(10)) {
+          case 0:
+          case 1:
+          case 2:
+            b.append(WORDS[random.nextInt(WORDS.length)]);
+            break;
+          case 3:
+            b.append(emoji.replace("\uFE0F", ""));
+            break;
+          case 4:
+            b.append(emoji).append('\uFE0F');
+            break;
+          case 5:
+            b.append(emoji).append(SKIN_TONES[random.nextInt(SKIN_TONES.length)]);
+            break;
+          case 6:
+            b.append(emoji).append('\u200D').append(sequences.get(random.nextInt(sequences.size())));
+            break;
+          case 7:
+            b.append("0123456789#*".charAt(random.nextInt(12))).append(random.nextBoolean() ? "\uFE0F\u20E3" : "\u20E3");
+            break;
+          case 8:
+            b.append('\uD83C').append((char) (0xDDE6 + random.nextInt(26))).append('\uD83C').append((char) (0xDDE6 + random.nextInt(26)));
+            break;
+          default:
+            b.append(emoji);
+            break;
+        }
+        switch (random.nextInt(4)) {
+          case 0:
+            break;
+          case 1:
+            b.append(", ");
+            break;
+          case 2:
+            b.append('\n');
+            break;
+          default:
+            b.append(' ');
+            break;
+        }
+      }
+      corpus.add(b.toString());
+    }
+    // Every known sequence alone and within text
+    for (String sequence : sequences) {
+      corpus.add(sequence);
+      corpus.add("a " + sequence + "b");
+    }
+    return corpus;
+  }
+
+  private final Map<EmojiInfo, String> sequenceOfInfo = new IdentityHashMap<>();
+
+  private List<String> findSpans (Emoji emoji, String text) {
+    if (sequenceOfInfo.isEmpty()) {
+      for (Map.Entry<String, EmojiInfo> entry : infos.entrySet()) {
+        sequenceOfInfo.put(entry.getValue(), entry.getKey());
+      }
+    }
+    List<String> spans = new ArrayList<>();
+    emoji.replaceEmoji(text, 0, text.length(), null, (input, code, info, position, length) -> {
+      spans.add(position + ".." + (position + length) + " " + code + " -> " + sequenceOfInfo.get(info));
+      return true;
+    });
+    return spans;
+  }
+
+  @Test
+  public void testReplaceEmojiMatchesMaps () {
+    try (MockedStatic<Settings> settings = mockStatic(Settings.class)) {
+      settings.when(Settings::instance).thenReturn(mock(Settings.class));
+      final Emoji emoji = new Emoji(trie), previous = new Emoji(new MapLookup());
+      int spanCount = 0;
+      for (String text : newCorpus(20_000, 1)) {
+        List<String> spans = findSpans(emoji, text);
+        assertEquals(text, findSpans(previous, text), spans);
+        spanCount += spans.size();
+      }
+      assertTrue(Integer.toString(spanCount), spanCount > 20_000);
+    }
+  }
+
+  @Test
+  public void testEmptyAndUnknown () {
+    assertNull(trie.find("", 0, 0));
+    assertNull(trie.resolve("", true));
+    assertEquals(0, trie.findLongestPrefix("abc", 0, 3));
+    assertNull(trie.resolve("abc\uFE0F\u200D", true));
+    assertTrue(trie.getNodeCount() > EmojiData.getTotalDataCount());
+  }
+}
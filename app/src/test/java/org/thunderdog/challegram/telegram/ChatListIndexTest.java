@@ -0,0 +1,166 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.drinkless.tdlib.TdApi;
+import org.junit.Test;
+import org.thunderdog.challegram.Benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+
+import tgx.td.Td;
+
+/**
+ * Compares {@link ChatListIndex} with the sorted {@code ArrayList} that {@link TdlibChatList} used before it.
+ */
+public class ChatListIndexTest {
+  private static final TdApi.ChatList CHAT_LIST = new TdApi.ChatListMain();
+  private static final Comparator<TdlibChatList.Entry> COMPARATOR = TdlibChatList.Entry::compareTo;
+
+  /**
+   * Previous TdlibChatList storage: binary search for insertion, linear search by chat id.
+   */
+  private static final class SortedList {
+    final ArrayList<TdlibChatList.Entry> list = new ArrayList<>();
+
+    int indexOf (long chatId) {
+      int index = 0;
+      for (TdlibChatList.Entry entry : list) {
+        if (entry.chat.id == chatId) {
+          return index;
+        }
+        index++;
+      }
+      return -1;
+    }
+
+    int add (TdlibChatList.Entry entry) {
+      int atIndex = Collections.binarySearch(list, entry, COMPARATOR);
+      if (atIndex >= 0)
+        throw new IllegalStateException();
+      atIndex = atIndex * -1 - 1;
+      list.add(atIndex, entry);
+      return atIndex;
+    }
+
+    int remove (long chatId) {
+      int index = indexOf(chatId);
+      if (index != -1) {
+        list.remove(index);
+      }
+      return index;
+    }
+
+    int reposition (long chatId, TdApi.ChatPosition position) {
+      TdlibChatList.Entry entry = list.remove(indexOf(chatId));
+      Td.copyTo(position, entry.effectivePosition);
+      return add(entry);
+    }
+  }
+
+  private static TdlibChatList.Entry newEntry (long chatId, long order) {
+    TdApi.Chat chat = new TdApi.Chat();
+    chat.id = chatId;
+    return new TdlibChatList.Entry(chat, CHAT_LIST, new TdApi.ChatPosition(CHAT_LIST, order, false, null));
+  }
+
+  private static void checkSameOrder (SortedList expected, ChatListIndex index) {
+    assertEquals(expected.list.size(), index.size());
+    Iterator<TdlibChatList.Entry> it = index.iterator();
+    for (int i = 0; i < expected.list.size(); i++) {
+      long chatId = expected.list.get(i).chat.id;
+      assertEquals(chatId, it.next().chat.id);
+      assertEquals(chatId, index.get(i).chat.id);
+      assertEquals(i, index.indexOf(chatId));
+    }
+    assertTrue(!it.hasNext());
+  }
+
+  @Test
+  public void testMatchesSortedList () {
+    final Random random = new Random(1);
+    final int chatCount = 3000;
+    SortedList expected = new SortedList();
+    ChatListIndex index = new ChatListIndex(COMPARATOR);
+    for (int op = 0; op < 50_000; op++) {
+      // Same chat ids and orders in both, but separate entries, as reposition changes them in place
+      long chatId = 1 + random.nextInt(chatCount);
+      long order = random.nextInt(10) == 0 ? random.nextInt(100) : random.nextInt(1_000_000);
+      boolean isPresent = expected.indexOf(chatId) != -1;
+      assertEquals(isPresent, index.find(chatId) != null);
+      if (!isPresent) {
+        assertEquals(expected.add(newEntry(chatId, order)), index.add(newEntry(chatId, order)));
+      } else if (random.nextInt(4) == 0) {
+        assertEquals(expected.remove(chatId), index.remove(chatId));
+        assertNull(index.find(chatId));
+        assertEquals(-1, index.remove(chatId));
+      } else {
+        TdApi.ChatPosition position = new TdApi.ChatPosition(CHAT_LIST, order, false, null);
+        assertEquals(expected.reposition(chatId, position), index.reposition(chatId, position));
+        assertEquals(order, index.find(chatId).effectivePosition.order);
+      }
+      if (op % 5000 == 0) {
+        checkSameOrder(expected, index);
+      }
+    }
+    checkSameOrder(expected, index);
+  }
+
+  @Test
+  public void testUpdateBenchmark () {
+    Benchmark.assumeEnabled();
+    final int chatCount = 10_000, updateCount = 20_000;
+    final Random random = new Random(chatCount);
+    SortedList list = new SortedList();
+    ChatListIndex index = new ChatListIndex(COMPARATOR);
+    for (long chatId = 1; chatId <= chatCount; chatId++) {
+      long order = random.nextInt(1_000_000);
+      list.add(newEntry(chatId, order));
+      index.add(newEntry(chatId, order));
+    }
+    // New messages move chats to the top, the way updateChatPosition comes during sync
+    long[] chatIds = new long[updateCount];
+    for (int i = 0; i < updateCount; i++) {
+      chatIds[i] = 1 + random.nextInt(chatCount);
+    }
+
+    long listNanos = System.nanoTime();
+    long listSum = 0;
+    for (int i = 0; i < updateCount; i++) {
+      listSum += list.indexOf(chatIds[i]);
+      listSum += list.reposition(chatIds[i], new TdApi.ChatPosition(CHAT_LIST, 1_000_000 + i, false, null));
+    }
+    listNanos = System.nanoTime() - listNanos;
+
+    long indexNanos = System.nanoTime();
+    long indexSum = 0;
+    for (int i = 0; i < updateCount; i++) {
+      indexSum += index.indexOf(chatIds[i]);
+      indexSum += index.reposition(chatIds[i], new TdApi.ChatPosition(CHAT_LIST, 1_000_000 + i, false, null));
+    }
+    indexNanos = System.nanoTime() - indexNanos;
+
+    assertEquals(listSum, indexSum);
+    assertTrue("Index: " + indexNanos + "ns, sorted list: " + listNanos + "ns", indexNanos < listNanos);
+  }
+}
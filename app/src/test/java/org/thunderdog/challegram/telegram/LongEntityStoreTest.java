@@ -0,0 +1,225 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.thunderdog.challegram.Benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks {@link LongEntityStore} against {@link HashMap}, and compares lock-free reads
+ * with the {@code HashMap} guarded by {@code dataLock} that {@link TdlibCache} used before it.
+ */
+public class LongEntityStoreTest {
+  private static final int READER_COUNT = 4;
+
+  private static long newKey (Random random) {
+    // Chat identifiers of users, basic groups and supergroups
+    switch (random.nextInt(3)) {
+      case 0:
+        return 1 + random.nextInt(5000);
+      case 1:
+        return -(1 + random.nextInt(5000));
+      default:
+        return -1000000000000L - random.nextInt(5000);
+    }
+  }
+
+  @Test
+  public void testMatchesHashMap () {
+    final Random random = new Random(1);
+    HashMap<Long, String> expected = new HashMap<>();
+    LongEntityStore<String> store = new LongEntityStore<>();
+    for (int op = 0; op < 200_000; op++) {
+      long key = newKey(random);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(key), store.remove(key));
+      } else {
+        String value = Long.toString(key) + '/' + op;
+        assertEquals(expected.put(key, value), store.put(key, value));
+      }
+      assertEquals(expected.size(), store.size());
+      assertEquals(expected.get(key), store.get(key));
+    }
+    Set<String> values = new HashSet<>();
+    for (String value : store) {
+      assertTrue(values.add(value));
+    }
+    assertEquals(new HashSet<>(expected.values()), values);
+
+    assertNull(store.get(0));
+    assertNull(store.remove(0));
+    store.clear();
+    assertTrue(store.isEmpty());
+    assertTrue(!store.iterator().hasNext());
+  }
+
+  private static void runConcurrently (Runnable writer, List<Runnable> readers) throws Throwable {
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    List<Runnable> tasks = new ArrayList<>(readers);
+    tasks.add(writer);
+    for (Runnable task : tasks) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+          task.run();
+        } catch (Throwable t) {
+          error.compareAndSet(null, t);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (error.get() != null) {
+      throw error.get();
+    }
+  }
+
+  @Test
+  public void testReadsDuringWrites () throws Throwable {
+    final int keyCount = 50_000;
+    final LongEntityStore<Long> store = new LongEntityStore<>();
+    final long[] keys = new long[keyCount];
+    for (int i = 0; i < keyCount; i++) {
+      keys[i] = (i % 2 == 0 ? 1 : -1) * (1 + (long) i * 7919);
+    }
+    final AtomicBoolean writerDone = new AtomicBoolean();
+    Runnable writer = () -> {
+      // Every insertion may rehash while readers look up the same keys
+      for (long key : keys) {
+        store.put(key, key);
+      }
+      writerDone.set(true);
+    };
+    List<Runnable> readers = new ArrayList<>();
+    for (int r = 0; r < READER_COUNT; r++) {
+      final int offset = r;
+      readers.add(() -> {
+        int visibleCount;
+        boolean isComplete;
+        do {
+          // Pass started after the last write must see every key
+          isComplete = writerDone.get();
+          visibleCount = 0;
+          for (int i = offset; i < keyCount; i += READER_COUNT) {
+            Long value = store.get(keys[i]);
+            if (value != null) {
+              assertEquals(keys[i], (long) value);
+              visibleCount++;
+            }
+          }
+        } while (!isComplete);
+        assertEquals((keyCount - offset + READER_COUNT - 1) / READER_COUNT, visibleCount);
+      });
+    }
+    runConcurrently(writer, readers);
+    assertEquals(keyCount, store.size());
+  }
+
+  @Test
+  public void testContentionBenchmark () throws Throwable {
+    Benchmark.assumeEnabled();
+    final int keyCount = 20_000, readCount = 500_000, writeCount = 50_000;
+    final long[] keys = new long[keyCount];
+    final Random random = new Random(keyCount);
+    for (int i = 0; i < keyCount; i++) {
+      keys[i] = newKey(random) * keyCount + i;
+    }
+
+    // Previous TdlibCache storage: every read and write takes dataLock
+    final Object dataLock = new Object();
+    final HashMap<Long, Long> map = new HashMap<>();
+    final LongEntityStore<Long> store = new LongEntityStore<>();
+    for (long key : keys) {
+      map.put(key, key);
+      store.put(key, key);
+    }
+
+    // Updates keep coming on the TDLib thread, while UI and background threads look up chats and users
+    final long[] mapSums = new long[READER_COUNT];
+    long mapNanos = System.nanoTime();
+    List<Runnable> readers = new ArrayList<>();
+    for (int r = 0; r < READER_COUNT; r++) {
+      final int reader = r;
+      readers.add(() -> {
+        long sum = 0;
+        for (int i = 0; i < readCount; i++) {
+          long key = keys[(i * 31 + reader) % keyCount];
+          synchronized (dataLock) {
+            sum += map.get(key);
+          }
+        }
+        mapSums[reader] = sum;
+      });
+    }
+    runConcurrently(() -> {
+      for (int i = 0; i < writeCount; i++) {
+        long key = keys[i % keyCount];
+        synchronized (dataLock) {
+          map.put(key, key);
+        }
+      }
+    }, readers);
+    mapNanos = System.nanoTime() - mapNanos;
+
+    final long[] storeSums = new long[READER_COUNT];
+    long storeNanos = System.nanoTime();
+    readers.clear();
+    for (int r = 0; r < READER_COUNT; r++) {
+      final int reader = r;
+      readers.add(() -> {
+        long sum = 0;
+        for (int i = 0; i < readCount; i++) {
+          sum += store.get(keys[(i * 31 + reader) % keyCount]);
+        }
+        storeSums[reader] = sum;
+      });
+    }
+    runConcurrently(() -> {
+      for (int i = 0; i < writeCount; i++) {
+        long key = keys[i % keyCount];
+        synchronized (dataLock) {
+          store.put(key, key);
+        }
+      }
+    }, readers);
+    storeNanos = System.nanoTime() - storeNanos;
+
+    for (int r = 0; r < READER_COUNT; r++) {
+      assertEquals(mapSums[r], storeSums[r]);
+    }
+    assertEquals(keys.length, store.size());
+    assertTrue("Store: " + storeNanos + "ns, locked map: " + mapNanos + "ns", storeNanos < mapNanos);
+  }
+}
@@ -0,0 +1,408 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.drinkless.tdlib.TdApi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.thunderdog.challegram.core.Background;
+import org.thunderdog.challegram.tool.UI;
+import org.thunderdog.challegram.unsorted.Settings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Simulates bursts of postponed requests, the way scrolling an emoji grid produces them,
+ * on a virtual clock that drives both the UI thread and TDLib responses.
+ */
+public class TdlibDataManagerTest {
+  private static final int MAX_BATCH_SIZE = 200;
+  private static final int MAX_IN_FLIGHT_BATCH_COUNT = 3;
+  private static final long RESPONSE_DELAY_MS = 30;
+  private static final long FRAME_MS = 16;
+  private static final long MAX_COALESCE_DELAY_MS = 50;
+
+  // Virtual time
+
+  private static final class Task implements Comparable<Task> {
+    final long time, sequence;
+    final Runnable act;
+
+    Task (long time, long sequence, Runnable act) {
+      this.time = time;
+      this.sequence = sequence;
+      this.act = act;
+    }
+
+    @Override
+    public int compareTo (Task other) {
+      return time != other.time ? Long.compare(time, other.time) : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+  private long now = 1000, sequence;
+
+  private void post (Runnable act, long delayMs) {
+    tasks.add(new Task(now + delayMs, ++sequence, act));
+  }
+
+  private void cancel (Runnable act) {
+    tasks.removeIf(task -> task.act == act);
+  }
+
+  private void runUntil (long time) {
+    while (!tasks.isEmpty() && tasks.peek().time <= time) {
+      Task task = tasks.poll();
+      now = task.time;
+      task.act.run();
+    }
+    now = Math.max(now, time);
+  }
+
+  private void runAll () {
+    while (!tasks.isEmpty()) {
+      runUntil(tasks.peek().time);
+    }
+  }
+
+  // Manager
+
+  private static final class Entry extends TdlibDataManager.AbstractEntry<Long, TdApi.Ok> {
+    Entry (@NonNull Long key, @Nullable TdApi.Ok value, @Nullable TdApi.Error error) {
+      super(key, value, error);
+    }
+  }
+
+  private static final TdlibDataManager.KeySerializer<Long> KEY_SERIALIZER = new TdlibDataManager.KeySerializer<>() {
+    @Override
+    public long serialize (@NonNull Long key) {
+      return key;
+    }
+
+    @NonNull
+    @Override
+    public Long deserialize (long serializedKey) {
+      return serializedKey;
+    }
+  };
+
+  private final class Manager extends TdlibDataManager<Long, TdApi.Ok, Entry> {
+    final Set<Long> notFoundKeys = new TreeSet<>();
+    final Set<Long> requestedKeys = new TreeSet<>();
+    final List<Integer> batchSizes = new ArrayList<>();
+    final List<Long> firstKeys = new ArrayList<>();
+    final Map<Long, Long> postponeTimes = new HashMap<>();
+    long maxLatency;
+    int inFlightCount, maxInFlightCount;
+
+    Manager (Tdlib tdlib) {
+      super(tdlib);
+    }
+
+    Manager (Tdlib tdlib, String persistentKeysKey) {
+      super(tdlib, Integer.MAX_VALUE, persistentKeysKey, KEY_SERIALIZER);
+    }
+
+    @Override
+    protected Entry newEntry (@NonNull Long key, @Nullable TdApi.Ok value, @Nullable TdApi.Error error) {
+      return new Entry(key, value, error);
+    }
+
+    @Override
+    protected int getMaxBatchSize () {
+      return MAX_BATCH_SIZE;
+    }
+
+    @Override
+    protected int getMaxInFlightBatchCount () {
+      return MAX_IN_FLIGHT_BATCH_COUNT;
+    }
+
+    void postpone (long key, Watcher<Long, TdApi.Ok, Entry> watcher) {
+      if (findOrPostponeRequest(key, watcher, true) == null && !postponeTimes.containsKey(key)) {
+        postponeTimes.put(key, now);
+      }
+    }
+
+    @Override
+    protected void requestData (int contextId, Collection<Long> keysToRequest) {
+      final List<Long> keys = new ArrayList<>(keysToRequest);
+      batchSizes.add(keys.size());
+      firstKeys.add(keys.get(0));
+      requestedKeys.addAll(keys);
+      for (Long key : keys) {
+        Long postponeTime = postponeTimes.remove(key);
+        if (postponeTime != null) {
+          maxLatency = Math.max(maxLatency, now - postponeTime);
+        }
+      }
+      maxInFlightCount = Math.max(maxInFlightCount, ++inFlightCount);
+      post(() -> {
+        inFlightCount--;
+        for (Long key : keys) {
+          processData(contextId, key, notFoundKeys.contains(key) ? null : new TdApi.Ok());
+        }
+      }, RESPONSE_DELAY_MS);
+    }
+  }
+
+  private MockedStatic<UI> ui;
+  private MockedStatic<SystemClock> clock;
+  private MockedStatic<Background> background;
+  private MockedStatic<Settings> settings;
+  private final Map<String, long[]> storedArrays = new HashMap<>();
+  private Tdlib tdlib;
+  private Manager manager;
+  private final Map<Long, Integer> loadCounts = new HashMap<>();
+  private final TdlibDataManager.Watcher<Long, TdApi.Ok, Entry> watcher = (context, entry) -> {
+    Integer count = loadCounts.get(entry.key);
+    loadCounts.put(entry.key, count != null ? count + 1 : 1);
+  };
+
+  @Before
+  public void setUp () {
+    ui = mockStatic(UI.class);
+    ui.when(() -> UI.post(any(Runnable.class), anyLong())).thenAnswer(invocation -> {
+      post(invocation.getArgument(0), invocation.getArgument(1));
+      return null;
+    });
+    ui.when(() -> UI.cancel(any(Runnable.class))).thenAnswer(invocation -> {
+      cancel(invocation.getArgument(0));
+      return null;
+    });
+    clock = mockStatic(SystemClock.class);
+    clock.when(SystemClock::uptimeMillis).thenAnswer(invocation -> now);
+
+    Background backgroundThread = mock(Background.class);
+    doAnswer(invocation -> {
+      post(invocation.getArgument(0), invocation.<Integer>getArgument(1));
+      return null;
+    }).when(backgroundThread).post(any(Runnable.class), anyInt());
+    background = mockStatic(Background.class);
+    background.when(Background::instance).thenReturn(backgroundThread);
+
+    Settings prefs = mock(Settings.class);
+    when(prefs.getLongArray(anyString())).thenAnswer(invocation -> storedArrays.get((String) invocation.getArgument(0)));
+    doAnswer(invocation -> {
+      storedArrays.put(invocation.getArgument(0), invocation.getArgument(1));
+      return null;
+    }).when(prefs).putLongArray(anyString(), any(long[].class));
+    settings = mockStatic(Settings.class);
+    settings.when(Settings::instance).thenReturn(prefs);
+
+    tdlib = mock(Tdlib.class);
+    when(tdlib.listeners()).thenReturn(mock(TdlibListeners.class));
+    manager = new Manager(tdlib);
+  }
+
+  @After
+  public void tearDown () {
+    settings.close();
+    background.close();
+    clock.close();
+    ui.close();
+  }
+
+  private void checkAllLoadedOnce (int keyCount) {
+    assertEquals(keyCount, loadCounts.size());
+    for (Map.Entry<Long, Integer> entry : loadCounts.entrySet()) {
+      assertEquals("Key " + entry.getKey() + " loaded more than once", 1, (int) entry.getValue());
+    }
+    assertTrue(manager.postponeTimes.isEmpty());
+    int requestedCount = 0;
+    for (int batchSize : manager.batchSizes) {
+      assertTrue("Batch of " + batchSize + " keys", batchSize > 0 && batchSize <= MAX_BATCH_SIZE);
+      requestedCount += batchSize;
+    }
+    assertEquals(keyCount, requestedCount);
+    assertTrue("In flight: " + manager.maxInFlightCount, manager.maxInFlightCount <= MAX_IN_FLIGHT_BATCH_COUNT);
+  }
+
+  /**
+   * Scrolling: each frame binds a row of emoji, and each bound view postpones its key.
+   * Keys of a frame must go out together, instead of one request per key.
+   */
+  @Test
+  public void testScrollingBurst () {
+    final int keyCount = 5000, keysPerFrame = 40;
+    long key = 0;
+    while (key < keyCount) {
+      for (int i = 0; i < keysPerFrame; i++) {
+        manager.postpone(++key, watcher);
+        manager.performPostponedRequestsDelayed();
+      }
+      runUntil(now + FRAME_MS);
+    }
+    runAll();
+
+    checkAllLoadedOnce(keyCount);
+    final int frameCount = keyCount / keysPerFrame;
+    assertTrue("Requests: " + manager.batchSizes.size(), manager.batchSizes.size() <= frameCount);
+    assertTrue("Latency: " + manager.maxLatency, manager.maxLatency <= MAX_COALESCE_DELAY_MS);
+  }
+
+  /**
+   * Keys keep coming faster than the coalescing delay: they must still be sent within the max wait time.
+   */
+  @Test
+  public void testSteadyTrickle () {
+    final int keyCount = 3000;
+    for (long key = 1; key <= keyCount; key++) {
+      manager.postpone(key, watcher);
+      manager.performPostponedRequestsDelayed();
+      runUntil(now + 2);
+    }
+    runAll();
+
+    checkAllLoadedOnce(keyCount);
+    assertTrue("Latency: " + manager.maxLatency, manager.maxLatency <= MAX_COALESCE_DELAY_MS);
+    // 2ms apart, one flush per max wait time at most
+    assertTrue("Requests: " + manager.batchSizes.size(), manager.batchSizes.size() <= keyCount * 2 / MAX_COALESCE_DELAY_MS + 1);
+  }
+
+  /**
+   * Whole grid is bound at once: full batches go out immediately, the rest waits for in-flight batches.
+   */
+  @Test
+  public void testFullGridAtOnce () {
+    final int keyCount = 3000;
+    for (long key = 1; key <= keyCount; key++) {
+      manager.postpone(key, watcher);
+      manager.performPostponedRequestsDelayed();
+    }
+    runAll();
+
+    checkAllLoadedOnce(keyCount);
+    assertEquals((keyCount + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE, manager.batchSizes.size());
+    assertEquals(MAX_IN_FLIGHT_BATCH_COUNT, manager.maxInFlightCount);
+  }
+
+  /**
+   * Keys needed on screen go first, ahead of keys nobody waits for.
+   */
+  @Test
+  public void testWatchedKeysFirst () {
+    final int unwatchedCount = 1000, watchedCount = 100;
+    for (long key = 1; key <= unwatchedCount; key++) {
+      manager.postpone(key, null);
+    }
+    for (long key = unwatchedCount + 1; key <= unwatchedCount + watchedCount; key++) {
+      manager.postpone(key, watcher);
+    }
+    manager.performPostponedRequestsDelayed();
+    runAll();
+
+    assertEquals(watchedCount, loadCounts.size());
+    assertEquals(unwatchedCount + 1, (long) manager.firstKeys.get(0));
+    int requestedCount = 0;
+    for (int batchSize : manager.batchSizes) {
+      requestedCount += batchSize;
+    }
+    assertEquals(unwatchedCount + watchedCount, requestedCount);
+    assertTrue(manager.maxInFlightCount <= MAX_IN_FLIGHT_BATCH_COUNT);
+  }
+
+  /**
+   * A view that forgets its key before the flush doesn't hold back others, and its key is still requested.
+   */
+  @Test
+  public void testForgottenWatchers () {
+    final int keyCount = 1000;
+    for (long key = 1; key <= keyCount; key++) {
+      manager.postpone(key, watcher);
+    }
+    for (long key = 1; key <= keyCount; key += 2) {
+      manager.forgetWatcher(key, watcher);
+    }
+    manager.performPostponedRequestsDelayed();
+    runAll();
+
+    assertEquals(2L, (long) manager.firstKeys.get(0));
+    int requestedCount = 0;
+    for (int batchSize : manager.batchSizes) {
+      requestedCount += batchSize;
+    }
+    assertEquals(keyCount, requestedCount);
+  }
+
+  /**
+   * Keys that were not found are answered from the remembered result, in the same session and after restart.
+   * Found keys are requested again, only when they are needed.
+   */
+  @Test
+  public void testNotFoundKeysAreNotRequestedAgain () {
+    final int keyCount = 500;
+    manager = new Manager(tdlib, "test_not_found");
+    for (long key = 1; key <= keyCount; key++) {
+      if (key % 5 == 0) {
+        manager.notFoundKeys.add(key);
+      }
+      manager.postpone(key, watcher);
+    }
+    manager.performPostponedRequests();
+    runAll();
+    assertEquals(keyCount, manager.requestedKeys.size());
+
+    for (long key : manager.notFoundKeys) {
+      Entry entry = manager.find(key);
+      assertNotNull(entry);
+      assertTrue(entry.isNotFound());
+    }
+
+    Manager restarted = new Manager(tdlib, "test_not_found");
+    restarted.onPerformStartup(false);
+    for (long key = 1; key <= keyCount; key++) {
+      Entry entry = restarted.findOrPostponeRequest(key, watcher, true);
+      assertEquals(Long.toString(key), key % 5 == 0, entry != null && entry.isNotFound());
+    }
+    // Nothing is requested until it's needed
+    assertTrue(restarted.requestedKeys.isEmpty());
+    restarted.performPostponedRequests();
+    runAll();
+
+    assertEquals(keyCount - manager.notFoundKeys.size(), restarted.requestedKeys.size());
+    for (long key : manager.notFoundKeys) {
+      assertTrue(!restarted.requestedKeys.contains(key));
+    }
+    assertEquals(manager.notFoundKeys.size(), restarted.getStats().restoredCount);
+  }
+}
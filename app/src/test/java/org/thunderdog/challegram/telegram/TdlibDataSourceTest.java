@@ -0,0 +1,295 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import android.net.Uri;
+
+import androidx.media3.common.C;
+import androidx.media3.datasource.DataSpec;
+
+import org.drinkless.tdlib.Client;
+import org.drinkless.tdlib.TdApi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.thunderdog.challegram.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads through {@link TdlibDataSource} while a fake downloader writes the file and sends {@link TdApi.UpdateFile},
+ * the way TDLib does it during streaming.
+ */
+public class TdlibDataSourceTest {
+  private static final int ACCOUNT_ID = 0;
+  private static final int FILE_ID = 1;
+  private static final int FILE_SIZE = 1024 * 1024;
+  private static final int READ_AHEAD_BUFFER_SIZE = 128 * 1024;
+  private static final int READ_SIZE = 4096;
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  /**
+   * Writes the file sequentially from {@link #downloadOffset} and reports progress to the data source.
+   */
+  private final class FakeDownloader {
+    private final RandomAccessFile out;
+    private long downloadOffset, downloadedPrefixSize;
+
+    FakeDownloader () throws IOException {
+      out = new RandomAccessFile(path, "rw");
+    }
+
+    synchronized TdApi.File snapshot () {
+      TdApi.File file = new TdApi.File();
+      file.id = FILE_ID;
+      file.size = FILE_SIZE;
+      file.expectedSize = FILE_SIZE;
+      file.local = new TdApi.LocalFile();
+      file.local.path = path.getPath();
+      file.local.canBeDownloaded = true;
+      file.local.downloadOffset = downloadOffset;
+      file.local.downloadedPrefixSize = downloadedPrefixSize;
+      file.local.isDownloadingCompleted = downloadOffset == 0 && downloadedPrefixSize == FILE_SIZE;
+      file.local.isDownloadingActive = !file.local.isDownloadingCompleted;
+      file.local.downloadedSize = downloadedPrefixSize;
+      file.remote = new TdApi.RemoteFile();
+      return file;
+    }
+
+    synchronized long getDownloadedPrefixSize (long offset) {
+      if (offset < downloadOffset) {
+        return 0;
+      }
+      return Math.max(0, downloadOffset + downloadedPrefixSize - offset);
+    }
+
+    void write (int length) throws IOException {
+      synchronized (this) {
+        final long position = downloadOffset + downloadedPrefixSize;
+        length = (int) Math.min(length, FILE_SIZE - position);
+        out.seek(position);
+        out.write(data, (int) position, length);
+        downloadedPrefixSize += length;
+      }
+      FileUpdateListener listener = TdlibDataSourceTest.this.listener.get();
+      if (listener != null) {
+        listener.onUpdateFile(new TdApi.UpdateFile(snapshot()));
+      }
+    }
+
+    void writeAll () throws IOException {
+      while (getDownloadedPrefixSize(0) < FILE_SIZE) {
+        write(CHUNK_SIZE);
+      }
+    }
+
+    void close () throws IOException {
+      out.close();
+    }
+  }
+
+  private final byte[] data = new byte[FILE_SIZE];
+  private final AtomicReference<FileUpdateListener> listener = new AtomicReference<>();
+  private File path;
+  private FakeDownloader downloader;
+  private MockedStatic<TdlibManager> tdlibManager;
+  private MockedStatic<Log> log;
+
+  @Before
+  public void setUp () throws IOException {
+    new Random(FILE_SIZE).nextBytes(data);
+    path = File.createTempFile("tdlib", ".mp4");
+    downloader = new FakeDownloader();
+
+    Tdlib tdlib = mock(Tdlib.class);
+    TdlibClient client = mock(TdlibClient.class);
+    TdlibListeners listeners = mock(TdlibListeners.class);
+    when(tdlib.client()).thenReturn(client);
+    when(tdlib.listeners()).thenReturn(listeners);
+    when(tdlib.files()).thenReturn(mock(TdlibFilesManager.class));
+    doAnswer(invocation -> {
+      ((Client.ResultHandler) invocation.getArgument(1)).onResult(downloader.snapshot());
+      return null;
+    }).when(client).send(any(TdApi.GetFile.class), any());
+    doAnswer(invocation -> {
+      listener.set(invocation.getArgument(1));
+      return null;
+    }).when(listeners).addFileListener(anyInt(), any());
+    when(tdlib.clientExecuteT(any(TdApi.GetFileDownloadedPrefixSize.class), anyLong(), anyBoolean())).thenAnswer(invocation -> {
+      TdApi.GetFileDownloadedPrefixSize function = invocation.getArgument(0);
+      return new TdApi.FileDownloadedPrefixSize(downloader.getDownloadedPrefixSize(function.offset));
+    });
+
+    tdlibManager = mockStatic(TdlibManager.class);
+    tdlibManager.when(() -> TdlibManager.getTdlib(ACCOUNT_ID)).thenReturn(tdlib);
+    // Log would load native libraries
+    log = mockStatic(Log.class);
+  }
+
+  @After
+  public void tearDown () throws IOException {
+    log.close();
+    tdlibManager.close();
+    downloader.close();
+    //noinspection ResultOfMethodCallIgnored
+    path.delete();
+  }
+
+  private static DataSpec newDataSpec (long position) {
+    Uri uri = mock(Uri.class);
+    when(uri.getScheme()).thenReturn("tg");
+    when(uri.getAuthority()).thenReturn("file");
+    when(uri.getQueryParameter("account")).thenReturn(Integer.toString(ACCOUNT_ID));
+    when(uri.getQueryParameter("id")).thenReturn(Integer.toString(FILE_ID));
+    return new DataSpec.Builder().setUri(uri).setPosition(position).build();
+  }
+
+  /**
+   * Reads from {@code position} until the end of the file, the way the player does.
+   */
+  private static byte[] readToEnd (TdlibDataSource dataSource, long position) throws IOException {
+    byte[] result = new byte[(int) (FILE_SIZE - position)];
+    int offset = 0;
+    do {
+      int readCount = dataSource.read(result, offset, Math.min(READ_SIZE, result.length - offset));
+      if (readCount == C.RESULT_END_OF_INPUT) {
+        break;
+      }
+      offset += readCount;
+    } while (offset < result.length);
+    assertEquals(result.length, offset);
+    assertEquals(C.RESULT_END_OF_INPUT, dataSource.read(new byte[READ_SIZE], 0, READ_SIZE));
+    return result;
+  }
+
+  /**
+   * Downloaded file is read from disk in blocks of the read-ahead buffer, and small reads are served from memory.
+   */
+  @Test
+  public void testReadAheadOfDownloadedFile () throws IOException {
+    downloader.writeAll();
+
+    TdlibDataSource dataSource = new TdlibDataSource();
+    assertEquals(FILE_SIZE, dataSource.open(newDataSpec(0)));
+    assertArrayEquals(data, readToEnd(dataSource, 0));
+
+    TdlibDataSource.Stats stats = dataSource.getStats();
+    assertEquals(FILE_SIZE / READ_AHEAD_BUFFER_SIZE, stats.getFileReadCount());
+    assertEquals(FILE_SIZE / READ_SIZE, stats.getReadCount());
+    assertEquals(stats.getReadCount() - stats.getFileReadCount(), stats.getBufferedReadCount());
+    assertEquals(0, stats.getStallCount());
+    dataSource.close();
+  }
+
+  /**
+   * Reader waits far ahead of the downloaded prefix: progress that doesn't reach the awaited offset must not wake it up.
+   */
+  @Test
+  public void testWakeUpAtAwaitedOffset () throws Throwable {
+    final long position = FILE_SIZE / 2;
+    final TdlibDataSource dataSource = new TdlibDataSource();
+    dataSource.open(newDataSpec(position));
+
+    final byte[] buffer = new byte[READ_SIZE];
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final int[] readCount = new int[1];
+    Thread reader = new Thread(() -> {
+      try {
+        readCount[0] = dataSource.read(buffer, 0, buffer.length);
+      } catch (Throwable t) {
+        error.set(t);
+      }
+    });
+    reader.start();
+    while (reader.getState() != Thread.State.WAITING) {
+      assertTrue(reader.isAlive());
+      Thread.yield();
+    }
+
+    // Whole first half, reported in small chunks, leaving reader time to wake up if it was woken
+    while (downloader.getDownloadedPrefixSize(0) < position) {
+      downloader.write(CHUNK_SIZE);
+      Thread.sleep(2);
+    }
+    assertEquals(Thread.State.WAITING, reader.getState());
+    downloader.write(CHUNK_SIZE);
+    reader.join();
+
+    if (error.get() != null) {
+      throw error.get();
+    }
+    assertEquals(READ_SIZE, readCount[0]);
+    assertArrayEquals(Arrays.copyOfRange(data, (int) position, (int) position + READ_SIZE), buffer);
+    assertEquals(1, dataSource.getStats().getStallCount());
+    dataSource.close();
+  }
+
+  /**
+   * Player reads while the file is still being downloaded: every read returns downloaded bytes only,
+   * and reader wakes up no more often than the download progresses.
+   */
+  @Test
+  public void testStreamingWhileDownloading () throws Throwable {
+    final TdlibDataSource dataSource = new TdlibDataSource();
+    dataSource.open(newDataSpec(0));
+
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread writer = new Thread(() -> {
+      try {
+        while (downloader.getDownloadedPrefixSize(0) < FILE_SIZE) {
+          downloader.write(CHUNK_SIZE);
+          Thread.sleep(1);
+        }
+      } catch (Throwable t) {
+        error.set(t);
+      }
+    });
+    writer.start();
+    byte[] result = readToEnd(dataSource, 0);
+    writer.join();
+
+    if (error.get() != null) {
+      throw error.get();
+    }
+    assertArrayEquals(data, result);
+    TdlibDataSource.Stats stats = dataSource.getStats();
+    assertTrue(stats.toString(), stats.getStallCount() <= FILE_SIZE / CHUNK_SIZE);
+    assertTrue(stats.toString(), stats.getBufferedReadCount() > 0);
+    dataSource.close();
+
+    // Stats belong to the opened file, and start over on the next open
+    dataSource.open(newDataSpec(0));
+    assertEquals(0, dataSource.getStats().getReadCount());
+    dataSource.close();
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.drinkless.tdlib.TdApi;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TdlibFileStateRegistryTest {
+  private static final int READER_COUNT = 2;
+  private static final int FILE_COUNT = 20_000;
+  private static final int ROUNDS = 20;
+
+  private static TdApi.File newFile (int fileId, long downloadedSize) {
+    TdApi.File file = new TdApi.File();
+    file.id = fileId;
+    file.size = Long.MAX_VALUE;
+    file.local = new TdApi.LocalFile();
+    file.local.downloadedSize = downloadedSize;
+    file.remote = new TdApi.RemoteFile();
+    return file;
+  }
+
+  private static void checkState (int fileId, TdlibFileStateRegistry.State state) {
+    if (state.file != null) {
+      assertEquals("State of file " + fileId + " holds another file", fileId, state.file.id);
+    }
+    assertTrue("Unknown operation " + state.operation + " of file " + fileId, state.operation >= 0 && state.operation <= 2);
+  }
+
+  /**
+   * Single writer, as in TdlibFilesManager, churns files through start, progress and removal,
+   * so most entries become empty and get dropped by resizes, while readers look up files without locks.
+   */
+  @Test
+  public void testReadsDuringWrites () throws Throwable {
+    final TdlibFileStateRegistry registry = new TdlibFileStateRegistry();
+    final int[] expectedOperations = new int[FILE_COUNT];
+    final long[] expectedProgress = new long[FILE_COUNT];
+    final AtomicBoolean writerDone = new AtomicBoolean();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    List<Thread> readers = new ArrayList<>();
+    for (int readerIndex = 0; readerIndex < READER_COUNT; readerIndex++) {
+      final int reader = readerIndex;
+      Thread thread = new Thread(() -> {
+        try {
+          Random random = new Random(-reader);
+          do {
+            if (reader == 0) {
+              registry.forEach(TdlibFileStateRegistryTest::checkState);
+            } else {
+              for (int i = 0; i < 1000; i++) {
+                int fileId = 1 + random.nextInt(FILE_COUNT);
+                checkState(fileId, registry.get(fileId));
+              }
+            }
+          } while (!writerDone.get());
+        } catch (Throwable t) {
+          error.compareAndSet(null, t);
+        }
+      });
+      thread.start();
+      readers.add(thread);
+    }
+
+    try {
+      Random random = new Random(1);
+      for (int round = 0; round < ROUNDS; round++) {
+        for (int i = 0; i < FILE_COUNT; i++) {
+          final int fileId = 1 + i;
+          switch (random.nextInt(4)) {
+            case 0: {
+              int operation = 1 + random.nextInt(2);
+              registry.setOperation(fileId, operation);
+              expectedOperations[i] = operation;
+              break;
+            }
+            case 1: {
+              long progress = 1 + random.nextInt(1_000_000);
+              registry.setFile(fileId, newFile(fileId, progress));
+              expectedProgress[i] = progress;
+              break;
+            }
+            default: {
+              registry.remove(fileId);
+              expectedOperations[i] = 0;
+              expectedProgress[i] = 0;
+              break;
+            }
+          }
+          TdlibFileStateRegistry.State state = registry.get(fileId);
+          assertEquals("Lost operation of file " + fileId, expectedOperations[i], state.operation);
+          assertEquals("Lost progress of file " + fileId, expectedProgress[i], state.file != null ? state.file.local.downloadedSize : 0);
+        }
+      }
+    } finally {
+      writerDone.set(true);
+      for (Thread thread : readers) {
+        thread.join();
+      }
+    }
+    if (error.get() != null) {
+      throw error.get();
+    }
+
+    for (int i = 0; i < FILE_COUNT; i++) {
+      TdlibFileStateRegistry.State state = registry.get(i + 1);
+      assertEquals(expectedOperations[i], state.operation);
+      assertEquals(expectedProgress[i], state.file != null ? state.file.local.downloadedSize : 0);
+    }
+  }
+
+  @Test
+  public void testRemovalDropsEntries () {
+    final TdlibFileStateRegistry registry = new TdlibFileStateRegistry();
+    for (int fileId = 1; fileId <= 100_000; fileId++) {
+      registry.setOperation(fileId, 1);
+      registry.setFile(fileId, newFile(fileId, fileId));
+      registry.remove(fileId);
+    }
+    // Removing unknown file doesn't add anything
+    registry.remove(200_000);
+    final int[] visited = new int[1];
+    registry.forEach((fileId, state) -> visited[0]++);
+    assertEquals(0, visited[0]);
+    assertNull(registry.get(100_000).file);
+    // Empty entries are dropped on resize, so table stays small instead of holding every file ever seen
+    assertTrue(registry.toString(), registry.toString().contains("/64,"));
+  }
+}
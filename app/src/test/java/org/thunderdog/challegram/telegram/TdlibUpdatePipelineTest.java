@@ -0,0 +1,184 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.drinkless.tdlib.TdApi;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays recorded update streams through {@link TdlibUpdatePipeline#replay} and checks what reaches the sink.
+ */
+public class TdlibUpdatePipelineTest {
+  private static final String BATCH_STARTED = "[", BATCH_FINISHED = "]";
+
+  /**
+   * Records processed updates and batch boundaries in order.
+   */
+  private static final class RecordingSink implements TdlibUpdatePipeline.Sink {
+    final List<Object> events = new ArrayList<>();
+
+    @Override
+    public void processUpdate (TdApi.Update update) {
+      events.add(update);
+    }
+
+    @Override
+    public void onBatchStarted () {
+      events.add(BATCH_STARTED);
+    }
+
+    @Override
+    public void onBatchFinished () {
+      events.add(BATCH_FINISHED);
+    }
+  }
+
+  private static TdApi.UpdateUserStatus userStatus (long userId) {
+    TdApi.UpdateUserStatus update = new TdApi.UpdateUserStatus();
+    update.userId = userId;
+    update.status = new TdApi.UserStatusOnline();
+    return update;
+  }
+
+  private static TdApi.UpdateChatReadInbox readInbox (long chatId, int unreadCount) {
+    TdApi.UpdateChatReadInbox update = new TdApi.UpdateChatReadInbox();
+    update.chatId = chatId;
+    update.unreadCount = unreadCount;
+    return update;
+  }
+
+  private static TdApi.UpdateChatTitle chatTitle (long chatId) {
+    TdApi.UpdateChatTitle update = new TdApi.UpdateChatTitle();
+    update.chatId = chatId;
+    update.title = "Chat " + chatId;
+    return update;
+  }
+
+  @Test
+  public void testCoalescedUpdatesKeepOrderAroundBarriers () {
+    TdApi.Update status1 = userStatus(1), read1 = readInbox(10, 5), status2 = userStatus(1), read2 = readInbox(11, 1);
+    TdApi.Update title = chatTitle(10);
+    TdApi.Update status3 = userStatus(1), read3 = readInbox(10, 0);
+    RecordingSink sink = new RecordingSink();
+    TdlibUpdatePipeline.Stats stats = TdlibUpdatePipeline.replay(Arrays.asList(
+      status1, read1, status2, read2, title, status3, read3
+    ), sink);
+
+    // Newer status of the same user goes after updates that arrived before it, and never crosses the barrier
+    assertEquals(Arrays.asList(
+      BATCH_STARTED, read1, status2, read2, BATCH_FINISHED,
+      title,
+      BATCH_STARTED, status3, read3, BATCH_FINISHED
+    ), sink.events);
+    assertEquals(7, stats.getReceivedCount());
+    assertEquals(1, stats.getCoalescedCount());
+    assertEquals(2, stats.getBatchCount());
+    assertEquals(3, stats.getMaxBatchSize());
+  }
+
+  @Test
+  public void testBarrierFlushesEverythingPending () {
+    List<TdApi.Update> updates = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      updates.add(userStatus(i));
+      updates.add(readInbox(i, i));
+    }
+    TdApi.Update title = chatTitle(1);
+    updates.add(title);
+    RecordingSink sink = new RecordingSink();
+    TdlibUpdatePipeline.Stats stats = TdlibUpdatePipeline.replay(updates, sink);
+
+    List<Object> expected = new ArrayList<>();
+    expected.add(BATCH_STARTED);
+    expected.addAll(updates.subList(0, updates.size() - 1));
+    expected.add(BATCH_FINISHED);
+    expected.add(title);
+    assertEquals(expected, sink.events);
+    assertEquals(0, stats.getCoalescedCount());
+    assertEquals(1, stats.getBatchCount());
+
+    // Barriers alone are never held
+    sink = new RecordingSink();
+    TdApi.Update title1 = chatTitle(1), title2 = chatTitle(1);
+    stats = TdlibUpdatePipeline.replay(Arrays.asList(title1, title2), sink);
+    assertEquals(Arrays.asList(title1, title2), sink.events);
+    assertEquals(0, stats.getBatchCount());
+  }
+
+  @Test
+  public void testMaxBatchSize () {
+    final int extraCount = 10;
+    List<TdApi.Update> updates = new ArrayList<>();
+    for (int i = 0; i < TdlibUpdatePipeline.MAX_BATCH_SIZE + extraCount; i++) {
+      updates.add(userStatus(i));
+    }
+    RecordingSink sink = new RecordingSink();
+    TdlibUpdatePipeline.Stats stats = TdlibUpdatePipeline.replay(updates, sink);
+
+    assertEquals(2, stats.getBatchCount());
+    assertEquals(TdlibUpdatePipeline.MAX_BATCH_SIZE, stats.getMaxBatchSize());
+    assertSame(BATCH_STARTED, sink.events.get(0));
+    assertSame(BATCH_FINISHED, sink.events.get(TdlibUpdatePipeline.MAX_BATCH_SIZE + 1));
+    assertSame(BATCH_STARTED, sink.events.get(TdlibUpdatePipeline.MAX_BATCH_SIZE + 2));
+    assertEquals(TdlibUpdatePipeline.MAX_BATCH_SIZE + extraCount + 4, sink.events.size());
+    for (int i = 0; i < updates.size(); i++) {
+      int eventIndex = i < TdlibUpdatePipeline.MAX_BATCH_SIZE ? i + 1 : i + 3;
+      assertSame(updates.get(i), sink.events.get(eventIndex));
+    }
+  }
+
+  @Test
+  public void testWindowExpiration () {
+    TdApi.Update status1 = userStatus(1), status2 = userStatus(2), status3 = userStatus(3), status4 = userStatus(4);
+    final List<TdApi.Update> updates = Arrays.asList(status1, status2, status3, status4);
+    RecordingSink sink = new RecordingSink();
+    // Third update arrives after the window of the first one has expired
+    TdlibUpdatePipeline.Stats stats = TdlibUpdatePipeline.replay(() -> new Iterator<TdApi.Update>() {
+      private int index;
+
+      @Override
+      public boolean hasNext () {
+        return index < updates.size();
+      }
+
+      @Override
+      public TdApi.Update next () {
+        if (index == 2) {
+          try {
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(TdlibUpdatePipeline.WINDOW_NANOS) + 5);
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+        }
+        return updates.get(index++);
+      }
+    }, sink);
+
+    assertEquals(Arrays.asList(
+      BATCH_STARTED, status1, status2, status3, BATCH_FINISHED,
+      BATCH_STARTED, status4, BATCH_FINISHED
+    ), sink.events);
+    assertEquals(2, stats.getBatchCount());
+  }
+}
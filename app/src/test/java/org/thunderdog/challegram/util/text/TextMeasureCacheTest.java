@@ -0,0 +1,248 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import android.graphics.Paint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.thunderdog.challegram.U;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures message-like texts word by word, the way {@link Text} does, through {@link TextMeasureCache}
+ * and directly through {@link U#measureText(CharSequence, int, int, Paint)}, which is replaced by a synthetic width
+ * that counts calls.
+ */
+public class TextMeasureCacheTest {
+  // STRIPE_COUNT * MAX_ENTRIES_PER_STRIPE
+  private static final int CAPACITY = 8 * 384;
+  private static final int VOCABULARY_SIZE = 2000;
+  private static final int MESSAGE_COUNT = 2000;
+
+  private static float widthOf (CharSequence in, int start, int end, float textSize) {
+    float width = 0;
+    for (int i = start; i < end; i++) {
+      width += (in.charAt(i) % 7 + 4) * textSize / 10f;
+    }
+    return width;
+  }
+
+  private static Paint newPaint (float textSize) {
+    Paint paint = mock(Paint.class);
+    when(paint.getTextSize()).thenReturn(textSize);
+    when(paint.getTextScaleX()).thenReturn(1f);
+    return paint;
+  }
+
+  /**
+   * Chat-like texts: words picked with Zipf-like frequencies, some followed by punctuation, and occasional long links.
+   */
+  private static List<String> newCorpus (int messageCount, long seed) {
+    Random random = new Random(seed);
+    String[] vocabulary = new String[VOCABULARY_SIZE];
+    for (int i = 0; i < vocabulary.length; i++) {
+      StringBuilder word = new StringBuilder();
+      int length = 1 + random.nextInt(i < 100 ? 4 : 12);
+      for (int j = 0; j < length; j++) {
+        word.append((char) ('a' + random.nextInt(26)));
+      }
+      vocabulary[i] = word.toString();
+    }
+    List<String> corpus = new ArrayList<>(messageCount);
+    for (int i = 0; i < messageCount; i++) {
+      StringBuilder text = new StringBuilder();
+      int wordCount = 3 + random.nextInt(40);
+      for (int j = 0; j < wordCount; j++) {
+        if (j > 0) {
+          text.append(' ');
+        }
+        if (random.nextInt(50) == 0) {
+          text.append("https://t.me/c/").append(random.nextLong() & Long.MAX_VALUE).append('/').append(random.nextInt(100000));
+          continue;
+        }
+        int index = (int) Math.min(vocabulary.length - 1, Math.floor(Math.pow(vocabulary.length, random.nextDouble())) - 1);
+        text.append(vocabulary[index]);
+        if (random.nextInt(8) == 0) {
+          text.append(random.nextBoolean() ? ',' : '.');
+        }
+      }
+      corpus.add(text.toString());
+    }
+    return corpus;
+  }
+
+  /**
+   * Splits text into words and measures each of them, and the space separately, the way {@link Text} does.
+   */
+  private static float measureCached (String text, Paint paint) {
+    float width = 0;
+    int start = 0;
+    while (start < text.length()) {
+      int end = text.indexOf(' ', start);
+      if (end == -1) {
+        end = text.length();
+      }
+      if (end > start) {
+        width += TextMeasureCache.measureText(text, start, end, paint);
+      }
+      if (end < text.length()) {
+        width += TextMeasureCache.measureText(" ", paint);
+      }
+      start = end + 1;
+    }
+    return width;
+  }
+
+  private static float measureDirect (String text, Paint paint) {
+    float width = 0;
+    int start = 0;
+    while (start < text.length()) {
+      int end = text.indexOf(' ', start);
+      if (end == -1) {
+        end = text.length();
+      }
+      if (end > start) {
+        width += U.measureText(text, start, end, paint);
+      }
+      if (end < text.length()) {
+        width += U.measureText(" ", 0, 1, paint);
+      }
+      start = end + 1;
+    }
+    return width;
+  }
+
+  private final AtomicLong measureCount = new AtomicLong();
+  private MockedStatic<U> u;
+
+  @Before
+  public void setUp () {
+    u = mockStatic(U.class);
+    u.when(() -> U.measureText(any(CharSequence.class), anyInt(), anyInt(), any(Paint.class))).thenAnswer(invocation -> {
+      measureCount.incrementAndGet();
+      return widthOf(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), ((Paint) invocation.getArgument(3)).getTextSize());
+    });
+    u.when(() -> U.measureTextRun(any(CharSequence.class), anyInt(), anyInt(), any(Paint.class), anyBoolean())).thenAnswer(invocation -> {
+      measureCount.incrementAndGet();
+      return widthOf(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), ((Paint) invocation.getArgument(3)).getTextSize());
+    });
+    TextMeasureCache.clear();
+  }
+
+  @After
+  public void tearDown () {
+    TextMeasureCache.clear();
+    u.close();
+  }
+
+  @Test
+  public void testWidthsMatchMeasuredText () {
+    final Paint regular = newPaint(15f), large = newPaint(17f);
+    for (String text : newCorpus(200, 1)) {
+      for (int pass = 0; pass < 2; pass++) {
+        assertEquals(text, widthOf(text, 0, text.length(), 15f), measureCached(text, regular), 0.01f);
+        assertEquals(text, widthOf(text, 0, text.length(), 17f), measureCached(text, large), 0.01f);
+      }
+    }
+    // Same characters in a different paint are a different entry
+    assertNotEquals(TextMeasureCache.measureText("hello", regular), TextMeasureCache.measureText("hello", large), 0.01f);
+  }
+
+  @Test
+  public void testRunsWithinWordsAreNotCached () {
+    final Paint paint = newPaint(15f);
+    final String text = "unbelievable, really";
+
+    long count = measureCount.get();
+    TextMeasureCache.measureText(text, 0, 12, paint);
+    TextMeasureCache.measureText(text, 0, 12, paint);
+    assertEquals(count + 1, measureCount.get());
+
+    // Width of a part of the word depends on its neighbours, so it is always measured
+    count = measureCount.get();
+    TextMeasureCache.measureText(text, 2, 6, paint);
+    TextMeasureCache.measureText(text, 2, 6, paint);
+    assertEquals(count + 2, measureCount.get());
+
+    // Runs longer than MAX_RUN_LENGTH as well
+    final String link = "https://t.me/c/1234567890/1234567890";
+    count = measureCount.get();
+    TextMeasureCache.measureText(link, paint);
+    TextMeasureCache.measureText(link, paint);
+    assertEquals(count + 2, measureCount.get());
+  }
+
+  @Test
+  public void testSizeIsBounded () {
+    final Paint paint = newPaint(15f);
+    final long evictionCount = TextMeasureCache.getStats().evictionCount;
+    for (int i = 0; i < CAPACITY * 3; i++) {
+      TextMeasureCache.measureText("word" + i, paint);
+    }
+    TextMeasureCache.Stats stats = TextMeasureCache.getStats();
+    assertTrue(stats.toString(), stats.size <= CAPACITY);
+    assertEquals(stats.toString(), CAPACITY * 3 - stats.size, stats.evictionCount - evictionCount);
+  }
+
+  @Test
+  public void testRelayoutIsServedFromCache () {
+    final List<String> corpus = newCorpus(MESSAGE_COUNT, 2);
+    final Paint paint = newPaint(15f);
+
+    final long startMeasureCount = measureCount.get();
+    float directWidth = 0;
+    for (String text : corpus) {
+      directWidth += measureDirect(text, paint);
+    }
+    final long runCount = measureCount.get() - startMeasureCount;
+
+    // First layout of the chat, then layout of the same messages after width change
+    final TextMeasureCache.Stats startStats = TextMeasureCache.getStats();
+    final long[] cachedMeasureCount = new long[2];
+    for (int pass = 0; pass < 2; pass++) {
+      long count = measureCount.get();
+      float cachedWidth = 0;
+      for (String text : corpus) {
+        cachedWidth += measureCached(text, paint);
+      }
+      cachedMeasureCount[pass] = measureCount.get() - count;
+      assertEquals(directWidth, cachedWidth, Math.abs(directWidth) * 1e-5f);
+    }
+    final TextMeasureCache.Stats stats = TextMeasureCache.getStats();
+    final long hitCount = stats.hitCount - startStats.hitCount, missCount = stats.missCount - startStats.missCount;
+
+    // Frequent words repeat across messages, so most runs are measured once
+    assertTrue("Measured " + cachedMeasureCount[0] + " of " + runCount, cachedMeasureCount[0] < runCount / 2);
+    assertTrue("Measured " + cachedMeasureCount[1] + " on relayout, " + cachedMeasureCount[0] + " on layout", cachedMeasureCount[1] <= cachedMeasureCount[0]);
+    assertTrue(stats.toString(), hitCount > missCount * 4);
+  }
+}
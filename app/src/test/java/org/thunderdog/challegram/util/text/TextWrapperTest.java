@@ -0,0 +1,133 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+import org.thunderdog.challegram.tool.UI;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Checks that {@link TextWrapper#releaseLayout()} keeps reporting sizes of the released text until it is prepared again.
+ * {@link Text.Builder} is replaced, so every prepared layout is a mock from {@link #builtTexts}.
+ */
+public class TextWrapperTest {
+  private MockedStatic<UI> ui;
+  private MockedConstruction<Text.Builder> builders;
+  private final Queue<Text> builtTexts = new ArrayDeque<>();
+
+  @Before
+  public void setUp () {
+    ui = mockStatic(UI.class);
+    ui.when(UI::isPortrait).thenReturn(true);
+    builders = mockConstruction(Text.Builder.class, withSettings().defaultAnswer(RETURNS_SELF), (builder, context) ->
+      when(builder.build()).thenAnswer(invocation -> builtTexts.remove())
+    );
+  }
+
+  @After
+  public void tearDown () {
+    builders.close();
+    ui.close();
+  }
+
+  private static Text newText (int width, int height, int lastLineWidth, boolean lastLineIsRtl, int lineCount, int lineHeight, int lineCenterY) {
+    Text text = mock(Text.class);
+    when(text.getWidth()).thenReturn(width);
+    when(text.getHeight()).thenReturn(height);
+    when(text.getLastLineWidth()).thenReturn(lastLineWidth);
+    when(text.getLastLineIsRtl()).thenReturn(lastLineIsRtl);
+    when(text.getLineCount()).thenReturn(lineCount);
+    when(text.getLineHeight()).thenReturn(lineHeight);
+    when(text.getLineCenterY()).thenReturn(lineCenterY);
+    return text;
+  }
+
+  private static TextWrapper newWrapper () {
+    TextStyleProvider styleProvider = mock(TextStyleProvider.class);
+    when(styleProvider.getTextSizeInPixels()).thenReturn(15);
+    return new TextWrapper("Some message text", styleProvider, mock(TextColorSet.class));
+  }
+
+  private static void assertSizes (TextWrapper wrapper, int width, int height, int lastLineWidth, boolean lastLineIsRtl, int lineCount, int lineHeight, int lineCenterY) {
+    assertEquals(width, wrapper.getWidth());
+    assertEquals(height, wrapper.getHeight());
+    assertEquals(lastLineWidth, wrapper.getLastLineWidth());
+    assertEquals(lastLineIsRtl, wrapper.getLastLineIsRtl());
+    assertEquals(lineCount, wrapper.getLineCount());
+    assertEquals(lineHeight, wrapper.getLineHeight());
+    assertEquals(lineCenterY, wrapper.getLineCenterY());
+  }
+
+  @Test
+  public void testReleasedSizesArePreserved () {
+    Text text = newText(120, 48, 35, true, 2, 24, 12);
+    builtTexts.add(text);
+    TextWrapper wrapper = newWrapper();
+    assertSame(text, wrapper.prepare(200));
+    assertSizes(wrapper, 120, 48, 35, true, 2, 24, 12);
+
+    wrapper.releaseLayout();
+    assertTrue(wrapper.isLayoutReleased());
+    verify(text).performDestroy();
+    assertNull(wrapper.getCurrent());
+    assertSizes(wrapper, 120, 48, 35, true, 2, 24, 12);
+
+    // Once prepared again, sizes come from the new layout
+    Text rebuiltText = newText(120, 48, 40, false, 2, 24, 12);
+    builtTexts.add(rebuiltText);
+    assertSame(rebuiltText, wrapper.prepare(200));
+    assertFalse(wrapper.isLayoutReleased());
+    assertSizes(wrapper, 120, 48, 40, false, 2, 24, 12);
+    assertEquals(2, builders.constructed().size());
+  }
+
+  @Test
+  public void testReleaseWithoutLayout () {
+    TextWrapper wrapper = newWrapper();
+    wrapper.releaseLayout();
+    assertFalse(wrapper.isLayoutReleased());
+    assertSizes(wrapper, 0, 0, -1, false, 0, 0, 0);
+  }
+
+  @Test
+  public void testDestroyForgetsReleasedSizes () {
+    builtTexts.add(newText(120, 48, 35, true, 2, 24, 12));
+    TextWrapper wrapper = newWrapper();
+    wrapper.prepare(200);
+    wrapper.releaseLayout();
+    wrapper.performDestroy();
+    assertFalse(wrapper.isLayoutReleased());
+    assertSizes(wrapper, 0, 0, -1, false, 0, 0, 0);
+  }
+}
@@ -30,6 +30,8 @@ object LibraryVersions {
   const val ANNOTATIONS = "1.9.0"
   const val ANDROIDX_MEDIA = "1.3.1"
   const val ANDROIDX_CAMERA = "1.3.4"
+  const val JUNIT = "4.13.2"
+  const val MOCKITO = "5.14.2"
 }
 
 class AbiVariant (val flavor: String, vararg val filters: String = arrayOf(), val displayName: String = filters[0]) {
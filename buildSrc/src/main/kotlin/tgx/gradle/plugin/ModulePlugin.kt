@@ -110,6 +110,10 @@ open class ModulePlugin : Plugin<Project> {
 
         testOptions {
           unitTests.isReturnDefaultValues = true
+          // Benchmarks are skipped unless requested with -Pbenchmark
+          unitTests.all {
+            it.systemProperty("tgx.benchmark", project.hasProperty("benchmark"))
+          }
         }
 
         sourceSets.configureEach {